@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.http;
+
+import java.util.List;
+
+import com.google.gson.TypeAdapter;
+import com.redhat.thermostat.annotations.Service;
+
+/**
+ * Shared write pipeline for samples destined for the web gateway.
+ * <p>
+ * Samples handed to {@link #write(String, Object, TypeAdapter)} are queued and
+ * returned from immediately. A background flusher coalesces all samples queued
+ * for the same endpoint into a single JSON array POST, either once a batch is
+ * full or once the flush interval has elapsed, whichever comes first. Requests
+ * are sent asynchronously, so a slow gateway does not stall the thread that
+ * collected the sample.
+ */
+@Service
+public interface GatewayBatchWriter {
+
+    /**
+     * Queues a sample for delivery to the given endpoint. If the queue is full
+     * the sample is dropped and a warning is logged. Samples written once the
+     * writer is stopped are dropped as well.
+     *
+     * @param url the gateway endpoint to POST the sample to
+     * @param item the sample to send
+     * @param adapter serializes a batch of samples into a JSON array. All
+     *            samples for a given endpoint are expected to use the same
+     *            adapter.
+     */
+    <T> void write(String url, T item, TypeAdapter<List<T>> adapter);
+
+    /**
+     * @return the number of samples currently waiting to be flushed
+     */
+    int getQueueDepth();
+
+    /**
+     * @return the number of samples in the most recently sent batch
+     */
+    int getLastBatchSize();
+
+    /**
+     * @return the time in milliseconds between sending the most recently
+     *         completed batch and receiving the gateway's response
+     */
+    long getLastFlushLatency();
+
+}
+
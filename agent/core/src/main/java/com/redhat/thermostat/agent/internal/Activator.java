@@ -42,6 +42,8 @@ import java.util.logging.Logger;
 
 import com.redhat.thermostat.agent.dao.AgentInfoDAO;
 import com.redhat.thermostat.agent.dao.BackendInfoDAO;
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
+import org.eclipse.jetty.client.HttpClient;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
@@ -69,10 +71,21 @@ public class Activator implements BundleActivator {
     private ServiceTracker<CommonPaths, CommonPaths> commonPathsTracker;
     private MultipleServiceTracker agentIPCTracker;
     private MXBeanConnectionPoolControl pool;
+    private HttpClient httpClient;
+    private GatewayBatchWriterImpl gatewayWriter;
 
     @Override
     public void start(final BundleContext context) throws Exception {
 
+        // The shared HTTP client and gateway writer have no dependencies,
+        // make them available to DAOs right away
+        httpClient = new SharedHttpClientFactory().createClient();
+        httpClient.start();
+        context.registerService(HttpClient.class, httpClient, null);
+        gatewayWriter = new GatewayBatchWriterImpl(httpClient);
+        gatewayWriter.start();
+        context.registerService(GatewayBatchWriter.class, gatewayWriter, null);
+
         // Track common paths separately and register storage credentials quickly
         // We need to do this since otherwise no storage credentials will be
         // available by the time they're used in DbService
@@ -109,10 +122,10 @@ public class Activator implements BundleActivator {
             public void dependenciesAvailable(DependencyProvider services) {
 
                 try {
-                    AgentInfoDAO agentInfoDAO = new AgentInfoDAOImpl();
+                    AgentInfoDAO agentInfoDAO = new AgentInfoDAOImpl(httpClient);
                     context.registerService(AgentInfoDAO.class, agentInfoDAO, null);
 
-                    BackendInfoDAO backendInfoDAO = new BackendInfoDAOImpl();
+                    BackendInfoDAO backendInfoDAO = new BackendInfoDAOImpl(httpClient);
                     context.registerService(BackendInfoDAO.class, backendInfoDAO, null);
 
                 } catch (Exception e) {
@@ -147,6 +160,9 @@ public class Activator implements BundleActivator {
     public void stop(BundleContext context) throws Exception {
         commonPathsTracker.close();
         agentIPCTracker.close();
+        // Drains outstanding gateway requests, so the client must stop after it
+        gatewayWriter.stop();
+        httpClient.stop();
     }
 
     // Testing hook.
@@ -73,16 +73,14 @@ public class AgentInfoDAOImpl implements AgentInfoDAO {
     private final HttpHelper httpHelper;
     private final JsonHelper jsonHelper;
 
-    public AgentInfoDAOImpl() throws Exception {
-        this(new HttpHelper(new HttpClient()), new JsonHelper(new AgentInformationTypeAdapter(),
+    public AgentInfoDAOImpl(HttpClient client) {
+        this(new HttpHelper(client), new JsonHelper(new AgentInformationTypeAdapter(),
                                                               new AgentInformationUpdateTypeAdapter()));
     }
 
-    AgentInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) throws Exception {
+    AgentInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) {
         this.httpHelper = httpHelper;
         this.jsonHelper = jsonHelper;
-        
-        this.httpHelper.startClient();
     }
 
     @Override
@@ -209,10 +207,6 @@ public class AgentInfoDAOImpl implements AgentInfoDAO {
             this.httpClient = httpClient;
         }
         
-        void startClient() throws Exception {
-            httpClient.start();
-        }
-        
         StringContentProvider createContentProvider(String content) {
             return new StringContentProvider(content);
         }
@@ -74,15 +74,13 @@ public class BackendInfoDAOImpl implements BackendInfoDAO {
     private final HttpHelper httpHelper;
     private final JsonHelper jsonHelper;
     
-    public BackendInfoDAOImpl() throws Exception {
-        this(new HttpHelper(new HttpClient()), new JsonHelper(new BackendInformationTypeAdapter()));
+    public BackendInfoDAOImpl(HttpClient client) {
+        this(new HttpHelper(client), new JsonHelper(new BackendInformationTypeAdapter()));
     }
 
-    BackendInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) throws Exception {
+    BackendInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) {
         this.httpHelper = httpHelper;
         this.jsonHelper = jsonHelper;
-        
-        this.httpHelper.startClient();
     }
 
     @Override
@@ -169,10 +167,6 @@ public class BackendInfoDAOImpl implements BackendInfoDAO {
             this.httpClient = httpClient;
         }
         
-        void startClient() throws Exception {
-            httpClient.start();
-        }
-        
         StringContentProvider createContentProvider(String content) {
             return new StringContentProvider(content);
         }
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+
+import com.google.gson.TypeAdapter;
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+public class GatewayBatchWriterImpl implements GatewayBatchWriter {
+
+    private static final Logger logger = LoggingUtils.getLogger(GatewayBatchWriterImpl.class);
+
+    /*
+     * Integer. Maximum number of samples sent to one endpoint in a single
+     * request.
+     */
+    static final String BATCH_SIZE = "com.redhat.thermostat.agent.gateway.batchSize";
+
+    /*
+     * Integer. Maximum time in milliseconds a sample waits in the queue
+     * before it is flushed.
+     */
+    static final String FLUSH_INTERVAL = "com.redhat.thermostat.agent.gateway.flushInterval";
+
+    /*
+     * Integer. Maximum number of samples waiting to be flushed. Samples
+     * written while the queue is full are dropped.
+     */
+    static final String QUEUE_CAPACITY = "com.redhat.thermostat.agent.gateway.queueCapacity";
+
+    /*
+     * Integer. Maximum time in milliseconds stop() waits for requests that
+     * are still in flight before it returns.
+     */
+    static final String STOP_TIMEOUT = "com.redhat.thermostat.agent.gateway.stopTimeout";
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final int DEFAULT_FLUSH_INTERVAL = 1000;
+    static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    static final int DEFAULT_STOP_TIMEOUT = 5000;
+
+    private static final String CONTENT_TYPE = "application/json";
+
+    private final HttpClient client;
+    private final ScheduledExecutorService executor;
+    private final BlockingQueue<PendingWrite<?>> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long stopTimeout;
+    private final AtomicBoolean flushScheduled;
+    private final AtomicLong droppedCount;
+    private final Runnable flushAction;
+    private final Object inFlightLock;
+    private int inFlight;
+    private volatile boolean stopped;
+    private volatile int lastBatchSize;
+    private volatile long lastFlushLatency;
+
+    public GatewayBatchWriterImpl(HttpClient client) {
+        this(client, Executors.newSingleThreadScheduledExecutor(new FlusherThreadFactory()),
+                Integer.getInteger(QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY),
+                Integer.getInteger(BATCH_SIZE, DEFAULT_BATCH_SIZE),
+                Integer.getInteger(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL),
+                Integer.getInteger(STOP_TIMEOUT, DEFAULT_STOP_TIMEOUT));
+    }
+
+    GatewayBatchWriterImpl(HttpClient client, ScheduledExecutorService executor, int queueCapacity,
+            int batchSize, long flushInterval, long stopTimeout) {
+        if (queueCapacity <= 0 || batchSize <= 0 || flushInterval <= 0) {
+            throw new IllegalArgumentException("Gateway writer queue capacity, batch size and flush interval must be > 0");
+        }
+        if (stopTimeout < 0) {
+            throw new IllegalArgumentException("Gateway writer stop timeout must be >= 0");
+        }
+        this.client = client;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.stopTimeout = stopTimeout;
+        this.flushScheduled = new AtomicBoolean();
+        this.droppedCount = new AtomicLong();
+        this.inFlightLock = new Object();
+        this.flushAction = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(flushAction, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic flush, sends anything still queued and waits up to
+     * the stop timeout for outstanding requests to complete, so that the
+     * HTTP client can be stopped afterwards without aborting them.
+     */
+    public void stop() {
+        stopped = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+            // Send anything still queued
+            flush();
+            awaitInFlightRequests();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitInFlightRequests() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeout);
+        synchronized (inFlightLock) {
+            while (inFlight > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.log(Level.WARNING, "Stopped waiting for " + inFlight + " requests to web gateway");
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(inFlightLock, remaining);
+            }
+        }
+    }
+
+    @Override
+    public <T> void write(String url, T item, TypeAdapter<List<T>> adapter) {
+        if (stopped) {
+            // Nothing flushes the queue any more
+            droppedCount.incrementAndGet();
+            return;
+        }
+        if (!queue.offer(new PendingWrite<>(url, item, adapter))) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        if (queue.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(flushAction);
+            } catch (RejectedExecutionException e) {
+                // stopping, queued samples are sent by stop()
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    @Override
+    public long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    void flush() {
+        flushScheduled.set(false);
+
+        long dropped = droppedCount.getAndSet(0);
+        if (dropped > 0) {
+            logger.log(Level.WARNING, "Gateway write queue full, dropped " + dropped + " samples");
+        }
+
+        List<PendingWrite<?>> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Coalesce per endpoint, preserving the order samples were written in
+        Map<String, List<PendingWrite<?>>> byEndpoint = new LinkedHashMap<>();
+        for (PendingWrite<?> write : pending) {
+            List<PendingWrite<?>> writes = byEndpoint.get(write.url);
+            if (writes == null) {
+                writes = new ArrayList<>();
+                byEndpoint.put(write.url, writes);
+            }
+            writes.add(write);
+        }
+
+        for (Map.Entry<String, List<PendingWrite<?>>> entry : byEndpoint.entrySet()) {
+            List<PendingWrite<?>> writes = entry.getValue();
+            for (int i = 0; i < writes.size(); i += batchSize) {
+                List<PendingWrite<?>> batch = writes.subList(i, Math.min(i + batchSize, writes.size()));
+                try {
+                    sendBatch(entry.getKey(), batch);
+                } catch (RuntimeException e) {
+                    // e.g. a malformed endpoint URL, keep flushing the other endpoints
+                    logger.log(Level.WARNING, "Failed to send " + batch.size() + " samples to web gateway at "
+                            + entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void sendBatch(final String url, List<PendingWrite<?>> batch) {
+        TypeAdapter<List<T>> adapter = (TypeAdapter<List<T>>) (TypeAdapter<?>) batch.get(0).adapter;
+        List<T> items = new ArrayList<>(batch.size());
+        for (PendingWrite<?> write : batch) {
+            items.add((T) write.item);
+        }
+
+        final int size = items.size();
+        String json;
+        try {
+            json = adapter.toJson(items);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to serialize " + size + " samples for web gateway", e);
+            return;
+        }
+
+        Request httpRequest = client.newRequest(url);
+        httpRequest.method(HttpMethod.POST);
+        httpRequest.content(new StringContentProvider(json), CONTENT_TYPE);
+
+        synchronized (inFlightLock) {
+            inFlight++;
+        }
+        final long sendTime = System.nanoTime();
+        try {
+            send(httpRequest, url, size, sendTime);
+        } catch (RuntimeException e) {
+            // Never sent, so it never completes
+            requestDone();
+            throw e;
+        }
+        lastBatchSize = size;
+    }
+
+    private void send(Request httpRequest, final String url, final int size, final long sendTime) {
+        httpRequest.send(new Response.CompleteListener() {
+            @Override
+            public void onComplete(Result result) {
+                requestDone();
+                long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendTime);
+                lastFlushLatency = latency;
+                if (result.isFailed()) {
+                    logger.log(Level.WARNING, "Failed to send " + size + " samples to web gateway at " + url,
+                            result.getFailure());
+                    return;
+                }
+                int status = result.getResponse().getStatus();
+                if (status != HttpStatus.OK_200) {
+                    logger.log(Level.WARNING, "Gateway returned HTTP status " + status + " - "
+                            + result.getResponse().getReason() + " for " + size + " samples sent to " + url);
+                } else if (logger.isLoggable(Level.FINEST)) {
+                    logger.finest("Sent " + size + " samples to " + url + " in " + latency + "ms");
+                }
+            }
+        });
+    }
+
+    private void requestDone() {
+        synchronized (inFlightLock) {
+            inFlight--;
+            inFlightLock.notifyAll();
+        }
+    }
+
+    private static class PendingWrite<T> {
+
+        private final String url;
+        private final T item;
+        private final TypeAdapter<List<T>> adapter;
+
+        private PendingWrite(String url, T item, TypeAdapter<List<T>> adapter) {
+            this.url = url;
+            this.item = item;
+            this.adapter = adapter;
+        }
+    }
+
+    private static class FlusherThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "thermostat-gateway-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
+
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.shared.config.InvalidConfigurationException;
+
+/**
+ * Creates the single {@link HttpClient} which is shared by everything in the
+ * agent that talks to the web gateway. Connections to the gateway are kept
+ * alive and pooled by the client, so sharing it means one selector, one
+ * executor and one connection pool per agent rather than one per DAO.
+ */
+class SharedHttpClientFactory {
+
+    private static final Logger logger = LoggingUtils.getLogger(SharedHttpClientFactory.class);
+
+    /*
+     * Integer. Maximum number of pooled connections to a single gateway
+     * host/port.
+     */
+    static final String MAX_CONNECTIONS = "com.redhat.thermostat.agent.http.maxConnections";
+
+    /*
+     * Integer. Time in milliseconds after which an idle pooled connection is
+     * closed.
+     */
+    static final String IDLE_TIMEOUT = "com.redhat.thermostat.agent.http.idleTimeout";
+
+    /*
+     * Integer. Maximum number of threads used by the client for I/O and
+     * response callbacks, in addition to the threads the client reserves for
+     * its selectors.
+     */
+    static final String EXECUTOR_SIZE = "com.redhat.thermostat.agent.http.executorSize";
+
+    static final int DEFAULT_MAX_CONNECTIONS = 8;
+    static final int DEFAULT_IDLE_TIMEOUT = 30000;
+    static final int DEFAULT_EXECUTOR_SIZE = 8;
+
+    private static final String THREAD_POOL_NAME = "thermostat-http-client";
+
+    HttpClient createClient() {
+        int maxConnections = getPositiveProperty(MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+        int idleTimeout = getPositiveProperty(IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+        int executorSize = getPositiveProperty(EXECUTOR_SIZE, DEFAULT_EXECUTOR_SIZE);
+
+        // Jetty pins one pooled thread per selector, which would otherwise
+        // starve the executor on hosts with many cores
+        int selectorThreads = (Runtime.getRuntime().availableProcessors() + 1) / 2;
+        QueuedThreadPool executor = new QueuedThreadPool(executorSize + selectorThreads);
+        executor.setName(THREAD_POOL_NAME);
+        executor.setDaemon(true);
+
+        HttpClient client = new HttpClient();
+        client.setExecutor(executor);
+        client.setMaxConnectionsPerDestination(maxConnections);
+        client.setIdleTimeout(idleTimeout);
+        logger.log(Level.CONFIG, "Using shared HTTP client with " + maxConnections + " connections per destination, "
+                + idleTimeout + "ms idle timeout and " + executorSize + " executor threads");
+        return client;
+    }
+
+    private int getPositiveProperty(String name, int defaultValue) {
+        int value = Integer.getInteger(name, defaultValue);
+        if (value <= 0) {
+            throw new InvalidConfigurationException("Value of property " + name + ": " + value + " <= 0");
+        }
+        return value;
+    }
+
+}
+
@@ -38,6 +38,9 @@ package com.redhat.thermostat.utils.management.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.redhat.thermostat.common.ExitStatus;
 import com.redhat.thermostat.shared.config.OS;
@@ -52,29 +55,56 @@ class AgentProxyClient {
     private final String username;
     private final File ipcConfigFile;
     private final String serverName;
+    // Zero for a proxy that exits after one attach
+    private final long idleTimeout;
     
     AgentProxyClient(int pid, String user, File binPath, File ipcConfigFile, String serverName) {
-        this(pid, user, binPath, ipcConfigFile, serverName, new ProcessCreator());
+        this(pid, user, binPath, ipcConfigFile, serverName, 0L);
+    }
+    
+    AgentProxyClient(int pid, String user, File binPath, File ipcConfigFile, String serverName, long idleTimeout) {
+        this(pid, user, binPath, ipcConfigFile, serverName, idleTimeout, new ProcessCreator());
     }
     
     AgentProxyClient(int pid, String user, File binPath, File ipcConfigFile, String serverName, ProcessCreator procCreator) {
+        this(pid, user, binPath, ipcConfigFile, serverName, 0L, procCreator);
+    }
+    
+    AgentProxyClient(int pid, String user, File binPath, File ipcConfigFile, String serverName, long idleTimeout,
+            ProcessCreator procCreator) {
         this.pid = pid;
         this.binPath = binPath;
         this.procCreator = procCreator;
         this.username = user;
         this.ipcConfigFile = ipcConfigFile;
         this.serverName = serverName;
+        this.idleTimeout = idleTimeout;
     }
 
+    /**
+     * Starts the agent proxy. A proxy with an idle timeout keeps running to
+     * serve later attach requests, so this returns once it is started.
+     * Otherwise this waits for the proxy to exit.
+     */
     void runProcess() throws IOException, InterruptedException {
         // Start the agent proxy
         String serverPath = binPath + File.separator + SERVER_NAME;
-        String[] args = OS.IS_UNIX
-                ? new String[] { serverPath, String.valueOf(pid), username, ipcConfigFile.getAbsolutePath(), serverName }
-                : new String[] { "cmd", "/C", serverPath+".cmd", String.valueOf(pid), username, ipcConfigFile.getAbsolutePath(), serverName };
+        List<String> args = new ArrayList<>();
+        if (OS.IS_UNIX) {
+            args.add(serverPath);
+        } else {
+            args.addAll(Arrays.asList("cmd", "/C", serverPath + ".cmd"));
+        }
+        args.addAll(Arrays.asList(String.valueOf(pid), username, ipcConfigFile.getAbsolutePath(), serverName));
+        if (isPersistent()) {
+            args.add(String.valueOf(idleTimeout));
+        }
         ProcessBuilder builder = new ProcessBuilder(args);
         builder.inheritIO();
         Process proxy = procCreator.startProcess(builder);
+        if (isPersistent()) {
+            return;
+        }
         
         try {
             // Wait for process to terminate
@@ -87,6 +117,10 @@ class AgentProxyClient {
         }
     }
     
+    boolean isPersistent() {
+        return idleTimeout > 0;
+    }
+    
     static class ProcessCreator {
         Process startProcess(ProcessBuilder builder) throws IOException {
             return builder.start();
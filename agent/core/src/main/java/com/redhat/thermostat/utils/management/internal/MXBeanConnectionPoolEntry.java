@@ -49,9 +49,14 @@ class MXBeanConnectionPoolEntry {
     private final int pid;
     private int usageCount;
     private String jmxUrl;
-    private MXBeanConnectionImpl connection;
+    private volatile MXBeanConnectionImpl connection;
     private CountDownLatch urlLatch;
     private Exception ex;
+    // Counted down once the connection is made, or failed to be made
+    private final CountDownLatch connectionLatch;
+    private volatile IOException connectionException;
+    // IPC server the agent proxy for this pid replies to
+    private volatile String serverName;
     
     MXBeanConnectionPoolEntry(int pid) {
         this(pid, new CountDownLatch(1));
@@ -63,12 +68,29 @@ class MXBeanConnectionPoolEntry {
         this.jmxUrl = null;
         this.connection = null;
         this.urlLatch = urlLatch;
+        this.connectionLatch = new CountDownLatch(1);
     }
     
     MXBeanConnectionImpl getConnection() {
         return connection;
     }
     
+    /**
+     * Waits for the connection being made by another thread acquiring
+     * the same pid.
+     */
+    MXBeanConnectionImpl getConnectionOrBlock() throws IOException, InterruptedException {
+        connectionLatch.await();
+        if (connectionException != null) {
+            throw new IOException("Failed to connect to " + pid, connectionException);
+        }
+        return connection;
+    }
+    
+    boolean isAwaitingJmxUrl() {
+        return urlLatch.getCount() > 0;
+    }
+    
     String getJmxUrlOrBlock() throws IOException, InterruptedException {
         boolean finished = urlLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
         if (!finished) {
@@ -80,6 +102,14 @@ class MXBeanConnectionPoolEntry {
         return jmxUrl;
     }
     
+    String getServerName() {
+        return serverName;
+    }
+    
+    void setServerName(String serverName) {
+        this.serverName = serverName;
+    }
+    
     int getPid() {
         return pid;
     }
@@ -103,6 +133,13 @@ class MXBeanConnectionPoolEntry {
     
     void setConnection(MXBeanConnectionImpl connection) {
         this.connection = connection;
+        connectionLatch.countDown();
+    }
+    
+    void setConnectionException(IOException connectionException) {
+        this.connectionException = connectionException;
+        // No connection coming, stop waiting and throw exception
+        connectionLatch.countDown();
     }
     
     void setException(Exception ex) {
@@ -44,11 +44,16 @@ import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
 import java.nio.file.attribute.UserPrincipal;
 import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -67,32 +72,45 @@ import com.redhat.thermostat.agent.utils.management.MXBeanConnection;
 import com.redhat.thermostat.agent.utils.management.MXBeanConnectionException;
 import com.redhat.thermostat.agent.utils.management.MXBeanConnectionPool;
 import com.redhat.thermostat.common.portability.UserNameUtil;
+import com.redhat.thermostat.common.utils.LoggingUtils;
 
 public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, ThermostatIPCCallbacks {
 
-    private static final Object CURRENT_ENTRY_LOCK = new Object();
+    private static final Logger logger = LoggingUtils.getLogger(MXBeanConnectionPoolImpl.class);
     private static final String IPC_SERVER_PREFIX = "agent-proxy";
+    /**
+     * How many agent proxies may be attaching to different pids at the
+     * same time.
+     */
+    static final String MAX_CONCURRENT_ATTACHES = "com.redhat.thermostat.agent.mxbean.maxConcurrentAttaches";
+    static final int DEFAULT_MAX_CONCURRENT_ATTACHES = 8;
+    /**
+     * If positive, agent proxies stay running after their first attach and
+     * serve further attach requests for the same user, exiting after being
+     * idle for this many milliseconds. Otherwise, one agent proxy is started
+     * per attach.
+     */
+    static final String PROXY_IDLE_TIMEOUT = "com.redhat.thermostat.agent.proxy.idleTimeout";
+    static final long DEFAULT_PROXY_IDLE_TIMEOUT = 0L;
     static final String JSON_PID = "pid";
     static final String JSON_JMX_URL = "jmxUrl";
+    static final String JSON_ERROR = "error";
+    static final String JSON_PERSISTENT = "persistent";
     
-    // pid -> (usageCount, actualObject)
+    // pid -> (usageCount, actualObject), guarded by this
     private final Map<Integer, MXBeanConnectionPoolEntry> pool;
     private final ConnectorCreator creator;
     private final File binPath;
     private final ProcessUserInfoBuilder userInfoBuilder;
     private final AgentIPCService ipcService;
     private final FileSystemUtils fsUtils;
-    // Keep track of IPC servers we created
+    // Keep track of IPC servers we created, guarded by this
     private final Set<String> ipcServerNames;
-    
-    /**
-     * Current {@link MXBeanConnectionPoolEntry} being created by {@link #acquire(int)} for use
-     * by {@link #messageReceived(IPCMessage)}. 
-     * Since {@link #acquire(int)} is a synchronized method and blocks until
-     * {@link #messageReceived(IPCMessage)} is invoked, only one entry can be processed at a time.
-     * Access/modification must be synchronized using {@link #CURRENT_ENTRY_LOCK}.
-     */
-    private MXBeanConnectionPoolEntry currentNewEntry;
+    // Bounds the agent proxies running at the same time
+    private final Semaphore attachPermits;
+    private final long proxyIdleTimeout;
+    // IPC server name -> last messages from agent proxies waiting for work, guarded by this
+    private final Map<String, Deque<IdleProxy>> idleProxies;
     private boolean started;
 
     public MXBeanConnectionPoolImpl(File binPath, UserNameUtil userNameUtil, AgentIPCService ipcService) {
@@ -102,15 +120,47 @@ public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, Th
 
     MXBeanConnectionPoolImpl(ConnectorCreator connectorCreator, File binPath, ProcessUserInfoBuilder userInfoBuilder, 
             AgentIPCService ipcService, FileSystemUtils fsUtils) {
+        this(connectorCreator, binPath, userInfoBuilder, ipcService, fsUtils, getMaxConcurrentAttaches());
+    }
+    
+    MXBeanConnectionPoolImpl(ConnectorCreator connectorCreator, File binPath, ProcessUserInfoBuilder userInfoBuilder, 
+            AgentIPCService ipcService, FileSystemUtils fsUtils, int maxConcurrentAttaches) {
+        this(connectorCreator, binPath, userInfoBuilder, ipcService, fsUtils, maxConcurrentAttaches, getProxyIdleTimeout());
+    }
+    
+    MXBeanConnectionPoolImpl(ConnectorCreator connectorCreator, File binPath, ProcessUserInfoBuilder userInfoBuilder, 
+            AgentIPCService ipcService, FileSystemUtils fsUtils, int maxConcurrentAttaches, long proxyIdleTimeout) {
         this.pool = new HashMap<>();
         this.creator = connectorCreator;
         this.binPath = binPath;
         this.userInfoBuilder = userInfoBuilder;
         this.ipcService = ipcService;
         this.fsUtils = fsUtils;
-        this.currentNewEntry = null;
         this.started = false;
         this.ipcServerNames = new HashSet<>();
+        this.attachPermits = new Semaphore(maxConcurrentAttaches, true);
+        this.proxyIdleTimeout = proxyIdleTimeout;
+        this.idleProxies = new HashMap<>();
+    }
+    
+    private static int getMaxConcurrentAttaches() {
+        int value = Integer.getInteger(MAX_CONCURRENT_ATTACHES, DEFAULT_MAX_CONCURRENT_ATTACHES);
+        if (value <= 0) {
+            logger.warning("Invalid value for " + MAX_CONCURRENT_ATTACHES + ": " + value
+                    + ", using default: " + DEFAULT_MAX_CONCURRENT_ATTACHES);
+            value = DEFAULT_MAX_CONCURRENT_ATTACHES;
+        }
+        return value;
+    }
+    
+    private static long getProxyIdleTimeout() {
+        long value = Long.getLong(PROXY_IDLE_TIMEOUT, DEFAULT_PROXY_IDLE_TIMEOUT);
+        if (value < 0) {
+            logger.warning("Invalid value for " + PROXY_IDLE_TIMEOUT + ": " + value
+                    + ", using default: " + DEFAULT_PROXY_IDLE_TIMEOUT);
+            value = DEFAULT_PROXY_IDLE_TIMEOUT;
+        }
+        return value;
     }
 
     @Override
@@ -127,6 +177,14 @@ public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, Th
     public synchronized void shutdown() throws IOException {
         this.started = false;
         
+        // Let waiting agent proxies exit now, rather than when they time out
+        for (Deque<IdleProxy> proxies : idleProxies.values()) {
+            for (IdleProxy proxy : proxies) {
+                sendExitRequest(proxy.message);
+            }
+        }
+        idleProxies.clear();
+        
         // Delete all IPC servers created by this class
         Set<String> serverNames = new HashSet<>(ipcServerNames);
         for (String serverName : serverNames) {
@@ -143,42 +201,62 @@ public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, Th
     
     @Override
     public void messageReceived(IPCMessage message) {
-        synchronized (CURRENT_ENTRY_LOCK) {
-            MXBeanConnectionPoolEntry entry = currentNewEntry;
-            Objects.requireNonNull(entry, "currentNewEntry was null, should never happen");
-            
-            ByteBuffer buf = message.get();
-            CharBuffer charBuf = Charset.forName("UTF-8").decode(buf);
-            String dataString = charBuf.toString();
-            try {
-                // Deserialize JSON data
-                GsonBuilder builder = new GsonBuilder();
-                Gson gson = builder.create();
-                JsonParser parser = new JsonParser();
-                
-                // Get root of JsonObject tree
-                JsonElement parsed = parser.parse(dataString);
-                requireNonNull(parsed, "Received empty JSON data");
-                if (!parsed.isJsonObject()) {
-                    throw new IOException("Malformed data from agent proxy");
-                }
-                JsonObject jsonObj = parsed.getAsJsonObject();
-                
-                int pid = getPidFromJson(gson, jsonObj);
-                // Verify PID is correct
-                if (entry.getPid() != pid) {
-                    throw new IOException("Expected message for PID: " + currentNewEntry.getPid() 
-                        + ", got message for PID: " + pid);
-                }
-
-                String jmxUrl = getJmxUrlFromJson(gson, jsonObj, pid);
-                entry.setJmxUrl(jmxUrl);
-            } catch (JsonParseException | IOException e) {
-                entry.setException(e);
+        ByteBuffer buf = message.get();
+        CharBuffer charBuf = Charset.forName("UTF-8").decode(buf);
+        String dataString = charBuf.toString();
+        
+        // Deserialize JSON data
+        GsonBuilder builder = new GsonBuilder();
+        Gson gson = builder.create();
+        JsonParser parser = new JsonParser();
+        JsonObject jsonObj;
+        int pid;
+        try {
+            // Get root of JsonObject tree
+            JsonElement parsed = parser.parse(dataString);
+            requireNonNull(parsed, "Received empty JSON data");
+            if (!parsed.isJsonObject()) {
+                throw new IOException("Malformed data from agent proxy");
+            }
+            jsonObj = parsed.getAsJsonObject();
+            pid = getPidFromJson(gson, jsonObj);
+        } catch (JsonParseException | IOException e) {
+            // Without a PID there is no telling whose attach this was, it will time out
+            logger.log(Level.WARNING, "Ignoring message from agent proxy", e);
+            return;
+        }
+        
+        // Agent proxies for several PIDs may be running, find the one this reply is for
+        MXBeanConnectionPoolEntry entry;
+        synchronized (this) {
+            entry = pool.get(pid);
+        }
+        boolean persistent = isPersistent(jsonObj);
+        if (entry == null || !entry.isAwaitingJmxUrl()) {
+            logger.warning("Ignoring message from agent proxy for PID " + pid + ", which is not being attached to");
+            if (persistent) {
+                sendExitRequest(message);
             }
+            return;
+        }
+        
+        // Make the proxy available before waking up the attaching thread
+        if (persistent) {
+            addIdleProxy(entry.getServerName(), message);
+        }
+        try {
+            String jmxUrl = getJmxUrlFromJson(gson, jsonObj, pid);
+            entry.setJmxUrl(jmxUrl);
+        } catch (JsonParseException | IOException e) {
+            entry.setException(e);
         }
     }
     
+    private boolean isPersistent(JsonObject json) {
+        JsonElement persistent = json.get(JSON_PERSISTENT);
+        return persistent != null && persistent.isJsonPrimitive() && persistent.getAsBoolean();
+    }
+    
     private int getPidFromJson(Gson gson, JsonObject json) throws IOException {
         JsonElement jsonPid = json.get(JSON_PID);
         requireNonNull(jsonPid, "No PID received from agent proxy");
@@ -186,6 +264,10 @@ public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, Th
     }
     
     private String getJmxUrlFromJson(Gson gson, JsonObject json, int pid) throws IOException {
+        JsonElement jsonError = json.get(JSON_ERROR);
+        if (jsonError != null && !jsonError.isJsonNull()) {
+            throw new IOException("Agent proxy failed to attach to PID " + pid + ": " + gson.fromJson(jsonError, String.class));
+        }
         JsonElement jsonJmxUrl = json.get(JSON_JMX_URL);
         requireNonNull(jsonJmxUrl, "No JMX service URL received from agent proxy for PID: " + pid);
         return gson.fromJson(jsonJmxUrl, String.class);
@@ -197,61 +279,163 @@ public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, Th
         }
     }
     
+    /**
+     * Acquires a connection to the given pid. Connections to different pids
+     * are made in parallel, up to {@link #MAX_CONCURRENT_ATTACHES} at a time;
+     * callers acquiring a pid that is being connected to wait for that
+     * connection instead of making their own.
+     */
     @Override
-    public synchronized MXBeanConnection acquire(int pid) throws MXBeanConnectionException {
-        checkRunning();
-        MXBeanConnectionPoolEntry data = pool.get(pid);
-        if (data == null) {
-            MXBeanConnector connector = null;
-            ProcessUserInfo info = userInfoBuilder.build(pid);
-            String username = info.getUsername();
-            if (username == null) {
-                throw new MXBeanConnectionException("Unable to determine owner of " + pid);
-            }
-            // Create an Agent Proxy IPC server for this user if it does not already exist
-            String serverName = IPC_SERVER_PREFIX + "-" + String.valueOf(info.getUid());
-            try {
-                // Check if we created an IPC server for this user already
-                if (!ipcServerNames.contains(serverName)) {
-                    createIPCServer(username, serverName);
-                }
-                
+    public MXBeanConnection acquire(int pid) throws MXBeanConnectionException {
+        MXBeanConnectionPoolEntry data;
+        boolean attach = false;
+        synchronized (this) {
+            checkRunning();
+            data = pool.get(pid);
+            if (data == null) {
+                // Add this to the map early, so our callback and other callers can find it
                 data = new MXBeanConnectionPoolEntry(pid);
-                // Synchronized to ensure any previous callback has completely finished 
-                // before changing currentNewEntry
-                synchronized (CURRENT_ENTRY_LOCK) {
-                    this.currentNewEntry = data;
-                }
-                // Add this to the map early, so our callback can find it
                 pool.put(pid, data);
-                
-                // Start agent proxy which will send the JMX service URL to the IPC server we created
-                File configFile = ipcService.getConfigurationFile();
-                AgentProxyClient proxy = creator.createAgentProxy(pid, username, binPath, configFile, serverName);
-                proxy.runProcess(); // Process completed when this returns
-                
-                // Block until we get a JMX service URL, or Exception
-                String jmxUrl = data.getJmxUrlOrBlock();
-                connector = creator.createConnector(jmxUrl);
-                MXBeanConnectionImpl connection = connector.connect();
+                attach = true;
+            } else {
+                data.incrementUsageCount();
+            }
+        }
+        
+        try {
+            if (attach) {
+                MXBeanConnectionImpl connection = attach(data);
                 data.setConnection(connection);
-            } catch (IOException e) {
-                pool.remove(pid);
-                throw new MXBeanConnectionException(e);
-            } catch (InterruptedException e) {
-                pool.remove(pid);
-                Thread.currentThread().interrupt();
-                throw new MXBeanConnectionException(e);
-            } finally {
-                // Reset currentNewEntry
-                synchronized (CURRENT_ENTRY_LOCK) {
-                    this.currentNewEntry = null;
+                return connection;
+            } else {
+                return data.getConnectionOrBlock();
+            }
+        } catch (IOException e) {
+            if (attach) {
+                removeFailed(data);
+                data.setConnectionException(e);
+            }
+            throw new MXBeanConnectionException(e);
+        } catch (InterruptedException e) {
+            if (attach) {
+                removeFailed(data);
+                data.setConnectionException(new IOException("Interrupted while connecting to " + pid, e));
+            }
+            Thread.currentThread().interrupt();
+            throw new MXBeanConnectionException(e);
+        } catch (RuntimeException e) {
+            if (attach) {
+                // Don't leave other callers waiting for this pid
+                removeFailed(data);
+                data.setConnectionException(new IOException(e));
+            }
+            throw e;
+        }
+    }
+    
+    private MXBeanConnectionImpl attach(MXBeanConnectionPoolEntry data) throws IOException, InterruptedException {
+        int pid = data.getPid();
+        ProcessUserInfo info = userInfoBuilder.build(pid);
+        String username = info.getUsername();
+        if (username == null) {
+            throw new IOException("Unable to determine owner of " + pid);
+        }
+        // Create an Agent Proxy IPC server for this user if it does not already exist
+        String serverName = IPC_SERVER_PREFIX + "-" + String.valueOf(info.getUid());
+        synchronized (this) {
+            // Check if we created an IPC server for this user already
+            if (!ipcServerNames.contains(serverName)) {
+                createIPCServer(username, serverName);
+            }
+        }
+        
+        data.setServerName(serverName);
+        
+        attachPermits.acquire();
+        try {
+            // Reuse an agent proxy already running for this user, or start one, which
+            // will send the JMX service URL to the IPC server we created
+            if (!requestFromIdleProxy(serverName, pid)) {
+                File configFile = ipcService.getConfigurationFile();
+                AgentProxyClient proxy;
+                if (proxyIdleTimeout > 0) {
+                    proxy = creator.createAgentProxy(pid, username, binPath, configFile, serverName, proxyIdleTimeout);
+                } else {
+                    proxy = creator.createAgentProxy(pid, username, binPath, configFile, serverName);
                 }
+                proxy.runProcess(); // Process completed when this returns, unless persistent
+            }
+            
+            // Block until we get a JMX service URL, or Exception
+            String jmxUrl = data.getJmxUrlOrBlock();
+            MXBeanConnector connector = creator.createConnector(jmxUrl);
+            return connector.connect();
+        } finally {
+            attachPermits.release();
+        }
+    }
+    
+    private boolean requestFromIdleProxy(String serverName, int pid) {
+        IPCMessage idle;
+        while ((idle = takeIdleProxy(serverName)) != null) {
+            JsonObject request = new JsonObject();
+            request.addProperty(JSON_PID, pid);
+            try {
+                sendToProxy(idle, request);
+                return true;
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Idle agent proxy for " + serverName + " went away", e);
             }
-        } else {
-            data.incrementUsageCount();
         }
-        return data.getConnection();
+        return false;
+    }
+    
+    private synchronized void addIdleProxy(String serverName, IPCMessage message) {
+        Deque<IdleProxy> proxies = idleProxies.get(serverName);
+        if (proxies == null) {
+            proxies = new ArrayDeque<>();
+            idleProxies.put(serverName, proxies);
+        }
+        proxies.addLast(new IdleProxy(message, System.nanoTime()));
+    }
+    
+    private synchronized IPCMessage takeIdleProxy(String serverName) {
+        Deque<IdleProxy> proxies = idleProxies.get(serverName);
+        if (proxies == null) {
+            return null;
+        }
+        IdleProxy newest = proxies.pollLast();
+        // Proxies exit on their own after the idle timeout. Leave them
+        // a wide margin, so a request never races with one exiting.
+        long maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(proxyIdleTimeout) / 2;
+        if (newest != null && System.nanoTime() - newest.idleSince < maxIdleNanos) {
+            return newest.message;
+        }
+        // Any others have been idle even longer
+        idleProxies.remove(serverName);
+        return null;
+    }
+    
+    private void sendExitRequest(IPCMessage message) {
+        try {
+            // A request without a PID
+            sendToProxy(message, new JsonObject());
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Failed to ask agent proxy to exit", e);
+        }
+    }
+    
+    private void sendToProxy(IPCMessage message, JsonObject request) throws IOException {
+        Gson gson = new GsonBuilder().create();
+        String jsonData = gson.toJson(request);
+        message.reply(ByteBuffer.wrap(jsonData.getBytes("UTF-8")));
+    }
+    
+    private synchronized void removeFailed(MXBeanConnectionPoolEntry data) {
+        // Only remove our own entry
+        if (pool.get(data.getPid()) == data) {
+            pool.remove(data.getPid());
+        }
     }
 
     private void createIPCServer(String username, String serverName) throws IOException {
@@ -295,11 +479,27 @@ public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, Th
         }
     }
     
+    private static class IdleProxy {
+        
+        private final IPCMessage message;
+        private final long idleSince;
+        
+        private IdleProxy(IPCMessage message, long idleSince) {
+            this.message = message;
+            this.idleSince = idleSince;
+        }
+    }
+    
     static class ConnectorCreator {
         AgentProxyClient createAgentProxy(int pid, String user, File binPath, File ipcConfigFile, String serverName) {
             return new AgentProxyClient(pid, user, binPath, ipcConfigFile, serverName);
         }
         
+        AgentProxyClient createAgentProxy(int pid, String user, File binPath, File ipcConfigFile, String serverName,
+                long idleTimeout) {
+            return new AgentProxyClient(pid, user, binPath, ipcConfigFile, serverName, idleTimeout);
+        }
+        
         MXBeanConnector createConnector(String jmxUrl) throws IOException {
             MXBeanConnector connector = new MXBeanConnector(jmxUrl);
             return connector;
@@ -313,7 +513,7 @@ public class MXBeanConnectionPoolImpl implements MXBeanConnectionPoolControl, Th
     }
     
     // For testing purposes
-    MXBeanConnectionPoolEntry getPoolEntry(int pid) {
+    synchronized MXBeanConnectionPoolEntry getPoolEntry(int pid) {
         return pool.get(pid);
     }
     
@@ -45,10 +45,12 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 
 import com.redhat.thermostat.common.portability.UserNameUtil;
+import org.eclipse.jetty.client.HttpClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.osgi.framework.ServiceRegistration;
 
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
 import com.redhat.thermostat.agent.ipc.server.AgentIPCService;
 import com.redhat.thermostat.agent.utils.management.MXBeanConnectionPool;
 import com.redhat.thermostat.shared.config.CommonPaths;
@@ -87,6 +89,8 @@ public class ActivatorTest {
 
         assertTrue(context.isServiceRegistered(MXBeanConnectionPool.class.getName(), MXBeanConnectionPoolImpl.class));
         assertTrue(context.isServiceRegistered(MXBeanConnectionPoolControl.class.getName(), MXBeanConnectionPoolImpl.class));
+        assertTrue(context.isServiceRegistered(GatewayBatchWriter.class.getName(), GatewayBatchWriterImpl.class));
+        assertTrue(context.isServiceRegistered(HttpClient.class.getName(), HttpClient.class));
     }
 
     @Test
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentProvider;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+public class GatewayBatchWriterImplTest {
+
+    private static final String URL_1 = "http://example.com/jvm-memory";
+    private static final String URL_2 = "http://example.com/jvm-gc";
+    private static final String CONTENT_TYPE = "application/json";
+
+    private HttpClient client;
+    private ScheduledExecutorService executor;
+    private Request request;
+    private StringListTypeAdapter adapter;
+    private GatewayBatchWriterImpl writer;
+
+    @Before
+    public void setUp() {
+        client = mock(HttpClient.class);
+        request = mock(Request.class);
+        when(client.newRequest(anyString())).thenReturn(request);
+        executor = mock(ScheduledExecutorService.class);
+        adapter = new StringListTypeAdapter();
+        writer = new GatewayBatchWriterImpl(client, executor, 5, 3, 1000L, 100L);
+    }
+
+    @Test
+    public void testStartSchedulesPeriodicFlush() throws Exception {
+        writer.start();
+
+        verify(executor).scheduleWithFixedDelay(any(Runnable.class), eq(1000L), eq(1000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWriteDoesNotSendImmediately() {
+        writer.write(URL_1, "a", adapter);
+
+        assertEquals(1, writer.getQueueDepth());
+        verify(client, never()).newRequest(anyString());
+    }
+
+    @Test
+    public void testFlushCoalescesSamplesPerEndpoint() throws Exception {
+        writer.write(URL_1, "a", adapter);
+        writer.write(URL_2, "b", adapter);
+        writer.write(URL_1, "c", adapter);
+
+        writer.flush();
+
+        assertEquals(0, writer.getQueueDepth());
+        verify(client).newRequest(URL_1);
+        verify(client).newRequest(URL_2);
+        verify(request, times(2)).method(HttpMethod.POST);
+        ArgumentCaptor<ContentProvider> contentCaptor = ArgumentCaptor.forClass(ContentProvider.class);
+        verify(request, times(2)).content(contentCaptor.capture(), eq(CONTENT_TYPE));
+        List<ContentProvider> contents = contentCaptor.getAllValues();
+        assertEquals("[\"a\",\"c\"]", contentToString(contents.get(0)));
+        assertEquals("[\"b\"]", contentToString(contents.get(1)));
+        verify(request, times(2)).send(any(Response.CompleteListener.class));
+        assertEquals(1, writer.getLastBatchSize());
+    }
+
+    @Test
+    public void testFlushSplitsLargeBatches() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            writer.write(URL_1, Integer.toString(i), adapter);
+        }
+
+        writer.flush();
+
+        ArgumentCaptor<ContentProvider> contentCaptor = ArgumentCaptor.forClass(ContentProvider.class);
+        verify(request, times(2)).content(contentCaptor.capture(), eq(CONTENT_TYPE));
+        List<ContentProvider> contents = contentCaptor.getAllValues();
+        assertEquals("[\"0\",\"1\",\"2\"]", contentToString(contents.get(0)));
+        assertEquals("[\"3\"]", contentToString(contents.get(1)));
+    }
+
+    @Test
+    public void testFullBatchTriggersFlush() {
+        writer.write(URL_1, "a", adapter);
+        writer.write(URL_1, "b", adapter);
+        verify(executor, never()).execute(any(Runnable.class));
+
+        writer.write(URL_1, "c", adapter);
+        verify(executor).execute(any(Runnable.class));
+
+        // Only one early flush is scheduled until it runs
+        writer.write(URL_1, "d", adapter);
+        verify(executor).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void testWriteDropsSamplesWhenQueueFull() {
+        for (int i = 0; i < 7; i++) {
+            writer.write(URL_1, Integer.toString(i), adapter);
+        }
+
+        assertEquals(5, writer.getQueueDepth());
+    }
+
+    @Test
+    public void testFailedBatchDoesNotStopOtherEndpoints() throws Exception {
+        when(client.newRequest(URL_1)).thenThrow(new IllegalArgumentException("bad url"));
+        writer.write(URL_1, "a", adapter);
+        writer.write(URL_2, "b", adapter);
+
+        writer.flush();
+
+        verify(client).newRequest(URL_2);
+        verify(request).send(any(Response.CompleteListener.class));
+    }
+
+    @Test
+    public void testFailingAdapterDoesNotStopOtherEndpoints() throws Exception {
+        TypeAdapter<List<String>> failing = new StringListTypeAdapter() {
+            @Override
+            public void write(JsonWriter out, List<String> values) throws IOException {
+                throw new IllegalStateException("broken adapter");
+            }
+        };
+        writer.write(URL_1, "a", failing);
+        writer.write(URL_2, "b", adapter);
+
+        writer.flush();
+
+        verify(client, never()).newRequest(URL_1);
+        verify(client).newRequest(URL_2);
+    }
+
+    @Test
+    public void testFlushWithEmptyQueueSendsNothing() {
+        writer.flush();
+
+        verify(client, never()).newRequest(anyString());
+    }
+
+    @Test
+    public void testCompletedRequestRecordsLatency() {
+        writer.write(URL_1, "a", adapter);
+        writer.flush();
+
+        ArgumentCaptor<Response.CompleteListener> listenerCaptor = ArgumentCaptor.forClass(Response.CompleteListener.class);
+        verify(request).send(listenerCaptor.capture());
+
+        Result result = mock(Result.class);
+        Response response = mock(Response.class);
+        when(result.getResponse()).thenReturn(response);
+        when(response.getStatus()).thenReturn(HttpStatus.OK_200);
+        listenerCaptor.getValue().onComplete(result);
+
+        verify(response).getStatus();
+        assertEquals(1, writer.getLastBatchSize());
+    }
+
+    @Test
+    public void testStopFlushesQueuedSamples() throws Exception {
+        writer.write(URL_1, "a", adapter);
+
+        writer.stop();
+
+        verify(executor).shutdown();
+        verify(client).newRequest(URL_1);
+    }
+
+    @Test
+    public void testRejectedFlushCanBeScheduledAgain() {
+        doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+        writer.write(URL_1, "a", adapter);
+        writer.write(URL_1, "b", adapter);
+        writer.write(URL_1, "c", adapter);
+        verify(executor).execute(any(Runnable.class));
+
+        writer.write(URL_1, "d", adapter);
+        verify(executor, times(2)).execute(any(Runnable.class));
+        assertEquals(4, writer.getQueueDepth());
+    }
+
+    @Test
+    public void testWriteAfterStopDropsSample() throws Exception {
+        writer.stop();
+
+        writer.write(URL_1, "a", adapter);
+
+        assertEquals(0, writer.getQueueDepth());
+        verify(executor, never()).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void testStopWaitsForInFlightRequests() throws Exception {
+        writer = new GatewayBatchWriterImpl(client, executor, 5, 3, 1000L, 10000L);
+        writer.write(URL_1, "a", adapter);
+        writer.flush();
+        ArgumentCaptor<Response.CompleteListener> listenerCaptor = ArgumentCaptor.forClass(Response.CompleteListener.class);
+        verify(request).send(listenerCaptor.capture());
+
+        Thread stopper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writer.stop();
+            }
+        });
+        stopper.start();
+        stopper.join(200L);
+        assertTrue(stopper.isAlive());
+
+        Result result = mock(Result.class);
+        when(result.isFailed()).thenReturn(true);
+        listenerCaptor.getValue().onComplete(result);
+
+        stopper.join(1000L);
+        assertFalse(stopper.isAlive());
+    }
+
+    @Test
+    public void testStopGivesUpOnUnfinishedRequests() throws Exception {
+        writer.write(URL_1, "a", adapter);
+        writer.flush();
+
+        long start = System.nanoTime();
+        writer.stop();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsed >= 100L);
+        assertTrue(elapsed < 5000L);
+    }
+
+    private static String contentToString(ContentProvider provider) {
+        StringBuilder builder = new StringBuilder();
+        for (ByteBuffer buffer : provider) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            builder.append(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return builder.toString();
+    }
+
+    private static class StringListTypeAdapter extends TypeAdapter<List<String>> {
+
+        @Override
+        public void write(JsonWriter out, List<String> values) throws IOException {
+            out.beginArray();
+            for (String value : values) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+
+        @Override
+        public List<String> read(JsonReader in) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
+
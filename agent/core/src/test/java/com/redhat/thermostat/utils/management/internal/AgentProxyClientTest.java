@@ -37,8 +37,11 @@
 package com.redhat.thermostat.utils.management.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.when;
@@ -121,6 +124,32 @@ public class AgentProxyClientTest {
         verify(proxy).destroy();
     }
     
+    @Test
+    public void testStartPersistent() throws Exception {
+        client = new AgentProxyClient(9000, user, binPath, ipcConfigFile, SERVER_NAME, 60000L, procCreator);
+        assertTrue(client.isPersistent());
+        client.runProcess();
+        
+        ArgumentCaptor<ProcessBuilder> builderCaptor = ArgumentCaptor.forClass(ProcessBuilder.class);
+        verify(procCreator).startProcess(builderCaptor.capture());
+        List<String> args = builderCaptor.getValue().command();
+        
+        // Idle timeout is passed after the usual arguments
+        int expectedArgCount = OS.IS_WINDOWS ? 8 : 6;
+        assertEquals(expectedArgCount, args.size());
+        assertEquals(SERVER_NAME, args.get(expectedArgCount - 2));
+        assertEquals("60000", args.get(expectedArgCount - 1));
+        
+        // Proxy keeps running to serve more attach requests
+        verify(proxy, never()).waitFor();
+        verify(proxy, never()).destroy();
+    }
+    
+    @Test
+    public void testNotPersistentByDefault() throws Exception {
+        assertFalse(client.isPersistent());
+    }
+    
     @Test
     public void testStartBadExit() throws Exception {
         when(proxy.exitValue()).thenReturn(-1);
@@ -93,5 +93,25 @@ public class MXBeanConnectionPoolEntryTest {
         when(urlLatch.await(anyLong(), any(TimeUnit.class))).thenReturn(false);
         entry.getJmxUrlOrBlock();
     }
+    
+    @Test
+    public void testGetConnectionOrBlock() throws Exception {
+        MXBeanConnectionImpl connection = mock(MXBeanConnectionImpl.class);
+        entry.setConnection(connection);
+        assertEquals(connection, entry.getConnectionOrBlock());
+    }
+    
+    @Test
+    public void testGetConnectionOrBlockFailed() throws Exception {
+        IOException ex = new IOException("TEST");
+        entry.setConnectionException(ex);
+        
+        try {
+            entry.getConnectionOrBlock();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertEquals(ex, e.getCause());
+        }
+    }
 
 }
@@ -39,10 +39,14 @@ package com.redhat.thermostat.utils.management.internal;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -52,6 +56,10 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.attribute.UserPrincipal;
 import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.redhat.thermostat.common.portability.ProcessUserInfo;
 import com.redhat.thermostat.common.portability.ProcessUserInfoBuilder;
@@ -191,7 +199,8 @@ public class MXBeanConnectionPoolImplTest {
     }
     
     private void invokeCallbacksOnProxyCreation(final byte[] data, int pid, String username, String ipcServerName) {
-        when(creator.createAgentProxy(pid, username, binDir, ipcConfigFile, ipcServerName)).thenAnswer(new Answer<AgentProxyClient>() {
+        // Stub with doAnswer, so that re-stubbing does not invoke the previous answer
+        doAnswer(new Answer<AgentProxyClient>() {
             @Override
             public AgentProxyClient answer(InvocationOnMock invocation) throws Throwable {
                 // Invoke callback
@@ -200,7 +209,7 @@ public class MXBeanConnectionPoolImplTest {
                 pool.messageReceived(message);
                 return proxy;
             }
-        });
+        }).when(creator).createAgentProxy(pid, username, binDir, ipcConfigFile, ipcServerName);
     }
     
     @Test
@@ -432,6 +441,264 @@ public class MXBeanConnectionPoolImplTest {
         verify(connection).close();
     }
     
+    @Test
+    public void testAcquireDifferentPidsInParallel() throws Exception {
+        final CountDownLatch otherAcquired = new CountDownLatch(1);
+        final byte[] data = getJsonString(8000, "jmxUrl://hello");
+        // The agent proxy for 8000 only replies once 8001 has been acquired
+        when(creator.createAgentProxy(8000, "Test", binDir, ipcConfigFile, IPC_SERVER_NAME)).thenAnswer(new Answer<AgentProxyClient>() {
+            @Override
+            public AgentProxyClient answer(InvocationOnMock invocation) throws Throwable {
+                assertTrue(otherAcquired.await(5, TimeUnit.SECONDS));
+                IPCMessage message = mock(IPCMessage.class);
+                when(message.get()).thenReturn(ByteBuffer.wrap(data));
+                pool.messageReceived(message);
+                return proxy;
+            }
+        });
+        setUpOtherUser();
+        invokeCallbacksOnProxyCreation(getJsonString(8001, "jmxUrl://hello1"), 8001, "Test1", "agent-proxy-1001");
+        pool.start();
+        
+        AcquireThread first = new AcquireThread(8000);
+        first.start();
+        
+        MXBeanConnection connection2 = pool.acquire(8001);
+        otherAcquired.countDown();
+        first.join(5000);
+        
+        assertNull(first.error.get());
+        assertEquals(connection, first.result.get());
+        assertNotNull(connection2);
+    }
+    
+    @Test
+    public void testAcquireSamePidConcurrentlyAttachesOnce() throws Exception {
+        final byte[] data = getJsonString(8000, "jmxUrl://hello");
+        final AcquireThread second = new AcquireThread(8000);
+        // Another caller acquires 8000 while the agent proxy is running
+        when(creator.createAgentProxy(8000, "Test", binDir, ipcConfigFile, IPC_SERVER_NAME)).thenAnswer(new Answer<AgentProxyClient>() {
+            @Override
+            public AgentProxyClient answer(InvocationOnMock invocation) throws Throwable {
+                second.start();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (pool.getPoolEntry(8000).getUsageCount() < 2 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                IPCMessage message = mock(IPCMessage.class);
+                when(message.get()).thenReturn(ByteBuffer.wrap(data));
+                pool.messageReceived(message);
+                return proxy;
+            }
+        });
+        pool.start();
+        
+        MXBeanConnection connection1 = pool.acquire(8000);
+        second.join(5000);
+        
+        assertNull(second.error.get());
+        assertEquals(connection, connection1);
+        assertEquals(connection, second.result.get());
+        assertEquals(2, pool.getPoolEntry(8000).getUsageCount());
+        verify(creator).createAgentProxy(8000, "Test", binDir, ipcConfigFile, IPC_SERVER_NAME);
+        verify(connector).connect();
+    }
+    
+    @Test
+    public void testAttachesAreBounded() throws Exception {
+        pool = new MXBeanConnectionPoolImpl(creator, binDir, builder, ipcService, fsUtils, 1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        invokeCallbacksOnProxyCreation(getJsonString(8000, "jmxUrl://hello"), 8000, "Test", IPC_SERVER_NAME, running, maxRunning);
+        setUpOtherUser();
+        invokeCallbacksOnProxyCreation(getJsonString(8001, "jmxUrl://hello1"), 8001, "Test1", "agent-proxy-1001", running, maxRunning);
+        pool.start();
+        
+        AcquireThread first = new AcquireThread(8000);
+        first.start();
+        pool.acquire(8001);
+        first.join(5000);
+        
+        assertNull(first.error.get());
+        assertEquals(1, maxRunning.get());
+    }
+    
+    @Test
+    public void testAcquireNoJmxUrlRetries() throws Exception {
+        invokeCallbacksOnProxyCreation(getJsonString(8000, null));
+        pool.start();
+        try {
+            pool.acquire(8000);
+            fail("Expected MXBeanConnectionException");
+        } catch (MXBeanConnectionException e) {
+            verify(creator, never()).createConnector("jmxUrl://hello");
+            assertNull(pool.getPoolEntry(8000));
+        }
+        
+        invokeCallbacksOnProxyCreation(getJsonString(8000, "jmxUrl://hello"));
+        MXBeanConnection result = pool.acquire(8000);
+        
+        assertEquals(connection, result);
+        verify(creator, times(2)).createAgentProxy(8000, "Test", binDir, ipcConfigFile, IPC_SERVER_NAME);
+    }
+    
+    @Test
+    public void testMessageForUnknownPidIsIgnored() throws Exception {
+        pool.start();
+        IPCMessage message = mock(IPCMessage.class);
+        when(message.get()).thenReturn(ByteBuffer.wrap(getJsonString(9000, "jmxUrl://hello")));
+        
+        pool.messageReceived(message);
+        
+        assertNull(pool.getPoolEntry(9000));
+        verify(creator, never()).createConnector("jmxUrl://hello");
+    }
+
+    private void setUpOtherUser() throws Exception {
+        ProcessUserInfo info = new ProcessUserInfo(1001, "Test1");
+        when(builder.build(8001)).thenReturn(info);
+        when(lookup.lookupPrincipalByName("Test1")).thenReturn(mock(UserPrincipal.class));
+        MXBeanConnector otherConnector = mock(MXBeanConnector.class);
+        when(creator.createConnector("jmxUrl://hello1")).thenReturn(otherConnector);
+        when(otherConnector.connect()).thenReturn(mock(MXBeanConnectionImpl.class));
+    }
+    
+    private void invokeCallbacksOnProxyCreation(final byte[] data, int pid, String username, String ipcServerName,
+            final AtomicInteger running, final AtomicInteger maxRunning) {
+        when(creator.createAgentProxy(pid, username, binDir, ipcConfigFile, ipcServerName)).thenAnswer(new Answer<AgentProxyClient>() {
+            @Override
+            public AgentProxyClient answer(InvocationOnMock invocation) throws Throwable {
+                int now = running.incrementAndGet();
+                maxRunning.set(Math.max(maxRunning.get(), now));
+                // Give the other attach a chance to start
+                Thread.sleep(100);
+                running.decrementAndGet();
+                IPCMessage message = mock(IPCMessage.class);
+                when(message.get()).thenReturn(ByteBuffer.wrap(data));
+                pool.messageReceived(message);
+                return proxy;
+            }
+        });
+    }
+    
+    private class AcquireThread extends Thread {
+        
+        private final int pid;
+        private final AtomicReference<MXBeanConnection> result = new AtomicReference<>();
+        private final AtomicReference<Exception> error = new AtomicReference<>();
+        
+        private AcquireThread(int pid) {
+            this.pid = pid;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                result.set(pool.acquire(pid));
+            } catch (MXBeanConnectionException e) {
+                error.set(e);
+            }
+        }
+    }
+
+    @Test
+    public void testAcquireReusesPersistentProxy() throws Exception {
+        pool = new MXBeanConnectionPoolImpl(creator, binDir, builder, ipcService, fsUtils, 1, 60000L);
+        // Same user as 8000, so the same agent proxy can attach to it
+        when(builder.build(8002)).thenReturn(new ProcessUserInfo(8000, "Test"));
+        MXBeanConnector connector2 = mock(MXBeanConnector.class);
+        when(creator.createConnector("jmxUrl://hello2")).thenReturn(connector2);
+        MXBeanConnectionImpl connection2 = mock(MXBeanConnectionImpl.class);
+        when(connector2.connect()).thenReturn(connection2);
+        
+        // The proxy answers a request for 8002 with its JMX URL
+        final IPCMessage message = createPersistentMessage(8000, "jmxUrl://hello", null);
+        final IPCMessage message2 = createPersistentMessage(8002, "jmxUrl://hello2", null);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                pool.messageReceived(message2);
+                return null;
+            }
+        }).when(message).reply(any(ByteBuffer.class));
+        invokeCallbacksOnPersistentProxyCreation(message);
+        pool.start();
+        
+        assertEquals(connection, pool.acquire(8000));
+        assertEquals(connection2, pool.acquire(8002));
+        
+        verify(creator).createAgentProxy(8000, "Test", binDir, ipcConfigFile, IPC_SERVER_NAME, 60000L);
+        verify(creator, never()).createAgentProxy(8002, "Test", binDir, ipcConfigFile, IPC_SERVER_NAME, 60000L);
+        verify(message).reply(toBuffer("{\"pid\":8002}"));
+        verify(proxy).runProcess();
+    }
+    
+    @Test
+    public void testAcquirePersistentProxyError() throws Exception {
+        pool = new MXBeanConnectionPoolImpl(creator, binDir, builder, ipcService, fsUtils, 1, 60000L);
+        invokeCallbacksOnPersistentProxyCreation(createPersistentMessage(8000, null, "TEST"));
+        pool.start();
+        
+        try {
+            pool.acquire(8000);
+            fail("Expected MXBeanConnectionException");
+        } catch (MXBeanConnectionException e) {
+            assertTrue(e.getCause().getCause().getMessage().endsWith("TEST"));
+            verify(creator, never()).createConnector(any(String.class));
+        }
+    }
+    
+    @Test
+    public void testShutdownStopsIdleProxies() throws Exception {
+        pool = new MXBeanConnectionPoolImpl(creator, binDir, builder, ipcService, fsUtils, 1, 60000L);
+        IPCMessage message = createPersistentMessage(8000, "jmxUrl://hello", null);
+        invokeCallbacksOnPersistentProxyCreation(message);
+        pool.start();
+        pool.acquire(8000);
+        
+        pool.shutdown();
+        
+        // A request without a pid asks the proxy to exit
+        verify(message).reply(toBuffer("{}"));
+    }
+    
+    @Test
+    public void testPersistentProxyForUnknownPidStopped() throws Exception {
+        pool.start();
+        IPCMessage message = createPersistentMessage(9000, "jmxUrl://hello", null);
+        
+        pool.messageReceived(message);
+        
+        verify(message).reply(toBuffer("{}"));
+    }
+    
+    private void invokeCallbacksOnPersistentProxyCreation(final IPCMessage message) {
+        when(creator.createAgentProxy(8000, "Test", binDir, ipcConfigFile, IPC_SERVER_NAME, 60000L)).thenAnswer(new Answer<AgentProxyClient>() {
+            @Override
+            public AgentProxyClient answer(InvocationOnMock invocation) throws Throwable {
+                pool.messageReceived(message);
+                return proxy;
+            }
+        });
+    }
+    
+    private IPCMessage createPersistentMessage(int pid, String jmxUrl, String error) {
+        JsonObject jsonData = new JsonObject();
+        jsonData.addProperty(MXBeanConnectionPoolImpl.JSON_PID, pid);
+        jsonData.addProperty(MXBeanConnectionPoolImpl.JSON_PERSISTENT, true);
+        jsonData.addProperty(MXBeanConnectionPoolImpl.JSON_JMX_URL, jmxUrl);
+        jsonData.addProperty(MXBeanConnectionPoolImpl.JSON_ERROR, error);
+        String jsonString = new GsonBuilder().create().toJson(jsonData);
+        
+        IPCMessage message = mock(IPCMessage.class);
+        when(message.get()).thenReturn(toBuffer(jsonString));
+        return message;
+    }
+    
+    private ByteBuffer toBuffer(String data) {
+        return ByteBuffer.wrap(data.getBytes(Charset.forName("UTF-8")));
+    }
+
     @Test(expected=MXBeanConnectionException.class)
     public void testReleaseNotRunning() throws Exception {
         pool.release(8000, connection);
@@ -39,12 +39,19 @@ package com.redhat.thermostat.agent.proxy.server;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.redhat.thermostat.agent.ipc.client.ClientIPCService;
 import com.redhat.thermostat.agent.ipc.client.ClientIPCServiceFactory;
 import com.redhat.thermostat.agent.ipc.client.IPCMessageChannel;
@@ -58,8 +65,16 @@ public class AgentProxy {
     
     private static final Logger logger = LoggingUtils.getLogger(AgentProxy.class);
     static final String CONFIG_FILE_PROP = "ipcConfigFile";
+    /**
+     * If set to a positive number of milliseconds, the proxy stays connected
+     * after its first attach and serves further attach requests from the
+     * agent, exiting once it has been idle this long.
+     */
+    static final String IDLE_TIMEOUT_PROP = "idleTimeout";
     static final String JSON_PID = "pid";
     static final String JSON_JMX_URL = "jmxUrl";
+    static final String JSON_ERROR = "error";
+    static final String JSON_PERSISTENT = "persistent";
     
     private static ControlCreator creator = new ControlCreator();
     private static ClientIPCService ipcService = null;
@@ -92,9 +107,19 @@ public class AgentProxy {
             usage();
         }
         String ipcServerName = args[1];
+        long idleTimeout = getIdleTimeout();
         // Connect to IPC server
         IPCMessageChannel channel = ipcService.connectToServer(ipcServerName);
         
+        if (idleTimeout > 0) {
+            try {
+                serveAttachRequests(channel, pid, idleTimeout);
+            } finally {
+                closeChannel(channel, pid);
+            }
+            return;
+        }
+        
         // Start proxy agent
         AgentProxyControlImpl agent = creator.create(pid);
         
@@ -107,6 +132,105 @@ public class AgentProxy {
         }
     }
 
+    private static long getIdleTimeout() {
+        String idleTimeoutStr = System.getProperty(IDLE_TIMEOUT_PROP);
+        if (idleTimeoutStr == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(idleTimeoutStr);
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid value for " + IDLE_TIMEOUT_PROP + ": " + idleTimeoutStr + ", exiting after one attach");
+            return 0L;
+        }
+    }
+    
+    /*
+     * Attaches to the first pid, then keeps replying to the agent's
+     * requests for further pids until none arrives within idleTimeout.
+     * Attach failures are reported to the agent, and do not end the proxy.
+     */
+    private static void serveAttachRequests(IPCMessageChannel channel, int pid, long idleTimeout) throws IOException {
+        // Daemon, so a stuck timer never keeps the proxy alive
+        Timer idleTimer = new Timer("agent-proxy-idle-timer", true);
+        try {
+            int nextPid = pid;
+            while (nextPid > 0) {
+                JsonObject data = attachAndGetConnectionInfo(nextPid);
+                sendMessage(channel, data);
+                nextPid = waitForAttachRequest(channel, idleTimer, idleTimeout);
+            }
+        } finally {
+            idleTimer.cancel();
+        }
+    }
+    
+    private static JsonObject attachAndGetConnectionInfo(int pid) {
+        JsonObject data = new JsonObject();
+        data.addProperty(JSON_PID, pid);
+        data.addProperty(JSON_PERSISTENT, true);
+        
+        AgentProxyControlImpl agent = creator.create(pid);
+        try {
+            attachToTarget(pid, agent);
+            data.addProperty(JSON_JMX_URL, getJMXServiceURL(agent));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to get JMX connection URL for VM (pid: " + pid + ")", e);
+            data.addProperty(JSON_ERROR, e.getMessage());
+        } finally {
+            detach(agent, pid);
+        }
+        return data;
+    }
+    
+    /*
+     * Returns the next pid requested by the agent, or -1 if the agent
+     * asked us to exit or we were idle for too long.
+     */
+    private static int waitForAttachRequest(final IPCMessageChannel channel, Timer idleTimer, long idleTimeout) throws IOException {
+        // Closing the channel wakes up the blocked read below
+        TimerTask idleTask = new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to close idle channel with agent", e);
+                }
+            }
+        };
+        idleTimer.schedule(idleTask, idleTimeout);
+        
+        ByteBuffer buf;
+        try {
+            buf = channel.readMessage();
+        } catch (IOException e) {
+            if (!channel.isOpen()) {
+                logger.fine("No attach requests for " + idleTimeout + " ms, exiting");
+                return -1;
+            }
+            throw new IOException("Failed to read attach request from agent", e);
+        } finally {
+            idleTask.cancel();
+        }
+        
+        CharBuffer charBuf = Charset.forName("UTF-8").decode(buf);
+        try {
+            JsonElement parsed = new JsonParser().parse(charBuf.toString());
+            if (parsed == null || !parsed.isJsonObject()) {
+                throw new IOException("Malformed attach request from agent");
+            }
+            JsonElement jsonPid = parsed.getAsJsonObject().get(JSON_PID);
+            if (jsonPid == null || jsonPid.isJsonNull()) {
+                // Agent has nothing more for us
+                return -1;
+            }
+            return jsonPid.getAsInt();
+        } catch (JsonParseException | NumberFormatException | IllegalStateException e) {
+            throw new IOException("Malformed attach request from agent", e);
+        }
+    }
+
     private static void attachToTarget(int pid, AgentProxyControlImpl agent) throws IOException {
         try {
             agent.attach();
@@ -124,14 +248,17 @@ public class AgentProxy {
     }
 
     private static void sendConnectionInfo(IPCMessageChannel channel, int pid, String connectorAddress) throws IOException {
+        // As JSON, write pid first, followed by JMX service URL
+        JsonObject data = new JsonObject();
+        data.addProperty(JSON_PID, pid);
+        data.addProperty(JSON_JMX_URL, connectorAddress);
+        sendMessage(channel, data);
+    }
+    
+    private static void sendMessage(IPCMessageChannel channel, JsonObject data) throws IOException {
         try {
-            // As JSON, write pid first, followed by JMX service URL
             GsonBuilder builder = new GsonBuilder();
             Gson gson = builder.create();
-            JsonObject data = new JsonObject();
-            data.addProperty(JSON_PID, pid);
-            data.addProperty(JSON_JMX_URL, connectorAddress);
-            
             String jsonData = gson.toJson(data);
             ByteBuffer buf = ByteBuffer.wrap(jsonData.getBytes("UTF-8"));
             channel.writeMessage(buf);
@@ -141,12 +268,19 @@ public class AgentProxy {
     }
 
     private static void cleanup(AgentProxyControlImpl agent, IPCMessageChannel channel, int pid) {
+        closeChannel(channel, pid);
+        detach(agent, pid);
+    }
+    
+    private static void closeChannel(IPCMessageChannel channel, int pid) {
         try {
             channel.close();
         } catch (IOException e) {
             logger.log(Level.WARNING, "Failed to close channel with agent for VM (pid: " + pid + ")", e);
         }
-
+    }
+    
+    private static void detach(AgentProxyControlImpl agent, int pid) {
         if (agent.isAttached()) {
             try {
                 agent.detach();
@@ -43,6 +43,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -100,6 +101,7 @@ public class AgentProxyTest {
     @After
     public void teardown() throws Exception {
         System.clearProperty(AgentProxy.CONFIG_FILE_PROP);
+        System.clearProperty(AgentProxy.IDLE_TIMEOUT_PROP);
         System.clearProperty(THERMOSTAT_HOME_PROP);
         System.clearProperty(USER_THERMOSTAT_HOME_PROP);
         AgentProxy.setControlCreator(new ControlCreator());
@@ -128,6 +130,55 @@ public class AgentProxyTest {
         verify(control).detach();
     }
     
+    @Test
+    public void testMainPersistent() throws Exception {
+        System.setProperty(AgentProxy.IDLE_TIMEOUT_PROP, "60000");
+        // Agent asks for 9000, then tells us to exit
+        when(channel.readMessage()).thenReturn(toBuffer(createRequest(9000)), toBuffer(new JsonObject()));
+        
+        AgentProxy.main(new String[] { "8000", IPC_SERVER_NAME });
+        
+        verify(control, times(2)).attach();
+        verify(control, times(2)).detach();
+        verify(channel).writeMessage(eq(toBuffer(createPersistentReply(8000))));
+        verify(channel).writeMessage(eq(toBuffer(createPersistentReply(9000))));
+        verify(channel, times(2)).readMessage();
+        verify(channel).close();
+    }
+    
+    @Test
+    public void testMainPersistentAttachFails() throws Exception {
+        System.setProperty(AgentProxy.IDLE_TIMEOUT_PROP, "60000");
+        doThrow(new IOException("TEST")).when(control).attach();
+        when(control.isAttached()).thenReturn(false);
+        when(channel.readMessage()).thenReturn(toBuffer(new JsonObject()));
+        
+        // Failure is reported to the agent, rather than ending the proxy
+        AgentProxy.main(new String[] { "8000", IPC_SERVER_NAME });
+        
+        JsonObject data = new JsonObject();
+        data.addProperty(AgentProxy.JSON_PID, 8000);
+        data.addProperty(AgentProxy.JSON_PERSISTENT, true);
+        data.addProperty(AgentProxy.JSON_ERROR, "Failed to attach to VM (pid: 8000)");
+        verify(channel).writeMessage(eq(toBuffer(data)));
+        verify(channel).readMessage();
+        verify(channel).close();
+    }
+    
+    @Test
+    public void testMainPersistentIdle() throws Exception {
+        System.setProperty(AgentProxy.IDLE_TIMEOUT_PROP, "60000");
+        // What a read looks like once the idle timer closed the channel
+        when(channel.readMessage()).thenThrow(new IOException("Channel closed"));
+        when(channel.isOpen()).thenReturn(false);
+        
+        AgentProxy.main(new String[] { "8000", IPC_SERVER_NAME });
+        
+        verify(control).attach();
+        verify(channel).writeMessage(eq(toBuffer(createPersistentReply(8000))));
+        verify(channel).close();
+    }
+    
     @Test
     public void testMainAttachFails() throws Exception {
         // Simulate failure binding the login object
@@ -227,6 +278,25 @@ public class AgentProxyTest {
 
         verify(control).detach();
     }
+    
+    private JsonObject createRequest(int pid) {
+        JsonObject request = new JsonObject();
+        request.addProperty(AgentProxy.JSON_PID, pid);
+        return request;
+    }
+    
+    private JsonObject createPersistentReply(int pid) {
+        JsonObject data = new JsonObject();
+        data.addProperty(AgentProxy.JSON_PID, pid);
+        data.addProperty(AgentProxy.JSON_PERSISTENT, true);
+        data.addProperty(AgentProxy.JSON_JMX_URL, JMX_URL);
+        return data;
+    }
+    
+    private ByteBuffer toBuffer(JsonObject data) throws Exception {
+        Gson gson = new GsonBuilder().create();
+        return ByteBuffer.wrap(gson.toJson(data).getBytes("UTF-8"));
+    }
 
 }
 
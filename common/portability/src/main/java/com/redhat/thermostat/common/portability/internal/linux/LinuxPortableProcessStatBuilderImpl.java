@@ -38,12 +38,10 @@ package com.redhat.thermostat.common.portability.internal.linux;
 
 import com.redhat.thermostat.common.portability.PortableProcessStat;
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
+import com.redhat.thermostat.common.portability.linux.ProcFileReader;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,14 +55,21 @@ public class LinuxPortableProcessStatBuilderImpl {
 
     private static final Logger logger = LoggingUtils.getLogger(LinuxPortableProcessStatBuilderImpl.class);
 
+    /* fields between the state and utime: ppid, pgrp, session, tty_nr, tpgid,
+     * flags, minflt, cminflt, majflt, cmajflt */
+    private static final int SKIPPED_FIELDS = 10;
+
     private final ProcDataSource dataSource;
+    private final ProcFileReader reader;
 
     public LinuxPortableProcessStatBuilderImpl(ProcDataSource dataSource) {
         this.dataSource = dataSource;
+        this.reader = new ProcFileReader();
     }
 
-    public PortableProcessStat build(int pid) {
-        try (BufferedReader reader = new BufferedReader(dataSource.getStatReader(pid))) {
+    public synchronized PortableProcessStat build(int pid) {
+        try {
+            dataSource.readStat(pid, reader);
             return build(reader);
         } catch (IOException e) {
             logger.log(Level.FINE, "Unable to read stat info for: " + pid);
@@ -73,48 +78,22 @@ public class LinuxPortableProcessStatBuilderImpl {
         return null;
     }
 
-    PortableProcessStat build(Reader r) throws IOException {
-
-        int pid = -1;
-        long utime = -1;
-        long stime = -1;
-
-        Scanner scanner = null;
-
-        /* TODO map these (effectively c) data types to java types more sanely */
-
-        try (BufferedReader reader = new BufferedReader(r)) {
-            String statusLine = reader.readLine();
+    PortableProcessStat build(ProcFileReader reader) throws IOException {
+        int pid = (int) reader.nextLong();
 
-            /* be prepared for process names like '1 ) 2 3 4 foo 5' */
-
-            scanner = new Scanner(statusLine);
-            pid = scanner.nextInt();
-            scanner.close();
-
-            int execEndNamePos = statusLine.lastIndexOf(')');
-
-            String cleanStatusLine = statusLine.substring(execEndNamePos + 1);
+        /* be prepared for process names like '1 ) 2 3 4 foo 5' */
+        if (!reader.skipPastLast(')')) {
+            throw new IOException("Malformed stat line for: " + pid);
+        }
 
-            scanner = new Scanner(cleanStatusLine);
-            /* state = */scanner.next();
-            /* ppid = */scanner.nextInt();
-            /* pgrp = */scanner.nextInt();
-            /* session = */scanner.nextInt();
-            /* tty_nr = */scanner.nextInt();
-            /* tpgid = */scanner.nextInt();
-            /* flags = */scanner.nextInt();
-            /* minflt = */scanner.nextLong();
-            /* cminflt = */scanner.nextLong();
-            /* majflt = */scanner.nextLong();
-            /* cmajflt = */scanner.nextLong();
-            utime = scanner.nextLong();
-            stime = scanner.nextLong();
-            scanner.close();
+        /* state = */reader.skipToken();
+        for (int i = 0; i < SKIPPED_FIELDS; i++) {
+            reader.skipToken();
         }
+        long utime = reader.nextLong();
+        long stime = reader.nextLong();
 
         return new PortableProcessStat(pid, utime, stime);
-
     }
 
 }
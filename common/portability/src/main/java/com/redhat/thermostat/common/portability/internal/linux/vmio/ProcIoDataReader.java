@@ -36,12 +36,12 @@
 
 package com.redhat.thermostat.common.portability.internal.linux.vmio;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
+import com.redhat.thermostat.common.portability.linux.ProcFileReader;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 
 /**
@@ -52,13 +52,16 @@ public class ProcIoDataReader {
     private static final Logger logger = LoggingUtils.getLogger(ProcIoDataReader.class);
 
     private final ProcDataSource dataSource;
+    private final ProcFileReader reader;
 
     public ProcIoDataReader(ProcDataSource dataSource) {
         this.dataSource = dataSource;
+        this.reader = new ProcFileReader();
     }
 
-    public ProcIoData read(int pid) {
-        try (BufferedReader reader = new BufferedReader(dataSource.getIoReader(pid))) {
+    public synchronized ProcIoData read(int pid) {
+        try {
+            dataSource.readIo(pid, reader);
             return read(reader);
         } catch (IOException e) {
             logger.log(Level.FINE, "Unable to read io info for: " + pid);
@@ -67,7 +70,7 @@ public class ProcIoDataReader {
         return null;
     }
 
-    private ProcIoData read(BufferedReader r) throws IOException {
+    private ProcIoData read(ProcFileReader r) throws IOException {
         // The file format is described at:
         // http://git.kernel.org/cgit/linux/kernel/git/torvalds/linux.git/tree/Documentation/filesystems/proc.txt
 
@@ -80,34 +83,23 @@ public class ProcIoDataReader {
         long write_bytes = UNKNOWN_VALUE;
         long cancelled_write_bytes = UNKNOWN_VALUE;
 
-        String line;
-        while ((line = r.readLine()) != null) {
-            String[] parts = line.split(":");
-            String key = parts[0].trim();
-            String value = parts[1].trim();
-            switch (key) {
-                case "rchar":
-                    rchar = Long.valueOf(value);
-                    break;
-                case "wchar":
-                    wchar = Long.valueOf(value);
-                    break;
-                case "syscr":
-                    syscr = Long.valueOf(value);
-                    break;
-                case "syscw":
-                    syscw = Long.valueOf(value);
-                    break;
-                case "read_bytes":
-                    read_bytes = Long.valueOf(value);
-                    break;
-                case "write_bytes":
-                    write_bytes = Long.valueOf(value);
-                    break;
-                case "cancelled_write_bytes":
-                    cancelled_write_bytes = Long.valueOf(value);
-                    break;
+        while (r.hasNext()) {
+            if (r.consume("rchar:")) {
+                rchar = r.nextLong();
+            } else if (r.consume("wchar:")) {
+                wchar = r.nextLong();
+            } else if (r.consume("syscr:")) {
+                syscr = r.nextLong();
+            } else if (r.consume("syscw:")) {
+                syscw = r.nextLong();
+            } else if (r.consume("read_bytes:")) {
+                read_bytes = r.nextLong();
+            } else if (r.consume("write_bytes:")) {
+                write_bytes = r.nextLong();
+            } else if (r.consume("cancelled_write_bytes:")) {
+                cancelled_write_bytes = r.nextLong();
             }
+            r.nextLine();
         }
 
         return new ProcIoData(rchar, wchar, syscr, syscw, read_bytes, write_bytes, cancelled_write_bytes);
@@ -44,6 +44,9 @@ import java.io.Reader;
 /**
  * Wrapper for files under {@code /proc/}. See proc(5) for details about this.
  *
+ * The {@code read*} methods load a file into a {@link ProcFileReader}, which
+ * collectors that sample every interval should prefer over the readers.
+ *
  * This class is inherently unportable, but a _lot_ of Linux code needs refactoring
  * before it can be make package private
  *
@@ -136,6 +139,20 @@ public class ProcDataSource {
         return readerCreator.createFileReader(getPidFile(PID_NUMA_MAPS_FILE, pid));
     }
 
+    /**
+     * Reads /proc/$PID/io into the given reader.
+     */
+    public void readIo(int pid, ProcFileReader reader) throws IOException {
+        reader.read(getPidFile(PID_IO_FILE, pid));
+    }
+
+    /**
+     * Reads /proc/$PID/stat into the given reader.
+     */
+    public void readStat(int pid, ProcFileReader reader) throws IOException {
+        reader.read(getPidFile(PID_STAT_FILE, pid));
+    }
+
     private String getPidFile(String fileName, int pid) {
         return fileName.replace("${pid}", Integer.toString(pid));
     }
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.common.portability.linux;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads small, frequently sampled files under {@code /proc/} into a direct
+ * buffer that is reused between reads, and parses their contents in place.
+ * <p>
+ * The cursor methods work on the raw ASCII bytes and do not create any
+ * objects, so a collector that keeps one instance around can sample a file
+ * every tick without producing garbage. Only {@link #nextToken()} allocates.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class ProcFileReader {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private ByteBuffer buffer;
+    private int position;
+    private int limit;
+
+    public ProcFileReader() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ProcFileReader(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Initial capacity must be > 0");
+        }
+        this.buffer = ByteBuffer.allocateDirect(initialCapacity);
+    }
+
+    /**
+     * Replaces the buffer contents with the whole of the given file and moves
+     * the cursor to its beginning.
+     */
+    public void read(String fileName) throws IOException {
+        try (FileInputStream in = new FileInputStream(fileName)) {
+            read(in.getChannel());
+        }
+    }
+
+    /**
+     * Replaces the buffer contents with everything remaining in the given
+     * channel and moves the cursor to its beginning. Files under /proc report
+     * a size of zero, so the channel is always read until end of stream.
+     */
+    public void read(ReadableByteChannel channel) throws IOException {
+        position = 0;
+        limit = 0;
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                grow();
+            }
+        }
+        limit = buffer.position();
+    }
+
+    private void grow() {
+        ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+
+    /**
+     * @return true if the cursor has not reached the end of the contents
+     */
+    public boolean hasNext() {
+        return position < limit;
+    }
+
+    /**
+     * @return true if the cursor is at the end of a line or of the contents
+     */
+    public boolean isEndOfLine() {
+        return position >= limit || byteAt(position) == '\n';
+    }
+
+    /**
+     * @return true if the cursor is at the end of a token, that is on a
+     * blank, at the end of a line or at the end of the contents
+     */
+    public boolean isTokenEnd() {
+        return position >= limit || isSeparator(byteAt(position));
+    }
+
+    /**
+     * @return true if the byte at the cursor is a decimal digit
+     */
+    public boolean isDigit() {
+        return position < limit && isDigit(byteAt(position));
+    }
+
+    /**
+     * Moves the cursor to the start of the next line.
+     *
+     * @return true if there is another line
+     */
+    public boolean nextLine() {
+        while (position < limit && byteAt(position) != '\n') {
+            position++;
+        }
+        if (position < limit) {
+            position++;
+        }
+        return position < limit;
+    }
+
+    /**
+     * Moves the cursor past any spaces and tabs, but not past the end of the
+     * line.
+     */
+    public void skipBlanks() {
+        while (position < limit && isBlank(byteAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Moves the cursor past the next whitespace separated token on this line.
+     */
+    public void skipToken() {
+        skipBlanks();
+        while (position < limit && !isSeparator(byteAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Moves the cursor just past the last occurrence of {@code c} on the
+     * current line. Useful for fields that may contain arbitrary text, such
+     * as the command name in {@code /proc/<pid>/stat}.
+     *
+     * @return false, leaving the cursor unchanged, if {@code c} does not occur
+     * on the rest of the line
+     */
+    public boolean skipPastLast(char c) {
+        int found = -1;
+        for (int i = position; i < limit; i++) {
+            byte b = byteAt(i);
+            if (b == '\n') {
+                break;
+            }
+            if (b == c) {
+                found = i;
+            }
+        }
+        if (found < 0) {
+            return false;
+        }
+        position = found + 1;
+        return true;
+    }
+
+    /**
+     * @return true if the contents at the cursor start with {@code prefix}.
+     * The cursor is not moved.
+     */
+    public boolean startsWith(String prefix) {
+        int length = prefix.length();
+        if (limit - position < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (byteAt(position + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the cursor past {@code prefix} if the contents at the cursor start
+     * with it.
+     *
+     * @return true if the cursor was moved
+     */
+    public boolean consume(String prefix) {
+        if (!startsWith(prefix)) {
+            return false;
+        }
+        position += prefix.length();
+        return true;
+    }
+
+    /**
+     * Parses the next decimal number on this line, skipping leading blanks.
+     * The cursor is left on the first byte after the number.
+     *
+     * @throws IOException if there is no number at the cursor
+     */
+    public long nextLong() throws IOException {
+        skipBlanks();
+        boolean negative = false;
+        if (position < limit && byteAt(position) == '-') {
+            negative = true;
+            position++;
+        }
+        int start = position;
+        long value = 0;
+        while (position < limit) {
+            byte b = byteAt(position);
+            if (!isDigit(b)) {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            position++;
+        }
+        if (position == start) {
+            throw new IOException("Expected a number at offset " + start);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the next whitespace separated token on this line, skipping
+     * leading blanks. Unlike the other methods this creates a String, so it
+     * should be kept off paths that run every sampling interval.
+     *
+     * @return the token, or an empty String if the line has no more tokens
+     */
+    public String nextToken() {
+        skipBlanks();
+        int start = position;
+        while (position < limit && !isSeparator(byteAt(position))) {
+            position++;
+        }
+        char[] chars = new char[position - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (byteAt(start + i) & 0xff);
+        }
+        return new String(chars);
+    }
+
+    private byte byteAt(int index) {
+        return buffer.get(index);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isSeparator(byte b) {
+        return isBlank(b) || b == '\n';
+    }
+
+    // For testing purposes only
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+}
+
@@ -42,18 +42,24 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 
 import com.redhat.thermostat.common.portability.PortableProcessStat;
 import com.redhat.thermostat.shared.config.OS;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
+import com.redhat.thermostat.common.portability.linux.ProcFileReader;
 
 public class LinuxPortableProcessStatBuilderImplTest {
 
@@ -98,11 +104,11 @@ public class LinuxPortableProcessStatBuilderImplTest {
                 KERNEL_TIME_CHILDREN + " " + PRIORITY;
 
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getStatReader(any(Integer.class))).thenReturn(new StringReader(statString));
+        doAnswer(readContents(statString)).when(dataSource).readStat(eq(PID), any(ProcFileReader.class));
         LinuxPortableProcessStatBuilderImpl builder = new LinuxPortableProcessStatBuilderImpl(dataSource);
         PortableProcessStat stat = builder.build(PID);
 
-        verify(dataSource).getStatReader(PID);
+        verify(dataSource).readStat(eq(PID), any(ProcFileReader.class));
         assertNotNull(stat);
         assertEquals(PID, stat.getPid());
         assertEquals(USER_TIME_TICKS, stat.getUserTime());
@@ -139,16 +145,35 @@ public class LinuxPortableProcessStatBuilderImplTest {
                 KERNEL_TIME_CHILDREN + " " + PRIORITY;
 
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getStatReader(any(Integer.class))).thenReturn(new StringReader(statString));
+        doAnswer(readContents(statString)).when(dataSource).readStat(eq(PID), any(ProcFileReader.class));
         LinuxPortableProcessStatBuilderImpl builder = new LinuxPortableProcessStatBuilderImpl(dataSource);
         PortableProcessStat stat = builder.build(PID);
 
-        verify(dataSource).getStatReader(PID);
+        verify(dataSource).readStat(eq(PID), any(ProcFileReader.class));
         assertNotNull(stat);
         assertEquals(PID, stat.getPid());
         assertEquals(USER_TIME_TICKS, stat.getUserTime());
         assertEquals(KERNEL_TIME_TICKS, stat.getKernelTime());
     }
 
-}
+    @Test
+    public void testMalformedStat() throws IOException {
+        final int PID = 10363;
+        ProcDataSource dataSource = mock(ProcDataSource.class);
+        doAnswer(readContents(PID + " (truncated")).when(dataSource).readStat(eq(PID), any(ProcFileReader.class));
+        assertNull(new LinuxPortableProcessStatBuilderImpl(dataSource).build(PID));
+    }
+
+    private static Answer<Void> readContents(final String contents) {
+        return new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ProcFileReader reader = (ProcFileReader) invocation.getArguments()[1];
+                byte[] bytes = contents.getBytes(StandardCharsets.US_ASCII);
+                reader.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+                return null;
+            }
+        };
+    }
 
+}
@@ -36,15 +36,23 @@
 
 package com.redhat.thermostat.common.portability.internal.linux.vmio;
 
-import java.io.StringReader;
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
+import com.redhat.thermostat.common.portability.linux.ProcFileReader;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 public class ProcIoDataReaderTest {
 
@@ -60,9 +68,10 @@ public class ProcIoDataReaderTest {
                 "write_bytes: 811008\n" +
                 "cancelled_write_bytes: 16384\n";
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getIoReader(SOME_PID)).thenReturn(new StringReader(fileContents));
+        doAnswer(readContents(fileContents)).when(dataSource).readIo(eq(SOME_PID), any(ProcFileReader.class));
 
         ProcIoData parsedData = new ProcIoDataReader(dataSource).read(SOME_PID);
+        assertNotNull(parsedData);
 
         assertEquals(19961133, parsedData.rchar);
         assertEquals(2451715, parsedData.wchar);
@@ -73,4 +82,16 @@ public class ProcIoDataReaderTest {
         assertEquals(16384, parsedData.cancelled_write_bytes);
 
     }
+
+    private static Answer<Void> readContents(final String contents) {
+        return new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ProcFileReader reader = (ProcFileReader) invocation.getArguments()[1];
+                byte[] bytes = contents.getBytes(StandardCharsets.US_ASCII);
+                reader.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+                return null;
+            }
+        };
+    }
 }
@@ -137,5 +137,18 @@ public class ProcDataSourceTest {
         assertNotNull(r);
         verify(readerCreator).createFileReader("/proc/1234/numa_maps");
     }
-}
 
+    @Test
+    public void testReadIo() throws Exception {
+        ProcFileReader reader = mock(ProcFileReader.class);
+        source.readIo(1234, reader);
+        verify(reader).read("/proc/1234/io");
+    }
+
+    @Test
+    public void testReadPidStat() throws Exception {
+        ProcFileReader reader = mock(ProcFileReader.class);
+        source.readStat(1234, reader);
+        verify(reader).read("/proc/1234/stat");
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.common.portability.linux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.shared.config.OS;
+
+public class ProcFileReaderTest {
+
+    private ProcFileReader reader;
+
+    @Before
+    public void setup() {
+        reader = new ProcFileReader(16);
+    }
+
+    @Test
+    public void testReadGrowsBuffer() throws IOException {
+        String contents = "0123456789 0123456789 0123456789 0123456789\n";
+        read(contents);
+        assertTrue(reader.getCapacity() >= contents.length());
+        assertEquals("0123456789", reader.nextToken());
+        reader.skipToken();
+        reader.skipToken();
+        assertEquals(123456789L, reader.nextLong());
+        assertFalse(reader.nextLine());
+    }
+
+    @Test
+    public void testReadReplacesContents() throws IOException {
+        read("first line is longer\n");
+        read("2nd\n");
+        assertEquals(2L, reader.nextLong());
+        assertEquals("nd", reader.nextToken());
+        assertTrue(reader.isEndOfLine());
+        assertFalse(reader.nextLine());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testNextLong() throws IOException {
+        read("  42\t-7 9223372036854775807\n");
+        assertEquals(42L, reader.nextLong());
+        assertEquals(-7L, reader.nextLong());
+        assertEquals(Long.MAX_VALUE, reader.nextLong());
+        assertTrue(reader.isEndOfLine());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNextLongWithoutNumber() throws IOException {
+        read("abc 1\n");
+        reader.nextLong();
+    }
+
+    @Test(expected = IOException.class)
+    public void testNextLongDoesNotCrossLines() throws IOException {
+        read("1\n2\n");
+        reader.nextLong();
+        reader.nextLong();
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        read("cpu  1 2 3\ncpu0 4 5 6\nintr 7");
+        assertTrue(reader.consume("cpu"));
+        assertFalse(reader.isDigit());
+        assertTrue(reader.isTokenEnd());
+        assertTrue(reader.nextLine());
+        assertTrue(reader.consume("cpu"));
+        assertTrue(reader.isDigit());
+        assertEquals(0L, reader.nextLong());
+        assertEquals(4L, reader.nextLong());
+        assertTrue(reader.nextLine());
+        assertFalse(reader.consume("cpu"));
+        assertTrue(reader.startsWith("intr"));
+        assertTrue(reader.startsWith("intr"));
+        assertFalse(reader.isTokenEnd());
+        reader.skipToken();
+        assertEquals(7L, reader.nextLong());
+        assertFalse(reader.nextLine());
+    }
+
+    @Test
+    public void testSkipPastLast() throws IOException {
+        read("1 (a) b) c) S 5\n6 ) 7\n");
+        assertTrue(reader.skipPastLast(')'));
+        assertEquals("S", reader.nextToken());
+        assertEquals(5L, reader.nextLong());
+        assertFalse(reader.skipPastLast(')'));
+        assertTrue(reader.nextLine());
+        assertEquals(6L, reader.nextLong());
+    }
+
+    @Test
+    public void testEmptyContents() throws IOException {
+        read("");
+        assertFalse(reader.hasNext());
+        assertTrue(reader.isEndOfLine());
+        assertFalse(reader.nextLine());
+        assertEquals("", reader.nextToken());
+    }
+
+    @Test
+    public void testReadProcFile() throws IOException {
+        Assume.assumeTrue(OS.IS_LINUX);
+        reader.read("/proc/self/stat");
+        assertTrue(reader.nextLong() > 0);
+        assertTrue(reader.skipPastLast(')'));
+    }
+
+    private void read(String contents) throws IOException {
+        byte[] bytes = contents.getBytes(StandardCharsets.US_ASCII);
+        reader.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+}
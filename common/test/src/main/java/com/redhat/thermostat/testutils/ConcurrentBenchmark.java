@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.testutils;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Times a workload run on several threads at once, for
+ * {@link PerformanceTest} benchmarks.
+ * <p>
+ * Every run is warmed up first. The cost reported is the wall clock time
+ * divided by the operations of all threads together.
+ */
+public class ConcurrentBenchmark {
+
+    public static final int[] THREAD_COUNTS = new int[] { 1, 4 };
+
+    public interface Workload {
+        /**
+         * Called on each thread, performs the given number of iterations.
+         */
+        void run(int iterations);
+    }
+
+    private final int warmupIterations;
+    private final int iterations;
+
+    /**
+     * @param warmupIterations iterations per thread before measuring
+     * @param iterations iterations per thread that are measured
+     */
+    public ConcurrentBenchmark(int warmupIterations, int iterations) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param operationsPerIteration the operations one iteration of the
+     *          workload performs
+     * @return the nanoseconds per operation
+     */
+    public double measure(Workload workload, int threadCount, int operationsPerIteration) throws InterruptedException {
+        time(workload, threadCount, warmupIterations);
+        long nanos = time(workload, threadCount, iterations);
+        return (double) nanos / ((long) threadCount * iterations * operationsPerIteration);
+    }
+
+    public static void print(String name, double nanosPerOperation, String operation) {
+        System.out.println(String.format("    %-14s %.1f ns/%s", name + ":", nanosPerOperation, operation));
+    }
+
+    private static long time(final Workload workload, int threadCount, final int iterations) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    workload.run(iterations);
+                }
+            };
+            threads[i].start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - startTime;
+    }
+}
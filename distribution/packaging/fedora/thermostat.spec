@@ -55,7 +55,6 @@ __DEFAULT_RELEASE__ 7
   %global hc_core_bundle_version     4.4.6
   %global hc_client_bundle_version   4.5.3
   %global gson_bundle_version        2.3.1
-  %global lucene_analysis_core_bsn   org.apache.lucene.analyzers-common
   # The javax.servlet bundle version used by the
   # endpoint plugin: a.k.a web-storage-service
   %global javax_servlet_bundle_version 3.1.0
@@ -92,7 +91,6 @@ __DEFAULT_RELEASE__ 7
   %global hc_core_bundle_version     4.3.3
   %global hc_client_bundle_version   4.3.6
   %global gson_bundle_version        2.2.2
-  %global lucene_analysis_core_bsn   org.apache.lucene.analysis
   # The javax.servlet bundle version used by the
   # endpoint plugin: a.k.a web-storage-service
   # Comming from rh-java-common-tomcat-servlet-XXX-api
@@ -269,11 +267,6 @@ Patch1:     0001_shared_fix_bundle_loading.patch
 # For now _NOT_ suitable for upstream until felix ships an API only package which
 # is 4.3 OSGi spec.
 Patch2:     0002_shared_osgi_spec_fixes.patch
-# This is _NOT_ suitable for upstream at this point. It's a simple revert of the
-# upgrade to Lucene 5 patch:
-# http://icedtea.classpath.org/hg/thermostat/rev/79df35f1ff13
-# Note: SCL-ized stack uses lucene 4.8 vs 5 in HEAD
-Patch3:     0003_rhel_lucene_4.patch
 # This patch can be removed when upstream jnr-x86asm adds OSGi metadata to its
 # manifest. See https://github.com/jnr/jnr-x86asm/pull/1
 Patch4:     0004_shared-remove-jnr-assembly-exclusion.patch
@@ -333,8 +326,6 @@ BuildRequires: %{?scl_prefix_java_common}mvn(org.apache.commons:commons-cli)
 # required as of commit e8aa651b0627
 BuildRequires: %{?scl_prefix}mvn(jline:jline) >= %{jline_version}
 BuildRequires: %{?scl_prefix_java_common}mvn(org.fusesource.jansi:jansi)
-BuildRequires: %{?scl_prefix_java_common}mvn(org.apache.lucene:lucene-core) >= 4.7.0
-BuildRequires: %{?scl_prefix_java_common}mvn(org.apache.lucene:lucene-analyzers) >= 4.7.0
 BuildRequires: %{?scl_prefix_java_common}mvn(com.google.code.gson:gson)
 BuildRequires: %{?scl_prefix}mvn(org.jfree:jfreechart)
 BuildRequires: %{?scl_prefix}mvn(org.jfree:jcommon)
@@ -501,10 +492,6 @@ security.
 #%%setup -q -n %%{pkg_name}-%%{major}-%%{minor}-%%{hgrev}
 %patch1 -p1
 %patch2 -p1
-# Lucene 4 patches only applicable for SCL
-%{?scl:
-%patch3 -p1
-}
 %patch4 -p1
 %patch5 -p1
 
@@ -513,15 +500,6 @@ cp %{SOURCE4} distribution/config/thermostatrc
 
 
 # Fix up artifact names which have different name upstream
-#  lucene
-%pom_remove_dep "org.apache.servicemix.bundles:org.apache.servicemix.bundles.lucene" vm-heap-analysis/common
-%pom_remove_dep "org.apache.servicemix.bundles:org.apache.servicemix.bundles.lucene" vm-heap-analysis/distribution
-%pom_remove_dep "org.apache.servicemix.bundles:org.apache.servicemix.bundles.lucene-analyzers-common" vm-heap-analysis/common
-%pom_remove_dep "org.apache.servicemix.bundles:org.apache.servicemix.bundles.lucene-analyzers-common" vm-heap-analysis/distribution
-%pom_add_dep "org.apache.lucene:lucene-analyzers:5.2.0" vm-heap-analysis/common
-%pom_add_dep "org.apache.lucene:lucene-analyzers:5.2.0" vm-heap-analysis/distribution
-%pom_add_dep "org.apache.lucene:lucene-core:5.2.0" vm-heap-analysis/common
-%pom_add_dep "org.apache.lucene:lucene-core:5.2.0" vm-heap-analysis/distribution
 # Fix up artifact names for jgraphx
 %pom_remove_dep "org.tinyjee.jgraphx:jgraphx"
 %pom_add_dep "com.mxgraph:jgraphx:%{jgraphx_bundle_version}.0"
@@ -706,10 +684,6 @@ popd
                  -Djansi.version=%{jansi_version} \
                  -Djcommon.osgi.version=%{jcommon_bundle_version} \
                  -Djfreechart.osgi.version=%{jfreechart_bundle_version} \
-                 -Dlucene-core.maven-coords=org.apache.lucene:lucene-core \
-                 -Dlucene-core.bundle.symbolic-name=org.apache.lucene.core \
-                 -Dlucene-analysis.maven-coords=org.apache.lucene:lucene-analyzers \
-                 -Dlucene-analysis.bundle.symbolic-name=%{lucene_analysis_core_bsn} \
                  -Dosgi.compendium.bundle.symbolic-name=org.osgi.compendium \
                  -Dosgi.compendium.osgi-version=4.1.0 \
                  -Djgraphx.osgi.version=%{jgraphx_bundle_version}.0 \
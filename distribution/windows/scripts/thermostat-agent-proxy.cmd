@@ -37,12 +37,12 @@
 setlocal
 
 if "%4"=="" goto usage
-if not "%5"=="" goto usage
+if not "%6"=="" goto usage
 
  goto skipfuncdefs
 
  :usage
-   echo "usage: %~f0 <pidOfTargetJvm> <userNameOfJvmOwner> <ipcConfigFile> <ipcServerName>"
+   echo "usage: %~f0 <pidOfTargetJvm> <userNameOfJvmOwner> <ipcConfigFile> <ipcServerName> [idleTimeoutMillis]"
    exit /b 1
 
  :skipfuncdefs
@@ -51,6 +51,8 @@ set TARGET_PID=%1
 set TARGET_USER=%2
 set CONFIG_FILE=%3
 set IPC_SERVER_NAME=%4
+:: Optional, keeps the proxy around to serve more attach requests
+if not "%5"=="" set IDLE_TIMEOUT_ARG=-DidleTimeout=%5
 
 :: Source thermostat-ipc-client-common from same directory as this script
 :: Defines IPC_CLASSPATH variable with JARs necessary for the IPC service
@@ -85,6 +87,6 @@ if defined THERMOSTAT_DEBUG (
 :: within the server, consider adjusting toek priviledge to disable debug, etc
 set CONFIG_FILE_ARG=-DipcConfigFile=%CONFIG_FILE%
 
-%JAVA% -cp %IPC_CLASSPATH% %CONFIG_FILE_ARG% %LOGGING_ARGS% %DEBUG_OPTS% %AGENT_PROXY_CLASS% %TARGET_PID% %IPC_SERVER_NAME% %TARGET_USER%
+%JAVA% -cp %IPC_CLASSPATH% %CONFIG_FILE_ARG% %IDLE_TIMEOUT_ARG% %LOGGING_ARGS% %DEBUG_OPTS% %AGENT_PROXY_CLASS% %TARGET_PID% %IPC_SERVER_NAME% %TARGET_USER%
 
 
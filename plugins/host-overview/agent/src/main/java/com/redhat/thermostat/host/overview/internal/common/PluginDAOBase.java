@@ -37,19 +37,12 @@
 package com.redhat.thermostat.host.overview.internal.common;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeoutException;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
-import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.StringContentProvider;
-import org.eclipse.jetty.http.HttpHeader;
-import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.http.HttpStatus;
-
+import com.google.gson.TypeAdapter;
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
 import com.redhat.thermostat.common.plugins.PluginConfiguration;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 
@@ -57,40 +50,18 @@ abstract public class PluginDAOBase<Tobj,Tdao> {
 
     private static final Logger logger = LoggingUtils.getLogger(PluginDAOBase.class);
 
-    private static final String CONTENT_TYPE = "application/json";
-
-    protected final HttpClient httpClient;
-
-    public PluginDAOBase(HttpClient client) {
-        this.httpClient = client;
-    }
-
-    protected abstract String toJsonString(Tobj obj) throws IOException;
+    protected abstract TypeAdapter<List<Tobj>> getTypeAdapter();
     protected abstract PluginConfiguration getConfig();
+    protected abstract GatewayBatchWriter getWriter();
 
     public void put(String systemid, final Tobj obj) {
         try {
             final String gatewayURL = getConfig().getGatewayURL();
-            final String json = toJsonString(obj);
-            final StringContentProvider provider =  new StringContentProvider(json);
             final String url = gatewayURL + "/systems/" + systemid;
-            final Request httpRequest = httpClient.newRequest(url);
-            httpRequest.method(HttpMethod.POST);
-            httpRequest.content(provider);
-            httpRequest.header(HttpHeader.CONTENT_TYPE, CONTENT_TYPE);
-            sendRequest(httpRequest);
-        } catch (IOException | InterruptedException | TimeoutException | ExecutionException e) {
+            getWriter().write(url, obj, getTypeAdapter());
+        } catch (IOException e) {
             logger.log(Level.WARNING, "Failed to send " + obj.getClass().getName() + " to web gateway", e);
         }
     }
-
-    private void sendRequest(Request httpRequest)
-            throws InterruptedException, TimeoutException, ExecutionException, IOException {
-        final ContentResponse resp = httpRequest.send();
-        final int status = resp.getStatus();
-        if (status != HttpStatus.OK_200) {
-            throw new IOException("Gateway returned HTTP status " + String.valueOf(status) + " - " + resp.getReason());
-        }
-    }
 }
 
@@ -36,8 +36,6 @@
 
 package com.redhat.thermostat.host.overview.internal.models;
 
-import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -45,9 +43,9 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.util.StringContentProvider;
 
+import com.google.gson.TypeAdapter;
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugins.PluginConfiguration;
 import com.redhat.thermostat.common.utils.LoggingUtils;
@@ -63,33 +61,31 @@ public class HostInfoDAOImpl extends PluginDAOBase<HostInfo, HostInfoDAOImpl> im
     
     public static final String PLUGIN_ID = "host-overview";
 
-    private final JsonHelper jsonHelper;
-    private final HttpHelper httpHelper;
+    private final HostInfoTypeAdapter typeAdapter;
 
     private final ConfigurationCreator configCreator;
     
     @Reference
     private ConfigurationInfoSource configInfoSource;
+    @Reference
+    private GatewayBatchWriter writer;
     private PluginConfiguration config;
 
     public HostInfoDAOImpl() {
-        this(new HttpClient(), new JsonHelper(new HostInfoTypeAdapter()), new HttpHelper(), 
-                new ConfigurationCreator(), null);
+        this(new HostInfoTypeAdapter(), new ConfigurationCreator(), null, null);
     }
 
-    HostInfoDAOImpl(HttpClient client, JsonHelper jh, HttpHelper hh, ConfigurationCreator creator, 
-            ConfigurationInfoSource source) {
-        super(client);
-        this.jsonHelper = jh;
-        this.httpHelper = hh;
+    HostInfoDAOImpl(HostInfoTypeAdapter typeAdapter, ConfigurationCreator creator, 
+            ConfigurationInfoSource source, GatewayBatchWriter writer) {
+        this.typeAdapter = typeAdapter;
         this.configCreator = creator;
         this.configInfoSource = source;
+        this.writer = writer;
     }
 
     @Activate
     void activate() throws Exception {
         this.config = configCreator.create(configInfoSource);
-        httpHelper.startClient(httpClient);
     }
 
 
@@ -102,8 +98,8 @@ public class HostInfoDAOImpl extends PluginDAOBase<HostInfo, HostInfoDAOImpl> im
     }
 
     @Override
-    protected String toJsonString(HostInfo obj) throws IOException {
-        return jsonHelper.toJson(Arrays.asList(obj));
+    protected TypeAdapter<List<HostInfo>> getTypeAdapter() {
+        return typeAdapter;
     }
     
     @Override
@@ -111,34 +107,11 @@ public class HostInfoDAOImpl extends PluginDAOBase<HostInfo, HostInfoDAOImpl> im
     	return config;
     }
 
-    // For testing purposes
-    static class JsonHelper {
-        
-        private final HostInfoTypeAdapter typeAdapter;
-        
-        JsonHelper(HostInfoTypeAdapter typeAdapter) {
-            this.typeAdapter = typeAdapter;
-        }
-        
-        String toJson(List<HostInfo> infos) throws IOException {
-            return typeAdapter.toJson(infos);
-        }
-        
-    }
-    
-    // For testing purposes
-    static class HttpHelper {
-        
-        void startClient(HttpClient httpClient) throws Exception {
-            httpClient.start();
-        }
-        
-        StringContentProvider createContentProvider(String content) {
-            return new StringContentProvider(content);
-        }
-        
+    @Override
+    protected GatewayBatchWriter getWriter() {
+        return writer;
     }
-    
+
     // For Testing purposes
     static class ConfigurationCreator {
         
@@ -36,38 +36,28 @@
 
 package com.redhat.thermostat.host.overview.internal.models;
 
-import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentProvider;
-import org.eclipse.jetty.client.api.ContentResponse;
-import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.StringContentProvider;
-import org.eclipse.jetty.http.HttpHeader;
-import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.http.HttpStatus;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.Matchers;
 
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugins.PluginConfiguration;
+import com.redhat.thermostat.host.overview.internal.HostInfoTypeAdapter;
 import com.redhat.thermostat.host.overview.internal.models.HostInfoDAOImpl.ConfigurationCreator;
 import com.redhat.thermostat.host.overview.model.HostInfo;
 
 public class HostInfoDAOTest {
 
     private static final String URL = "http://localhost:26000/api/systems/v0.0.3";
-    private static final String SOME_JSON = "{\"some\" : \"json\"}";
     private static final String HOST_NAME = "a host name";
     private static final String OS_NAME = "some os";
     private static final String OS_KERNEL = "some kernel";
@@ -78,12 +68,8 @@ public class HostInfoDAOTest {
     private static final String URL_PROP = "gatewayURL";
 
     private HostInfo info;
-    private HttpClient httpClient;
-    private HostInfoDAOImpl.JsonHelper jsonHelper;
-    private HostInfoDAOImpl.HttpHelper httpHelper;
-    private StringContentProvider contentProvider;
-    private Request request;
-    private ContentResponse response;
+    private GatewayBatchWriter writer;
+    private HostInfoTypeAdapter typeAdapter;
     private ConfigurationInfoSource cfiSource;
     private ConfigurationCreator configCreator;
     
@@ -91,19 +77,8 @@ public class HostInfoDAOTest {
     public void setup() throws Exception {
         info = new HostInfo("foo-agent", HOST_NAME, OS_NAME, OS_KERNEL, CPU_MODEL, CPU_NUM, MEMORY_TOTAL);
         
-        httpHelper = mock(HostInfoDAOImpl.HttpHelper.class);
-        contentProvider = mock(StringContentProvider.class);
-        when(httpHelper.createContentProvider(anyString())).thenReturn(contentProvider);
-        request = mock(Request.class);
-        httpClient = mock(HttpClient.class);
-        request = mock(Request.class);
-        when(httpClient.newRequest(anyString())).thenReturn(request);
-        response = mock(ContentResponse.class);
-        when(response.getStatus()).thenReturn(HttpStatus.OK_200);
-        when(request.send()).thenReturn(response);
-        
-        jsonHelper = mock(HostInfoDAOImpl.JsonHelper.class);
-        when(jsonHelper.toJson(anyListOf(HostInfo.class))).thenReturn(SOME_JSON);
+        writer = mock(GatewayBatchWriter.class);
+        typeAdapter = mock(HostInfoTypeAdapter.class);
 
         cfiSource = mock(ConfigurationInfoSource.class);
         Map<String,String> map = new HashMap<>();
@@ -116,18 +91,12 @@ public class HostInfoDAOTest {
     @Test
     public void testPutHostInfo() throws Exception {
 
-        HostInfoDAOImpl dao = new HostInfoDAOImpl(httpClient, jsonHelper, httpHelper, configCreator, cfiSource);
+        HostInfoDAOImpl dao = new HostInfoDAOImpl(typeAdapter, configCreator, cfiSource, writer);
         dao.activate();
         
         dao.put(info.getAgentId(), info);
         
-        verify(httpClient).newRequest(URL + "/systems/" + info.getAgentId());
-        verify(request).method(HttpMethod.POST);
-        verify(jsonHelper).toJson(eq(Arrays.asList(info)));
-        verify(request).content(Matchers.any(ContentProvider.class));
-        verify(request).header(HttpHeader.CONTENT_TYPE, "application/json");
-        verify(request).send();
-        verify(response).getStatus();
+        verify(writer).write(URL + "/systems/" + info.getAgentId(), info, typeAdapter);
     }
 
 }
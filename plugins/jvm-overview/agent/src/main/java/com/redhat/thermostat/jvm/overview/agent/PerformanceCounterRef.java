@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent;
+
+/**
+ * Lazily resolves and caches the {@link PerformanceCounter} with a fixed
+ * name for one monitored JVM. Intended to be kept in a field of a
+ * {@link VmUpdateListener} so that the counter name is built and looked up
+ * only once. If the counter does not exist, resolution is retried on the
+ * next read.
+ * <p>
+ * Instances are not thread-safe and must not be shared between JVMs.
+ */
+public final class PerformanceCounterRef {
+
+    private final String name;
+    private PerformanceCounter counter;
+
+    public PerformanceCounterRef(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the resolved counter, or null if the JVM has no such counter
+     * @throws VmUpdateException if there is a problem communicating with
+     * the JVM
+     */
+    public PerformanceCounter resolve(VmUpdate update) throws VmUpdateException {
+        if (counter == null) {
+            counter = update.getPerformanceCounter(name);
+        }
+        return counter;
+    }
+
+    /**
+     * @return the current value of the counter, or defaultValue if the JVM
+     * has no such counter
+     * @throws VmUpdateException if there is a problem communicating with
+     * the JVM
+     * @throws ClassCastException if the counter is not a long counter
+     */
+    public long getLong(VmUpdate update, long defaultValue) throws VmUpdateException {
+        PerformanceCounter resolved = resolve(update);
+        return resolved == null ? defaultValue : resolved.longValue();
+    }
+
+    /**
+     * @return the current value of the counter, or null if the JVM has no
+     * such counter
+     * @throws VmUpdateException if there is a problem communicating with
+     * the JVM
+     * @throws ClassCastException if the counter is not a String counter
+     */
+    public String getString(VmUpdate update) throws VmUpdateException {
+        PerformanceCounter resolved = resolve(update);
+        return resolved == null ? null : resolved.stringValue();
+    }
+
+}
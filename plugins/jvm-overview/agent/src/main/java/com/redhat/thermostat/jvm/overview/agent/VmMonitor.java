@@ -43,24 +43,28 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.redhat.thermostat.backend.BackendException;
+import com.redhat.thermostat.jvm.overview.agent.internal.MonitoredVmRegistry;
 import com.redhat.thermostat.jvm.overview.agent.internal.VmListenerWrapper;
 import sun.jvmstat.monitor.HostIdentifier;
 import sun.jvmstat.monitor.MonitorException;
 import sun.jvmstat.monitor.MonitoredHost;
-import sun.jvmstat.monitor.MonitoredVm;
-import sun.jvmstat.monitor.VmIdentifier;
 
 import com.redhat.thermostat.common.portability.ProcessChecker;
-import com.redhat.thermostat.common.Pair;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 
+/**
+ * Tracks the {@link VmUpdateListener}s of one backend. The underlying jvmstat
+ * attachments are shared with every other backend through
+ * {@link MonitoredVmRegistry}, so each VM is attached and sampled only once.
+ */
 public class VmMonitor {
     
     private final Logger logger = LoggingUtils.getLogger(VmMonitor.class);
 
     private final ProcessChecker processChecker;
     private MonitoredHost host;
-    private Map<Integer, Pair<MonitoredVm, VmListenerWrapper>> pidToData = new HashMap<>();
+    private MonitoredVmRegistry registry = MonitoredVmRegistry.getInstance();
+    private Map<Integer, VmListenerWrapper> pidToData = new HashMap<>();
     
     public VmMonitor() throws BackendException {
         this(new ProcessChecker());
@@ -80,11 +84,12 @@ public class VmMonitor {
     
     public void handleNewVm(VmUpdateListener listener, int pid) {
         try {
-            MonitoredVm vm = host.getMonitoredVm(host.getHostIdentifier().resolve(new VmIdentifier(String.valueOf(pid))));
-            VmListenerWrapper wrapper = new VmListenerWrapper(listener, vm);
-            vm.addVmListener(wrapper);
+            VmListenerWrapper wrapper = registry.attach(host, pid, listener);
 
-            pidToData.put(pid, new Pair<>(vm, wrapper));
+            VmListenerWrapper previous = pidToData.put(pid, wrapper);
+            if (previous != null) {
+                registry.detach(previous);
+            }
             logger.finer("Attached " + listener.getClass().getName() + " for VM: " + pid);
         } catch (MonitorException e) {
             logMsg(pid, e);
@@ -103,31 +108,17 @@ public class VmMonitor {
     }
 
     public void handleStoppedVm(int pid) {
-        Pair<MonitoredVm, VmListenerWrapper> data = pidToData.remove(pid);
+        VmListenerWrapper wrapper = pidToData.remove(pid);
         // we were not monitoring pid at all, so nothing to do
-        if (data == null) {
+        if (wrapper == null) {
             return;
         }
-    
-        MonitoredVm vm = data.getFirst();
-        VmListenerWrapper listener = data.getSecond();
-        try {
-            vm.removeVmListener(listener);
-        } catch (MonitorException e) {
-            logger.log(Level.WARNING, "can't remove vm listener", e);
-        }
-        vm.detach();
+        registry.detach(wrapper);
     }
 
     public void removeVmListeners() {
-        for (Pair<MonitoredVm, VmListenerWrapper> data : pidToData.values()) {
-            MonitoredVm vm = data.getFirst();
-            VmListenerWrapper listener = data.getSecond();
-            try {
-                vm.removeVmListener(listener);
-            } catch (MonitorException e) {
-                logger.log(Level.WARNING, "can't remove vm listener", e);
-            }
+        for (VmListenerWrapper wrapper : pidToData.values()) {
+            registry.detach(wrapper);
         }
         pidToData.clear();
     }
@@ -142,9 +133,16 @@ public class VmMonitor {
     /*
      * For testing purposes only.
      */
-    Map<Integer, Pair<MonitoredVm, VmListenerWrapper>> getPidToDataMap() {
+    Map<Integer, VmListenerWrapper> getPidToDataMap() {
         return pidToData;
     }
 
+    /*
+     * For testing purposes only.
+     */
+    void setRegistry(MonitoredVmRegistry registry) {
+        this.registry = registry;
+    }
+
 }
 
@@ -64,6 +64,19 @@ public interface VmUpdate {
      * @throws ClassCastException if the value of the counter is not a String
      */
     String getPerformanceCounterString(String name) throws VmUpdateException;
+
+    /**
+     * Resolves the specified JVM performance counter into a handle which
+     * can be read repeatedly, including from later updates of the same JVM,
+     * without looking the counter up again.
+     * @param name - The name of the performance counter
+     * @return A handle to the requested counter, or null if no such
+     * counter exists
+     * @throws VmUpdateException if there is a problem communicating with
+     * the JVM
+     * @see PerformanceCounterRef
+     */
+    PerformanceCounter getPerformanceCounter(String name) throws VmUpdateException;
     
 }
 
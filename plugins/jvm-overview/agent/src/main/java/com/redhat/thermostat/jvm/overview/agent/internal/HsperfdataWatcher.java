@@ -0,0 +1,371 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.portability.ProcessChecker;
+import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuffer;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataLocator;
+
+/**
+ * Discovers local JVMs by watching the hsperfdata directories with a
+ * {@link WatchService}, rather than waiting for jvmstat to re-list them.
+ * <p>
+ * HotSpot creates its hsperfdata file early during startup and only marks
+ * it accessible once the VM is initialized, so new files are kept pending
+ * while their process is alive. A pending file is mapped once and its
+ * accessible flag re-checked frequently at first, then only at the sweep
+ * interval. VMs that are killed leave their file behind; those are found
+ * by a periodic liveness sweep.
+ * All listener callbacks happen on the single watcher thread.
+ */
+class HsperfdataWatcher implements Runnable {
+
+    interface Listener {
+
+        /**
+         * @param buffer the mapped, accessible hsperfdata of the new VM
+         */
+        void vmStarted(int pid, PerfDataBuffer buffer);
+
+        void vmStopped(int pid);
+    }
+
+    static final long PENDING_RECHECK_MILLIS = 20;
+    static final long PENDING_BACKOFF_MILLIS = 10000;
+    static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private static final Logger logger = LoggingUtils.getLogger(HsperfdataWatcher.class);
+
+    private final File tmpDir;
+    private final Listener listener;
+    private final ProcessChecker processChecker;
+    // Only accessed from the watcher thread once started
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Map<Integer, PendingVm> pending = new HashMap<>();
+    private final Map<Integer, File> active = new HashMap<>();
+    private long lastSweep;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    HsperfdataWatcher(Listener listener) {
+        this(new File(System.getProperty("java.io.tmpdir")), listener, new ProcessChecker());
+    }
+
+    HsperfdataWatcher(File tmpDir, Listener listener, ProcessChecker processChecker) {
+        this.tmpDir = tmpDir;
+        this.listener = listener;
+        this.processChecker = processChecker;
+    }
+
+    synchronized void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            keys.put(tmpDir.toPath().register(watchService, ENTRY_CREATE), tmpDir.toPath());
+            File[] dirs = tmpDir.listFiles();
+            if (dirs != null) {
+                for (File dir : dirs) {
+                    directoryCreated(dir.toPath());
+                }
+            }
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        thread = new Thread(this, "thermostat-hsperfdata-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        try {
+            // Wakes up the watcher thread
+            watchService.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Failed to close hsperfdata watch service", e);
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                long timeout = hasRecentPending(System.currentTimeMillis())
+                        ? PENDING_RECHECK_MILLIS : SWEEP_INTERVAL_MILLIS;
+                WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    processEvents(key);
+                }
+                long now = System.currentTimeMillis();
+                checkPending(now);
+                if (now - lastSweep >= SWEEP_INTERVAL_MILLIS) {
+                    sweep();
+                    lastSweep = now;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private void processEvents(WatchKey key) {
+        Path dir = keys.get(key);
+        if (dir != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    rescan(dir);
+                    continue;
+                }
+                Path child = dir.resolve((Path) event.context());
+                if (dir.equals(tmpDir.toPath())) {
+                    directoryCreated(child);
+                } else if (event.kind() == ENTRY_CREATE) {
+                    fileCreated(child.toFile());
+                } else if (event.kind() == ENTRY_DELETE) {
+                    fileDeleted(child.toFile());
+                }
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    void directoryCreated(Path dir) {
+        if (!dir.getFileName().toString().startsWith(PerfDataLocator.HSPERFDATA_PREFIX)
+                || !dir.toFile().isDirectory()) {
+            return;
+        }
+        try {
+            if (watchService != null) {
+                keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE), dir);
+            }
+        } catch (IOException e) {
+            // Typically a directory of another user we are not allowed to read
+            logger.log(Level.FINE, "Unable to watch " + dir, e);
+            return;
+        }
+        rescan(dir);
+    }
+
+    void fileCreated(File file) {
+        int pid = toPid(file);
+        if (pid < 0) {
+            return;
+        }
+        if (active.containsKey(pid)) {
+            // The pid was reused before the old VM was found dead
+            active.remove(pid);
+            notifyStopped(pid);
+        }
+        if (!pending.containsKey(pid)) {
+            pending.put(pid, new PendingVm(file, System.currentTimeMillis()));
+        }
+    }
+
+    void fileDeleted(File file) {
+        int pid = toPid(file);
+        if (pid < 0 || pending.remove(pid) != null) {
+            return;
+        }
+        if (active.remove(pid) != null) {
+            notifyStopped(pid);
+        }
+    }
+
+    private void rescan(Path dir) {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                int pid = toPid(file);
+                if (pid >= 0 && !active.containsKey(pid) && !pending.containsKey(pid)) {
+                    fileCreated(file);
+                }
+            }
+        }
+        List<File> removed = new ArrayList<>();
+        for (File file : active.values()) {
+            if (file.getParentFile().toPath().equals(dir) && !file.exists()) {
+                removed.add(file);
+            }
+        }
+        for (File file : removed) {
+            fileDeleted(file);
+        }
+    }
+
+    void checkPending(long now) {
+        Iterator<Entry<Integer, PendingVm>> iter = pending.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<Integer, PendingVm> entry = iter.next();
+            int pid = entry.getKey();
+            PendingVm vm = entry.getValue();
+            if (!vm.isRecent(now) && now - vm.lastChecked < SWEEP_INTERVAL_MILLIS) {
+                continue;
+            }
+            vm.lastChecked = now;
+            if (!processChecker.exists(pid)) {
+                // Left behind by a VM that did not exit cleanly
+                iter.remove();
+                continue;
+            }
+            if (vm.buffer == null) {
+                // Map once, the accessible flag is then read from the same mapping
+                vm.buffer = tryMap(vm.file);
+            }
+            if (vm.buffer != null && vm.buffer.isAccessible()) {
+                iter.remove();
+                active.put(pid, vm.file);
+                notifyStarted(pid, vm.buffer);
+            }
+        }
+    }
+
+    private boolean hasRecentPending(long now) {
+        for (PendingVm vm : pending.values()) {
+            if (vm.isRecent(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void sweep() {
+        List<Integer> dead = new ArrayList<>();
+        for (Integer pid : active.keySet()) {
+            if (!processChecker.exists(pid)) {
+                dead.add(pid);
+            }
+        }
+        for (Integer pid : dead) {
+            active.remove(pid);
+            notifyStopped(pid);
+        }
+    }
+
+    private PerfDataBuffer tryMap(File file) {
+        try {
+            return PerfDataLocator.map(file);
+        } catch (IOException e) {
+            // Not (yet) a complete PerfData file
+            return null;
+        }
+    }
+
+    private void notifyStarted(int pid, PerfDataBuffer buffer) {
+        try {
+            listener.vmStarted(pid, buffer);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "error handling new vm " + pid, e);
+        }
+    }
+
+    private void notifyStopped(int pid) {
+        try {
+            listener.vmStopped(pid);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "error handling stopped vm " + pid, e);
+        }
+    }
+
+    private static int toPid(File file) {
+        try {
+            return Integer.parseInt(file.getName());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    Map<Integer, File> getActiveVms() {
+        return active;
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    boolean isPending(int pid) {
+        return pending.containsKey(pid);
+    }
+
+    private static class PendingVm {
+        private final File file;
+        private final long discovered;
+        private long lastChecked;
+        private PerfDataBuffer buffer;
+
+        private PendingVm(File file, long discovered) {
+            this.file = file;
+            this.discovered = discovered;
+        }
+
+        private boolean isRecent(long now) {
+            return now - discovered <= PENDING_BACKOFF_MILLIS;
+        }
+    }
+
+}
@@ -41,6 +41,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,6 +56,8 @@ import com.redhat.thermostat.jvm.overview.agent.VmBlacklist;
 import com.redhat.thermostat.jvm.overview.agent.VmStatusListener.Status;
 import com.redhat.thermostat.jvm.overview.agent.internal.model.InfoBuilderFactory;
 import com.redhat.thermostat.jvm.overview.agent.internal.model.VmInfoDAO;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuffer;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataCounter;
 import com.redhat.thermostat.jvm.overview.agent.model.VmInfo;
 import com.redhat.thermostat.storage.core.WriterID;
 
@@ -63,9 +69,20 @@ import sun.jvmstat.monitor.event.HostEvent;
 import sun.jvmstat.monitor.event.HostListener;
 import sun.jvmstat.monitor.event.VmStatusChangeEvent;
 
-class JvmStatHostListener implements HostListener {
+/**
+ * Tracks VMs starting and stopping on this host and records a {@link VmInfo}
+ * for each of them.
+ * <p>
+ * As a jvmstat {@link HostListener}, all work happens synchronously on the
+ * jvmstat notification thread. When driven by a {@link HsperfdataWatcher}
+ * instead, {@link VmStatusChangeNotifier} is notified as soon as a VM is
+ * discovered, and building and storing its {@link VmInfo} is left to the
+ * given executor.
+ */
+class JvmStatHostListener implements HostListener, HsperfdataWatcher.Listener {
 
     private static final Logger logger = LoggingUtils.getLogger(JvmStatHostListener.class);
+    private static final String UNKNOWN_MAIN_CLASS = "Unknown";
 
     private final VmInfoDAO vmInfoDAO;
     private final VmStatusChangeNotifier notifier;
@@ -73,15 +90,27 @@ class JvmStatHostListener implements HostListener {
     private final WriterID writerId;
     private Map<Integer, Pair<String, MonitoredVm>> monitoredVms  = new HashMap<>();
     private final VmBlacklist blacklist;
+    // Only used when driven by a HsperfdataWatcher
+    private final MonitoredHost host;
+    private final ExecutorService vmInfoExecutor;
+    private final Map<Integer, Pair<String, Future<Boolean>>> watchedVms = new HashMap<>();
 
     JvmStatHostListener(VmInfoDAO vmInfoDAO, VmStatusChangeNotifier notifier,
                         ProcessUserInfoBuilder userInfoBuilder, WriterID writerId,
                         VmBlacklist blacklist) {
+        this(vmInfoDAO, notifier, userInfoBuilder, writerId, blacklist, null, null);
+    }
+
+    JvmStatHostListener(VmInfoDAO vmInfoDAO, VmStatusChangeNotifier notifier,
+                        ProcessUserInfoBuilder userInfoBuilder, WriterID writerId,
+                        VmBlacklist blacklist, MonitoredHost host, ExecutorService vmInfoExecutor) {
         this.vmInfoDAO = vmInfoDAO;
         this.notifier = notifier;
         this.userInfoBuilder = userInfoBuilder;
         this.writerId = writerId;
         this.blacklist = blacklist;
+        this.host = host;
+        this.vmInfoExecutor = vmInfoExecutor;
     }
 
     @Override
@@ -177,12 +206,105 @@ class JvmStatHostListener implements HostListener {
         }
     }
 
+    @Override
+    public void vmStarted(final int vmPid, PerfDataBuffer buffer) {
+        // The main class is available from the mapped hsperfdata right away,
+        // so blacklisted VMs are never announced.
+        if (blacklist.isBlacklisted(getMainClass(buffer))) {
+            logger.info("Skipping VM: " + vmPid);
+            return;
+        }
+        final String vmId = UUID.randomUUID().toString();
+        notifier.notifyVmStatusChange(Status.VM_STARTED, vmId, vmPid);
+        logger.finer("Sent VM_STARTED messsage");
+
+        Future<Boolean> stored = vmInfoExecutor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return storeVmInfo(vmId, vmPid);
+            }
+        });
+        watchedVms.put(vmPid, new Pair<>(vmId, stored));
+    }
+
+    @Override
+    public void vmStopped(int vmPid) {
+        Pair<String, Future<Boolean>> vmData = watchedVms.remove(vmPid);
+        if (vmData == null) {
+            return;
+        }
+        final String vmId = vmData.getFirst();
+        notifier.notifyVmStatusChange(Status.VM_STOPPED, vmId, vmPid);
+
+        final long stopTime = System.currentTimeMillis();
+        final Future<Boolean> stored = vmData.getSecond();
+        vmInfoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The stop time must not be written before the VmInfo itself
+                if (awaitVmInfo(stored)) {
+                    vmInfoDAO.putVmStoppedTime(writerId.getWriterID(), vmId, stopTime);
+                }
+            }
+        });
+    }
+
+    private boolean storeVmInfo(String vmId, int vmPid) {
+        try {
+            MonitoredVm vm = host.getMonitoredVm(host.getHostIdentifier().resolve(
+                    new VmIdentifier(String.valueOf(vmPid))));
+            try {
+                VmInfo info = createVmInfo(vmId, vmPid, Long.MIN_VALUE, new JvmStatDataExtractor(vm));
+                vmInfoDAO.putVmInfo(info);
+                return true;
+            } finally {
+                vm.detach();
+            }
+        } catch (MonitorException | URISyntaxException e) {
+            logger.log(Level.WARNING, "error getting info for new vm " + vmPid, e);
+            return false;
+        }
+    }
+
+    private boolean awaitVmInfo(Future<Boolean> stored) {
+        try {
+            return stored.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "error storing vm info", e.getCause());
+            return false;
+        }
+    }
+
+    /*
+     * Same as MonitoredVmUtil.mainClass(vm, true), which JvmStatDataExtractor
+     * uses, but without attaching jvmstat.
+     */
+    static String getMainClass(PerfDataBuffer buffer) {
+        PerfDataCounter counter = buffer.findCounter("sun.rt.javaCommand");
+        String commandLine = counter == null ? null : counter.stringValue();
+        if (commandLine == null) {
+            return UNKNOWN_MAIN_CLASS;
+        }
+        int firstSpace = commandLine.indexOf(' ');
+        return firstSpace > 0 ? commandLine.substring(0, firstSpace) : commandLine;
+    }
+
     /*
      * For testing purposes only.
      */
     Map<Integer, Pair<String, MonitoredVm>> getMonitoredVms() {
         return monitoredVms;
     }
+
+    /*
+     * For testing purposes only.
+     */
+    Map<Integer, Pair<String, Future<Boolean>>> getWatchedVms() {
+        return watchedVms;
+    }
     
 }
 
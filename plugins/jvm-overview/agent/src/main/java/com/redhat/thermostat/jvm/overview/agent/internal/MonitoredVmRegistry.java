@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuffer;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataLocator;
+import sun.jvmstat.monitor.MonitorException;
+import sun.jvmstat.monitor.MonitoredHost;
+import sun.jvmstat.monitor.MonitoredVm;
+import sun.jvmstat.monitor.VmIdentifier;
+
+/**
+ * Keeps at most one counter attachment per pid for the whole agent. Every
+ * {@link com.redhat.thermostat.jvm.overview.agent.VmListenerBackend}
+ * registers its listeners here, so the hsperfdata file of a VM is mapped
+ * and polled once no matter how many VM plugins are enabled. The attachment
+ * is detached once its last listener is removed.
+ * <p>
+ * Counters are read through jvmstat by default. Setting the system property
+ * {@value #COUNTER_SOURCE_PROPERTY} to {@code perfdata} reads the mapped
+ * hsperfdata file directly instead, falling back to jvmstat for VMs whose
+ * file cannot be mapped.
+ */
+public class MonitoredVmRegistry {
+
+    static final String COUNTER_SOURCE_PROPERTY = "com.redhat.thermostat.jvm.overview.counterSource";
+
+    enum CounterSource {
+        JVMSTAT,
+        PERFDATA,
+    }
+
+    private static final Logger logger = LoggingUtils.getLogger(MonitoredVmRegistry.class);
+    private static final MonitoredVmRegistry INSTANCE = new MonitoredVmRegistry();
+
+    private final Map<Integer, VmAttachment> pidToVm = new HashMap<>();
+    private final CounterSource source;
+    private final PerfDataLocator locator;
+    private final PerfDataSampler sampler;
+
+    /*
+     * Use getInstance(). Separate registries are for testing purposes only.
+     */
+    public MonitoredVmRegistry() {
+        this(getConfiguredSource(), new PerfDataLocator(), new PerfDataSampler());
+    }
+
+    MonitoredVmRegistry(CounterSource source, PerfDataLocator locator, PerfDataSampler sampler) {
+        this.source = source;
+        this.locator = locator;
+        this.sampler = sampler;
+    }
+
+    public static MonitoredVmRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized VmListenerWrapper attach(MonitoredHost host, int pid, VmUpdateListener listener)
+            throws MonitorException, URISyntaxException {
+        VmAttachment attachment = pidToVm.get(pid);
+        if (attachment == null) {
+            if (source == CounterSource.PERFDATA) {
+                attachment = attachPerfData(pid);
+            }
+            if (attachment == null) {
+                attachment = attachJvmstat(host, pid);
+            }
+            pidToVm.put(pid, attachment);
+        }
+        VmListenerWrapper wrapper = new VmListenerWrapper(listener, attachment);
+        attachment.addListener(wrapper);
+        return wrapper;
+    }
+
+    private VmAttachment attachPerfData(int pid) {
+        PerfDataBuffer buffer;
+        try {
+            buffer = locator.open(pid);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Unable to map hsperfdata of VM " + pid + ", using jvmstat", e);
+            return null;
+        }
+        PerfDataVm vm = new PerfDataVm(pid, buffer, sampler);
+        sampler.register(vm);
+        logger.finer("Attached perfdata reader to VM: " + pid);
+        return vm;
+    }
+
+    private VmAttachment attachJvmstat(MonitoredHost host, int pid) throws MonitorException, URISyntaxException {
+        MonitoredVm vm = host.getMonitoredVm(host.getHostIdentifier().resolve(new VmIdentifier(String.valueOf(pid))));
+        SharedMonitoredVm sharedVm = new SharedMonitoredVm(pid, vm);
+        try {
+            vm.addVmListener(sharedVm);
+        } catch (MonitorException e) {
+            vm.detach();
+            throw e;
+        }
+        logger.finer("Attached jvmstat to VM: " + pid);
+        return sharedVm;
+    }
+
+    public synchronized void detach(VmListenerWrapper wrapper) {
+        VmAttachment attachment = wrapper.getAttachment();
+        attachment.removeListener(wrapper);
+        if (attachment.hasListeners() || pidToVm.get(attachment.getPid()) != attachment) {
+            return;
+        }
+        pidToVm.remove(attachment.getPid());
+        attachment.detach();
+        logger.finer("Detached from VM: " + attachment.getPid());
+    }
+
+    private static CounterSource getConfiguredSource() {
+        String value = System.getProperty(COUNTER_SOURCE_PROPERTY);
+        if (value == null) {
+            return CounterSource.JVMSTAT;
+        }
+        try {
+            return CounterSource.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid value for " + COUNTER_SOURCE_PROPERTY + ": '" + value
+                    + "', using jvmstat");
+            return CounterSource.JVMSTAT;
+        }
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    synchronized Map<Integer, VmAttachment> getPidToVmMap() {
+        return pidToVm;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+/**
+ * Samples every registered {@link PerfDataVm} on a single background
+ * thread. The thread is started with the first VM and stopped once the
+ * last one is unregistered.
+ */
+public class PerfDataSampler {
+
+    static final String INTERVAL_PROPERTY = "com.redhat.thermostat.jvm.overview.perfdata.interval";
+    static final int DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private static final Logger logger = LoggingUtils.getLogger(PerfDataSampler.class);
+
+    private final List<PerfDataVm> vms = new CopyOnWriteArrayList<>();
+    private final long intervalMillis;
+    // Guarded by this
+    private ScheduledExecutorService executor;
+
+    public PerfDataSampler() {
+        this(getInterval());
+    }
+
+    PerfDataSampler(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public synchronized void register(PerfDataVm vm) {
+        vms.add(vm);
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new SamplerThreadFactory());
+            executor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    sampleAll();
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void unregister(PerfDataVm vm) {
+        vms.remove(vm);
+        if (vms.isEmpty() && executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    void sampleAll() {
+        for (PerfDataVm vm : vms) {
+            try {
+                vm.sample();
+            } catch (RuntimeException e) {
+                // Keep sampling the other VMs
+                logger.log(Level.FINE, "Failed to sample perfdata of VM " + vm.getPid(), e);
+            }
+        }
+    }
+
+    private static long getInterval() {
+        Integer interval = Integer.getInteger(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MILLIS);
+        if (interval <= 0) {
+            logger.warning("Invalid value for " + INTERVAL_PROPERTY + ": " + interval
+                    + ", using " + DEFAULT_INTERVAL_MILLIS);
+            return DEFAULT_INTERVAL_MILLIS;
+        }
+        return interval;
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    List<PerfDataVm> getVms() {
+        return vms;
+    }
+
+    private static class SamplerThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "thermostat-perfdata-sampler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
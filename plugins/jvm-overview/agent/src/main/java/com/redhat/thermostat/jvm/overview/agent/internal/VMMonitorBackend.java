@@ -55,17 +55,34 @@ import sun.jvmstat.monitor.HostIdentifier;
 import sun.jvmstat.monitor.MonitorException;
 import sun.jvmstat.monitor.MonitoredHost;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Discovers JVMs on this host. By default, jvmstat polls the hsperfdata
+ * directories; setting the system property {@value #DISCOVERY_PROPERTY} to
+ * {@code watch} uses a {@link HsperfdataWatcher} instead.
  */
 @Component
 @Service(value = Backend.class)
 public class VMMonitorBackend extends BaseBackend {
     private static final Logger logger = LoggingUtils.getLogger(VMMonitorBackend.class);
 
+    static final String DISCOVERY_PROPERTY = "com.redhat.thermostat.jvm.overview.discovery";
+    private static final String DISCOVERY_WATCH = "watch";
+    private static final String DISCOVERY_JVMSTAT = "jvmstat";
+    // Bounds the threads and queued tasks used to build VmInfos in watch mode
+    private static final int VM_INFO_THREADS = 2;
+    private static final int VM_INFO_QUEUE_SIZE = 1024;
+
     @Reference
     private VmInfoDAO vmInfoDAO;
 
@@ -81,6 +98,8 @@ public class VMMonitorBackend extends BaseBackend {
 
     private MonitoredHost host;
     private JvmStatHostListener hostListener;
+    private HsperfdataWatcher watcher;
+    private ExecutorService vmInfoExecutor;
 
     public VMMonitorBackend() {
         super("VM Basic Monitor Backend",
@@ -104,10 +123,14 @@ public class VMMonitorBackend extends BaseBackend {
     public synchronized boolean activate() {
         try {
             ProcessUserInfoBuilder userInfoBuilder = ProcessUserInfoBuilderFactory.createBuilder();
-            hostListener = new JvmStatHostListener(vmInfoDAO, notifier,
-                                                   userInfoBuilder, writerId, blacklist);
             HostIdentifier hostId = new HostIdentifier((String) null);
             host = MonitoredHost.getMonitoredHost(hostId);
+            if (useWatcher() && startWatcher(userInfoBuilder)) {
+                active = true;
+                return active;
+            }
+            hostListener = new JvmStatHostListener(vmInfoDAO, notifier,
+                                                   userInfoBuilder, writerId, blacklist);
             host.addHostListener(hostListener);
             active = true;
 
@@ -118,8 +141,48 @@ public class VMMonitorBackend extends BaseBackend {
         return active;
     }
 
+    private boolean startWatcher(ProcessUserInfoBuilder userInfoBuilder) {
+        vmInfoExecutor = new ThreadPoolExecutor(VM_INFO_THREADS, VM_INFO_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(VM_INFO_QUEUE_SIZE), new VmInfoThreadFactory(),
+                // Slow down discovery rather than drop VmInfos
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        hostListener = new JvmStatHostListener(vmInfoDAO, notifier, userInfoBuilder,
+                                               writerId, blacklist, host, vmInfoExecutor);
+        watcher = new HsperfdataWatcher(hostListener);
+        try {
+            watcher.start();
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "unable to watch hsperfdata directories, using jvmstat", e);
+            vmInfoExecutor.shutdown();
+            vmInfoExecutor = null;
+            watcher = null;
+            return false;
+        }
+    }
+
+    private static boolean useWatcher() {
+        String value = System.getProperty(DISCOVERY_PROPERTY, DISCOVERY_JVMSTAT).trim();
+        if (DISCOVERY_WATCH.equalsIgnoreCase(value)) {
+            return true;
+        }
+        if (!DISCOVERY_JVMSTAT.equalsIgnoreCase(value)) {
+            logger.warning("Invalid value for " + DISCOVERY_PROPERTY + ": '" + value + "', using jvmstat");
+        }
+        return false;
+    }
+
     @Override
     public synchronized boolean deactivate() {
+        if (watcher != null) {
+            watcher.stop();
+            // Let pending VmInfo writes finish
+            vmInfoExecutor.shutdown();
+            watcher = null;
+            vmInfoExecutor = null;
+            active = false;
+            return !active;
+        }
         try {
             host.removeHostListener(hostListener);
             active = false;
@@ -139,4 +202,16 @@ public class VMMonitorBackend extends BaseBackend {
     public int getOrderValue() {
         return ORDER_DEFAULT_GROUP;
     }
+
+    private static class VmInfoThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "thermostat-vm-info-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
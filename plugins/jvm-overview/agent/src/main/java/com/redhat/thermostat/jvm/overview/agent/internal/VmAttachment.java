@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
+
+/**
+ * A single attachment to the performance counters of one pid, shared by
+ * every {@link VmListenerWrapper} interested in that VM. Subclasses sample
+ * the VM once per interval and call {@link #dispatchUpdate()}, which fans
+ * the resulting {@link VmUpdateImpl} snapshot out to all registered wrappers.
+ */
+public abstract class VmAttachment {
+
+    private final int pid;
+    private final List<VmListenerWrapper> listeners = new CopyOnWriteArrayList<>();
+    // Reset and reused for every interval, so dispatching does not allocate
+    private final VmUpdateImpl update = new VmUpdateImpl(this);
+
+    protected VmAttachment(int pid) {
+        this.pid = pid;
+    }
+
+    public int getPid() {
+        return pid;
+    }
+
+    void addListener(VmListenerWrapper listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(VmListenerWrapper listener) {
+        listeners.remove(listener);
+    }
+
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    protected void dispatchUpdate() {
+        // One snapshot per interval, regardless of how many listeners read it
+        update.reset();
+        for (VmListenerWrapper listener : listeners) {
+            listener.countersUpdated(update);
+        }
+    }
+
+    /**
+     * @return a handle to the named counter, or null if the VM has no
+     * such counter
+     */
+    public abstract PerformanceCounter getPerformanceCounter(String name) throws VmUpdateException;
+
+    /**
+     * Stops sampling and releases the underlying attachment.
+     */
+    public abstract void detach();
+
+    /*
+     * For testing purposes only.
+     */
+    List<VmListenerWrapper> getListeners() {
+        return listeners;
+    }
+
+}
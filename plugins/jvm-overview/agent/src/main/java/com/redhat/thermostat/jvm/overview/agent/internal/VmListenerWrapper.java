@@ -42,37 +42,29 @@ import java.util.logging.Logger;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
-import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
-import sun.jvmstat.monitor.Monitor;
-import sun.jvmstat.monitor.MonitorException;
-import sun.jvmstat.monitor.MonitoredVm;
-import sun.jvmstat.monitor.event.MonitorStatusChangeEvent;
-import sun.jvmstat.monitor.event.VmEvent;
-import sun.jvmstat.monitor.event.VmListener;
 
-public class VmListenerWrapper implements VmListener {
+/**
+ * Delivers the per-interval {@link VmUpdate} of a {@link VmAttachment}
+ * to a single {@link VmUpdateListener}, isolating the other listeners of
+ * the same VM from a misbehaving one.
+ */
+public class VmListenerWrapper {
     
     private static final Logger logger = LoggingUtils.getLogger(VmListenerWrapper.class);
     // Threshold until this listener gets removed from the JVM in case of it throwing
     // exceptions on countersUpdated()
     private static final int EXCEPTION_THRESHOLD = 10;
     private final VmUpdateListener listener;
-    private final MonitoredVm vm;
-    private final VmUpdate update;
+    private final VmAttachment attachment;
     private int exceptionCount;
 
-    public VmListenerWrapper(VmUpdateListener listener, MonitoredVm vm) {
+    public VmListenerWrapper(VmUpdateListener listener, VmAttachment attachment) {
         this.listener = listener;
-        this.vm = vm;
-        this.update = new VmUpdateImpl(this);
+        this.attachment = attachment;
     }
 
-    @Override
-    public void monitorsUpdated(VmEvent event) {
-        if (!vm.equals(event.getMonitoredVm())) {
-            throw new AssertionError("Received change event for wrong VM");
-        }
+    void countersUpdated(VmUpdate update) {
         try {
             listener.countersUpdated(update);
         } catch (Throwable t) {
@@ -87,32 +79,14 @@ public class VmListenerWrapper implements VmListener {
             exceptionCount++;
         } else {
             logger.fine("Removing bad listener " + listenerName + " due to too many repeated exceptions.");
-            try {
-                vm.removeVmListener(this);
-            } catch (MonitorException e) {
-                // ignore remove failures for bad listeners
-            }
+            // The attachment itself is released when the owning monitor
+            // detaches this wrapper.
+            attachment.removeListener(this);
         }
     }
 
-    @Override
-    public void monitorStatusChanged(MonitorStatusChangeEvent event) {
-        // Nothing to do here
-    }
-
-    @Override
-    public void disconnected(VmEvent event) {
-        // Nothing to do here
-    }
-    
-    public Monitor getMonitor(String name) throws VmUpdateException {
-        Monitor result;
-        try {
-            result = vm.findByName(name);
-        } catch (MonitorException e) {
-            throw new VmUpdateException("Error communicating with monitored VM", e);
-        }
-        return result;
+    public VmAttachment getAttachment() {
+        return attachment;
     }
     
     /*
@@ -123,4 +97,3 @@ public class VmListenerWrapper implements VmListener {
     }
     
 }
-
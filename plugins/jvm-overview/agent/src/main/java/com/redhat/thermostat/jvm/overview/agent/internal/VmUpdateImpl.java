@@ -36,44 +36,83 @@
 
 package com.redhat.thermostat.jvm.overview.agent.internal;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
-import sun.jvmstat.monitor.Monitor;
 
+/**
+ * The counters of one VM for a single sampling interval. Each counter is
+ * read from the VM at most once per interval through
+ * {@link #getPerformanceCounterLong(String)} and
+ * {@link #getPerformanceCounterString(String)}, so all listeners sharing
+ * this update observe the same values.
+ */
 public class VmUpdateImpl implements VmUpdate {
     
-    private VmListenerWrapper wrapper;
+    private static final Object NO_VALUE = new Object();
 
-    public VmUpdateImpl(VmListenerWrapper wrapper) {
-        this.wrapper = wrapper;
+    private final VmAttachment attachment;
+    private Map<String, Object> values;
+
+    public VmUpdateImpl(VmAttachment attachment) {
+        this.attachment = attachment;
     }
     
     @Override
     public Long getPerformanceCounterLong(String name) throws VmUpdateException {
-        return (Long) getPerformanceCounter(name);
+        Object result = getCachedValue(name);
+        if (result == null) {
+            PerformanceCounter counter = attachment.getPerformanceCounter(name);
+            result = counter == null ? NO_VALUE : Long.valueOf(counter.longValue());
+            values.put(name, result);
+        }
+        return result == NO_VALUE ? null : (Long) result;
     }
 
     @Override
     public String getPerformanceCounterString(String name)
             throws VmUpdateException {
-        return (String) getPerformanceCounter(name);
+        Object result = getCachedValue(name);
+        if (result == null) {
+            PerformanceCounter counter = attachment.getPerformanceCounter(name);
+            result = counter == null ? null : counter.stringValue();
+            if (result == null) {
+                result = NO_VALUE;
+            }
+            values.put(name, result);
+        }
+        return result == NO_VALUE ? null : (String) result;
+    }
+
+    @Override
+    public PerformanceCounter getPerformanceCounter(String name) throws VmUpdateException {
+        return attachment.getPerformanceCounter(name);
     }
 
-    private Object getPerformanceCounter(String name) throws VmUpdateException {
-        Object result = null;
-        Monitor monitor = wrapper.getMonitor(name);
-        if (monitor != null) {
-            result = monitor.getValue();
+    /*
+     * Starts a new sampling interval.
+     */
+    void reset() {
+        if (values != null) {
+            values.clear();
         }
-        return result;
+    }
+
+    private Object getCachedValue(String name) {
+        if (values == null) {
+            values = new HashMap<>();
+        }
+        return values.get(name);
     }
 
     /*
      * For testing purposes only.
      */
-    VmListenerWrapper getWrapper() {
-        return wrapper;
+    VmAttachment getAttachment() {
+        return attachment;
     }
 
 }
-
@@ -51,7 +51,9 @@ import java.util.logging.Logger;
 import com.redhat.thermostat.jvm.overview.agent.internal.model.VmInfoTypeAdapter.VmInfoUpdateTypeAdapter;
 import com.redhat.thermostat.jvm.overview.agent.model.VmId;
 import com.redhat.thermostat.jvm.overview.agent.model.VmInfo;
+import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpContentResponse;
@@ -76,18 +78,25 @@ public class VmInfoDAOImpl implements VmInfoDAO {
     private static final String GATEWAY_PATH_JVM_SUFFIX = "/jvms/";
     private static final String CONTENT_TYPE = "application/json";
     
-    private final HttpHelper httpHelper;
     private final JsonHelper jsonHelper;
+    private HttpHelper httpHelper;
 
-    public VmInfoDAOImpl() throws Exception {
-        this(new HttpHelper(new HttpClient()), new JsonHelper(new VmInfoTypeAdapter(), new VmInfoUpdateTypeAdapter()));
+    @Reference
+    private HttpClient httpClient;
+
+    public VmInfoDAOImpl() {
+        this(null, new JsonHelper(new VmInfoTypeAdapter(), new VmInfoUpdateTypeAdapter()));
     }
 
-    VmInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) throws Exception {
+    VmInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) {
         this.jsonHelper = jsonHelper;
         this.httpHelper = httpHelper;
-        
-        this.httpHelper.startClient();
+    }
+
+    @Activate
+    void activate() {
+        // The shared client is started and owned by agent core
+        this.httpHelper = new HttpHelper(httpClient);
     }
 
     @Override
@@ -208,10 +217,6 @@ public class VmInfoDAOImpl implements VmInfoDAO {
             this.httpClient = httpClient;
         }
         
-        void startClient() throws Exception {
-            httpClient.start();
-        }
-        
         StringContentProvider createContentProvider(String content) {
             return new StringContentProvider(content);
         }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.perfdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses the PerfData (hsperfdata) format written by HotSpot directly from
+ * a {@link ByteBuffer}, typically a read-only mapping of the hsperfdata
+ * file of a VM. The directory of counter entries is walked once; new
+ * entries, which HotSpot only ever appends, are picked up on demand.
+ * Counter values are then read with absolute gets and never copied.
+ */
+public class PerfDataBuffer {
+
+    static final int MAGIC = 0xcafec0c0;
+    static final int SUPPORTED_MAJOR_VERSION = 2;
+
+    // PerfDataPrologue
+    static final int PROLOGUE_MAGIC = 0;
+    static final int PROLOGUE_BYTE_ORDER = 4;
+    static final int PROLOGUE_MAJOR_VERSION = 5;
+    static final int PROLOGUE_MINOR_VERSION = 6;
+    static final int PROLOGUE_ACCESSIBLE = 7;
+    static final int PROLOGUE_USED = 8;
+    static final int PROLOGUE_OVERFLOW = 12;
+    static final int PROLOGUE_MOD_TIME_STAMP = 16;
+    static final int PROLOGUE_ENTRY_OFFSET = 24;
+    static final int PROLOGUE_NUM_ENTRIES = 28;
+    static final int PROLOGUE_SIZE = 32;
+
+    // PerfDataEntry
+    static final int ENTRY_LENGTH = 0;
+    static final int ENTRY_NAME_OFFSET = 4;
+    static final int ENTRY_VECTOR_LENGTH = 8;
+    static final int ENTRY_DATA_TYPE = 12;
+    static final int ENTRY_FLAGS = 13;
+    static final int ENTRY_DATA_UNITS = 14;
+    static final int ENTRY_DATA_VARIABILITY = 15;
+    static final int ENTRY_DATA_OFFSET = 16;
+    static final int ENTRY_HEADER_SIZE = 20;
+
+    static final byte BYTE_ORDER_BIG_ENDIAN = 0;
+    static final byte BYTE_ORDER_LITTLE_ENDIAN = 1;
+
+    static final byte TYPE_LONG = 'J';
+    static final byte TYPE_BYTE = 'B';
+    static final byte UNITS_STRING = 5;
+    static final byte VARIABILITY_CONSTANT = 1;
+
+    private static final Charset NAME_CHARSET = Charset.forName("US-ASCII");
+
+    private final ByteBuffer buffer;
+    // Guarded by this
+    private final Map<String, PerfDataCounter> counters = new HashMap<>();
+    private int parsedEntries;
+    private int nextEntryOffset;
+
+    public PerfDataBuffer(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < PROLOGUE_SIZE) {
+            throw new IOException("PerfData buffer too small: " + buffer.capacity());
+        }
+        int magic = buffer.duplicate().order(ByteOrder.BIG_ENDIAN).getInt(PROLOGUE_MAGIC);
+        if (magic != MAGIC) {
+            throw new IOException("Not a PerfData buffer, magic: " + Integer.toHexString(magic));
+        }
+        byte majorVersion = buffer.get(PROLOGUE_MAJOR_VERSION);
+        if (majorVersion != SUPPORTED_MAJOR_VERSION) {
+            throw new IOException("Unsupported PerfData version: " + majorVersion);
+        }
+        ByteOrder order;
+        byte byteOrder = buffer.get(PROLOGUE_BYTE_ORDER);
+        if (byteOrder == BYTE_ORDER_BIG_ENDIAN) {
+            order = ByteOrder.BIG_ENDIAN;
+        } else if (byteOrder == BYTE_ORDER_LITTLE_ENDIAN) {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else {
+            throw new IOException("Invalid PerfData byte order: " + byteOrder);
+        }
+        this.buffer = buffer.duplicate().order(order);
+    }
+
+    /**
+     * @return the named counter, or null if the VM has not (yet) created it
+     */
+    public synchronized PerfDataCounter findCounter(String name) {
+        PerfDataCounter counter = counters.get(name);
+        if (counter == null && refresh()) {
+            counter = counters.get(name);
+        }
+        return counter;
+    }
+
+    /**
+     * @return the value of the PerfData "accessible" flag. The VM sets it
+     * once the buffer has been initialized.
+     */
+    public boolean isAccessible() {
+        return buffer.get(PROLOGUE_ACCESSIBLE) != 0;
+    }
+
+    /**
+     * Parses the entries appended since the last call.
+     *
+     * @return true if new counters were found
+     */
+    synchronized boolean refresh() {
+        if (!isAccessible()) {
+            return false;
+        }
+        int numEntries = buffer.getInt(PROLOGUE_NUM_ENTRIES);
+        int used = Math.min(buffer.getInt(PROLOGUE_USED), buffer.capacity());
+        if (parsedEntries == 0) {
+            nextEntryOffset = buffer.getInt(PROLOGUE_ENTRY_OFFSET);
+        }
+        int found = 0;
+        while (parsedEntries < numEntries) {
+            int start = nextEntryOffset;
+            if (start < PROLOGUE_SIZE || start + ENTRY_HEADER_SIZE > used) {
+                break;
+            }
+            int entryLength = buffer.getInt(start + ENTRY_LENGTH);
+            if (entryLength < ENTRY_HEADER_SIZE || start + entryLength > used) {
+                // Entry is still being written, try again next time
+                break;
+            }
+            PerfDataCounter counter = parseEntry(start);
+            if (counter != null) {
+                counters.put(counter.getName(), counter);
+                found++;
+            }
+            parsedEntries++;
+            nextEntryOffset = start + entryLength;
+        }
+        return found > 0;
+    }
+
+    private PerfDataCounter parseEntry(int start) {
+        int nameStart = start + buffer.getInt(start + ENTRY_NAME_OFFSET);
+        int vectorLength = buffer.getInt(start + ENTRY_VECTOR_LENGTH);
+        byte type = buffer.get(start + ENTRY_DATA_TYPE);
+        byte units = buffer.get(start + ENTRY_DATA_UNITS);
+        byte variability = buffer.get(start + ENTRY_DATA_VARIABILITY);
+        int dataOffset = start + buffer.getInt(start + ENTRY_DATA_OFFSET);
+        String name = readName(nameStart, dataOffset);
+        if (type == TYPE_LONG && vectorLength == 0) {
+            return new PerfDataCounter(name, buffer, dataOffset, PerfDataCounter.Kind.LONG, 0, false);
+        } else if (type == TYPE_BYTE && vectorLength > 0 && units == UNITS_STRING) {
+            return new PerfDataCounter(name, buffer, dataOffset, PerfDataCounter.Kind.STRING,
+                    vectorLength, variability == VARIABILITY_CONSTANT);
+        }
+        // Other vector types are not exposed through VmUpdate
+        return null;
+    }
+
+    private String readName(int nameStart, int limit) {
+        int end = nameStart;
+        while (end < limit && buffer.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - nameStart];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(nameStart + i);
+        }
+        return new String(bytes, NAME_CHARSET);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.perfdata;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
+
+/**
+ * A single counter of a {@link PerfDataBuffer}. Reads go straight to the
+ * underlying buffer, so each call observes the current value.
+ */
+public class PerfDataCounter implements PerformanceCounter {
+
+    enum Kind {
+        LONG,
+        STRING,
+    }
+
+    private static final Charset STRING_CHARSET = Charset.forName("UTF-8");
+
+    private final String name;
+    private final ByteBuffer buffer;
+    private final int dataOffset;
+    private final Kind kind;
+    private final int vectorLength;
+    private final boolean constant;
+    private volatile String constantValue;
+
+    PerfDataCounter(String name, ByteBuffer buffer, int dataOffset, Kind kind, int vectorLength, boolean constant) {
+        this.name = name;
+        this.buffer = buffer;
+        this.dataOffset = dataOffset;
+        this.kind = kind;
+        this.vectorLength = vectorLength;
+        this.constant = constant;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long longValue() {
+        if (kind != Kind.LONG) {
+            throw new ClassCastException("Counter " + name + " is not a long counter");
+        }
+        return buffer.getLong(dataOffset);
+    }
+
+    @Override
+    public String stringValue() {
+        if (kind != Kind.STRING) {
+            throw new ClassCastException("Counter " + name + " is not a string counter");
+        }
+        String result = constantValue;
+        if (result == null) {
+            result = readString();
+            if (constant) {
+                constantValue = result;
+            }
+        }
+        return result;
+    }
+
+    private String readString() {
+        int length = 0;
+        while (length < vectorLength && buffer.get(dataOffset + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(dataOffset + i);
+        }
+        return new String(bytes, STRING_CHARSET);
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.perfdata;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Finds and maps the hsperfdata file of a local VM. HotSpot writes it to
+ * {@code <tmpdir>/hsperfdata_<user>/<pid>}; since the owner of the VM is
+ * not known up front, every hsperfdata directory is searched.
+ */
+public class PerfDataLocator {
+
+    public static final String HSPERFDATA_PREFIX = "hsperfdata_";
+
+    private final File tmpDir;
+
+    public PerfDataLocator() {
+        this(new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    PerfDataLocator(File tmpDir) {
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * @return the hsperfdata file of the VM, or null if there is none
+     */
+    public File locate(int pid) {
+        File[] dirs = tmpDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() && file.getName().startsWith(HSPERFDATA_PREFIX);
+            }
+        });
+        if (dirs == null) {
+            return null;
+        }
+        String fileName = String.valueOf(pid);
+        for (File dir : dirs) {
+            File candidate = new File(dir, fileName);
+            if (candidate.isFile() && candidate.canRead()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps the hsperfdata file of the VM read-only. The mapping stays valid
+     * after the file has been closed and is released once the returned
+     * buffer becomes unreachable.
+     *
+     * @throws IOException if the VM has no readable hsperfdata file, or
+     * the file is not a valid PerfData buffer
+     */
+    public PerfDataBuffer open(int pid) throws IOException {
+        File file = locate(pid);
+        if (file == null) {
+            throw new IOException("No hsperfdata file found for pid " + pid);
+        }
+        return map(file);
+    }
+
+    public static PerfDataBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PerfDataBuffer(mapped);
+        }
+    }
+
+}
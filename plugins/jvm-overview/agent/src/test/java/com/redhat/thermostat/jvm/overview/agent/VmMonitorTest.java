@@ -43,6 +43,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -51,6 +52,8 @@ import java.net.URISyntaxException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.redhat.thermostat.jvm.overview.agent.internal.MonitoredVmRegistry;
+import com.redhat.thermostat.jvm.overview.agent.internal.SharedMonitoredVm;
 import com.redhat.thermostat.jvm.overview.agent.internal.TestLogHandler;
 import com.redhat.thermostat.jvm.overview.agent.internal.VmListenerWrapper;
 import org.junit.After;
@@ -74,6 +77,7 @@ public class VmMonitorTest {
     private static final String PROCESS_NOT_FOUND = "Process not found";
     private static final int MONITOR_EXCEPTION_THROWING_PID = 999;
     private VmMonitor monitor;
+    private MonitoredVmRegistry registry;
     private HostIdentifier hostIdentifier;
     private MonitoredHost host;
     private MonitoredVm monitoredVm;
@@ -110,8 +114,10 @@ public class VmMonitorTest {
 
         monitoredVm = mock(MonitoredVm.class);
 
+        registry = new MonitoredVmRegistry();
         monitor = new VmMonitor(checker);
         monitor.setHost(host);
+        monitor.setRegistry(registry);
     }
     
     private Level setupTestLoggerAndReturnOriginalLevel() {
@@ -132,15 +138,44 @@ public class VmMonitorTest {
         VmUpdateListener listener = mock(VmUpdateListener.class);
         monitor.handleNewVm(listener, VM_PID);
         
-        // Check listener registered
-        ArgumentCaptor<VmListenerWrapper> captor = ArgumentCaptor.forClass(VmListenerWrapper.class);
+        // Check shared listener registered
+        ArgumentCaptor<SharedMonitoredVm> captor = ArgumentCaptor.forClass(SharedMonitoredVm.class);
         verify(monitoredVm).addVmListener(captor.capture());
-        VmListenerWrapper wrapper = captor.getValue();
-        assertEquals(listener, wrapper.getVmUpdateListener());
+        SharedMonitoredVm sharedVm = captor.getValue();
+        assertEquals(monitoredVm, sharedVm.getMonitoredVm());
         
         // Check pid map
         assertTrue(monitor.getPidToDataMap().containsKey(VM_PID));
-        assertEquals(wrapper, monitor.getPidToDataMap().get(VM_PID).getSecond());
+        VmListenerWrapper wrapper = monitor.getPidToDataMap().get(VM_PID);
+        assertEquals(listener, wrapper.getVmUpdateListener());
+        assertEquals(sharedVm, wrapper.getAttachment());
+    }
+
+    @Test
+    public void testNewVMAttachesOnceForAllMonitors() throws Exception {
+        final int VM_PID = 1;
+        VmIdentifier VM_ID = new VmIdentifier(String.valueOf(VM_PID));
+        when(host.getMonitoredVm(VM_ID)).thenReturn(monitoredVm);
+
+        VmMonitor otherMonitor = new VmMonitor(checker);
+        otherMonitor.setHost(host);
+        otherMonitor.setRegistry(registry);
+
+        monitor.handleNewVm(mock(VmUpdateListener.class), VM_PID);
+        otherMonitor.handleNewVm(mock(VmUpdateListener.class), VM_PID);
+
+        verify(host, times(1)).getMonitoredVm(VM_ID);
+        verify(monitoredVm, times(1)).addVmListener(isA(SharedMonitoredVm.class));
+        assertEquals(monitor.getPidToDataMap().get(VM_PID).getAttachment(),
+                otherMonitor.getPidToDataMap().get(VM_PID).getAttachment());
+
+        // Still in use by the other monitor
+        monitor.handleStoppedVm(VM_PID);
+        verify(monitoredVm, times(0)).detach();
+
+        otherMonitor.handleStoppedVm(VM_PID);
+        verify(monitoredVm).removeVmListener(isA(SharedMonitoredVm.class));
+        verify(monitoredVm).detach();
     }
     
     /*
@@ -215,10 +250,10 @@ public class VmMonitorTest {
         monitor.handleStoppedVm(VM_PID);
 
         // Check listener unregistered
-        ArgumentCaptor<VmListenerWrapper> captor = ArgumentCaptor.forClass(VmListenerWrapper.class);
+        ArgumentCaptor<SharedMonitoredVm> captor = ArgumentCaptor.forClass(SharedMonitoredVm.class);
         verify(monitoredVm).removeVmListener(captor.capture());
-        VmListenerWrapper wrapper = captor.getValue();
-        assertEquals(listener, wrapper.getVmUpdateListener());
+        assertEquals(monitoredVm, captor.getValue().getMonitoredVm());
+        verify(monitoredVm).detach();
         
         assertFalse(monitor.getPidToDataMap().containsKey(VM_PID));
     }
@@ -269,15 +304,15 @@ public class VmMonitorTest {
         
         monitor.removeVmListeners();
         
-        ArgumentCaptor<VmListenerWrapper> captor1 = ArgumentCaptor.forClass(VmListenerWrapper.class);
+        ArgumentCaptor<SharedMonitoredVm> captor1 = ArgumentCaptor.forClass(SharedMonitoredVm.class);
         verify(monitoredVm).removeVmListener(captor1.capture());
-        VmListenerWrapper wrapper1 = captor1.getValue();
-        assertEquals(listener1, wrapper1.getVmUpdateListener());
+        assertEquals(monitoredVm, captor1.getValue().getMonitoredVm());
+        verify(monitoredVm).detach();
         
-        ArgumentCaptor<VmListenerWrapper> captor2 = ArgumentCaptor.forClass(VmListenerWrapper.class);
+        ArgumentCaptor<SharedMonitoredVm> captor2 = ArgumentCaptor.forClass(SharedMonitoredVm.class);
         verify(monitoredVm2).removeVmListener(captor2.capture());
-        VmListenerWrapper wrapper2 = captor2.getValue();
-        assertEquals(listener2, wrapper2.getVmUpdateListener());
+        assertEquals(monitoredVm2, captor2.getValue().getMonitoredVm());
+        verify(monitoredVm2).detach();
         
         assertEquals(0, monitor.getPidToDataMap().size());
     }
@@ -39,43 +39,55 @@ package com.redhat.thermostat.jvm.overview.agent;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
-import com.redhat.thermostat.jvm.overview.agent.internal.VmListenerWrapper;
+import com.redhat.thermostat.jvm.overview.agent.internal.VmAttachment;
 import com.redhat.thermostat.jvm.overview.agent.internal.VmUpdateImpl;
 import org.junit.Before;
 import org.junit.Test;
 
-import sun.jvmstat.monitor.Monitor;
-
 public class VmUpdateImplTest {
 
     private VmUpdateImpl update;
-    private VmListenerWrapper wrapper;
+    private VmAttachment attachment;
 
     @Before
     public void setUp() throws Exception {
-        wrapper = mock(VmListenerWrapper.class);
-        update = new VmUpdateImpl(wrapper);
+        attachment = mock(VmAttachment.class);
+        update = new VmUpdateImpl(attachment);
     }
 
     @Test
     public void testGetPerformanceCounterLong() throws VmUpdateException {
         final String counter = "myCounter";
         final Long value = 9001L;
-        Monitor monitor = mock(Monitor.class);
-        when(monitor.getValue()).thenReturn(value);
-        when(wrapper.getMonitor(counter)).thenReturn(monitor);
+        PerformanceCounter handle = mock(PerformanceCounter.class);
+        when(handle.longValue()).thenReturn(value);
+        when(attachment.getPerformanceCounter(counter)).thenReturn(handle);
         
         Long result = update.getPerformanceCounterLong(counter);
         assertEquals(value, result);
     }
+
+    @Test
+    public void testGetPerformanceCounterReadOncePerUpdate() throws VmUpdateException {
+        final String counter = "myCounter";
+        PerformanceCounter handle = mock(PerformanceCounter.class);
+        when(handle.longValue()).thenReturn(9001L);
+        when(attachment.getPerformanceCounter(counter)).thenReturn(handle);
+
+        update.getPerformanceCounterLong(counter);
+        when(handle.longValue()).thenReturn(9002L);
+
+        // Listeners sharing this update see the same snapshot value
+        assertEquals(Long.valueOf(9001L), update.getPerformanceCounterLong(counter));
+        verify(attachment, times(1)).getPerformanceCounter(counter);
+    }
     
     @Test(expected=ClassCastException.class)
     public void testGetPerformanceCounterLongBadType() throws VmUpdateException {
         final String counter = "myCounter";
-        final String value = "myValue";
-        Monitor monitor = mock(Monitor.class);
-        when(monitor.getValue()).thenReturn(value);
-        when(wrapper.getMonitor(counter)).thenReturn(monitor);
+        PerformanceCounter handle = mock(PerformanceCounter.class);
+        when(handle.longValue()).thenThrow(new ClassCastException());
+        when(attachment.getPerformanceCounter(counter)).thenReturn(handle);
         
         update.getPerformanceCounterLong(counter);
     }
@@ -83,7 +95,7 @@ public class VmUpdateImplTest {
     @Test
     public void testGetPerformanceCounterLongNoCounter() throws VmUpdateException {
         final String counter = "myCounter";
-        when(wrapper.getMonitor(counter)).thenReturn(null);
+        when(attachment.getPerformanceCounter(counter)).thenReturn(null);
         
         Long result = update.getPerformanceCounterLong(counter);
         assertNull(result);
@@ -93,9 +105,9 @@ public class VmUpdateImplTest {
     public void testGetPerformanceCounterString() throws VmUpdateException {
         final String counter = "myCounter";
         final String value = "myValue";
-        Monitor monitor = mock(Monitor.class);
-        when(monitor.getValue()).thenReturn(value);
-        when(wrapper.getMonitor(counter)).thenReturn(monitor);
+        PerformanceCounter handle = mock(PerformanceCounter.class);
+        when(handle.stringValue()).thenReturn(value);
+        when(attachment.getPerformanceCounter(counter)).thenReturn(handle);
         
         String result = update.getPerformanceCounterString(counter);
         assertEquals(value, result);
@@ -104,10 +116,9 @@ public class VmUpdateImplTest {
     @Test(expected=ClassCastException.class)
     public void testGetPerformanceCounterStringBadType() throws VmUpdateException {
         final String counter = "myCounter";
-        final Long value = 9001L;
-        Monitor monitor = mock(Monitor.class);
-        when(monitor.getValue()).thenReturn(value);
-        when(wrapper.getMonitor(counter)).thenReturn(monitor);
+        PerformanceCounter handle = mock(PerformanceCounter.class);
+        when(handle.stringValue()).thenThrow(new ClassCastException());
+        when(attachment.getPerformanceCounter(counter)).thenReturn(handle);
         
         update.getPerformanceCounterString(counter);
     }
@@ -115,11 +126,19 @@ public class VmUpdateImplTest {
     @Test
     public void testGetPerformanceCounterStringNoCounter() throws VmUpdateException {
         final String counter = "myCounter";
-        when(wrapper.getMonitor(counter)).thenReturn(null);
+        when(attachment.getPerformanceCounter(counter)).thenReturn(null);
         
         String result = update.getPerformanceCounterString(counter);
         assertNull(result);
     }
 
-}
+    @Test
+    public void testGetPerformanceCounter() throws VmUpdateException {
+        final String counter = "myCounter";
+        PerformanceCounter handle = mock(PerformanceCounter.class);
+        when(attachment.getPerformanceCounter(counter)).thenReturn(handle);
+
+        assertEquals(handle, update.getPerformanceCounter(counter));
+    }
 
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.common.portability.ProcessChecker;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuffer;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuilder;
+import com.redhat.thermostat.testutils.TestUtils;
+
+public class HsperfdataWatcherTest {
+
+    private File tmpDir;
+    private File userDir;
+    private HsperfdataWatcher.Listener listener;
+    private ProcessChecker processChecker;
+    private HsperfdataWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("hsperfdata-watcher").toFile();
+        userDir = new File(tmpDir, "hsperfdata_someone");
+        assertTrue(userDir.mkdir());
+        listener = mock(HsperfdataWatcher.Listener.class);
+        processChecker = mock(ProcessChecker.class);
+        when(processChecker.exists(anyInt())).thenReturn(true);
+        watcher = new HsperfdataWatcher(tmpDir, listener, processChecker);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.deleteRecursively(tmpDir);
+    }
+
+    @Test
+    public void testExistingVmsFound() throws IOException {
+        writePerfData(new File(userDir, "1234"), true);
+        assertTrue(new File(tmpDir, "unrelated").mkdir());
+
+        watcher.directoryCreated(userDir.toPath());
+        watcher.directoryCreated(new File(tmpDir, "unrelated").toPath());
+        watcher.checkPending(System.currentTimeMillis());
+
+        verify(listener).vmStarted(eq(1234), any(PerfDataBuffer.class));
+        assertTrue(watcher.getActiveVms().containsKey(1234));
+    }
+
+    @Test
+    public void testPendingUntilAccessible() throws IOException {
+        File file = new File(userDir, "1234");
+        assertTrue(file.createNewFile());
+        watcher.fileCreated(file);
+
+        // Not written yet
+        watcher.checkPending(System.currentTimeMillis());
+        writePerfData(file, false);
+        watcher.checkPending(System.currentTimeMillis());
+        verify(listener, never()).vmStarted(anyInt(), any(PerfDataBuffer.class));
+        assertTrue(watcher.isPending(1234));
+
+        writePerfData(file, true);
+        watcher.checkPending(System.currentTimeMillis());
+
+        verify(listener).vmStarted(eq(1234), any(PerfDataBuffer.class));
+        assertFalse(watcher.isPending(1234));
+    }
+
+    @Test
+    public void testPendingKeptWhileProcessAlive() throws IOException {
+        File file = new File(userDir, "1234");
+        writePerfData(file, false);
+        watcher.fileCreated(file);
+
+        long late = System.currentTimeMillis() + HsperfdataWatcher.PENDING_BACKOFF_MILLIS + 1;
+        watcher.checkPending(late);
+        assertTrue(watcher.isPending(1234));
+
+        // Slow VMs are only re-checked at the sweep interval
+        writePerfData(file, true);
+        watcher.checkPending(late + 1);
+        verify(listener, never()).vmStarted(anyInt(), any(PerfDataBuffer.class));
+
+        watcher.checkPending(late + HsperfdataWatcher.SWEEP_INTERVAL_MILLIS);
+        verify(listener).vmStarted(eq(1234), any(PerfDataBuffer.class));
+        assertFalse(watcher.isPending(1234));
+    }
+
+    @Test
+    public void testPendingDroppedWhenProcessExits() throws IOException {
+        File file = new File(userDir, "1234");
+        writePerfData(file, false);
+        watcher.fileCreated(file);
+        watcher.checkPending(System.currentTimeMillis());
+        assertTrue(watcher.isPending(1234));
+
+        when(processChecker.exists(1234)).thenReturn(false);
+        watcher.checkPending(System.currentTimeMillis());
+
+        assertFalse(watcher.isPending(1234));
+        verify(listener, never()).vmStarted(anyInt(), any(PerfDataBuffer.class));
+    }
+
+    @Test
+    public void testStaleFileIgnored() throws IOException {
+        File file = new File(userDir, "1234");
+        writePerfData(file, true);
+        when(processChecker.exists(1234)).thenReturn(false);
+        watcher.fileCreated(file);
+
+        watcher.checkPending(System.currentTimeMillis());
+
+        assertFalse(watcher.isPending(1234));
+        verify(listener, never()).vmStarted(anyInt(), any(PerfDataBuffer.class));
+    }
+
+    @Test
+    public void testNonPidFileIgnored() throws IOException {
+        File file = new File(userDir, "1234.tmp");
+        writePerfData(file, true);
+        watcher.fileCreated(file);
+
+        watcher.checkPending(System.currentTimeMillis());
+
+        verify(listener, never()).vmStarted(anyInt(), any(PerfDataBuffer.class));
+    }
+
+    @Test
+    public void testDeleted() throws IOException {
+        File file = startVm(1234);
+
+        watcher.fileDeleted(file);
+
+        verify(listener).vmStopped(1234);
+        assertFalse(watcher.getActiveVms().containsKey(1234));
+    }
+
+    @Test
+    public void testDeletedWhilePending() throws IOException {
+        File file = new File(userDir, "1234");
+        assertTrue(file.createNewFile());
+        watcher.fileCreated(file);
+
+        watcher.fileDeleted(file);
+
+        assertFalse(watcher.isPending(1234));
+        verify(listener, never()).vmStopped(anyInt());
+    }
+
+    @Test
+    public void testSweepFindsKilledVms() throws IOException {
+        startVm(1234);
+        startVm(4321);
+        when(processChecker.exists(1234)).thenReturn(false);
+
+        watcher.sweep();
+
+        verify(listener).vmStopped(1234);
+        verify(listener, never()).vmStopped(4321);
+        assertEquals(1, watcher.getActiveVms().size());
+    }
+
+    @Test
+    public void testReusedPid() throws IOException {
+        File file = startVm(1234);
+
+        watcher.fileCreated(file);
+
+        verify(listener).vmStopped(1234);
+        assertTrue(watcher.isPending(1234));
+    }
+
+    @Test
+    public void testWatchService() throws IOException {
+        watcher.start();
+        try {
+            writePerfData(new File(userDir, "1234"), true);
+            verify(listener, timeout(10000)).vmStarted(eq(1234), any(PerfDataBuffer.class));
+
+            File otherDir = new File(tmpDir, "hsperfdata_other");
+            assertTrue(otherDir.mkdir());
+            writePerfData(new File(otherDir, "4321"), true);
+            verify(listener, timeout(10000)).vmStarted(eq(4321), any(PerfDataBuffer.class));
+
+            assertTrue(new File(userDir, "1234").delete());
+            verify(listener, timeout(10000)).vmStopped(1234);
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    private File startVm(int pid) throws IOException {
+        File file = new File(userDir, String.valueOf(pid));
+        writePerfData(file, true);
+        watcher.fileCreated(file);
+        watcher.checkPending(System.currentTimeMillis());
+        assertTrue(watcher.getActiveVms().containsKey(pid));
+        return file;
+    }
+
+    private void writePerfData(File file, boolean accessible) throws IOException {
+        new PerfDataBuilder()
+                .accessible(accessible)
+                .addString("sun.rt.javaCommand", "MyMainClass", true)
+                .writeTo(file);
+    }
+
+}
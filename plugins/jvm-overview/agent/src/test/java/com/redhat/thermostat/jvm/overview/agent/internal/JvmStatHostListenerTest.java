@@ -46,6 +46,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -56,10 +57,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import com.redhat.thermostat.jvm.overview.agent.VmBlacklist;
 import com.redhat.thermostat.jvm.overview.agent.VmStatusListener.Status;
 import com.redhat.thermostat.jvm.overview.agent.internal.model.VmInfoDAO;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuffer;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataCounter;
 import com.redhat.thermostat.jvm.overview.agent.model.VmInfo;
 import org.junit.Before;
 import org.junit.Test;
@@ -100,17 +106,19 @@ public class JvmStatHostListenerTest {
     private VmInfoDAO vmInfoDAO;
     private VmStatusChangeNotifier notifier;
     private VmBlacklist blacklist;
+    private ProcessUserInfoBuilder userInfoBuilder;
+    private WriterID id;
 
     @Before
     public void setup() throws MonitorException, URISyntaxException {
         vmInfoDAO = mock(VmInfoDAO.class);
         notifier = mock(VmStatusChangeNotifier.class);
         
-        ProcessUserInfoBuilder userInfoBuilder = mock(ProcessUserInfoBuilder.class);
+        userInfoBuilder = mock(ProcessUserInfoBuilder.class);
         ProcessUserInfo userInfo = new ProcessUserInfo(INFO_VMUSERID, INFO_VMUSERNAME);
         when(userInfoBuilder.build(any(int.class))).thenReturn(userInfo);
 
-        WriterID id = mock(WriterID.class);
+        id = mock(WriterID.class);
         blacklist = mock(VmBlacklist.class);
         hostListener = new JvmStatHostListener(vmInfoDAO, notifier, userInfoBuilder, id, blacklist);
         
@@ -273,5 +281,91 @@ public class JvmStatHostListenerTest {
         assertEquals(INFO_VMUSERID, info.getUid());
         assertEquals(INFO_VMUSERNAME, info.getUsername());
     }
-}
 
+    @Test
+    public void testWatchedVmStarted() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        JvmStatHostListener listener = new JvmStatHostListener(vmInfoDAO, notifier, userInfoBuilder,
+                id, blacklist, host, executor);
+
+        listener.vmStarted(1, createBuffer("MyMainClass arg"));
+
+        // Announced before the VmInfo is built
+        String vmId = listener.getWatchedVms().get(1).getFirst();
+        verify(notifier).notifyVmStatusChange(Status.VM_STARTED, vmId, 1);
+        verify(blacklist).isBlacklisted("MyMainClass");
+
+        awaitTermination(executor);
+        ArgumentCaptor<VmInfo> captor = ArgumentCaptor.forClass(VmInfo.class);
+        verify(vmInfoDAO).putVmInfo(captor.capture());
+        assertEquals(vmId, captor.getValue().getVmId());
+        assertTrue(listener.getWatchedVms().get(1).getSecond().get());
+        verify(monitoredVm1).detach();
+    }
+
+    @Test
+    public void testWatchedVmBlacklisted() throws Exception {
+        ExecutorService executor = mock(ExecutorService.class);
+        when(blacklist.isBlacklisted("MyMainClass")).thenReturn(true);
+        JvmStatHostListener listener = new JvmStatHostListener(vmInfoDAO, notifier, userInfoBuilder,
+                id, blacklist, host, executor);
+
+        listener.vmStarted(1, createBuffer("MyMainClass"));
+
+        assertFalse(listener.getWatchedVms().containsKey(1));
+        verify(notifier, never()).notifyVmStatusChange(any(Status.class), anyString(), any(int.class));
+        verify(executor, never()).submit(any(Runnable.class));
+    }
+
+    @Test
+    public void testWatchedVmStopped() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        JvmStatHostListener listener = new JvmStatHostListener(vmInfoDAO, notifier, userInfoBuilder,
+                id, blacklist, host, executor);
+        listener.vmStarted(1, createBuffer("MyMainClass"));
+        String vmId = listener.getWatchedVms().get(1).getFirst();
+
+        listener.vmStopped(1);
+        // Unknown VMs are ignored
+        listener.vmStopped(2);
+
+        assertFalse(listener.getWatchedVms().containsKey(1));
+        verify(notifier).notifyVmStatusChange(Status.VM_STOPPED, vmId, 1);
+        awaitTermination(executor);
+        verify(vmInfoDAO).putVmStoppedTime(any(String.class), eq(vmId), any(long.class));
+    }
+
+    @Test
+    public void testWatchedVmStoppedWithoutVmInfo() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        when(host.getMonitoredVm(isA(VmIdentifier.class))).thenThrow(new MonitorException());
+        JvmStatHostListener listener = new JvmStatHostListener(vmInfoDAO, notifier, userInfoBuilder,
+                id, blacklist, host, executor);
+        listener.vmStarted(1, createBuffer("MyMainClass"));
+
+        listener.vmStopped(1);
+
+        awaitTermination(executor);
+        verify(vmInfoDAO, never()).putVmStoppedTime(any(String.class), anyString(), any(long.class));
+    }
+
+    @Test
+    public void testGetMainClass() {
+        assertEquals("MyMainClass", JvmStatHostListener.getMainClass(createBuffer("MyMainClass arg1 arg2")));
+        assertEquals("/path/to/app.jar", JvmStatHostListener.getMainClass(createBuffer("/path/to/app.jar")));
+        assertEquals("Unknown", JvmStatHostListener.getMainClass(mock(PerfDataBuffer.class)));
+    }
+
+    private PerfDataBuffer createBuffer(String javaCommand) {
+        PerfDataBuffer buffer = mock(PerfDataBuffer.class);
+        PerfDataCounter counter = mock(PerfDataCounter.class);
+        when(counter.stringValue()).thenReturn(javaCommand);
+        when(buffer.findCounter("sun.rt.javaCommand")).thenReturn(counter);
+        return buffer;
+    }
+
+    private void awaitTermination(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
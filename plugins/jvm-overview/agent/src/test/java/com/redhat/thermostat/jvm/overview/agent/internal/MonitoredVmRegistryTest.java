@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
+import com.redhat.thermostat.jvm.overview.agent.internal.MonitoredVmRegistry.CounterSource;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuffer;
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataLocator;
+
+import sun.jvmstat.monitor.HostIdentifier;
+import sun.jvmstat.monitor.MonitoredHost;
+import sun.jvmstat.monitor.MonitoredVm;
+import sun.jvmstat.monitor.VmIdentifier;
+
+public class MonitoredVmRegistryTest {
+
+    private static final int VM_PID = 1234;
+
+    private MonitoredHost host;
+    private MonitoredVm monitoredVm;
+    private PerfDataLocator locator;
+    private PerfDataSampler sampler;
+
+    @Before
+    public void setUp() throws Exception {
+        host = mock(MonitoredHost.class);
+        HostIdentifier hostId = mock(HostIdentifier.class);
+        VmIdentifier vmId = new VmIdentifier(String.valueOf(VM_PID));
+        when(host.getHostIdentifier()).thenReturn(hostId);
+        when(hostId.resolve(isA(VmIdentifier.class))).thenReturn(vmId);
+        monitoredVm = mock(MonitoredVm.class);
+        when(host.getMonitoredVm(vmId)).thenReturn(monitoredVm);
+        locator = mock(PerfDataLocator.class);
+        sampler = mock(PerfDataSampler.class);
+    }
+
+    @Test
+    public void testJvmstatSource() throws Exception {
+        MonitoredVmRegistry registry = new MonitoredVmRegistry(CounterSource.JVMSTAT, locator, sampler);
+
+        VmListenerWrapper wrapper = registry.attach(host, VM_PID, mock(VmUpdateListener.class));
+
+        assertTrue(wrapper.getAttachment() instanceof SharedMonitoredVm);
+        verify(monitoredVm).addVmListener((SharedMonitoredVm) wrapper.getAttachment());
+        verify(locator, never()).open(VM_PID);
+    }
+
+    @Test
+    public void testPerfDataSource() throws Exception {
+        when(locator.open(VM_PID)).thenReturn(mock(PerfDataBuffer.class));
+        MonitoredVmRegistry registry = new MonitoredVmRegistry(CounterSource.PERFDATA, locator, sampler);
+
+        VmListenerWrapper wrapper = registry.attach(host, VM_PID, mock(VmUpdateListener.class));
+        VmListenerWrapper other = registry.attach(host, VM_PID, mock(VmUpdateListener.class));
+
+        assertTrue(wrapper.getAttachment() instanceof PerfDataVm);
+        assertSame(wrapper.getAttachment(), other.getAttachment());
+        verify(sampler).register((PerfDataVm) wrapper.getAttachment());
+        verify(host, never()).getMonitoredVm(any(VmIdentifier.class));
+    }
+
+    @Test
+    public void testPerfDataSourceFallsBackToJvmstat() throws Exception {
+        when(locator.open(VM_PID)).thenThrow(new IOException("no hsperfdata"));
+        MonitoredVmRegistry registry = new MonitoredVmRegistry(CounterSource.PERFDATA, locator, sampler);
+
+        VmListenerWrapper wrapper = registry.attach(host, VM_PID, mock(VmUpdateListener.class));
+
+        assertTrue(wrapper.getAttachment() instanceof SharedMonitoredVm);
+        verify(sampler, never()).register(any(PerfDataVm.class));
+    }
+
+    @Test
+    public void testDetachLastListenerReleasesPerfData() throws Exception {
+        when(locator.open(VM_PID)).thenReturn(mock(PerfDataBuffer.class));
+        MonitoredVmRegistry registry = new MonitoredVmRegistry(CounterSource.PERFDATA, locator, sampler);
+        VmListenerWrapper wrapper = registry.attach(host, VM_PID, mock(VmUpdateListener.class));
+        VmListenerWrapper other = registry.attach(host, VM_PID, mock(VmUpdateListener.class));
+        PerfDataVm vm = (PerfDataVm) wrapper.getAttachment();
+
+        registry.detach(wrapper);
+        verify(sampler, never()).unregister(vm);
+        assertEquals(1, registry.getPidToVmMap().size());
+
+        registry.detach(other);
+        verify(sampler).unregister(vm);
+        assertFalse(registry.getPidToVmMap().containsKey(VM_PID));
+    }
+
+}
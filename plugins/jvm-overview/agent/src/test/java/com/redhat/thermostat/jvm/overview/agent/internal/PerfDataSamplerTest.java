@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.jvm.overview.agent.internal.perfdata.PerfDataBuffer;
+
+public class PerfDataSamplerTest {
+
+    private PerfDataSampler sampler;
+
+    @Before
+    public void setUp() {
+        sampler = new PerfDataSampler(60000L);
+    }
+
+    @After
+    public void tearDown() {
+        for (PerfDataVm vm : sampler.getVms()) {
+            sampler.unregister(vm);
+        }
+    }
+
+    @Test
+    public void testRunsOnlyWhileVmsRegistered() {
+        PerfDataVm vm1 = new PerfDataVm(1, mock(PerfDataBuffer.class), sampler);
+        PerfDataVm vm2 = new PerfDataVm(2, mock(PerfDataBuffer.class), sampler);
+        assertFalse(sampler.isRunning());
+
+        sampler.register(vm1);
+        sampler.register(vm2);
+        assertTrue(sampler.isRunning());
+
+        vm1.detach();
+        assertTrue(sampler.isRunning());
+        vm2.detach();
+        assertFalse(sampler.isRunning());
+    }
+
+    @Test
+    public void testSampleAllContinuesAfterFailure() {
+        PerfDataVm badVm = mock(PerfDataVm.class);
+        doThrow(new IllegalStateException()).when(badVm).sample();
+        PerfDataVm goodVm = mock(PerfDataVm.class);
+        sampler.getVms().add(badVm);
+        sampler.getVms().add(goodVm);
+
+        sampler.sampleAll();
+
+        verify(goodVm).sample();
+        sampler.getVms().clear();
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import sun.jvmstat.monitor.LongMonitor;
+import sun.jvmstat.monitor.StringMonitor;
+import sun.jvmstat.monitor.Variability;
+
+public class PerformanceCounterImplTest {
+
+    @Test
+    public void testLongValue() {
+        LongMonitor monitor = mock(LongMonitor.class);
+        when(monitor.longValue()).thenReturn(9001L);
+
+        PerformanceCounterImpl counter = new PerformanceCounterImpl(monitor);
+        assertEquals(9001L, counter.longValue());
+        when(monitor.longValue()).thenReturn(9002L);
+        assertEquals(9002L, counter.longValue());
+    }
+
+    @Test(expected=ClassCastException.class)
+    public void testLongValueBadType() {
+        StringMonitor monitor = mock(StringMonitor.class);
+
+        new PerformanceCounterImpl(monitor).longValue();
+    }
+
+    @Test
+    public void testVariableStringValue() {
+        StringMonitor monitor = mock(StringMonitor.class);
+        when(monitor.getVariability()).thenReturn(Variability.VARIABLE);
+        when(monitor.stringValue()).thenReturn("foo");
+
+        PerformanceCounterImpl counter = new PerformanceCounterImpl(monitor);
+        counter.stringValue();
+        assertEquals("foo", counter.stringValue());
+        verify(monitor, times(2)).stringValue();
+    }
+
+    @Test
+    public void testConstantStringValueDecodedOnce() {
+        StringMonitor monitor = mock(StringMonitor.class);
+        when(monitor.getVariability()).thenReturn(Variability.CONSTANT);
+        when(monitor.stringValue()).thenReturn("foo");
+
+        PerformanceCounterImpl counter = new PerformanceCounterImpl(monitor);
+        counter.stringValue();
+        assertEquals("foo", counter.stringValue());
+        verify(monitor, times(1)).stringValue();
+    }
+
+    @Test(expected=ClassCastException.class)
+    public void testStringValueBadType() {
+        LongMonitor monitor = mock(LongMonitor.class);
+
+        new PerformanceCounterImpl(monitor).stringValue();
+    }
+
+}
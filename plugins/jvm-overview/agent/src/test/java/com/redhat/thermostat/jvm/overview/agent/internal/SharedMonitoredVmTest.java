@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import sun.jvmstat.monitor.Monitor;
+import sun.jvmstat.monitor.MonitorException;
+import sun.jvmstat.monitor.MonitoredVm;
+import sun.jvmstat.monitor.event.VmEvent;
+
+public class SharedMonitoredVmTest {
+
+    private MonitoredVm monitoredVm;
+    private SharedMonitoredVm sharedVm;
+
+    @Before
+    public void setUp() {
+        monitoredVm = mock(MonitoredVm.class);
+        sharedVm = new SharedMonitoredVm(1, monitoredVm);
+    }
+
+    @Test
+    public void testMonitorsUpdatedDispatchesSameUpdateToAllListeners() {
+        VmUpdateListener listener1 = mock(VmUpdateListener.class);
+        VmUpdateListener listener2 = mock(VmUpdateListener.class);
+        sharedVm.addListener(new VmListenerWrapper(listener1, sharedVm));
+        sharedVm.addListener(new VmListenerWrapper(listener2, sharedVm));
+
+        VmEvent event = mock(VmEvent.class);
+        when(event.getMonitoredVm()).thenReturn(monitoredVm);
+        sharedVm.monitorsUpdated(event);
+
+        ArgumentCaptor<VmUpdate> captor1 = ArgumentCaptor.forClass(VmUpdate.class);
+        verify(listener1).countersUpdated(captor1.capture());
+        ArgumentCaptor<VmUpdate> captor2 = ArgumentCaptor.forClass(VmUpdate.class);
+        verify(listener2).countersUpdated(captor2.capture());
+        assertSame(captor1.getValue(), captor2.getValue());
+        assertEquals(sharedVm, ((VmUpdateImpl) captor1.getValue()).getAttachment());
+    }
+
+    @Test(expected=AssertionError.class)
+    public void testMonitorsUpdatedWrongVm() {
+        VmEvent event = mock(VmEvent.class);
+        MonitoredVm badVm = mock(MonitoredVm.class);
+        when(event.getMonitoredVm()).thenReturn(badVm);
+        
+        sharedVm.monitorsUpdated(event);
+    }
+
+    @Test
+    public void testGetCounter() throws MonitorException, VmUpdateException {
+        final String counter = "myCounter";
+        
+        Monitor monitor = mock(Monitor.class);
+        when(monitoredVm.findByName(counter)).thenReturn(monitor);
+        
+        assertEquals(monitor, sharedVm.getMonitor(counter));
+        assertEquals(monitor, sharedVm.getMonitor(counter));
+        // lookups are resolved once per attachment
+        verify(monitoredVm, times(1)).findByName(counter);
+    }
+    
+    @Test
+    public void testGetCounterNotFound() throws MonitorException, VmUpdateException {
+        final String counter = "myCounter";
+        
+        when(monitoredVm.findByName(counter)).thenReturn(null);
+        
+        Monitor result = sharedVm.getMonitor(counter);
+        assertNull(result);
+    }
+    
+    @Test(expected=VmUpdateException.class)
+    public void testGetCounterError() throws MonitorException, VmUpdateException {
+        final String counter = "myCounter";
+        
+        when(monitoredVm.findByName(counter)).thenThrow(new MonitorException());
+        
+        sharedVm.getMonitor(counter);
+    }
+
+    @Test
+    public void testGetPerformanceCounterCached() throws MonitorException, VmUpdateException {
+        final String counter = "myCounter";
+
+        Monitor monitor = mock(Monitor.class);
+        when(monitoredVm.findByName(counter)).thenReturn(monitor);
+
+        PerformanceCounter handle = sharedVm.getPerformanceCounter(counter);
+        assertEquals(monitor, ((PerformanceCounterImpl) handle).getMonitor());
+        assertSame(handle, sharedVm.getPerformanceCounter(counter));
+        verify(monitoredVm, times(1)).findByName(counter);
+    }
+
+    @Test
+    public void testDetach() throws MonitorException {
+        sharedVm.detach();
+
+        verify(monitoredVm).removeVmListener(sharedVm);
+        verify(monitoredVm).detach();
+    }
+
+    @Test
+    public void testDetachRemoveListenerFailure() throws MonitorException {
+        doThrow(new MonitorException()).when(monitoredVm).removeVmListener(sharedVm);
+
+        sharedVm.detach();
+
+        verify(monitoredVm).detach();
+    }
+
+}
@@ -36,50 +36,43 @@
 
 package com.redhat.thermostat.jvm.overview.agent.internal;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
-import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.ArgumentCaptor;
 
 import com.redhat.thermostat.common.internal.test.Bug;
 
-import sun.jvmstat.monitor.Monitor;
-import sun.jvmstat.monitor.MonitorException;
 import sun.jvmstat.monitor.MonitoredVm;
-import sun.jvmstat.monitor.event.VmEvent;
 
 public class VmListenerWrapperTest {
 
-    private VmListenerWrapper wrapper;
-    private MonitoredVm monitoredVm;
+    private SharedMonitoredVm sharedVm;
     private VmUpdateListener listener;
+    private VmListenerWrapper wrapper;
 
     @Before
     public void setUp() throws Exception {
         listener = mock(VmUpdateListener.class);
-        monitoredVm = mock(MonitoredVm.class);
-        wrapper = new VmListenerWrapper(listener, monitoredVm);
+        sharedVm = new SharedMonitoredVm(1, mock(MonitoredVm.class));
+        wrapper = new VmListenerWrapper(listener, sharedVm);
+        sharedVm.addListener(wrapper);
     }
     
     /**
      * Verify that a bad listener which throws exceptions gets removed
      * from the JVM beyond a threshold.
-     * @throws MonitorException 
      */
     @Bug(id = "3242",
          summary = "Adverse Backend breaks other Backends badly ",
          url = "http://icedtea.classpath.org/bugzilla/show_bug.cgi?id=3242")
     @Test
-    public void testMonitorsUpdatedListenerExceptions() throws MonitorException {
+    public void testCountersUpdatedListenerExceptions() {
         final int beyondThresholdLimit = 11;
         VmUpdateListener badListener = new VmUpdateListener() {
             @Override
@@ -87,68 +80,24 @@ public class VmListenerWrapperTest {
                 throw new RuntimeException("countersUpdated() testing!");
             }
         };
-        VmListenerWrapper vmListenerWrapper = new VmListenerWrapper(badListener, monitoredVm);
-        VmEvent event = mock(VmEvent.class);
+        VmListenerWrapper vmListenerWrapper = new VmListenerWrapper(badListener, sharedVm);
+        sharedVm.addListener(vmListenerWrapper);
+        VmUpdate update = mock(VmUpdate.class);
         for (int i = 0; i < beyondThresholdLimit; i++) {
-            when(event.getMonitoredVm()).thenReturn(monitoredVm);
-            
-            vmListenerWrapper.monitorsUpdated(event);
-            
+            vmListenerWrapper.countersUpdated(update);
         }
-        verify(monitoredVm, times(1)).removeVmListener(vmListenerWrapper);
-    }
-
-    @Test
-    public void testMonitorsUpdated() {
-        VmEvent event = mock(VmEvent.class);
-        when(event.getMonitoredVm()).thenReturn(monitoredVm);
-        
-        wrapper.monitorsUpdated(event);
-        
-        ArgumentCaptor<VmUpdateImpl> captor = ArgumentCaptor.forClass(VmUpdateImpl.class);
-        verify(listener).countersUpdated(captor.capture());
-        VmUpdateImpl update = captor.getValue();
-        assertEquals(wrapper, update.getWrapper());
-    }
-    
-    @Test(expected=AssertionError.class)
-    public void testMonitorsUpdatedWrongVm() {
-        VmEvent event = mock(VmEvent.class);
-        MonitoredVm badVm = mock(MonitoredVm.class);
-        when(event.getMonitoredVm()).thenReturn(badVm);
-        
-        wrapper.monitorsUpdated(event);
+        assertFalse(sharedVm.getListeners().contains(vmListenerWrapper));
+        // Well-behaved listeners of the same VM are unaffected
+        assertTrue(sharedVm.getListeners().contains(wrapper));
     }
 
     @Test
-    public void testGetCounter() throws MonitorException, VmUpdateException {
-        final String counter = "myCounter";
+    public void testCountersUpdated() {
+        VmUpdate update = mock(VmUpdate.class);
         
-        Monitor monitor = mock(Monitor.class);
-        when(monitoredVm.findByName(counter)).thenReturn(monitor);
+        wrapper.countersUpdated(update);
         
-        Monitor result = wrapper.getMonitor(counter);
-        assertEquals(monitor, result);
-    }
-    
-    @Test
-    public void testGetCounterNotFound() throws MonitorException, VmUpdateException {
-        final String counter = "myCounter";
-        
-        when(monitoredVm.findByName(counter)).thenReturn(null);
-        
-        Monitor result = wrapper.getMonitor(counter);
-        assertNull(result);
-    }
-    
-    @Test(expected=VmUpdateException.class)
-    public void testGetCounterError() throws MonitorException, VmUpdateException {
-        final String counter = "myCounter";
-        
-        when(monitoredVm.findByName(counter)).thenThrow(new MonitorException());
-        
-        wrapper.getMonitor(counter);
+        verify(listener).countersUpdated(update);
     }
 
 }
-
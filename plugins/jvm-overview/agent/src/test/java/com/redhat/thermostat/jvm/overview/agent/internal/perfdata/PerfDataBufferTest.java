@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.perfdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class PerfDataBufferTest {
+
+    @Test
+    public void testLongCounterBigEndian() throws IOException {
+        verifyLongCounter(ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test
+    public void testLongCounterLittleEndian() throws IOException {
+        verifyLongCounter(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void verifyLongCounter(ByteOrder order) throws IOException {
+        ByteBuffer data = new PerfDataBuilder()
+                .order(order)
+                .addLong("sun.gc.collector.0.invocations", 9001L)
+                .addLong("sun.os.hrt.frequency", 1000000000L)
+                .build();
+        PerfDataBuffer buffer = new PerfDataBuffer(data);
+
+        PerfDataCounter counter = buffer.findCounter("sun.gc.collector.0.invocations");
+        assertEquals("sun.gc.collector.0.invocations", counter.getName());
+        assertEquals(9001L, counter.longValue());
+        assertEquals(1000000000L, buffer.findCounter("sun.os.hrt.frequency").longValue());
+    }
+
+    @Test
+    public void testLongCounterReadsCurrentValue() throws IOException {
+        PerfDataBuilder builder = new PerfDataBuilder().addLong("myCounter", 1L);
+        ByteBuffer data = builder.build();
+        PerfDataBuffer buffer = new PerfDataBuffer(data);
+        PerfDataCounter counter = buffer.findCounter("myCounter");
+
+        data.putLong(builder.getDataOffset("myCounter"), 2L);
+
+        assertEquals(2L, counter.longValue());
+    }
+
+    @Test
+    public void testStringCounter() throws IOException {
+        ByteBuffer data = new PerfDataBuilder()
+                .addString("java.property.java.version", "1.8.0_121", true)
+                .build();
+        PerfDataBuffer buffer = new PerfDataBuffer(data);
+
+        assertEquals("1.8.0_121", buffer.findCounter("java.property.java.version").stringValue());
+    }
+
+    @Test
+    public void testConstantStringCounterCached() throws IOException {
+        PerfDataBuilder builder = new PerfDataBuilder()
+                .addString("constant", "abc", true)
+                .addString("variable", "abc", false);
+        ByteBuffer data = builder.build();
+        PerfDataBuffer buffer = new PerfDataBuffer(data);
+        PerfDataCounter constant = buffer.findCounter("constant");
+        PerfDataCounter variable = buffer.findCounter("variable");
+        String first = constant.stringValue();
+        variable.stringValue();
+
+        data.put(builder.getDataOffset("constant"), (byte) 'x');
+        data.put(builder.getDataOffset("variable"), (byte) 'x');
+
+        assertSame(first, constant.stringValue());
+        assertEquals("xbc", variable.stringValue());
+    }
+
+    @Test(expected=ClassCastException.class)
+    public void testLongValueOfStringCounter() throws IOException {
+        PerfDataBuffer buffer = new PerfDataBuffer(new PerfDataBuilder()
+                .addString("myCounter", "abc", true).build());
+
+        buffer.findCounter("myCounter").longValue();
+    }
+
+    @Test(expected=ClassCastException.class)
+    public void testStringValueOfLongCounter() throws IOException {
+        PerfDataBuffer buffer = new PerfDataBuffer(new PerfDataBuilder()
+                .addLong("myCounter", 1L).build());
+
+        buffer.findCounter("myCounter").stringValue();
+    }
+
+    @Test
+    public void testUnknownCounter() throws IOException {
+        PerfDataBuffer buffer = new PerfDataBuffer(new PerfDataBuilder()
+                .addLong("myCounter", 1L).build());
+
+        assertNull(buffer.findCounter("otherCounter"));
+    }
+
+    @Test
+    public void testNewEntriesPickedUp() throws IOException {
+        ByteBuffer data = new PerfDataBuilder()
+                .addLong("first", 1L)
+                .addLong("second", 2L)
+                .build();
+        // Pretend the VM has only published the first entry so far
+        data.putInt(PerfDataBuffer.PROLOGUE_NUM_ENTRIES, 1);
+        PerfDataBuffer buffer = new PerfDataBuffer(data);
+        assertEquals(1L, buffer.findCounter("first").longValue());
+        assertNull(buffer.findCounter("second"));
+
+        data.putInt(PerfDataBuffer.PROLOGUE_NUM_ENTRIES, 2);
+
+        assertEquals(2L, buffer.findCounter("second").longValue());
+    }
+
+    @Test
+    public void testNotAccessible() throws IOException {
+        ByteBuffer data = new PerfDataBuilder()
+                .accessible(false)
+                .addLong("myCounter", 1L)
+                .build();
+        PerfDataBuffer buffer = new PerfDataBuffer(data);
+        assertFalse(buffer.isAccessible());
+        assertNull(buffer.findCounter("myCounter"));
+
+        data.put(PerfDataBuffer.PROLOGUE_ACCESSIBLE, (byte) 1);
+
+        assertTrue(buffer.isAccessible());
+        assertEquals(1L, buffer.findCounter("myCounter").longValue());
+    }
+
+    @Test(expected=IOException.class)
+    public void testBadMagic() throws IOException {
+        ByteBuffer data = new PerfDataBuilder().addLong("myCounter", 1L).build();
+        data.putInt(PerfDataBuffer.PROLOGUE_MAGIC, 0xdeadbeef);
+
+        new PerfDataBuffer(data);
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnsupportedVersion() throws IOException {
+        ByteBuffer data = new PerfDataBuilder().addLong("myCounter", 1L).build();
+        data.put(PerfDataBuffer.PROLOGUE_MAJOR_VERSION, (byte) 1);
+
+        new PerfDataBuffer(data);
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncated() throws IOException {
+        new PerfDataBuffer(ByteBuffer.allocate(8));
+    }
+
+}
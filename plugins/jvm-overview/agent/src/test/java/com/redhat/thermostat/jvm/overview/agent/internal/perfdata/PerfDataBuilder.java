@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.perfdata;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes synthetic PerfData buffers in the layout produced by HotSpot.
+ */
+public class PerfDataBuilder {
+
+    private static final Charset CHARSET = Charset.forName("US-ASCII");
+    private static final byte UNITS_NONE = 1;
+    private static final byte VARIABILITY_VARIABLE = 3;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Integer> dataOffsets = new HashMap<>();
+    private ByteOrder order = ByteOrder.nativeOrder();
+    private boolean accessible = true;
+
+    public PerfDataBuilder order(ByteOrder order) {
+        this.order = order;
+        return this;
+    }
+
+    public PerfDataBuilder accessible(boolean accessible) {
+        this.accessible = accessible;
+        return this;
+    }
+
+    public PerfDataBuilder addLong(String name, long value) {
+        entries.add(new Entry(name, value, null, false));
+        return this;
+    }
+
+    public PerfDataBuilder addString(String name, String value, boolean constant) {
+        entries.add(new Entry(name, 0, value, constant));
+        return this;
+    }
+
+    public ByteBuffer build() {
+        int size = PerfDataBuffer.PROLOGUE_SIZE;
+        for (Entry entry : entries) {
+            size += entry.length();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(order);
+        buffer.order(ByteOrder.BIG_ENDIAN).putInt(PerfDataBuffer.PROLOGUE_MAGIC, PerfDataBuffer.MAGIC);
+        buffer.order(order);
+        buffer.put(PerfDataBuffer.PROLOGUE_BYTE_ORDER, order == ByteOrder.BIG_ENDIAN
+                ? PerfDataBuffer.BYTE_ORDER_BIG_ENDIAN : PerfDataBuffer.BYTE_ORDER_LITTLE_ENDIAN);
+        buffer.put(PerfDataBuffer.PROLOGUE_MAJOR_VERSION, (byte) PerfDataBuffer.SUPPORTED_MAJOR_VERSION);
+        buffer.put(PerfDataBuffer.PROLOGUE_MINOR_VERSION, (byte) 0);
+        buffer.put(PerfDataBuffer.PROLOGUE_ACCESSIBLE, (byte) (accessible ? 1 : 0));
+        buffer.putInt(PerfDataBuffer.PROLOGUE_USED, size);
+        buffer.putInt(PerfDataBuffer.PROLOGUE_OVERFLOW, 0);
+        buffer.putLong(PerfDataBuffer.PROLOGUE_MOD_TIME_STAMP, 0L);
+        buffer.putInt(PerfDataBuffer.PROLOGUE_ENTRY_OFFSET, PerfDataBuffer.PROLOGUE_SIZE);
+        buffer.putInt(PerfDataBuffer.PROLOGUE_NUM_ENTRIES, entries.size());
+
+        int start = PerfDataBuffer.PROLOGUE_SIZE;
+        for (Entry entry : entries) {
+            byte[] name = entry.name.getBytes(CHARSET);
+            int dataOffset = entry.dataOffset();
+            buffer.putInt(start + PerfDataBuffer.ENTRY_LENGTH, entry.length());
+            buffer.putInt(start + PerfDataBuffer.ENTRY_NAME_OFFSET, PerfDataBuffer.ENTRY_HEADER_SIZE);
+            buffer.putInt(start + PerfDataBuffer.ENTRY_VECTOR_LENGTH, entry.vectorLength());
+            buffer.put(start + PerfDataBuffer.ENTRY_FLAGS, (byte) 1);
+            buffer.putInt(start + PerfDataBuffer.ENTRY_DATA_OFFSET, dataOffset);
+            for (int i = 0; i < name.length; i++) {
+                buffer.put(start + PerfDataBuffer.ENTRY_HEADER_SIZE + i, name[i]);
+            }
+            if (entry.stringValue == null) {
+                buffer.put(start + PerfDataBuffer.ENTRY_DATA_TYPE, PerfDataBuffer.TYPE_LONG);
+                buffer.put(start + PerfDataBuffer.ENTRY_DATA_UNITS, UNITS_NONE);
+                buffer.put(start + PerfDataBuffer.ENTRY_DATA_VARIABILITY, VARIABILITY_VARIABLE);
+                buffer.putLong(start + dataOffset, entry.longValue);
+            } else {
+                byte[] value = entry.stringValue.getBytes(CHARSET);
+                buffer.put(start + PerfDataBuffer.ENTRY_DATA_TYPE, PerfDataBuffer.TYPE_BYTE);
+                buffer.put(start + PerfDataBuffer.ENTRY_DATA_UNITS, PerfDataBuffer.UNITS_STRING);
+                buffer.put(start + PerfDataBuffer.ENTRY_DATA_VARIABILITY, entry.constant
+                        ? PerfDataBuffer.VARIABILITY_CONSTANT : VARIABILITY_VARIABLE);
+                for (int i = 0; i < value.length; i++) {
+                    buffer.put(start + dataOffset + i, value[i]);
+                }
+            }
+            dataOffsets.put(entry.name, start + dataOffset);
+            start += entry.length();
+        }
+        return buffer;
+    }
+
+    public void writeTo(File file) throws IOException {
+        ByteBuffer buffer = build();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array());
+        }
+    }
+
+    /**
+     * @return the absolute offset of the value of the named counter in the
+     * last built buffer
+     */
+    public int getDataOffset(String name) {
+        return dataOffsets.get(name);
+    }
+
+    private static int align(int value) {
+        return (value + 7) & ~7;
+    }
+
+    private static class Entry {
+        private final String name;
+        private final long longValue;
+        private final String stringValue;
+        private final boolean constant;
+
+        private Entry(String name, long longValue, String stringValue, boolean constant) {
+            this.name = name;
+            this.longValue = longValue;
+            this.stringValue = stringValue;
+            this.constant = constant;
+        }
+
+        private int dataOffset() {
+            return align(PerfDataBuffer.ENTRY_HEADER_SIZE + name.length() + 1);
+        }
+
+        private int vectorLength() {
+            // Leave room for the terminating null and later updates
+            return stringValue == null ? 0 : align(stringValue.length() + 1) + 8;
+        }
+
+        private int length() {
+            return align(dataOffset() + (stringValue == null ? 8 : vectorLength()));
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.perfdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.testutils.TestUtils;
+
+public class PerfDataLocatorTest {
+
+    private File tmpDir;
+    private PerfDataLocator locator;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("perfdata-locator").toFile();
+        locator = new PerfDataLocator(tmpDir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.deleteRecursively(tmpDir);
+    }
+
+    @Test
+    public void testLocateSearchesAllUsers() throws IOException {
+        File userDir = new File(tmpDir, "hsperfdata_someone");
+        File otherDir = new File(tmpDir, "hsperfdata_other");
+        assertEquals(true, userDir.mkdir());
+        assertEquals(true, otherDir.mkdir());
+        File perfData = new File(otherDir, "1234");
+        new PerfDataBuilder().addLong("myCounter", 1L).writeTo(perfData);
+
+        assertEquals(perfData, locator.locate(1234));
+        assertNull(locator.locate(4321));
+    }
+
+    @Test
+    public void testLocateIgnoresOtherDirectories() throws IOException {
+        File dir = new File(tmpDir, "something_else");
+        assertEquals(true, dir.mkdir());
+        new PerfDataBuilder().addLong("myCounter", 1L).writeTo(new File(dir, "1234"));
+
+        assertNull(locator.locate(1234));
+    }
+
+    @Test
+    public void testOpenMapsFile() throws IOException {
+        File userDir = new File(tmpDir, "hsperfdata_someone");
+        assertEquals(true, userDir.mkdir());
+        new PerfDataBuilder().addLong("myCounter", 9001L).writeTo(new File(userDir, "1234"));
+
+        PerfDataBuffer buffer = locator.open(1234);
+
+        assertEquals(9001L, buffer.findCounter("myCounter").longValue());
+    }
+
+    @Test(expected=IOException.class)
+    public void testOpenMissing() throws IOException {
+        locator.open(1234);
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.perfdata;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.PerformanceTest;
+import com.redhat.thermostat.testutils.TestUtils;
+
+import sun.jvmstat.monitor.MonitoredHost;
+import sun.jvmstat.monitor.MonitoredVm;
+import sun.jvmstat.monitor.VmIdentifier;
+
+/**
+ * Compares reading the counters of many VMs through jvmstat with reading
+ * them from the mapped hsperfdata files directly. Run with -Pperf-tests.
+ */
+@Category(PerformanceTest.class)
+public class PerfDataReaderBenchmarkTest {
+
+    private static final int NUM_VMS = 200;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int ROUNDS = 1000;
+    private static final String[] COUNTERS = new String[] {
+        "sun.gc.collector.0.invocations",
+        "sun.gc.collector.0.time",
+        "sun.gc.collector.1.invocations",
+        "sun.gc.collector.1.time",
+        "sun.gc.generation.0.space.0.used",
+        "sun.gc.generation.0.space.0.capacity",
+        "sun.gc.generation.1.space.0.used",
+        "sun.gc.generation.1.space.0.capacity",
+        "sun.os.hrt.ticks",
+        "sun.os.hrt.frequency",
+    };
+
+    private File tmpDir;
+    private List<File> files;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("perfdata-benchmark").toFile();
+        files = new ArrayList<>();
+        for (int i = 0; i < NUM_VMS; i++) {
+            PerfDataBuilder builder = new PerfDataBuilder()
+                    .addLong("sun.rt.createVmBeginTime", 1L)
+                    .addLong("sun.rt.createVmEndTime", 2L)
+                    .addString("java.property.java.version", "1.8.0", true);
+            for (String counter : COUNTERS) {
+                builder.addLong(counter, i);
+            }
+            File file = new File(tmpDir, String.valueOf(i));
+            builder.writeTo(file);
+            files.add(file);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.deleteRecursively(tmpDir);
+    }
+
+    @Test
+    public void compareReaders() throws Exception {
+        List<MonitoredVm> jvmstatVms = new ArrayList<>();
+        for (File file : files) {
+            VmIdentifier vmId = new VmIdentifier("file:" + file.getAbsolutePath());
+            jvmstatVms.add(MonitoredHost.getMonitoredHost(vmId).getMonitoredVm(vmId));
+        }
+        List<PerfDataBuffer> buffers = new ArrayList<>();
+        for (File file : files) {
+            buffers.add(PerfDataLocator.map(file));
+        }
+
+        try {
+            long expected = readJvmstat(jvmstatVms);
+            assertEquals(expected, readPerfData(buffers));
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                readJvmstat(jvmstatVms);
+                readPerfData(buffers);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                readJvmstat(jvmstatVms);
+            }
+            long jvmstatNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                readPerfData(buffers);
+            }
+            long perfDataNanos = System.nanoTime() - start;
+
+            System.out.println("Reading " + COUNTERS.length + " counters of " + NUM_VMS + " VMs, "
+                    + ROUNDS + " rounds:");
+            System.out.println("  jvmstat:  " + (jvmstatNanos / ROUNDS / 1000) + " us/round");
+            System.out.println("  perfdata: " + (perfDataNanos / ROUNDS / 1000) + " us/round");
+        } finally {
+            for (MonitoredVm vm : jvmstatVms) {
+                vm.detach();
+            }
+        }
+    }
+
+    private long readJvmstat(List<MonitoredVm> vms) throws Exception {
+        long sum = 0;
+        for (MonitoredVm vm : vms) {
+            for (String counter : COUNTERS) {
+                sum += (Long) vm.findByName(counter).getValue();
+            }
+        }
+        return sum;
+    }
+
+    private long readPerfData(List<PerfDataBuffer> buffers) {
+        long sum = 0;
+        for (PerfDataBuffer buffer : buffers) {
+            for (String counter : COUNTERS) {
+                sum += buffer.findCounter(counter).longValue();
+            }
+        }
+        return sum;
+    }
+
+}
@@ -40,49 +40,365 @@ import com.redhat.thermostat.common.model.Range;
 import com.redhat.thermostat.storage.model.TimeStampedPojo;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * Keeps recent {@link TimeStampedPojo}s in a ring of time buckets.
+ * <p>
+ * Values older than the retention, relative to the newest value put, are
+ * dropped a whole bucket at a time. When a maximum weight is given the
+ * oldest buckets are dropped as well until the values left weigh no more
+ * than that, although the newest bucket is always kept.
+ * <p>
+ * Readers never lock: each bucket publishes an immutable snapshot of its
+ * values, sorted by timestamp and in insertion order for equal timestamps.
+ * Writers only lock the bucket they put into.
  */
 public class RangedCache<T extends TimeStampedPojo> {
 
-    private TreeMap<Long, List<T>> cache;
+    /**
+     * Gives the weight, usually an estimate of the size in bytes, of a value.
+     */
+    public interface Weigher<T> {
+        long weigh(T value);
+    }
+
+    public static final long DEFAULT_RETENTION = 10 * 60 * 1000;
+    public static final long DEFAULT_BUCKET_WIDTH = 1000;
+
+    private static final Weigher<Object> UNIT_WEIGHER = new Weigher<Object>() {
+        @Override
+        public long weigh(Object value) {
+            return 1;
+        }
+    };
+
+    private final long bucketWidth;
+    private final int bucketCount;
+    private final long maxWeight;
+    private final Weigher<? super T> weigher;
+
+    private final AtomicReferenceArray<Bucket<T>> buckets;
+    private final AtomicLong newestEpoch;
+    private final AtomicLong weight;
 
     public RangedCache() {
-        this(new TreeMap<Long, List<T>>());
+        this(DEFAULT_RETENTION, DEFAULT_BUCKET_WIDTH, Long.MAX_VALUE, UNIT_WEIGHER);
     }
 
-    RangedCache(TreeMap<Long, List<T>> cache) {
-        this.cache = cache;
+    /**
+     * @param retention how long values are kept, in milliseconds
+     * @param bucketWidth how many milliseconds one bucket covers; values are
+     *        dropped a bucket at a time
+     * @param maxWeight the weight of all values above which old buckets are
+     *        dropped, {@link Long#MAX_VALUE} to only drop old values
+     * @param weigher gives the weight of each value
+     */
+    public RangedCache(long retention, long bucketWidth, long maxWeight,
+                       Weigher<? super T> weigher)
+    {
+        if (retention <= 0 || bucketWidth <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("retention, bucket width and maximum weight must be positive");
+        }
+        long count = (retention + bucketWidth - 1) / bucketWidth;
+        if (count >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("retention " + retention + " needs too many buckets of width " + bucketWidth);
+        }
+
+        this.bucketWidth = bucketWidth;
+        // one more bucket so that a full retention fits when it does not
+        // start at a bucket boundary
+        this.bucketCount = (int) count + 1;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        this.newestEpoch = new AtomicLong(Long.MIN_VALUE);
+        this.weight = new AtomicLong();
     }
 
-    public synchronized void put(T value) {
-        List<T> set = cache.get(value.getTimeStamp());
-        if (set == null) {
-            set = new LinkedList<>();
+    public void put(T value) {
+        long timeStamp = value.getTimeStamp();
+        long epoch = floorDiv(timeStamp, bucketWidth);
+        long newest = advanceNewestEpoch(epoch);
+        if (epoch <= newest - bucketCount) {
+            // older than the retention
+            return;
+        }
+
+        long valueWeight = weigher.weigh(value);
+        int index = indexOf(epoch);
+        while (true) {
+            Bucket<T> bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch > epoch) {
+                // a newer bucket took the slot
+                return;
+            }
+            if (bucket == null || bucket.epoch < epoch) {
+                Bucket<T> created = new Bucket<>(epoch);
+                if (!buckets.compareAndSet(index, bucket, created)) {
+                    continue;
+                }
+                if (bucket != null) {
+                    evict(bucket);
+                }
+                bucket = created;
+            }
+            if (bucket.add(value, valueWeight)) {
+                weight.addAndGet(valueWeight);
+                break;
+            }
+            // the bucket was evicted meanwhile, try again
+        }
+
+        if (weight.get() > maxWeight) {
+            evictOldest();
         }
-        set.add(value);
-        cache.put(value.getTimeStamp(), set);
     }
 
-    public synchronized List<T> getValues(long lowerBound, long upperBound) {
+    public List<T> getValues(long lowerBound, long upperBound) {
         return getValues(new Range<>(lowerBound, upperBound));
     }
 
-    public synchronized List<T> getValues(Range<Long> range) {
+    /**
+     * Returns a copy of the values with a timestamp in the given range, both
+     * bounds included, ordered by timestamp.
+     */
+    public List<T> getValues(Range<Long> range) {
         List<T> result = new ArrayList<>();
+        for (T value : getRange(range.getMin(), range.getMax())) {
+            result.add(value);
+        }
+        return result;
+    }
 
-        // the +1 is because the range upper bound is exclusive
-        for (List<T> set : cache.subMap(range.getMin(), range.getMax() + 1).values()) {
-            result.addAll(set);
+    /**
+     * Returns a view of the values with a timestamp between the given
+     * bounds, both included, ordered by timestamp. Nothing is copied;
+     * iterating the view sees the values of each bucket as they were when
+     * the iteration reached that bucket.
+     */
+    public Iterable<T> getRange(final long lowerBound, final long upperBound) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new RangeIterator(lowerBound, upperBound);
+            }
+        };
+    }
+
+    public void clear() {
+        newestEpoch.set(Long.MIN_VALUE);
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket<T> bucket = buckets.getAndSet(i, null);
+            if (bucket != null) {
+                evict(bucket);
+            }
         }
+    }
+
+    /**
+     * Returns the weight of the values currently kept.
+     */
+    public long getWeight() {
+        return weight.get();
+    }
 
+    private long advanceNewestEpoch(long epoch) {
+        while (true) {
+            long newest = newestEpoch.get();
+            if (epoch <= newest) {
+                return newest;
+            }
+            if (newestEpoch.compareAndSet(newest, epoch)) {
+                return epoch;
+            }
+        }
+    }
+
+    private void evictOldest() {
+        long newest = newestEpoch.get();
+        for (long epoch = newest - bucketCount + 1; epoch < newest && weight.get() > maxWeight; epoch++) {
+            int index = indexOf(epoch);
+            Bucket<T> bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch == epoch && buckets.compareAndSet(index, bucket, null)) {
+                evict(bucket);
+            }
+        }
+    }
+
+    private void evict(Bucket<T> bucket) {
+        weight.addAndGet(-bucket.kill());
+    }
+
+    private int indexOf(long epoch) {
+        return (int) floorMod(epoch, bucketCount);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            result--;
+        }
         return result;
     }
 
-    public synchronized void clear() {
-        cache.clear();
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    private static class Bucket<T extends TimeStampedPojo> {
+
+        private final long epoch;
+
+        // guarded by this
+        private long weight;
+        private boolean dead;
+
+        private volatile Snapshot snapshot;
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+            this.snapshot = new Snapshot(new TimeStampedPojo[4], 0);
+        }
+
+        synchronized boolean add(T value, long valueWeight) {
+            if (dead) {
+                return false;
+            }
+
+            Snapshot current = snapshot;
+            TimeStampedPojo[] values = current.values;
+            int size = current.size;
+            long timeStamp = value.getTimeStamp();
+
+            if (size == 0 || values[size - 1].getTimeStamp() <= timeStamp) {
+                // the common case: values arrive in order and are appended
+                // past the end of what readers of the current snapshot see
+                if (size == values.length) {
+                    TimeStampedPojo[] grown = new TimeStampedPojo[size * 2];
+                    System.arraycopy(values, 0, grown, 0, size);
+                    values = grown;
+                }
+                values[size] = value;
+            } else {
+                // out of order: readers may be looking at any position of the
+                // current array, so build a new one
+                int position = size;
+                while (position > 0 && values[position - 1].getTimeStamp() > timeStamp) {
+                    position--;
+                }
+                TimeStampedPojo[] inserted = new TimeStampedPojo[Math.max(values.length, size + 1)];
+                System.arraycopy(values, 0, inserted, 0, position);
+                inserted[position] = value;
+                System.arraycopy(values, position, inserted, position + 1, size - position);
+                values = inserted;
+            }
+
+            snapshot = new Snapshot(values, size + 1);
+            weight += valueWeight;
+            return true;
+        }
+
+        /**
+         * Stops any further values from being added and returns the weight
+         * of the values added so far.
+         */
+        synchronized long kill() {
+            dead = true;
+            return weight;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final TimeStampedPojo[] values;
+        private final int size;
+
+        Snapshot(TimeStampedPojo[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+    }
+
+    private class RangeIterator implements Iterator<T> {
+
+        private final long lowerBound;
+        private final long upperBound;
+        private final long lastEpoch;
+
+        private long epoch;
+        private Snapshot snapshot;
+        private int position;
+        private T next;
+
+        RangeIterator(long lowerBound, long upperBound) {
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+
+            long newest = newestEpoch.get();
+            if (newest == Long.MIN_VALUE || lowerBound > upperBound) {
+                // nothing to iterate
+                this.epoch = 0;
+                this.lastEpoch = -1;
+            } else {
+                this.epoch = Math.max(floorDiv(lowerBound, bucketWidth), newest - bucketCount + 1);
+                this.lastEpoch = Math.min(floorDiv(upperBound, bucketWidth), newest);
+            }
+            this.next = findNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T result = next;
+            next = findNext();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        private T findNext() {
+            while (true) {
+                if (snapshot != null) {
+                    while (position < snapshot.size) {
+                        TimeStampedPojo value = snapshot.values[position++];
+                        if (value.getTimeStamp() > upperBound) {
+                            return null;
+                        }
+                        if (value.getTimeStamp() >= lowerBound) {
+                            return (T) value;
+                        }
+                    }
+                    snapshot = null;
+                    epoch++;
+                }
+                if (epoch > lastEpoch) {
+                    return null;
+                }
+                Bucket<T> bucket = buckets.get(indexOf(epoch));
+                if (bucket != null && bucket.epoch == epoch) {
+                    snapshot = bucket.snapshot;
+                    position = 0;
+                } else {
+                    epoch++;
+                }
+            }
+        }
     }
 }
@@ -47,6 +47,7 @@ import com.redhat.thermostat.storage.core.experimental.statement.ResultHandler;
 import com.redhat.thermostat.thread.model.SessionID;
 import com.redhat.thermostat.thread.model.ThreadHarvestingStatus;
 import com.redhat.thermostat.thread.model.ThreadSession;
+import com.redhat.thermostat.thread.model.ThreadStack;
 import com.redhat.thermostat.thread.model.ThreadState;
 import com.redhat.thermostat.thread.model.ThreadSummary;
 import com.redhat.thermostat.thread.model.VmDeadLockData;
@@ -114,5 +115,17 @@ public interface ThreadDao {
                          ResultHandler<ThreadState> handler,
                          Range<Long> range, int limit, Sort order);
 
+    /**
+     * Adds the given {@link ThreadStack} to storage.
+     */
+    void addThreadStack(ThreadStack stack);
+
+    /**
+     * Returns all the {@link ThreadStack}s of the given session, which the
+     * {@link ThreadState}s of the session refer to by id.
+     */
+    void getThreadStacks(VmRef ref, SessionID session,
+                         ResultHandler<ThreadStack> handler);
+
     long getDeadLockCount();
 }
@@ -66,11 +66,13 @@ import com.redhat.thermostat.storage.model.AggregateCount;
 import com.redhat.thermostat.storage.model.Pojo;
 import com.redhat.thermostat.thread.dao.ThreadDao;
 import com.redhat.thermostat.thread.dao.internal.statement.SessionQueries;
+import com.redhat.thermostat.thread.dao.internal.statement.StackQueries;
 import com.redhat.thermostat.thread.dao.internal.statement.StateQueries;
 import com.redhat.thermostat.thread.dao.internal.statement.SummaryQuery;
 import com.redhat.thermostat.thread.model.SessionID;
 import com.redhat.thermostat.thread.model.ThreadHarvestingStatus;
 import com.redhat.thermostat.thread.model.ThreadSession;
+import com.redhat.thermostat.thread.model.ThreadStack;
 import com.redhat.thermostat.thread.model.ThreadState;
 import com.redhat.thermostat.thread.model.ThreadSummary;
 import com.redhat.thermostat.thread.model.VmDeadLockData;
@@ -82,6 +84,7 @@ public class ThreadDaoImpl extends BaseCountable implements ThreadDao {
     static final BeanAdapter<ThreadSummary> ThreadSummaryAdapter = new BeanAdapterBuilder<>(ThreadSummary.class, new SummaryQuery()).build();
     static final BeanAdapter<ThreadSession> ThreadSessionAdapter = new BeanAdapterBuilder<>(ThreadSession.class, SessionQueries.asList()).build();
     static final BeanAdapter<ThreadState> ThreadStateAdapter = new BeanAdapterBuilder<>(ThreadState.class, StateQueries.asList()).build();
+    static final BeanAdapter<ThreadStack> ThreadStackAdapter = new BeanAdapterBuilder<>(ThreadStack.class, StackQueries.asList()).build();
 
     static final String QUERY_LATEST_HARVESTING_STATUS = "QUERY "
             + THREAD_HARVESTING_STATUS.getName() + " WHERE '"
@@ -175,6 +178,35 @@ public class ThreadDaoImpl extends BaseCountable implements ThreadDao {
         }
     }
 
+    @Override
+    public void addThreadStack(ThreadStack stack) {
+        try {
+            ThreadStackAdapter.insert(stack, storage);
+
+        } catch (StatementExecutionException e) {
+            logger.log(Level.SEVERE, "Exception saving thread stack: " + stack, e);
+        }
+    }
+
+    @Override
+    public void getThreadStacks(VmRef ref, SessionID session,
+                                ResultHandler<ThreadStack> handler)
+    {
+        Query<ThreadStack> query = ThreadStackAdapter.getQuery(StackQueries.getAll);
+
+        QueryValues values = query.createValues();
+        values.set(StackQueries.CriteriaId.vmId, ref.getVmId());
+        values.set(StackQueries.CriteriaId.agentId, ref.getHostRef().getAgentId());
+        values.set(StackQueries.CriteriaId.sessionID, session.get());
+
+        try {
+            ThreadStackAdapter.query(values, handler, storage);
+
+        } catch (StatementExecutionException e) {
+            logger.log(Level.SEVERE, "Exception retrieving thread stacks", e);
+        }
+    }
+
     @Override
     public List<ThreadSummary> getSummary(VmRef ref, Range<Long> range, int limit) {
         final List<ThreadSummary> results = new ArrayList<>();
@@ -61,6 +61,7 @@ public class ThreadDaoImplStatementDescriptorRegistration implements
         descs.addAll(ThreadDaoImpl.ThreadSummaryAdapter.describeStatements());
         descs.addAll(ThreadDaoImpl.ThreadSessionAdapter.describeStatements());
         descs.addAll(ThreadDaoImpl.ThreadStateAdapter.describeStatements());
+        descs.addAll(ThreadDaoImpl.ThreadStackAdapter.describeStatements());
 
         descs.add(ThreadDaoImpl.DESC_ADD_THREAD_DEADLOCK_DATA);
         descs.add(ThreadDaoImpl.DESC_ADD_THREAD_HARVESTING_STATUS);
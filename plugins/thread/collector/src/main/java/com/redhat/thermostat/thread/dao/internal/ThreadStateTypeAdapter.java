@@ -58,6 +58,7 @@ public class ThreadStateTypeAdapter extends TypeAdapter<ThreadState> {
     private static final String WAITED_COUNT = "waitedCount";
     private static final String WAITED_TIME = "waitedTime";
     private static final String STACKTRACE = "stackTrace";
+    private static final String STACK_ID = "stackId";
     private static final String TYPE_LONG = "$numberLong";
 
     @Override
@@ -94,6 +95,8 @@ public class ThreadStateTypeAdapter extends TypeAdapter<ThreadState> {
         writeLong(out, state.getWaitedTime());
         out.name(STACKTRACE);
         out.value(state.getStackTrace());
+        out.name(STACK_ID);
+        writeLong(out, state.getStackId());
         out.endObject();
     }
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.thread.model;
+
+import com.redhat.thermostat.storage.core.Entity;
+import com.redhat.thermostat.storage.core.Persist;
+import com.redhat.thermostat.storage.core.experimental.statement.Category;
+import com.redhat.thermostat.storage.core.experimental.statement.Indexed;
+import com.redhat.thermostat.storage.model.BasePojo;
+import com.redhat.thermostat.storage.model.TimeStampedPojo;
+import com.redhat.thermostat.thread.dao.internal.ThreadDaoCategories;
+
+/**
+ * A stack trace seen for the first time during a thread harvesting session.
+ * {@link ThreadState}s of the same session refer to it by its id instead
+ * of carrying the whole stack trace.
+ */
+@Category(ThreadDaoCategories.Categories.STACK)
+@Entity
+public class ThreadStack extends BasePojo implements TimeStampedPojo {
+
+    private long timeStamp;
+    private String vmId;
+    private String session;
+    private long stackId;
+    private String stackTrace;
+
+    public ThreadStack() {
+        this(null);
+    }
+
+    public ThreadStack(String writerId) {
+        super(writerId);
+    }
+
+    @Indexed
+    @Persist
+    public String getVmId() {
+        return vmId;
+    }
+
+    @Indexed
+    @Persist
+    public void setVmId(String vmId) {
+        this.vmId = vmId;
+    }
+
+    @Persist
+    @Override
+    public long getTimeStamp() {
+        return timeStamp;
+    }
+
+    @Persist
+    public void setTimeStamp(long timeStamp) {
+        this.timeStamp = timeStamp;
+    }
+
+    @Indexed
+    @Persist
+    public void setSession(String session) {
+        this.session = session;
+    }
+
+    @Indexed
+    @Persist
+    public String getSession() {
+        return session;
+    }
+
+    @Persist
+    public void setStackId(long stackId) {
+        this.stackId = stackId;
+    }
+
+    @Persist
+    public long getStackId() {
+        return stackId;
+    }
+
+    /**
+     * The stack trace, in the format of {@link StackTrace#toString()}.
+     */
+    @Persist
+    public void setStackTrace(String stackTrace) {
+        this.stackTrace = stackTrace;
+    }
+
+    @Persist
+    public String getStackTrace() {
+        return stackTrace;
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadStack: [id: " + stackId + ", session: " + session +
+               ", timestamp: " + timeStamp + "]";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+
+        ThreadStack that = (ThreadStack) o;
+
+        if (stackId != that.stackId) return false;
+        if (timeStamp != that.timeStamp) return false;
+        if (session != null ? !session.equals(that.session) : that.session != null)
+            return false;
+        if (vmId != null ? !vmId.equals(that.vmId) : that.vmId != null)
+            return false;
+        if (stackTrace != null ? !stackTrace.equals(that.stackTrace) : that.stackTrace != null)
+            return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + (vmId != null ? vmId.hashCode() : 0);
+        result = 31 * result + (session != null ? session.hashCode() : 0);
+        result = 31 * result + (int) (stackId ^ (stackId >>> 32));
+        result = 31 * result + (int) (timeStamp ^ (timeStamp >>> 32));
+        result = 31 * result + (stackTrace != null ? stackTrace.hashCode() : 0);
+        return result;
+    }
+}
@@ -64,6 +64,7 @@ public class ThreadState extends BasePojo implements TimeStampedPojo {
     private long waitedCount;
     private long waitedTime;
     private String stackTrace;
+    private long stackId;
 
     public ThreadState() {
         this(null);
@@ -174,6 +175,20 @@ public class ThreadState extends BasePojo implements TimeStampedPojo {
         return stackTrace;
     }
 
+    /**
+     * The id of the {@link ThreadStack} of this thread in the same session,
+     * or {@code 0} if the stack trace is stored in this state itself.
+     */
+    @Persist
+    public void setStackId(long stackId) {
+        this.stackId = stackId;
+    }
+
+    @Persist
+    public long getStackId() {
+        return stackId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -183,6 +198,7 @@ public class ThreadState extends BasePojo implements TimeStampedPojo {
         ThreadState that = (ThreadState) o;
 
         if (id != that.id) return false;
+        if (stackId != that.stackId) return false;
         if (inNative != that.inNative) return false;
         if (suspended != that.suspended) return false;
         if (name != null ? !name.equals(that.name) : that.name != null)
@@ -210,6 +226,7 @@ public class ThreadState extends BasePojo implements TimeStampedPojo {
         result = 31 * result + (suspended ? 1 : 0);
         result = 31 * result + (inNative ? 1 : 0);
         result = 31 * result + (stackTrace != null ? stackTrace.hashCode() : 0);
+        result = 31 * result + (int) (stackId ^ (stackId >>> 32));
         return result;
     }
 
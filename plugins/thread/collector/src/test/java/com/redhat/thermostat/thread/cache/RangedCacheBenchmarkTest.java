@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.thread.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.storage.model.TimeStampedPojo;
+import com.redhat.thermostat.testutils.ConcurrentBenchmark;
+import com.redhat.thermostat.testutils.PerformanceTest;
+
+/**
+ * Measures putting the states of a vm with many threads into the cache, as
+ * the harvester does every 250 ms, and scanning the last ten seconds of
+ * them. Run with -Pperf-tests.
+ */
+@Category(PerformanceTest.class)
+public class RangedCacheBenchmarkTest {
+
+    private static final int THREADS_PER_TICK = 2000;
+    private static final long TICK = 250;
+    private static final long SCAN_WIDTH = 10_000;
+
+    private final ConcurrentBenchmark benchmark = new ConcurrentBenchmark(200, 800);
+
+    @Test
+    public void measurePut() throws Exception {
+        System.out.println("Putting " + THREADS_PER_TICK + " values per " + TICK + " ms tick:");
+        for (int threadCount : ConcurrentBenchmark.THREAD_COUNTS) {
+            final RangedCache<Value> cache = newCache();
+            final AtomicLong ticks = new AtomicLong();
+            double nanos = benchmark.measure(new ConcurrentBenchmark.Workload() {
+                @Override
+                public void run(int iterations) {
+                    for (int i = 0; i < iterations; i++) {
+                        putTick(cache, ticks.getAndIncrement() * TICK);
+                    }
+                }
+            }, threadCount, THREADS_PER_TICK);
+
+            ConcurrentBenchmark.print(threadCount + " thread(s)", nanos, "put");
+            assertTrue(nanos > 0);
+        }
+    }
+
+    @Test
+    public void measureScan() throws Exception {
+        final RangedCache<Value> cache = newCache();
+        final long newest = (RangedCache.DEFAULT_RETENTION / TICK) * TICK;
+        for (long timeStamp = 0; timeStamp <= newest; timeStamp += TICK) {
+            putTick(cache, timeStamp);
+        }
+        final int valuesPerScan = (int) (SCAN_WIDTH / TICK + 1) * THREADS_PER_TICK;
+
+        System.out.println("Scanning the last " + SCAN_WIDTH + " ms, " + valuesPerScan + " values:");
+        for (int threadCount : ConcurrentBenchmark.THREAD_COUNTS) {
+            double nanos = benchmark.measure(new ConcurrentBenchmark.Workload() {
+                @Override
+                public void run(int iterations) {
+                    for (int i = 0; i < iterations; i++) {
+                        long count = 0;
+                        for (Value value : cache.getRange(newest - SCAN_WIDTH, newest)) {
+                            count++;
+                        }
+                        assertTrue(count == valuesPerScan);
+                    }
+                }
+            }, threadCount, valuesPerScan);
+
+            ConcurrentBenchmark.print(threadCount + " thread(s)", nanos, "value");
+            assertTrue(nanos > 0);
+        }
+    }
+
+    private static RangedCache<Value> newCache() {
+        return new RangedCache<>(RangedCache.DEFAULT_RETENTION, RangedCache.DEFAULT_BUCKET_WIDTH,
+                Long.MAX_VALUE, new RangedCache.Weigher<Value>() {
+                    @Override
+                    public long weigh(Value value) {
+                        return 1;
+                    }
+                });
+    }
+
+    private static void putTick(RangedCache<Value> cache, long timeStamp) {
+        for (int i = 0; i < THREADS_PER_TICK; i++) {
+            cache.put(new Value(timeStamp));
+        }
+    }
+
+    private static class Value implements TimeStampedPojo {
+
+        private final long timeStamp;
+
+        Value(long timeStamp) {
+            this.timeStamp = timeStamp;
+        }
+
+        @Override
+        public long getTimeStamp() {
+            return timeStamp;
+        }
+    }
+}
@@ -39,6 +39,7 @@ package com.redhat.thermostat.thread.cache;
 import com.redhat.thermostat.storage.model.TimeStampedPojo;
 import org.junit.Test;
 
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -143,4 +144,101 @@ public class RangedCacheTest {
         assertEquals(bean4, values.get(5));
         assertEquals(bean5, values.get(6));
     }
+
+    @Test
+    public void testEmptyCache() {
+        RangedCache<Bean> cache = new RangedCache<>();
+
+        assertTrue(cache.getValues(0, Long.MAX_VALUE).isEmpty());
+        assertFalse(cache.getRange(Long.MIN_VALUE, Long.MAX_VALUE).iterator().hasNext());
+
+        cache.put(new Bean(1_000));
+        assertTrue(cache.getValues(2_000, 1_000).isEmpty());
+    }
+
+    @Test
+    public void testOldValuesAreDropped() {
+        RangedCache<Bean> cache = new RangedCache<>(3_000, 1_000, Long.MAX_VALUE, new CountingWeigher());
+
+        Bean bean0 = new Bean(0);
+        Bean bean2 = new Bean(2_500);
+        Bean bean4 = new Bean(4_000);
+        cache.put(bean0);
+        cache.put(bean2);
+        assertEquals(2, cache.getWeight());
+
+        cache.put(bean4);
+
+        List<Bean> values = cache.getValues(0, 5_000);
+        assertEquals(2, values.size());
+        assertEquals(bean2, values.get(0));
+        assertEquals(bean4, values.get(1));
+        assertEquals(2, cache.getWeight());
+
+        // too old to be kept at all
+        cache.put(new Bean(500));
+        assertEquals(2, cache.getValues(0, 5_000).size());
+    }
+
+    @Test
+    public void testHeavyValuesAreDropped() {
+        RangedCache<Bean> cache = new RangedCache<>(10_000, 1_000, 3, new CountingWeigher());
+
+        for (long timeStamp = 0; timeStamp < 5_000; timeStamp += 500) {
+            cache.put(new Bean(timeStamp));
+        }
+
+        List<Bean> values = cache.getValues(0, 5_000);
+        assertEquals(2, values.size());
+        assertEquals(4_000, values.get(0).getTimeStamp());
+        assertEquals(4_500, values.get(1).getTimeStamp());
+        assertEquals(2, cache.getWeight());
+
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+        assertTrue(cache.getValues(0, 5_000).isEmpty());
+    }
+
+    @Test
+    public void testRangeIsAView() {
+        RangedCache<Bean> cache = new RangedCache<>();
+
+        Bean bean1 = new Bean(1_000);
+        Bean bean2 = new Bean(2_000);
+        Bean bean3 = new Bean(3_000);
+        cache.put(bean1);
+        cache.put(bean3);
+
+        Iterable<Bean> range = cache.getRange(0, 5_000);
+
+        cache.put(bean2);
+
+        Iterator<Bean> values = range.iterator();
+        assertEquals(bean1, values.next());
+        assertEquals(bean2, values.next());
+        assertEquals(bean3, values.next());
+        assertFalse(values.hasNext());
+    }
+
+    @Test
+    public void testNegativeTimeStamps() {
+        RangedCache<Bean> cache = new RangedCache<>();
+
+        Bean before = new Bean(-1_500);
+        Bean after = new Bean(500);
+        cache.put(after);
+        cache.put(before);
+
+        List<Bean> values = cache.getValues(-2_000, 0);
+        assertEquals(1, values.size());
+        assertEquals(before, values.get(0));
+        assertEquals(2, cache.getValues(-2_000, 1_000).size());
+    }
+
+    private static class CountingWeigher implements RangedCache.Weigher<Bean> {
+        @Override
+        public long weigh(Bean value) {
+            return 1;
+        }
+    }
 }
@@ -51,7 +51,7 @@ import com.redhat.thermostat.thread.dao.ThreadDao;
 
 public class ThreadDAOCategoryRegistrationTest extends ServiceLoaderTest<CategoryRegistration> {
 
-    private static final int EXPECTED_CATEGORIES = 5;
+    private static final int EXPECTED_CATEGORIES = 6;
 
     public ThreadDAOCategoryRegistrationTest() {
         super(CategoryRegistration.class, STORAGE_SERVICES + 1 /* from lock dao */,
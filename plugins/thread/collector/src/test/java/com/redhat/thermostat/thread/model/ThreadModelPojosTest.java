@@ -44,6 +44,7 @@ public class ThreadModelPojosTest extends DataObjectTest {
         LockInfo.class,
         ThreadHarvestingStatus.class,
         ThreadState.class,
+        ThreadStack.class,
         ThreadSummary.class,
         VmDeadLockData.class,
     };
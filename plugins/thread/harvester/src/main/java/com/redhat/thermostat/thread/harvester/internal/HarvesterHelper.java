@@ -37,39 +37,85 @@
 package com.redhat.thermostat.thread.harvester.internal;
 
 import com.redhat.thermostat.common.Clock;
+import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.thread.dao.ThreadDao;
 import com.redhat.thermostat.thread.model.ThreadSession;
 import com.redhat.thermostat.thread.model.ThreadState;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /*
  */
+@SuppressWarnings("restriction")
 class HarvesterHelper {
 
+    /**
+     * Set to {@link #DELTA_MODE} to only save the threads that changed since
+     * the previous sample, plus all threads once every keyframe interval.
+     * Anything else saves all threads on every sample.
+     */
+    static final String MODE_PROPERTY = "com.redhat.thermostat.thread.harvester.mode";
+    static final String DELTA_MODE = "delta";
+    /**
+     * Milliseconds between two samples that save all threads in delta mode.
+     */
+    static final String KEYFRAME_INTERVAL_PROPERTY = "com.redhat.thermostat.thread.harvester.keyframeInterval";
+    static final long DEFAULT_KEYFRAME_INTERVAL = 10000;
+
+    private static final Logger logger = LoggingUtils.getLogger(HarvesterHelper.class);
+
     private Clock clock;
     private String vmId;
 
     private ThreadStateHelper stateHelper;
     private ThreadSessionHelper sessionHelper;
 
+    // null when all threads are saved on every sample
+    private final ThreadDeltaHelper deltaHelper;
+    private ThreadSession deltaSession;
+
     HarvesterHelper(ThreadDao threadDao, Clock clock, String vmId, WriterID writerId)
     {
         this(clock, vmId,
              new ThreadStateHelper(threadDao, writerId, vmId),
-             new ThreadSessionHelper(threadDao, writerId, vmId, clock));
+             new ThreadSessionHelper(threadDao, writerId, vmId, clock),
+             createDeltaHelper());
     }
 
     HarvesterHelper(Clock clock, String vmId,
                     ThreadStateHelper stateHelper,
                     ThreadSessionHelper sessionHelper)
+    {
+        this(clock, vmId, stateHelper, sessionHelper, null);
+    }
+
+    HarvesterHelper(Clock clock, String vmId,
+                    ThreadStateHelper stateHelper,
+                    ThreadSessionHelper sessionHelper,
+                    ThreadDeltaHelper deltaHelper)
     {
         this.vmId = vmId;
         this.clock = clock;
 
         this.stateHelper = stateHelper;
         this.sessionHelper = sessionHelper;
+        this.deltaHelper = deltaHelper;
+    }
+
+    private static ThreadDeltaHelper createDeltaHelper() {
+        if (!DELTA_MODE.equals(System.getProperty(MODE_PROPERTY))) {
+            return null;
+        }
+        long keyframeInterval = Long.getLong(KEYFRAME_INTERVAL_PROPERTY, DEFAULT_KEYFRAME_INTERVAL);
+        if (keyframeInterval <= 0) {
+            logger.warning("Invalid value for " + KEYFRAME_INTERVAL_PROPERTY + ": " + keyframeInterval
+                    + ", using default: " + DEFAULT_KEYFRAME_INTERVAL);
+            keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+        }
+        return new ThreadDeltaHelper(keyframeInterval);
     }
 
     synchronized void collectAndSaveThreadData(ThreadSession session,
@@ -77,6 +123,11 @@ class HarvesterHelper {
     {
         long timestamp = clock.getRealTimeMillis();
 
+        if (deltaHelper != null) {
+            collectAndSaveChangedThreadData(session, collectorBean, timestamp);
+            return;
+        }
+
         /**
          * use false, false to not acquire dumps of
          * locked monitors and locked ownable synchronizers;
@@ -100,6 +151,55 @@ class HarvesterHelper {
         }
     }
 
+    private void collectAndSaveChangedThreadData(ThreadSession session,
+                                                 ThreadMXBean collectorBean,
+                                                 long timestamp)
+    {
+        if (session != deltaSession) {
+            deltaHelper.reset();
+            deltaSession = session;
+        }
+
+        // ids and states only, without stacks, are cheap to get
+        long[] ids = collectorBean.getAllThreadIds();
+        ThreadInfo[] infos = collectorBean.getThreadInfo(ids, 0);
+        long[] cpuTimes = getThreadCpuTimes(collectorBean, ids);
+
+        long[] changed = deltaHelper.selectChanged(infos, cpuTimes, timestamp);
+        if (changed.length == 0) {
+            return;
+        }
+
+        ThreadInfo[] threadInfos = collectorBean.getThreadInfo(changed, Integer.MAX_VALUE);
+        for (ThreadInfo beanInfo : threadInfos) {
+            // the thread may have died since it was sampled
+            if (beanInfo != null) {
+                ThreadState state =
+                        stateHelper.createThreadState(beanInfo,
+                                session.getSessionID(),
+                                timestamp);
+                stateHelper.saveThreadState(state);
+            }
+        }
+    }
+
+    /*
+     * Only the com.sun.management bean can get the cpu times of all threads
+     * in one call; asking for each thread separately would cost one remote
+     * call per thread, so changes are then detected from states alone.
+     */
+    private long[] getThreadCpuTimes(ThreadMXBean collectorBean, long[] ids) {
+        if (!(collectorBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        try {
+            return ((com.sun.management.ThreadMXBean) collectorBean).getThreadCpuTime(ids);
+        } catch (UnsupportedOperationException e) {
+            logger.log(Level.FINE, "thread cpu time not available", e);
+            return null;
+        }
+    }
+
     public ThreadSession createSession() {
         return sessionHelper.createSession();
     }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.thread.harvester.internal;
+
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Remembers what was last seen of every thread of a vm, so that only
+ * threads that changed since the previous sample need their stack
+ * fetched and their state saved. Every {@code keyframeInterval}
+ * milliseconds all threads are reported regardless, so that readers
+ * never have to look further back than one keyframe.
+ */
+class ThreadDeltaHelper {
+
+    private final long keyframeInterval;
+    private final Map<Long, Snapshot> lastSeen;
+
+    private long lastKeyframe;
+    private boolean keyframeDone;
+
+    ThreadDeltaHelper(long keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+        this.lastSeen = new HashMap<>();
+    }
+
+    /**
+     * Forgets everything seen so far; the next sample will be a keyframe.
+     */
+    void reset() {
+        lastSeen.clear();
+        keyframeDone = false;
+    }
+
+    /**
+     * Compares a stackless sample of the threads with the previous one.
+     *
+     * @param infos the sampled threads, {@code null} entries are threads
+     *        that died before they could be sampled
+     * @param cpuTimes the cpu time of each thread in {@code infos}, or
+     *        {@code null} if cpu times are not available
+     * @param timestamp the time of the sample
+     *
+     * @return the ids of the threads whose state should be saved
+     */
+    long[] selectChanged(ThreadInfo[] infos, long[] cpuTimes, long timestamp) {
+        boolean keyframe = !keyframeDone || timestamp - lastKeyframe >= keyframeInterval;
+        if (keyframe) {
+            keyframeDone = true;
+            lastKeyframe = timestamp;
+        }
+
+        long[] changed = new long[infos.length];
+        int count = 0;
+
+        Map<Long, Snapshot> alive = new HashMap<>(infos.length * 2);
+        for (int i = 0; i < infos.length; i++) {
+            ThreadInfo info = infos[i];
+            if (info == null) {
+                continue;
+            }
+
+            long cpuTime = cpuTimes != null ? cpuTimes[i] : -1;
+            Snapshot current = new Snapshot(info, cpuTime);
+            Snapshot previous = lastSeen.get(info.getThreadId());
+            if (keyframe || !current.equals(previous)) {
+                changed[count++] = info.getThreadId();
+            }
+            alive.put(info.getThreadId(), current);
+        }
+
+        // threads that are gone will not come back with the same id
+        for (Iterator<Long> ids = lastSeen.keySet().iterator(); ids.hasNext();) {
+            if (!alive.containsKey(ids.next())) {
+                ids.remove();
+            }
+        }
+        lastSeen.putAll(alive);
+
+        long[] result = new long[count];
+        System.arraycopy(changed, 0, result, 0, count);
+        return result;
+    }
+
+    private static class Snapshot {
+
+        private final Thread.State state;
+        private final boolean suspended;
+        private final boolean inNative;
+        private final long cpuTime;
+
+        private Snapshot(ThreadInfo info, long cpuTime) {
+            this.state = info.getThreadState();
+            this.suspended = info.isSuspended();
+            this.inNative = info.isInNative();
+            this.cpuTime = cpuTime;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot other = (Snapshot) obj;
+            return state == other.state
+                    && suspended == other.suspended
+                    && inNative == other.inNative
+                    && cpuTime == other.cpuTime;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = state != null ? state.hashCode() : 0;
+            result = 31 * result + (suspended ? 1 : 0);
+            result = 31 * result + (inNative ? 1 : 0);
+            result = 31 * result + (int) (cpuTime ^ (cpuTime >>> 32));
+            return result;
+        }
+    }
+}
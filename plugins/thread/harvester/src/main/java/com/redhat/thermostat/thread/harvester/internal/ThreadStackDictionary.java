@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.thread.harvester.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives every distinct stack trace of a vm a stable id. Frames are interned
+ * first, so a stack is looked up by the ids of its frames instead of by
+ * comparing, or rendering, the frames themselves.
+ * <p>
+ * Ids only grow: once the dictionary holds {@link #MAX_STACKS} stacks it is
+ * emptied, and stacks seen again afterwards get new ids. This bounds the
+ * memory used for vms whose stacks never repeat.
+ */
+class ThreadStackDictionary {
+
+    static final int MAX_STACKS = 10000;
+
+    private final Map<StackTraceElement, Integer> frames;
+    private final Map<StackKey, Long> stacks;
+    private long lastStackId;
+
+    ThreadStackDictionary() {
+        frames = new HashMap<>();
+        stacks = new HashMap<>();
+    }
+
+    /**
+     * @return the id of the given stack trace, greater than any id returned
+     * before if the stack trace has not been seen yet
+     */
+    long intern(StackTraceElement[] trace) {
+        if (stacks.size() >= MAX_STACKS) {
+            clear();
+        }
+
+        int[] frameIds = new int[trace.length];
+        for (int i = 0; i < trace.length; i++) {
+            Integer frameId = frames.get(trace[i]);
+            if (frameId == null) {
+                frameId = frames.size();
+                frames.put(trace[i], frameId);
+            }
+            frameIds[i] = frameId;
+        }
+
+        StackKey key = new StackKey(frameIds);
+        Long stackId = stacks.get(key);
+        if (stackId == null) {
+            stackId = ++lastStackId;
+            stacks.put(key, stackId);
+        }
+        return stackId;
+    }
+
+    long getLastStackId() {
+        return lastStackId;
+    }
+
+    /**
+     * Forgets all stacks, ids keep growing from where they were.
+     */
+    void clear() {
+        stacks.clear();
+        frames.clear();
+    }
+
+    private static class StackKey {
+
+        private final int[] frameIds;
+        private final int hash;
+
+        private StackKey(int[] frameIds) {
+            this.frameIds = frameIds;
+            this.hash = Arrays.hashCode(frameIds);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof StackKey && Arrays.equals(frameIds, ((StackKey) obj).frameIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
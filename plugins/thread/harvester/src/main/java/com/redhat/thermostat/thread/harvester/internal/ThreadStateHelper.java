@@ -40,6 +40,7 @@ import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.thread.dao.ThreadDao;
 import com.redhat.thermostat.thread.model.SessionID;
 import com.redhat.thermostat.thread.model.StackTrace;
+import com.redhat.thermostat.thread.model.ThreadStack;
 import com.redhat.thermostat.thread.model.ThreadState;
 
 import java.lang.management.ThreadInfo;
@@ -50,14 +51,29 @@ public class ThreadStateHelper {
     private final WriterID writerId;
     private final String vmId;
 
+    private final ThreadStackDictionary stacks;
+    private String stacksSession;
+
     public ThreadStateHelper(ThreadDao threadDao,
                              WriterID writerId, String vmId)
+    {
+        this(threadDao, writerId, vmId, new ThreadStackDictionary());
+    }
+
+    ThreadStateHelper(ThreadDao threadDao, WriterID writerId, String vmId,
+                      ThreadStackDictionary stacks)
     {
         this.threadDao = threadDao;
         this.writerId = writerId;
         this.vmId = vmId;
+        this.stacks = stacks;
     }
 
+    /**
+     * Creates the state of the given thread. The state refers to its stack
+     * trace by id; a stack trace seen for the first time in the session is
+     * saved right away, so that it is stored before any state refers to it.
+     */
     public ThreadState createThreadState(ThreadInfo beanInfo,
                                          SessionID sessionID,
                                          long timestamp)
@@ -84,13 +100,38 @@ public class ThreadStateHelper {
         state.setWaitedCount(beanInfo.getWaitedCount());
         state.setWaitedTime(beanInfo.getWaitedTime());
 
-        state.setStackTrace(new StackTrace(beanInfo.getStackTrace()).toString());
+        state.setStackId(internStackTrace(beanInfo.getStackTrace(),
+                                          sessionID, timestamp));
 
         // TODO: lock information
 
         return state;
     }
 
+    private long internStackTrace(StackTraceElement[] trace,
+                                  SessionID sessionID, long timestamp)
+    {
+        // stack ids are only known within the session that saved them
+        String session = sessionID.get();
+        if (!session.equals(stacksSession)) {
+            stacks.clear();
+            stacksSession = session;
+        }
+
+        long lastStackId = stacks.getLastStackId();
+        long stackId = stacks.intern(trace);
+        if (stackId > lastStackId) {
+            ThreadStack stack = new ThreadStack(writerId.getWriterID());
+            stack.setTimeStamp(timestamp);
+            stack.setSession(session);
+            stack.setVmId(vmId);
+            stack.setStackId(stackId);
+            stack.setStackTrace(new StackTrace(trace).toString());
+            threadDao.addThreadStack(stack);
+        }
+        return stackId;
+    }
+
     public void saveThreadState(ThreadState thread) {
         threadDao.addThreadState(thread);
     }
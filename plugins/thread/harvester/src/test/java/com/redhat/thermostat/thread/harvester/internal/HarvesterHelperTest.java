@@ -37,8 +37,11 @@
 package com.redhat.thermostat.thread.harvester.internal;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -55,6 +58,7 @@ import com.redhat.thermostat.thread.model.ThreadState;
 
 /*
  */
+@SuppressWarnings("restriction")
 public class HarvesterHelperTest {
 
     private static final long DEFAULT_TIMESTAMP = -1l;
@@ -115,4 +119,80 @@ public class HarvesterHelperTest {
         verify(stateHelper).saveThreadState(state2);
         verify(stateHelper).saveThreadState(state3);
     }
+
+    @Test
+    public void testDeltaModeSavesOnlyChangedThreads() {
+        com.sun.management.ThreadMXBean bean = mock(com.sun.management.ThreadMXBean.class);
+        long[] ids = new long[] { 1, 2 };
+        when(bean.getAllThreadIds()).thenReturn(ids);
+        ThreadInfo[] samples = new ThreadInfo[] { info(1, Thread.State.RUNNABLE), info(2, Thread.State.WAITING) };
+        when(bean.getThreadInfo(ids, 0)).thenReturn(samples);
+        when(bean.getThreadCpuTime(ids)).thenReturn(new long[] { 10, 20 });
+        ThreadInfo[] full = new ThreadInfo[] { info(1, Thread.State.RUNNABLE), info(2, Thread.State.WAITING) };
+        when(bean.getThreadInfo(ids, Integer.MAX_VALUE)).thenReturn(full);
+
+        ThreadState state1 = mock(ThreadState.class);
+        ThreadState state2 = mock(ThreadState.class);
+        when(stateHelper.createThreadState(eq(full[0]), eq(session.getSessionID()), eq(DEFAULT_TIMESTAMP))).thenReturn(state1);
+        when(stateHelper.createThreadState(eq(full[1]), eq(session.getSessionID()), eq(DEFAULT_TIMESTAMP))).thenReturn(state2);
+
+        HarvesterHelper harvester = new HarvesterHelper(clock, vmId,
+                                                        stateHelper,
+                                                        threadSessionHelper,
+                                                        new ThreadDeltaHelper(Long.MAX_VALUE));
+        // first sample is a keyframe
+        harvester.collectAndSaveThreadData(session, bean);
+
+        verify(stateHelper).saveThreadState(state1);
+        verify(stateHelper).saveThreadState(state2);
+
+        // nothing changed
+        harvester.collectAndSaveThreadData(session, bean);
+
+        verify(bean).getThreadInfo(ids, Integer.MAX_VALUE);
+
+        // only the second thread used cpu
+        when(bean.getThreadCpuTime(ids)).thenReturn(new long[] { 10, 25 });
+        long[] changed = new long[] { 2 };
+        ThreadInfo[] changedFull = new ThreadInfo[] { info(2, Thread.State.RUNNABLE) };
+        when(bean.getThreadInfo(changed, Integer.MAX_VALUE)).thenReturn(changedFull);
+        ThreadState changedState = mock(ThreadState.class);
+        when(stateHelper.createThreadState(eq(changedFull[0]), eq(session.getSessionID()), eq(DEFAULT_TIMESTAMP))).thenReturn(changedState);
+
+        harvester.collectAndSaveThreadData(session, bean);
+
+        verify(stateHelper).saveThreadState(changedState);
+        verify(bean, never()).dumpAllThreads(anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void testDeltaModeStartsWithKeyframeForNewSession() {
+        long[] ids = new long[] { 1 };
+        when(collectorBean.getAllThreadIds()).thenReturn(ids);
+        ThreadInfo[] samples = new ThreadInfo[] { info(1, Thread.State.WAITING) };
+        when(collectorBean.getThreadInfo(ids, 0)).thenReturn(samples);
+        when(collectorBean.getThreadInfo(ids, Integer.MAX_VALUE)).thenReturn(samples);
+
+        HarvesterHelper harvester = new HarvesterHelper(clock, vmId,
+                                                        stateHelper,
+                                                        threadSessionHelper,
+                                                        new ThreadDeltaHelper(Long.MAX_VALUE));
+        harvester.collectAndSaveThreadData(session, collectorBean);
+        harvester.collectAndSaveThreadData(session, collectorBean);
+
+        ThreadSession newSession = new ThreadSession();
+        newSession.setSession("0xbeef");
+        harvester.collectAndSaveThreadData(newSession, collectorBean);
+
+        verify(stateHelper).createThreadState(samples[0], session.getSessionID(), DEFAULT_TIMESTAMP);
+        verify(stateHelper).createThreadState(samples[0], newSession.getSessionID(), DEFAULT_TIMESTAMP);
+        verify(collectorBean, never()).getThreadCpuTime(anyLong());
+    }
+
+    private static ThreadInfo info(long id, Thread.State state) {
+        ThreadInfo info = mock(ThreadInfo.class);
+        when(info.getThreadId()).thenReturn(id);
+        when(info.getThreadState()).thenReturn(state);
+        return info;
+    }
 }
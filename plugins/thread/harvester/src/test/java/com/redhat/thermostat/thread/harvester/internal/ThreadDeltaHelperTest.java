@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.thread.harvester.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThreadDeltaHelperTest {
+
+    private static final long KEYFRAME_INTERVAL = 1000;
+
+    private ThreadDeltaHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new ThreadDeltaHelper(KEYFRAME_INTERVAL);
+    }
+
+    @Test
+    public void testFirstSampleIsKeyframe() {
+        ThreadInfo[] infos = { info(1, Thread.State.RUNNABLE), info(2, Thread.State.WAITING) };
+
+        assertArrayEquals(new long[] { 1, 2 }, helper.selectChanged(infos, new long[] { 10, 20 }, 0));
+    }
+
+    @Test
+    public void testUnchangedThreadsAreNotSelected() {
+        ThreadInfo[] infos = { info(1, Thread.State.RUNNABLE), info(2, Thread.State.WAITING) };
+        helper.selectChanged(infos, new long[] { 10, 20 }, 0);
+
+        assertArrayEquals(new long[0], helper.selectChanged(infos, new long[] { 10, 20 }, 250));
+    }
+
+    @Test
+    public void testStateAndCpuTimeChangesAreSelected() {
+        helper.selectChanged(new ThreadInfo[] { info(1, Thread.State.RUNNABLE), info(2, Thread.State.WAITING),
+                info(3, Thread.State.WAITING) }, new long[] { 10, 20, 30 }, 0);
+
+        ThreadInfo[] infos = { info(1, Thread.State.RUNNABLE), info(2, Thread.State.BLOCKED),
+                info(3, Thread.State.WAITING) };
+        assertArrayEquals(new long[] { 1, 2 }, helper.selectChanged(infos, new long[] { 15, 20, 30 }, 250));
+    }
+
+    @Test
+    public void testStatesAloneAreComparedWithoutCpuTimes() {
+        helper.selectChanged(new ThreadInfo[] { info(1, Thread.State.RUNNABLE), info(2, Thread.State.WAITING) },
+                null, 0);
+
+        ThreadInfo[] infos = { info(1, Thread.State.RUNNABLE), info(2, Thread.State.RUNNABLE) };
+        assertArrayEquals(new long[] { 2 }, helper.selectChanged(infos, null, 250));
+    }
+
+    @Test
+    public void testNewThreadsAreSelectedAndDeadThreadsSkipped() {
+        helper.selectChanged(new ThreadInfo[] { info(1, Thread.State.RUNNABLE) }, new long[] { 10 }, 0);
+
+        ThreadInfo[] infos = { info(1, Thread.State.RUNNABLE), null, info(3, Thread.State.NEW) };
+        assertArrayEquals(new long[] { 3 }, helper.selectChanged(infos, new long[] { 10, -1, 0 }, 250));
+    }
+
+    @Test
+    public void testAllThreadsAreSelectedOnKeyframe() {
+        ThreadInfo[] infos = { info(1, Thread.State.RUNNABLE), info(2, Thread.State.WAITING) };
+        helper.selectChanged(infos, new long[] { 10, 20 }, 0);
+        helper.selectChanged(infos, new long[] { 10, 20 }, 500);
+
+        assertArrayEquals(new long[] { 1, 2 }, helper.selectChanged(infos, new long[] { 10, 20 }, 1000));
+        assertArrayEquals(new long[0], helper.selectChanged(infos, new long[] { 10, 20 }, 1250));
+    }
+
+    @Test
+    public void testResetStartsWithKeyframe() {
+        ThreadInfo[] infos = { info(1, Thread.State.RUNNABLE) };
+        helper.selectChanged(infos, new long[] { 10 }, 0);
+
+        helper.reset();
+
+        assertArrayEquals(new long[] { 1 }, helper.selectChanged(infos, new long[] { 10 }, 250));
+    }
+
+    @Test
+    public void testWaitingThreadsOfThisVmAreOnlySelectedOnKeyframe() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread[] threads = new Thread[20];
+        long[] ids = new long[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // exit
+                    }
+                }
+            };
+            threads[i].start();
+            ids[i] = threads[i].getId();
+        }
+        try {
+            for (Thread thread : threads) {
+                while (thread.getState() != Thread.State.WAITING) {
+                    Thread.sleep(1);
+                }
+            }
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+            assertArrayEquals(ids, helper.selectChanged(bean.getThreadInfo(ids, 0), null, 0));
+            assertArrayEquals(new long[0], helper.selectChanged(bean.getThreadInfo(ids, 0), null, 250));
+        } finally {
+            release.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    private static ThreadInfo info(long id, Thread.State state) {
+        ThreadInfo info = mock(ThreadInfo.class);
+        when(info.getThreadId()).thenReturn(id);
+        when(info.getThreadState()).thenReturn(state);
+        return info;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.thread.harvester.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThreadStackDictionaryTest {
+
+    private static final StackTraceElement RUN = new StackTraceElement("java.lang.Thread", "run", "Thread.java", 745);
+    private static final StackTraceElement WAIT = new StackTraceElement("java.lang.Object", "wait", null, -2);
+    private static final StackTraceElement POLL = new StackTraceElement("sun.nio.ch.EPollArrayWrapper", "epollWait", null, -2);
+
+    private ThreadStackDictionary dictionary;
+
+    @Before
+    public void setUp() {
+        dictionary = new ThreadStackDictionary();
+    }
+
+    @Test
+    public void testSameStackHasSameId() {
+        long id = dictionary.intern(new StackTraceElement[] { WAIT, RUN });
+
+        assertEquals(1, id);
+        assertEquals(id, dictionary.intern(new StackTraceElement[] {
+                new StackTraceElement("java.lang.Object", "wait", null, -2), RUN }));
+        assertEquals(id, dictionary.getLastStackId());
+    }
+
+    @Test
+    public void testDifferentStacksHaveDifferentIds() {
+        long id1 = dictionary.intern(new StackTraceElement[] { WAIT, RUN });
+        long id2 = dictionary.intern(new StackTraceElement[] { POLL, RUN });
+        long id3 = dictionary.intern(new StackTraceElement[] { RUN, WAIT });
+        long id4 = dictionary.intern(new StackTraceElement[] { RUN });
+        long id5 = dictionary.intern(new StackTraceElement[0]);
+
+        assertEquals(1, id1);
+        assertTrue(id1 < id2 && id2 < id3 && id3 < id4 && id4 < id5);
+        assertEquals(id5, dictionary.getLastStackId());
+    }
+
+    @Test
+    public void testClearedStacksGetNewIds() {
+        long id = dictionary.intern(new StackTraceElement[] { WAIT, RUN });
+
+        dictionary.clear();
+
+        long newId = dictionary.intern(new StackTraceElement[] { WAIT, RUN });
+        assertTrue(newId > id);
+        assertEquals(newId, dictionary.intern(new StackTraceElement[] { WAIT, RUN }));
+    }
+
+    @Test
+    public void testDictionaryIsBounded() {
+        for (int i = 0; i < ThreadStackDictionary.MAX_STACKS; i++) {
+            dictionary.intern(new StackTraceElement[] { new StackTraceElement("Foo", "bar" + i, null, i) });
+        }
+        long first = dictionary.intern(new StackTraceElement[] { new StackTraceElement("Foo", "bar0", null, 0) });
+
+        assertEquals(ThreadStackDictionary.MAX_STACKS + 1, first);
+    }
+}
@@ -38,11 +38,14 @@ package com.redhat.thermostat.thread.harvester.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.lang.management.ThreadInfo;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -51,6 +54,8 @@ import org.mockito.ArgumentCaptor;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.thread.dao.ThreadDao;
 import com.redhat.thermostat.thread.model.SessionID;
+import com.redhat.thermostat.thread.model.StackTrace;
+import com.redhat.thermostat.thread.model.ThreadStack;
 import com.redhat.thermostat.thread.model.ThreadState;
 
 /**
@@ -111,4 +116,58 @@ public class ThreadStateHelperTest {
         ThreadState argumentToDao = captor.getValue();
         assertEquals(argumentToDao, state);
     }
+
+    @Test
+    public void testStackTraceIsSavedOnceAndReferencedById() throws Exception {
+        ThreadStateHelper helper = new ThreadStateHelper(threadDao, writerId, vmId);
+
+        StackTraceElement[] trace = new StackTraceElement[] {
+                new StackTraceElement("java.lang.Object", "wait", null, -2),
+                new StackTraceElement("java.lang.Thread", "run", "Thread.java", 745),
+        };
+        ThreadInfo info1 = mock(ThreadInfo.class);
+        when(info1.getThreadState()).thenReturn(Thread.State.WAITING);
+        when(info1.getStackTrace()).thenReturn(trace);
+        ThreadInfo info2 = mock(ThreadInfo.class);
+        when(info2.getThreadState()).thenReturn(Thread.State.WAITING);
+        when(info2.getStackTrace()).thenReturn(trace.clone());
+
+        ThreadState state1 = helper.createThreadState(info1, sessionID, 1l);
+        ThreadState state2 = helper.createThreadState(info2, sessionID, 2l);
+
+        assertEquals(state1.getStackId(), state2.getStackId());
+        assertNull(state1.getStackTrace());
+
+        ArgumentCaptor<ThreadStack> captor = ArgumentCaptor.forClass(ThreadStack.class);
+        verify(threadDao).addThreadStack(captor.capture());
+
+        ThreadStack stack = captor.getValue();
+        assertEquals(state1.getStackId(), stack.getStackId());
+        assertEquals(DEFAULT_SESSION_ID, stack.getSession());
+        assertEquals(vmId, stack.getVmId());
+        assertEquals(1l, stack.getTimeStamp());
+        assertEquals(new StackTrace(trace).toString(), stack.getStackTrace());
+    }
+
+    @Test
+    public void testStackTracesAreSavedAgainForNewSession() throws Exception {
+        ThreadStateHelper helper = new ThreadStateHelper(threadDao, writerId, vmId);
+
+        ThreadInfo info = mock(ThreadInfo.class);
+        when(info.getThreadState()).thenReturn(Thread.State.RUNNABLE);
+        when(info.getStackTrace()).thenReturn(new StackTraceElement[0]);
+
+        SessionID newSession = mock(SessionID.class);
+        when(newSession.get()).thenReturn("New Session");
+
+        helper.createThreadState(info, sessionID, 1l);
+        helper.createThreadState(info, newSession, 2l);
+
+        ArgumentCaptor<ThreadStack> captor = ArgumentCaptor.forClass(ThreadStack.class);
+        verify(threadDao, times(2)).addThreadStack(captor.capture());
+
+        List<ThreadStack> stacks = captor.getAllValues();
+        assertEquals(DEFAULT_SESSION_ID, stacks.get(0).getSession());
+        assertEquals("New Session", stacks.get(1).getSession());
+    }
 }
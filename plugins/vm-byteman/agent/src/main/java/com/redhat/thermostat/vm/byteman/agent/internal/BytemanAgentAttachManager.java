@@ -156,6 +156,7 @@ class BytemanAgentAttachManager {
             logger.finest("Proceeding with post-attach steps for already attached byteman agent");
             Properties properties = new Properties();
             properties.setProperty(THERMOSTAT_HELPER_SOCKET_NAME_PROPERTY, socketId.getName());
+            properties.setProperty(BytemanMetricDecoder.ENCODING_PROPERTY, BytemanMetricDecoder.BINARY_ENCODING);
             return submit.setSystemProperties(properties, info);
         } else {
             logger.fine("Attached byteman agent to VM '" + info.getVmPid() + "' at port: '" + info.getAgentListenPort());
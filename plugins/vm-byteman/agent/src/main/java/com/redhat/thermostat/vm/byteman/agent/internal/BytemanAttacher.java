@@ -70,6 +70,8 @@ class BytemanAttacher {
             "org.jboss.byteman.verbose=true",
             "org.jboss.byteman.transform.all=true", // Allow for transformation of java.lang classes
             "org.jboss.byteman.thermostat.transport=localsocket", // make the helper use unix sockets
+            // BytemanMetricsReceiver decodes the helper's binary metrics format
+            BytemanMetricDecoder.ENCODING_PROPERTY + "=" + BytemanMetricDecoder.BINARY_ENCODING,
     };
     private final BtmInstallHelper installer;
     private final ProcessChecker processChecker;
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.byteman.agent.internal;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+import com.redhat.thermostat.vm.byteman.common.BytemanMetric;
+
+/**
+ * Decodes metrics sent by the Byteman helper in its binary format, see
+ * {@code org.jboss.byteman.thermostat.helper.BinaryMetricEncoder}. The data
+ * of each metric is converted to the same JSON payload metrics sent as JSON
+ * get, numbers included: those are stored as doubles either way.
+ * Instances keep no state and may be shared between threads.
+ */
+class BytemanMetricDecoder {
+
+    /** Tells the helper that this agent accepts the binary format */
+    static final String ENCODING_PROPERTY = "org.jboss.byteman.thermostat.encoding";
+    static final String BINARY_ENCODING = "binary";
+
+    static final int MAGIC = 0x424d5442; // "BMTB"
+    static final byte VERSION = 1;
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_STRING = 1;
+    static final byte TYPE_INT = 2;
+    static final byte TYPE_LONG = 3;
+    static final byte TYPE_DOUBLE = 4;
+    static final byte TYPE_BOOLEAN = 5;
+    static final byte TYPE_NUMBER = 6;
+
+    private static final int HEADER_LENGTH = 5;
+
+    /**
+     * @return true if the message is in the binary format rather than JSON,
+     * which starts with '[' or whitespace
+     */
+    static boolean isBinary(ByteBuffer buf) {
+        return buf.remaining() >= HEADER_LENGTH && buf.getInt(buf.position()) == MAGIC;
+    }
+
+    /**
+     * Decodes all metrics of a binary message
+     *
+     * @throws IllegalArgumentException if the message is malformed or of an
+     * unsupported version
+     */
+    List<BytemanMetric> decode(ByteBuffer buf, String agentId, String vmId) {
+        try {
+            buf.getInt(); // magic
+            byte version = buf.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported metrics format version " + version);
+            }
+            int stringCount = buf.getInt();
+            checkCount(stringCount, buf);
+            String[] dictionary = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                dictionary[i] = getString(buf);
+            }
+            int recordCount = buf.getInt();
+            checkCount(recordCount, buf);
+            List<BytemanMetric> metrics = new ArrayList<>(recordCount);
+            for (int i = 0; i < recordCount; i++) {
+                int length = buf.getInt();
+                int end = buf.position() + length;
+                if (length < 0 || end > buf.limit()) {
+                    throw new IllegalArgumentException("Invalid record length " + length);
+                }
+                BytemanMetric metric = new BytemanMetric();
+                metric.setAgentId(agentId);
+                metric.setVmId(vmId);
+                metric.setMarker(lookup(dictionary, buf.getInt()));
+                metric.setTimeStamp(buf.getLong());
+                metric.setData(getData(buf, dictionary));
+                if (buf.position() != end) {
+                    throw new IllegalArgumentException("Record length " + length + " does not match its contents");
+                }
+                metrics.add(metric);
+            }
+            return metrics;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated metrics message", e);
+        }
+    }
+
+    private String getData(ByteBuffer buf, String[] dictionary) {
+        int fieldCount = buf.getInt();
+        if (fieldCount < 0) {
+            // what the JSON path stores for a missing data object
+            return "null";
+        }
+        checkCount(fieldCount, buf);
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.setSerializeNulls(true);
+            // let NaN and infinite values through rather than the whole batch failing
+            writer.setLenient(true);
+            writer.beginObject();
+            for (int i = 0; i < fieldCount; i++) {
+                String key = lookup(dictionary, buf.getInt());
+                if (key == null) {
+                    throw new IllegalArgumentException("Missing key");
+                }
+                writer.name(key);
+                byte type = buf.get();
+                switch (type) {
+                case TYPE_NULL:
+                    writer.nullValue();
+                    break;
+                case TYPE_STRING:
+                    writer.value(getString(buf));
+                    break;
+                case TYPE_INT:
+                    writer.value((double) buf.getInt());
+                    break;
+                case TYPE_LONG:
+                    writer.value((double) buf.getLong());
+                    break;
+                case TYPE_DOUBLE:
+                    writer.value(buf.getDouble());
+                    break;
+                case TYPE_BOOLEAN:
+                    writer.value(buf.get() != 0);
+                    break;
+                case TYPE_NUMBER:
+                    writer.value(Double.parseDouble(getString(buf)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown value type " + type);
+                }
+            }
+            writer.endObject();
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid metric data", e);
+        }
+        return out.toString();
+    }
+
+    private String getString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0 || length > buf.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        if (buf.hasArray()) {
+            String str = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+            return str;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String lookup(String[] dictionary, int index) {
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= dictionary.length) {
+            throw new IllegalArgumentException("Invalid dictionary index " + index);
+        }
+        return dictionary[index];
+    }
+
+    private static void checkCount(int count, ByteBuffer buf) {
+        // every entry takes at least 4 bytes
+        if (count < 0 || count > buf.remaining() / 4) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+    }
+}
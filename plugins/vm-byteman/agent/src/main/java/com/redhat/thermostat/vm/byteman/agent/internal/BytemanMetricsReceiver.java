@@ -41,6 +41,7 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
@@ -58,6 +59,7 @@ class BytemanMetricsReceiver implements ThermostatIPCCallbacks {
     private final VmBytemanDAO dao;
     private final VmSocketIdentifier socketId;
     private final Gson gson;
+    private final BytemanMetricDecoder decoder;
     
     BytemanMetricsReceiver(VmBytemanDAO dao, VmSocketIdentifier socketId) {
         this.dao = dao;
@@ -67,18 +69,32 @@ class BytemanMetricsReceiver implements ThermostatIPCCallbacks {
                 .serializeNulls()
                 .disableHtmlEscaping()
                 .create();
+        this.decoder = new BytemanMetricDecoder();
     }
 
     @Override
     public void messageReceived(IPCMessage message) {
         ByteBuffer buf = message.get();
-        CharBuffer charBuf = Charset.forName("UTF-8").decode(buf);
-        String jsonMetric = charBuf.toString();
-        logger.fine("Received metrics from byteman for socketId: " + socketId.getName() + ". Metric was: " + jsonMetric);
-        List<BytemanMetric> metrics = convertFromJson(jsonMetric);
-        for (BytemanMetric metric: metrics) {
-            dao.addMetric(metric);
+        List<BytemanMetric> metrics;
+        if (BytemanMetricDecoder.isBinary(buf)) {
+            try {
+                metrics = decoder.decode(buf, socketId.getAgentId(), socketId.getVmId());
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.WARNING, "Dropping malformed metrics from byteman for socketId: " + socketId.getName(), e);
+                return;
+            }
+        } else {
+            CharBuffer charBuf = Charset.forName("UTF-8").decode(buf);
+            String jsonMetric = charBuf.toString();
+            if (logger.isLoggable(Level.FINEST)) {
+                logger.finest("Received metrics from byteman for socketId: " + socketId.getName() + ". Metric was: " + jsonMetric);
+            }
+            metrics = convertFromJson(jsonMetric);
         }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Received " + metrics.size() + " metrics from byteman for socketId: " + socketId.getName());
+        }
+        dao.addMetrics(metrics);
     }
 
     private List<BytemanMetric> convertFromJson(String data) {
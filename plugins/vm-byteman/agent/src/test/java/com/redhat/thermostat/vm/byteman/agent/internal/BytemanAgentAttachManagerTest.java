@@ -209,6 +209,7 @@ public class BytemanAgentAttachManagerTest {
         Properties props = propsCaptor.getValue();
         String propVal = props.getProperty(BytemanAgentAttachManager.THERMOSTAT_HELPER_SOCKET_NAME_PROPERTY);
         assertEquals(socketId.getName(), propVal);
+        assertEquals("binary", props.getProperty("org.jboss.byteman.thermostat.encoding"));
         
         assertEquals(listenPort, bytemanStatus.getListenPort());
     }
@@ -66,6 +66,7 @@ public class BytemanAttacherTest {
     private static final String BYTEMAN_VERBOSE_PROPERTY = "org.jboss.byteman.verbose";
     private static final String BYTEMAN_TRANSFORM_JAVA_LANG_PROPERTY = "org.jboss.byteman.transform.all";
     private static final String THERMOSTAT_HELPER_SOCKET_NAME_PROPERTY = "org.jboss.byteman.thermostat.socketName";
+    private static final String THERMOSTAT_ENCODING_PROPERTY = "org.jboss.byteman.thermostat.encoding";
     private static final String THERMOSTAT_IPC_CONFIG_PROPERTY = "org.jboss.byteman.thermostat.ipcConfig";
     private static final String BYTEMAN_PREFIX = "org.jboss.byteman.";
 
@@ -122,6 +123,7 @@ public class BytemanAttacherTest {
         assertTrue(properties.containsKey(BYTEMAN_TRANSFORM_JAVA_LANG_PROPERTY));
         boolean isTransformAll = Boolean.parseBoolean(properties.get(BYTEMAN_TRANSFORM_JAVA_LANG_PROPERTY));
         assertTrue(isTransformAll);
+        assertEquals("binary", properties.get(THERMOSTAT_ENCODING_PROPERTY));
     }
     
     /*
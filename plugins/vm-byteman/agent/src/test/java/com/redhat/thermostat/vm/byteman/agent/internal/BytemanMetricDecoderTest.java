@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.byteman.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.byteman.common.BytemanMetric;
+
+public class BytemanMetricDecoderTest {
+
+    private final BytemanMetricDecoder decoder = new BytemanMetricDecoder();
+
+    @Test
+    public void detectsBinaryMessages() {
+        assertTrue(BytemanMetricDecoder.isBinary(new MessageBuilder().strings().records(0).build()));
+        assertFalse(BytemanMetricDecoder.isBinary(StandardCharsets.UTF_8.encode("[ {\"marker\": \"foo\"} ]")));
+        assertFalse(BytemanMetricDecoder.isBinary(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void decodesAllValueTypes() {
+        ByteBuffer buf = new MessageBuilder()
+                .strings("marker", "string", "int", "long", "double", "boolean", "null", "number")
+                .records(1)
+                .record(0, 1234L, 7)
+                .field(1, BytemanMetricDecoder.TYPE_STRING).string("ba\"r \u00e4")
+                .field(2, BytemanMetricDecoder.TYPE_INT).putInt(42)
+                .field(3, BytemanMetricDecoder.TYPE_LONG).putLong(10000000001L)
+                .field(4, BytemanMetricDecoder.TYPE_DOUBLE).putDouble(42.5)
+                .field(5, BytemanMetricDecoder.TYPE_BOOLEAN).put((byte) 1)
+                .field(6, BytemanMetricDecoder.TYPE_NULL)
+                .field(7, BytemanMetricDecoder.TYPE_NUMBER).string("1.25")
+                .endRecord()
+                .build();
+
+        List<BytemanMetric> metrics = decoder.decode(buf, "agent-id", "vm-id");
+
+        assertEquals(1, metrics.size());
+        BytemanMetric metric = metrics.get(0);
+        assertEquals("agent-id", metric.getAgentId());
+        assertEquals("vm-id", metric.getVmId());
+        assertEquals("marker", metric.getMarker());
+        assertEquals(1234L, metric.getTimeStamp());
+        // numbers are stored as doubles, as with metrics sent as JSON
+        assertEquals("{\"string\":\"ba\\\"r \u00e4\",\"int\":42.0,\"long\":1.0000000001E10,\"double\":42.5,"
+                + "\"boolean\":true,\"null\":null,\"number\":1.25}", metric.getData());
+        Map<String, Object> data = metric.getDataAsMap();
+        assertEquals(42.0, data.get("int"));
+        assertEquals(true, data.get("boolean"));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void decodesNullMarkerAndData() {
+        ByteBuffer buf = new MessageBuilder()
+                .strings()
+                .records(1)
+                .record(-1, 1L, -1).endRecord()
+                .build();
+
+        BytemanMetric metric = decoder.decode(buf, "agent-id", "vm-id").get(0);
+
+        assertNull(metric.getMarker());
+        assertEquals("null", metric.getData());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() {
+        ByteBuffer buf = new MessageBuilder().strings().records(0).build();
+        buf.put(4, (byte) (BytemanMetricDecoder.VERSION + 1));
+        decoder.decode(buf, "agent-id", "vm-id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedMessage() {
+        ByteBuffer buf = new MessageBuilder()
+                .strings("marker", "key")
+                .records(1)
+                .record(0, 1L, 1).field(1, BytemanMetricDecoder.TYPE_LONG).putLong(3L).endRecord()
+                .build();
+        buf.limit(buf.limit() - 4);
+        decoder.decode(buf, "agent-id", "vm-id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidDictionaryIndex() {
+        ByteBuffer buf = new MessageBuilder()
+                .strings("marker")
+                .records(1)
+                .record(0, 1L, 1).field(5, BytemanMetricDecoder.TYPE_NULL).endRecord()
+                .build();
+        decoder.decode(buf, "agent-id", "vm-id");
+    }
+
+    /**
+     * Builds messages the way the Byteman helper encodes them
+     */
+    static class MessageBuilder {
+
+        private final ByteBuffer buf = ByteBuffer.allocate(4096);
+        private int recordStart = -1;
+
+        MessageBuilder() {
+            buf.putInt(BytemanMetricDecoder.MAGIC);
+            buf.put(BytemanMetricDecoder.VERSION);
+        }
+
+        MessageBuilder strings(String... strings) {
+            buf.putInt(strings.length);
+            for (String str : strings) {
+                string(str);
+            }
+            return this;
+        }
+
+        MessageBuilder records(int count) {
+            buf.putInt(count);
+            return this;
+        }
+
+        MessageBuilder record(int markerIndex, long timestamp, int fieldCount) {
+            recordStart = buf.position();
+            buf.putInt(0);
+            buf.putInt(markerIndex);
+            buf.putLong(timestamp);
+            buf.putInt(fieldCount);
+            return this;
+        }
+
+        MessageBuilder field(int keyIndex, byte type) {
+            buf.putInt(keyIndex);
+            buf.put(type);
+            return this;
+        }
+
+        MessageBuilder endRecord() {
+            buf.putInt(recordStart, buf.position() - recordStart - 4);
+            return this;
+        }
+
+        MessageBuilder string(String str) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+            return this;
+        }
+
+        MessageBuilder put(byte value) {
+            buf.put(value);
+            return this;
+        }
+
+        MessageBuilder putInt(int value) {
+            buf.putInt(value);
+            return this;
+        }
+
+        MessageBuilder putLong(long value) {
+            buf.putLong(value);
+            return this;
+        }
+
+        MessageBuilder putDouble(double value) {
+            buf.putDouble(value);
+            return this;
+        }
+
+        ByteBuffer build() {
+            buf.flip();
+            return buf;
+        }
+    }
+}
@@ -42,6 +42,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.nio.ByteBuffer;
@@ -61,10 +62,11 @@ public class BytemanMetricsReceiverTest {
 
     private static final int SOME_PID = 23;
 
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     @Test
     public void canSendDataToStorage() {
         VmBytemanDAO dao = mock(VmBytemanDAO.class);
-        ArgumentCaptor<BytemanMetric> metricsCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
+        ArgumentCaptor<List> metricsCaptor = ArgumentCaptor.forClass(List.class);
         VmSocketIdentifier sockId = new VmSocketIdentifier("vm-id", SOME_PID, "agent-id");
         BytemanMetricsReceiver receiver = new BytemanMetricsReceiver(dao, sockId);
         String jsonString = JsonHelper.buildJsonArray(3);
@@ -72,8 +74,9 @@ public class BytemanMetricsReceiverTest {
         IPCMessage message = mock(IPCMessage.class);
         when(message.get()).thenReturn(data);
         receiver.messageReceived(message);
-        verify(dao, times(3)).addMetric(metricsCaptor.capture());
-        List<BytemanMetric> metrics = metricsCaptor.getAllValues();
+        verify(dao).addMetrics(metricsCaptor.capture());
+        List<BytemanMetric> metrics = metricsCaptor.getValue();
+        assertEquals(3, metrics.size());
         assertEquals("vm-id", metrics.get(0).getVmId());
         assertEquals("agent-id", metrics.get(2).getAgentId());
         assertTrue(metrics.get(1).getTimeStamp() > 0);
@@ -91,6 +94,7 @@ public class BytemanMetricsReceiverTest {
      * 
      * This test is supposed to catch that data won't get HTML escaped.
      */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     @Test
     public void canSendDataToStorageUtf8() {
         VmBytemanDAO dao = mock(VmBytemanDAO.class);
@@ -105,15 +109,15 @@ public class BytemanMetricsReceiverTest {
         ByteBuffer data = Charset.forName("UTF-8").encode(jsonMetric);
         IPCMessage message = mock(IPCMessage.class);
         when(message.get()).thenReturn(data);
-        ArgumentCaptor<BytemanMetric> metricsCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
+        ArgumentCaptor<List> metricsCaptor = ArgumentCaptor.forClass(List.class);
         
         
         BytemanMetricsReceiver receiver = new BytemanMetricsReceiver(dao, mock(VmSocketIdentifier.class));
         receiver.messageReceived(message);
         
-        verify(dao, times(1)).addMetric(metricsCaptor.capture());
+        verify(dao, times(1)).addMetrics(metricsCaptor.capture());
         
-        List<BytemanMetric> metrics = metricsCaptor.getAllValues();
+        List<BytemanMetric> metrics = metricsCaptor.getValue();
         BytemanMetric metric = metrics.get(0);
         // make sure HTML chars are not escaped
         assertEquals("{\"key\":\"value = foo\"}", metric.getData());
@@ -121,4 +125,49 @@ public class BytemanMetricsReceiverTest {
         assertEquals("value = foo", dataVals.get("key"));
     }
     
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void canSendBinaryDataToStorage() {
+        VmBytemanDAO dao = mock(VmBytemanDAO.class);
+        VmSocketIdentifier sockId = new VmSocketIdentifier("vm-id", SOME_PID, "agent-id");
+        BytemanMetricsReceiver receiver = new BytemanMetricsReceiver(dao, sockId);
+        ByteBuffer data = new BytemanMetricDecoderTest.MessageBuilder()
+                .strings("marker", "key")
+                .records(2)
+                .record(0, 30L, 1).field(1, BytemanMetricDecoder.TYPE_STRING).string("value = foo").endRecord()
+                .record(0, 31L, 1).field(1, BytemanMetricDecoder.TYPE_INT).putInt(3).endRecord()
+                .build();
+        IPCMessage message = mock(IPCMessage.class);
+        when(message.get()).thenReturn(data);
+        ArgumentCaptor<List> metricsCaptor = ArgumentCaptor.forClass(List.class);
+
+        receiver.messageReceived(message);
+
+        verify(dao).addMetrics(metricsCaptor.capture());
+        List<BytemanMetric> metrics = metricsCaptor.getValue();
+        assertEquals(2, metrics.size());
+        assertEquals("vm-id", metrics.get(0).getVmId());
+        assertEquals("agent-id", metrics.get(1).getAgentId());
+        assertEquals("marker", metrics.get(1).getMarker());
+        assertEquals(31L, metrics.get(1).getTimeStamp());
+        assertEquals("{\"key\":\"value = foo\"}", metrics.get(0).getData());
+        assertEquals(3.0, metrics.get(1).getDataAsMap().get("key"));
+    }
+
+    @Test
+    public void malformedBinaryDataIsDropped() {
+        VmBytemanDAO dao = mock(VmBytemanDAO.class);
+        BytemanMetricsReceiver receiver = new BytemanMetricsReceiver(dao, mock(VmSocketIdentifier.class));
+        ByteBuffer data = new BytemanMetricDecoderTest.MessageBuilder()
+                .strings("marker")
+                .records(1)
+                .build();
+        IPCMessage message = mock(IPCMessage.class);
+        when(message.get()).thenReturn(data);
+
+        receiver.messageReceived(message);
+
+        verifyZeroInteractions(dao);
+    }
+
 }
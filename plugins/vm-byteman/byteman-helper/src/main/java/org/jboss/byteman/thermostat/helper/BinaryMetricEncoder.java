@@ -0,0 +1,254 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.byteman.thermostat.Properties;
+
+/**
+ * Encodes a batch of records into a compact binary message for the
+ * Thermostat agent. The agent decodes it without going through JSON, and
+ * tells a helper to use it by setting the
+ * {@value #ENCODING_PROPERTY} system property to {@value #BINARY_ENCODING}.
+ * <p>
+ * A message is laid out as follows, all numbers big-endian:
+ * <pre>
+ * int     MAGIC
+ * byte    VERSION
+ * int     number of strings in the dictionary, then for each:
+ *   int     length of the UTF-8 bytes, then the bytes
+ * int     number of records, then for each:
+ *   int     length of the record in bytes, not counting this field
+ *   int     dictionary index of the marker, -1 for null
+ *   long    timestamp
+ *   int     number of fields, -1 for null data, then for each:
+ *     int     dictionary index of the key
+ *     byte    value type, followed by the value:
+ *               TYPE_NULL    nothing
+ *               TYPE_STRING  int length of the UTF-8 bytes, then the bytes
+ *               TYPE_INT     int
+ *               TYPE_LONG    long
+ *               TYPE_DOUBLE  double
+ *               TYPE_BOOLEAN byte, 0 or 1
+ *               TYPE_NUMBER  other numbers as TYPE_STRING of their toString()
+ * </pre>
+ * Markers and keys repeat across the records of a batch and are therefore
+ * only sent once, in the dictionary. String values are sent inline.
+ */
+public class BinaryMetricEncoder {
+
+    public static final String ENCODING_PROPERTY = Properties.PREFIX + "encoding";
+    public static final String BINARY_ENCODING = "binary";
+
+    public static final int MAGIC = 0x424d5442; // "BMTB"
+    public static final byte VERSION = 1;
+    public static final byte TYPE_NULL = 0;
+    public static final byte TYPE_STRING = 1;
+    public static final byte TYPE_INT = 2;
+    public static final byte TYPE_LONG = 3;
+    public static final byte TYPE_DOUBLE = 4;
+    public static final byte TYPE_BOOLEAN = 5;
+    public static final byte TYPE_NUMBER = 6;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, Integer> dictionaryIndices = new HashMap<String, Integer>();
+    private final Output dictionary = new Output(256);
+    private final Output records = new Output(1024);
+
+    /**
+     * Encodes the specified records
+     *
+     * @param batch records to encode
+     * @return buffer holding the message, ready to be written
+     */
+    public ByteBuffer encode(List<BytemanMetric> batch) {
+        dictionaryIndices.clear();
+        dictionary.clear();
+        records.clear();
+        for (BytemanMetric rec : batch) {
+            int start = records.reserveInt();
+            records.putInt(indexOf(rec.getMarker()));
+            records.putLong(rec.getTimestamp());
+            rec.encodeData(this);
+            records.patchInt(start, records.position() - start - 4);
+        }
+        ByteBuffer message = ByteBuffer.allocate(4 + 1 + 4 + dictionary.position() + 4 + records.position());
+        message.putInt(MAGIC);
+        message.put(VERSION);
+        message.putInt(dictionaryIndices.size());
+        message.put(dictionary.buffer, 0, dictionary.position());
+        message.putInt(batch.size());
+        message.put(records.buffer, 0, records.position());
+        message.flip();
+        return message;
+    }
+
+    void writeFieldCount(int count) {
+        records.putInt(count);
+    }
+
+    void writeInt(String key, int value) {
+        writeKey(key, TYPE_INT);
+        records.putInt(value);
+    }
+
+    void writeLong(String key, long value) {
+        writeKey(key, TYPE_LONG);
+        records.putLong(value);
+    }
+
+    void writeDouble(String key, double value) {
+        writeKey(key, TYPE_DOUBLE);
+        records.putLong(Double.doubleToRawLongBits(value));
+    }
+
+    void writeBoolean(String key, boolean value) {
+        writeKey(key, TYPE_BOOLEAN);
+        records.put(value ? (byte) 1 : (byte) 0);
+    }
+
+    void writeObject(String key, Object value) {
+        if (value == null) {
+            writeKey(key, TYPE_NULL);
+        } else if (value instanceof String) {
+            writeKey(key, TYPE_STRING);
+            records.putString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeInt(key, ((Number) value).intValue());
+        } else if (value instanceof Long) {
+            writeLong(key, (Long) value);
+        } else if (value instanceof Double) {
+            writeDouble(key, (Double) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean(key, (Boolean) value);
+        } else if (value instanceof Number) {
+            writeKey(key, TYPE_NUMBER);
+            records.putString(value.toString());
+        } else {
+            throw new UnsupportedOperationException("Cannot serialize object of type " + value.getClass().getName());
+        }
+    }
+
+    private void writeKey(String key, byte type) {
+        records.putInt(indexOf(key == null ? "" : key));
+        records.put(type);
+    }
+
+    private int indexOf(String str) {
+        if (str == null) {
+            return -1;
+        }
+        Integer index = dictionaryIndices.get(str);
+        if (index == null) {
+            index = dictionaryIndices.size();
+            dictionaryIndices.put(str, index);
+            dictionary.putString(str);
+        }
+        return index;
+    }
+
+    /**
+     * Growable big-endian byte output that can patch values written earlier
+     */
+    private static class Output {
+        private byte[] buffer;
+        private int position;
+
+        private Output(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        int position() {
+            return position;
+        }
+
+        void clear() {
+            position = 0;
+        }
+
+        void put(byte value) {
+            ensure(1);
+            buffer[position++] = value;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            patchInt(position, value);
+            position += 4;
+        }
+
+        void putLong(long value) {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        void putString(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        int reserveInt() {
+            int start = position;
+            putInt(0);
+            return start;
+        }
+
+        void patchInt(int at, int value) {
+            buffer[at] = (byte) (value >>> 24);
+            buffer[at + 1] = (byte) (value >>> 16);
+            buffer[at + 2] = (byte) (value >>> 8);
+            buffer[at + 3] = (byte) value;
+        }
+
+        private void ensure(int count) {
+            if (position + count > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, position + count)];
+                System.arraycopy(buffer, 0, grown, 0, position);
+                buffer = grown;
+            }
+        }
+    }
+}
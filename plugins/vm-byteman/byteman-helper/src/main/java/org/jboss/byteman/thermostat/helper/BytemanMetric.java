@@ -45,10 +45,24 @@ import java.util.Map;
  * Generic record for data collected for Thermostat
  */
 public class BytemanMetric {
+
+    // Kinds of the single value a metric created by a send(marker, key, value)
+    // overload carries. NONE means the data map is used instead.
+    private static final byte NONE = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte OBJECT = 5;
     
     private final String marker;
-    private final LinkedHashMap<String, Object> data;
+    private LinkedHashMap<String, Object> data;
     private final long timestamp;
+    // single value, kept unboxed until the data map is asked for
+    private final String key;
+    private final byte kind;
+    private final long bits;
+    private final Object value;
 
     /**
      * Constructor
@@ -60,6 +74,42 @@ public class BytemanMetric {
         this.marker = marker;
         this.data = data;
         this.timestamp = System.currentTimeMillis();
+        this.key = null;
+        this.kind = NONE;
+        this.bits = 0;
+        this.value = null;
+    }
+
+    BytemanMetric(String marker, String key, int value) {
+        this(marker, key, INT, value, null);
+    }
+
+    BytemanMetric(String marker, String key, long value) {
+        this(marker, key, LONG, value, null);
+    }
+
+    BytemanMetric(String marker, String key, double value) {
+        this(marker, key, DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    BytemanMetric(String marker, String key, boolean value) {
+        this(marker, key, BOOLEAN, value ? 1 : 0, null);
+    }
+
+    /**
+     * Constructor for a metric with a single String, Number or Boolean value
+     */
+    BytemanMetric(String marker, String key, Object value) {
+        this(marker, key, OBJECT, 0, value);
+    }
+
+    private BytemanMetric(String marker, String key, byte kind, long bits, Object value) {
+        this.marker = marker;
+        this.timestamp = System.currentTimeMillis();
+        this.key = (key == null) ? "" : key;
+        this.kind = kind;
+        this.bits = bits;
+        this.value = value;
     }
 
     /**
@@ -86,9 +136,80 @@ public class BytemanMetric {
      * @return data field
      */
     public LinkedHashMap<String, Object> getData() {
+        if (data == null && kind != NONE) {
+            LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>(2);
+            map.put(key, getValue());
+            data = map;
+        }
         return data;
     }
 
+    private Object getValue() {
+        switch (kind) {
+        case INT:
+            return (int) bits;
+        case LONG:
+            return bits;
+        case DOUBLE:
+            return Double.longBitsToDouble(bits);
+        case BOOLEAN:
+            return bits != 0;
+        default:
+            return value;
+        }
+    }
+
+    private void appendValue(StringBuilder sb) {
+        switch (kind) {
+        case INT:
+        case LONG:
+            sb.append(bits);
+            break;
+        case DOUBLE:
+            sb.append(Double.longBitsToDouble(bits));
+            break;
+        case BOOLEAN:
+            sb.append(bits != 0);
+            break;
+        default:
+            sb.append(toJsonValue(value));
+        }
+    }
+
+    void encodeData(BinaryMetricEncoder encoder) {
+        switch (kind) {
+        case NONE:
+            if (data == null) {
+                encoder.writeFieldCount(-1);
+            } else {
+                encoder.writeFieldCount(data.size());
+                for (Map.Entry<String, Object> en : data.entrySet()) {
+                    encoder.writeObject(en.getKey(), en.getValue());
+                }
+            }
+            break;
+        case INT:
+            encoder.writeFieldCount(1);
+            encoder.writeInt(key, (int) bits);
+            break;
+        case LONG:
+            encoder.writeFieldCount(1);
+            encoder.writeLong(key, bits);
+            break;
+        case DOUBLE:
+            encoder.writeFieldCount(1);
+            encoder.writeDouble(key, Double.longBitsToDouble(bits));
+            break;
+        case BOOLEAN:
+            encoder.writeFieldCount(1);
+            encoder.writeBoolean(key, bits != 0);
+            break;
+        default:
+            encoder.writeFieldCount(1);
+            encoder.writeObject(key, value);
+        }
+    }
+
     /**
      * Converts this record to JSON string
      *
@@ -99,7 +220,12 @@ public class BytemanMetric {
         sb.append("{");
         sb.append("\"marker\":").append(toJsonValue(marker)).append(",");
         sb.append("\"timestamp\":").append(toJsonValue(Long.toString(timestamp))).append(",");
-        if (data == null) {
+        if (data == null && kind != NONE) {
+            sb.append("\"data\":{");
+            sb.append(toJsonValue(key)).append(":");
+            appendValue(sb);
+            sb.append("}");
+        } else if (data == null) {
             sb.append("\"data\":null");
         } else {
             sb.append("\"data\":{");
@@ -141,7 +267,7 @@ public class BytemanMetric {
         sb.append("{");
         sb.append("  marker='").append(marker).append('\'');
         sb.append(", timestamp='").append(timestamp).append('\'');
-        sb.append(", data=").append(data);
+        sb.append(", data=").append(getData());
         sb.append('}');
         return sb.toString();
     }
@@ -46,29 +46,24 @@ import org.jboss.byteman.rule.helper.Helper;
 /**
  * Byteman helper that provides various {@code send()} methods for sending
  * metrics to a peer.
+ * <p>
+ * Byteman creates a helper instance for every rule firing, so {@code send()}
+ * neither locks nor does more than build the metric and hand it to the
+ * transport. The single-value overloads keep primitive values unboxed.
  * 
  */
 public class ThermostatHelper extends Helper {
     
     // Lock to synchronize initialization of transport between instances
     private static final Object transportLock = new Object();
-    private static Transport transport = null;
+    private static volatile Transport transport = null;
+    private static boolean shutdownHookAdded = false;
 
     /**
      * Constructor
      */
     protected ThermostatHelper(Rule rule) {
         super(rule);
-        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
-            @Override
-            public void run() {
-                synchronized (transportLock) {
-                    if (transport != null) {
-                        transport.close();
-                    }
-                }
-            }
-        }));
     }
 
     private static void initTransport() {
@@ -76,43 +71,80 @@ public class ThermostatHelper extends Helper {
             if (transport == null) {
                 transport = new TransportFactory().create();
             }
+            if (!shutdownHookAdded) {
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (transportLock) {
+                            if (transport != null) {
+                                transport.close();
+                            }
+                        }
+                    }
+                }));
+                shutdownHookAdded = true;
+            }
         }
     }
     
     public void send(String marker, String key, String value) {
-        send(marker, new Object[]{key, value});
+        sendMetric(new BytemanMetric(marker, key, (Object) value));
     }
     
     public void send(String marker, String key, int value) {
-        send(marker, new Object[]{key, value});
+        sendMetric(new BytemanMetric(marker, key, value));
     }
     
     public void send(String marker, String key, long value) {
-        send(marker, new Object[]{key, value});
+        sendMetric(new BytemanMetric(marker, key, value));
+    }
+    
+    public void send(String marker, String key, double value) {
+        sendMetric(new BytemanMetric(marker, key, value));
+    }
+    
+    public void send(String marker, String key, boolean value) {
+        sendMetric(new BytemanMetric(marker, key, value));
     }
     
     public void send(String marker, String key, Number value) {
-        send(marker, new Object[]{key, value});
+        sendMetric(new BytemanMetric(marker, key, (Object) value));
     }
     
     public void send(String marker, String key, Boolean value) {
-        send(marker, new Object[]{key, value});
+        sendMetric(new BytemanMetric(marker, key, (Object) value));
     }
 
     public void send(String marker, String key1, String value1, String key2, String value2) {
-        send(marker, new Object[]{key1, value1, key2, value2});
+        LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>(4);
+        put(data, key1, value1);
+        put(data, key2, value2);
+        sendMetric(new BytemanMetric(marker, data));
     }
 
     public void send(String marker, String key1, String value1, String key2, String value2,
                                   String key3, String value3) {
-        send(marker, new Object[]{key1, value1, key2, value2, key3, value3});
+        LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>(4);
+        put(data, key1, value1);
+        put(data, key2, value2);
+        put(data, key3, value3);
+        sendMetric(new BytemanMetric(marker, data));
     }
 
     public void send(String marker, Object... dataArray) {
         LinkedHashMap<String, Object> data = toMap(dataArray);
-        BytemanMetric rec = new BytemanMetric(marker, data);
-        synchronized (transportLock) {
-            transport.send(rec);
+        sendMetric(new BytemanMetric(marker, data));
+    }
+
+    private static void put(LinkedHashMap<String, Object> data, String key, String value) {
+        // same as toMap()
+        data.put(key == null ? "" : key, value);
+    }
+
+    private static void sendMetric(BytemanMetric rec) {
+        Transport current = transport;
+        if (current != null) {
+            current.send(rec);
         }
     }
     
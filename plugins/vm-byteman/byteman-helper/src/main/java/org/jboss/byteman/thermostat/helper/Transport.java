@@ -38,43 +38,80 @@ package org.jboss.byteman.thermostat.helper;
 
 import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jboss.byteman.thermostat.Properties;
 
 /**
+ * Caches records sent from rule firings and transfers them to Thermostat
+ * from a single background thread.
+ * <p>
+ * Records are appended to a lock-free queue, so threads firing rules
+ * concurrently never block. A sender first reserves room for its record
+ * against {@code loseThreshold}, so no more than that many records are ever
+ * cached. The background thread drains the queue once {@code sendThreshold}
+ * records are cached, and every {@code flushInterval} milliseconds in any
+ * case.
+ *
  * @author akashche
  */
 public abstract class Transport implements Closeable {
     
     public static final String SEND_THRESHOLD_PROPERTY = Properties.PREFIX + "sendThreshold";
     public static final String LOSE_THRESHOLD_PROPERTY = Properties.PREFIX + "loseThreshold";
+    public static final String FLUSH_INTERVAL_PROPERTY = Properties.PREFIX + "flushInterval";
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
     // settings
     private final int sendThreshold;
     private final int loseThreshold;
-    // state
-    private AtomicBoolean sending = new AtomicBoolean(false);
     // cache
-    private ArrayList<BytemanMetric> cache = new ArrayList<BytemanMetric>();
-    private final Object cacheLock = new Object();
-    private long lostCount = 0;
+    private final ConcurrentLinkedQueue<BytemanMetric> cache = new ConcurrentLinkedQueue<BytemanMetric>();
+    // records cached or about to be, never more than loseThreshold
+    private final AtomicInteger cachedCount = new AtomicInteger();
+    private final AtomicLong lostCount = new AtomicLong();
     // executor
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThermostatThreadFactory("thermostat"));
+    private final AtomicBoolean transferScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThermostatThreadFactory("thermostat"));
+    private final Runnable transferTask = new Runnable() {
+        @Override
+        public void run() {
+            transfer();
+        }
+    };
 
     /**
-     * Constructor for inheritors
+     * Constructor for inheritors, flushing at the interval set by the
+     * {@link #FLUSH_INTERVAL_PROPERTY} system property
      *
      * @param sendThreshold min number of records to cache before sending
      * @param loseThreshold max number of packages to cache
      */
     protected Transport(int sendThreshold, int loseThreshold) {
+        this(sendThreshold, loseThreshold, Long.getLong(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL));
+    }
+
+    /**
+     * Constructor for inheritors
+     *
+     * @param sendThreshold min number of records to cache before sending
+     * @param loseThreshold max number of packages to cache
+     * @param flushInterval max number of milliseconds a record stays cached
+     */
+    protected Transport(int sendThreshold, int loseThreshold, long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Invalid flush interval: [" + flushInterval + "]");
+        }
         this.sendThreshold = sendThreshold;
         this.loseThreshold = loseThreshold;
+        executor.scheduleWithFixedDelay(transferTask, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -86,20 +123,32 @@ public abstract class Transport implements Closeable {
      */
     protected abstract void transferToPeer(ArrayList<BytemanMetric> records);
 
+    /**
+     * Caches the specified record for transfer. Never blocks; the record is
+     * counted as lost if {@code loseThreshold} records are already cached.
+     *
+     * @param rec record to send
+     */
     public void send(BytemanMetric rec) {
-        synchronized (cacheLock) {
-            if (null != rec) {
-                if (cache.size() < loseThreshold) {
-                    cache.add(rec);
-                    if (cache.size() >= sendThreshold && !sending.get()) {
-                        ArrayList<BytemanMetric> records = cache;
-                        cache = new ArrayList<BytemanMetric>();
-                        TransferTask task = new TransferTask(records);
-                        executor.execute(task);
-                    }
-                } else {
-                    lostCount += 1;
-                }
+        if (null == rec) {
+            return;
+        }
+        int cached;
+        do {
+            cached = cachedCount.get();
+            if (cached >= loseThreshold) {
+                lostCount.incrementAndGet();
+                return;
+            }
+        } while (!cachedCount.compareAndSet(cached, cached + 1));
+        cache.offer(rec);
+        if (cached + 1 >= sendThreshold && !transferScheduled.get()
+                && transferScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(transferTask);
+            } catch (RejectedExecutionException e) {
+                // closing, remaining records are transferred by close()
+                transferScheduled.set(false);
             }
         }
     }
@@ -109,12 +158,6 @@ public abstract class Transport implements Closeable {
      */
     @Override
     public void close() {
-        synchronized (cacheLock) {
-            if (!sending.get() && cache.size() > 0) {
-                TransferTask task = new TransferTask(cache);
-                task.run();
-            }
-        }
         // Shut down executor and wait (with a timeout) for it to finish
         executor.shutdown();
         try {
@@ -122,6 +165,7 @@ public abstract class Transport implements Closeable {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        transfer();
     }
 
     /**
@@ -130,27 +174,29 @@ public abstract class Transport implements Closeable {
      * @return number of lost records
      */
     public long getLostCount() {
-        return lostCount;
+        return lostCount.get();
     }
 
-    private class TransferTask implements Runnable {
-        private final ArrayList<BytemanMetric> records;
-
-        private TransferTask(ArrayList<BytemanMetric> records) {
-            this.records = records;
+    // synchronized in case close() times out waiting for the background thread
+    private synchronized void transfer() {
+        transferScheduled.set(false);
+        // take no more than what is cached now, senders keep adding meanwhile
+        int cached = cachedCount.get();
+        ArrayList<BytemanMetric> records = new ArrayList<BytemanMetric>(Math.max(cached, 16));
+        BytemanMetric rec;
+        while (records.size() < cached && (rec = cache.poll()) != null) {
+            records.add(rec);
         }
-
-        @Override
-        public void run() {
-            sending.set(true);
-            try {
-                transferToPeer(records);
-            } catch (Exception e) {
-                System.err.println("ERROR: Thermostat helper transfer data error:");
-                e.printStackTrace();
-            } finally {
-                sending.set(false);
-            }
+        if (records.isEmpty()) {
+            return;
+        }
+        // frees room only for records that are out of the queue
+        cachedCount.addAndGet(-records.size());
+        try {
+            transferToPeer(records);
+        } catch (Exception e) {
+            System.err.println("ERROR: Thermostat helper transfer data error:");
+            e.printStackTrace();
         }
     }
 
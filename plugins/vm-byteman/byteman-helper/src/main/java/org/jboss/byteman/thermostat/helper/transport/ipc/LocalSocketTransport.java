@@ -43,6 +43,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.jboss.byteman.thermostat.helper.BinaryMetricEncoder;
 import org.jboss.byteman.thermostat.helper.BytemanMetric;
 import org.jboss.byteman.thermostat.helper.Transport;
 import org.jboss.byteman.thermostat.helper.Utils;
@@ -59,6 +60,8 @@ class LocalSocketTransport extends Transport {
     private final long breakIntervalMillis;
     private final LocalSocketChannel channel;
     private final String socketName;
+    // null when sending JSON
+    private final BinaryMetricEncoder binaryEncoder;
 
     /**
      * Constructor
@@ -73,7 +76,19 @@ class LocalSocketTransport extends Transport {
      * @param channelFactory A channel factory suitable for creating a new IPC channel
      */
     LocalSocketTransport(int sendThreshold, int loseThreshold, File ipcConfig, String socketName, int batchSize, int attempts, long breakIntervalMillis, LocalSocketChannelFactory channelFactory) {
+        this(sendThreshold, loseThreshold, ipcConfig, socketName, batchSize, attempts, breakIntervalMillis, channelFactory, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param binary true to send records in the format of
+     *               {@link BinaryMetricEncoder}, false to send JSON
+     * @see #LocalSocketTransport(int, int, File, String, int, int, long, LocalSocketChannelFactory)
+     */
+    LocalSocketTransport(int sendThreshold, int loseThreshold, File ipcConfig, String socketName, int batchSize, int attempts, long breakIntervalMillis, LocalSocketChannelFactory channelFactory, boolean binary) {
         super(sendThreshold, loseThreshold);
+        this.binaryEncoder = binary ? new BinaryMetricEncoder() : null;
         this.batchSize = batchSize;
         this.attempts = attempts;
         this.breakIntervalMillis = breakIntervalMillis;
@@ -147,6 +162,18 @@ class LocalSocketTransport extends Transport {
     }
 
     private void writeBatch(ArrayList<BytemanMetric> records) throws IOException {
+        ByteBuffer envelope;
+        if (binaryEncoder != null) {
+            envelope = binaryEncoder.encode(records);
+        } else {
+            envelope = toJson(records);
+        }
+        synchronized (channel) {
+            channel.write(envelope);
+        }
+    }
+
+    private ByteBuffer toJson(ArrayList<BytemanMetric> records) {
         StringBuilder sb = new StringBuilder();
         sb.append("[");
         boolean first = true;
@@ -159,10 +186,12 @@ class LocalSocketTransport extends Transport {
             sb.append(rec.toJson());
         }
         sb.append("]");
-        ByteBuffer envelope = ByteBuffer.wrap(sb.toString().getBytes(Charset.forName("UTF-8")));
-        synchronized (channel) {
-            channel.write(envelope);
-        }
+        return ByteBuffer.wrap(sb.toString().getBytes(Charset.forName("UTF-8")));
+    }
+
+    // package-private for testing
+    boolean isBinary() {
+        return binaryEncoder != null;
     }
 
     // package-private for testing
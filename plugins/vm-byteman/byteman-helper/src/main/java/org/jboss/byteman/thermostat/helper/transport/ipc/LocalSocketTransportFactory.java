@@ -41,6 +41,7 @@ import static java.lang.System.getProperty;
 import java.io.File;
 
 import org.jboss.byteman.thermostat.Properties;
+import org.jboss.byteman.thermostat.helper.BinaryMetricEncoder;
 import org.jboss.byteman.thermostat.helper.Transport;
 
 public class LocalSocketTransportFactory {
@@ -62,9 +63,11 @@ public class LocalSocketTransportFactory {
         int socketBatchSize = Integer.parseInt(getProperty(SOCKET_BATCH_SIZE_PROPERTY, "8"));
         int socketAttempts = Integer.parseInt(getProperty(SOCKET_SEND_ATTEMPTS_PROPERTY, "1"));
         int socketBreak = Integer.parseInt(getProperty(SOCKET_PAUSE_TIME_MILLIS_PROPERTY, "100"));
+        // set by agents that accept the binary format, older ones only take JSON
+        boolean binary = BinaryMetricEncoder.BINARY_ENCODING.equals(getProperty(BinaryMetricEncoder.ENCODING_PROPERTY));
         LocalSocketChannelFactory factory = new LocalSocketChannelFactoryImpl();
         CreatorHolder holder = new CreatorHolder(sendThreshold, loseThreshold, socketBatchSize, socketAttempts, socketBreak,
-                          socketName, ipcConfig, factory);
+                          socketName, ipcConfig, factory, binary);
         LocalSocketTransportFactory instance = LocalSocketTransportFactory.getInstance();
         return instance.create(holder);
     }
@@ -94,9 +97,10 @@ public class LocalSocketTransportFactory {
         private final String socketName;
         private final File ipcConfigFile;
         private final LocalSocketChannelFactory factory;
+        private final boolean binary;
         
         CreatorHolder(int sendThreshold, int loseThreshold, int socketBatchSize, int socketAttempts, int socketBreak,
-                      String socketName, File ipcConfigFile, LocalSocketChannelFactory factory) {
+                      String socketName, File ipcConfigFile, LocalSocketChannelFactory factory, boolean binary) {
             this.sendThreshold = sendThreshold;
             this.loseThreshold = loseThreshold;
             this.socketBatchSize = socketBatchSize;
@@ -105,11 +109,12 @@ public class LocalSocketTransportFactory {
             this.socketName = socketName;
             this.ipcConfigFile = ipcConfigFile;
             this.factory = factory;
+            this.binary = binary;
         }
         
         private Transport create() {
             return new LocalSocketTransport(sendThreshold, loseThreshold, ipcConfigFile, socketName, socketBatchSize,
-                    socketAttempts, socketBreak, factory);
+                    socketAttempts, socketBreak, factory, binary);
         }
         
         String getSocketName() {
@@ -119,5 +124,9 @@ public class LocalSocketTransportFactory {
         File getIpcConfigFile() {
             return ipcConfigFile;
         }
+        
+        boolean isBinary() {
+            return binary;
+        }
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import org.junit.Test;
+
+public class BinaryMetricEncoderTest {
+
+    @Test
+    public void encodesMarkersAndKeysOnce() {
+        BytemanMetric first = new BytemanMetric("marker", "count", 3);
+        BytemanMetric second = new BytemanMetric("marker", "count", 4L);
+        ByteBuffer buf = new BinaryMetricEncoder().encode(Arrays.asList(first, second));
+
+        assertEquals(BinaryMetricEncoder.MAGIC, buf.getInt());
+        assertEquals(BinaryMetricEncoder.VERSION, buf.get());
+        assertEquals(2, buf.getInt());
+        assertEquals("marker", getString(buf));
+        assertEquals("count", getString(buf));
+        assertEquals(2, buf.getInt());
+
+        assertEquals(4 + 8 + 4 + 4 + 1 + 4, buf.getInt());
+        assertEquals(0, buf.getInt());
+        assertEquals(first.getTimestamp(), buf.getLong());
+        assertEquals(1, buf.getInt());
+        assertEquals(1, buf.getInt());
+        assertEquals(BinaryMetricEncoder.TYPE_INT, buf.get());
+        assertEquals(3, buf.getInt());
+
+        assertEquals(4 + 8 + 4 + 4 + 1 + 8, buf.getInt());
+        assertEquals(0, buf.getInt());
+        assertEquals(second.getTimestamp(), buf.getLong());
+        assertEquals(1, buf.getInt());
+        assertEquals(1, buf.getInt());
+        assertEquals(BinaryMetricEncoder.TYPE_LONG, buf.get());
+        assertEquals(4L, buf.getLong());
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void encodesTypedValues() {
+        LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>();
+        data.put("string", "v\u00e4lue");
+        data.put("double", 4.5);
+        data.put("boolean", true);
+        data.put("null", null);
+        data.put("decimal", new BigDecimal("1.25"));
+        data.put(null, 1);
+        BytemanMetric metric = new BytemanMetric(null, data);
+        ByteBuffer buf = new BinaryMetricEncoder().encode(Arrays.asList(metric));
+
+        buf.position(4 + 1);
+        assertEquals(6, buf.getInt());
+        String[] dictionary = new String[6];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = getString(buf);
+        }
+        assertEquals(1, buf.getInt());
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        assertEquals(-1, buf.getInt());
+        assertEquals(metric.getTimestamp(), buf.getLong());
+        assertEquals(6, buf.getInt());
+
+        assertEquals("string", dictionary[buf.getInt()]);
+        assertEquals(BinaryMetricEncoder.TYPE_STRING, buf.get());
+        assertEquals("v\u00e4lue", getString(buf));
+        assertEquals("double", dictionary[buf.getInt()]);
+        assertEquals(BinaryMetricEncoder.TYPE_DOUBLE, buf.get());
+        assertEquals(4.5, buf.getDouble(), 0);
+        assertEquals("boolean", dictionary[buf.getInt()]);
+        assertEquals(BinaryMetricEncoder.TYPE_BOOLEAN, buf.get());
+        assertEquals(1, buf.get());
+        assertEquals("null", dictionary[buf.getInt()]);
+        assertEquals(BinaryMetricEncoder.TYPE_NULL, buf.get());
+        assertEquals("decimal", dictionary[buf.getInt()]);
+        assertEquals(BinaryMetricEncoder.TYPE_NUMBER, buf.get());
+        assertEquals("1.25", getString(buf));
+        // null keys become empty, as with Utils.toMap()
+        assertEquals("", dictionary[buf.getInt()]);
+        assertEquals(BinaryMetricEncoder.TYPE_INT, buf.get());
+        assertEquals(1, buf.getInt());
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void encodesNullData() {
+        BytemanMetric metric = new BytemanMetric("marker", null);
+        ByteBuffer buf = new BinaryMetricEncoder().encode(Arrays.asList(metric));
+        buf.position(buf.limit() - 4);
+        assertEquals(-1, buf.getInt());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void rejectsUnsupportedValues() {
+        LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>();
+        data.put("object", new Object());
+        new BinaryMetricEncoder().encode(Arrays.asList(new BytemanMetric("marker", data)));
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+}
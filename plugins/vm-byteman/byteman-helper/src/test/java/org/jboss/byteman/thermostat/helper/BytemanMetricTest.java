@@ -37,6 +37,7 @@
 package org.jboss.byteman.thermostat.helper;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.LinkedHashMap;
 
@@ -144,4 +145,33 @@ public class BytemanMetricTest {
                     "}" +
                 "}", recData.toJson());
     }
+
+    @Test
+    public void testToJsonSingleValues() {
+        BytemanMetric intMetric = new BytemanMetric("baz", "foo\"1", 42);
+        assertEquals("{" +
+                    "\"marker\":\"baz\"," +
+                    "\"timestamp\":\"" + intMetric.getTimestamp() + "\"," +
+                    "\"data\":{" +
+                    "\"foo\\\"1\":42" +
+                    "}" +
+                "}", intMetric.toJson());
+        assertTrue(new BytemanMetric("baz", "foo", 42L).toJson().endsWith("\"data\":{\"foo\":42}}"));
+        assertTrue(new BytemanMetric("baz", "foo", 42.0).toJson().endsWith("\"data\":{\"foo\":42.0}}"));
+        assertTrue(new BytemanMetric("baz", "foo", false).toJson().endsWith("\"data\":{\"foo\":false}}"));
+        assertTrue(new BytemanMetric("baz", "foo", (Object) "ba\"r").toJson().endsWith("\"data\":{\"foo\":\"ba\\\"r\"}}"));
+        assertTrue(new BytemanMetric("baz", "foo", (Object) null).toJson().endsWith("\"data\":{\"foo\":null}}"));
+    }
+
+    @Test
+    public void testSingleValueData() {
+        assertEquals(Integer.valueOf(42), new BytemanMetric("baz", "foo", 42).getData().get("foo"));
+        assertEquals(Long.valueOf(42), new BytemanMetric("baz", "foo", 42L).getData().get("foo"));
+        assertEquals(Double.valueOf(42.5), new BytemanMetric("baz", "foo", 42.5).getData().get("foo"));
+        assertEquals(Boolean.TRUE, new BytemanMetric("baz", "foo", true).getData().get("foo"));
+        // null keys become empty, as with Utils.toMap()
+        LinkedHashMap<String, Object> data = new BytemanMetric("baz", null, 1).getData();
+        assertEquals(1, data.size());
+        assertEquals(1, data.get(""));
+    }
 }
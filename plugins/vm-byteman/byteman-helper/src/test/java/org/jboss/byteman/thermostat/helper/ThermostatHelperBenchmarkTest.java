@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.byteman.rule.Rule;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.ConcurrentBenchmark;
+import com.redhat.thermostat.testutils.PerformanceTest;
+
+/**
+ * Measures the cost of a rule firing sending a metric from several threads at
+ * once. Run with -Pperf-tests.
+ */
+@Category(PerformanceTest.class)
+public class ThermostatHelperBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    @After
+    public void tearDown() {
+        ThermostatHelper.setTransport(null);
+    }
+
+    @Test
+    public void measureSend() throws Exception {
+        final CountingTransport transport = new CountingTransport();
+        ThermostatHelper.setTransport(transport);
+        final ThermostatHelper helper = new ThermostatHelper(mock(Rule.class));
+        final AtomicLong sent = new AtomicLong();
+
+        ConcurrentBenchmark.Workload send = new ConcurrentBenchmark.Workload() {
+            @Override
+            public void run(int iterations) {
+                for (int i = 0; i < iterations; i++) {
+                    helper.send("benchmark", "elapsed", (long) i);
+                }
+                sent.addAndGet(iterations);
+            }
+        };
+
+        ConcurrentBenchmark benchmark = new ConcurrentBenchmark(WARMUP_ITERATIONS, ITERATIONS);
+        System.out.println("Sending metrics, " + ITERATIONS + " rule firings per thread:");
+        for (int threads : ConcurrentBenchmark.THREAD_COUNTS) {
+            System.out.println("  " + threads + " thread(s):");
+            ConcurrentBenchmark.print("send", benchmark.measure(send, threads, 1), "send");
+        }
+
+        transport.close();
+        assertEquals(sent.get(), transport.transferred.get() + transport.getLostCount());
+    }
+
+    private static class CountingTransport extends Transport {
+
+        private final AtomicLong transferred = new AtomicLong();
+
+        CountingTransport() {
+            super(4096, Integer.MAX_VALUE);
+        }
+
+        @Override
+        protected void transferToPeer(ArrayList<BytemanMetric> records) {
+            transferred.addAndGet(records.size());
+        }
+    }
+}
@@ -89,6 +89,27 @@ public class ThermostatHelperTest {
         assertEquals("value1", data.get("key1"));
     }
     
+    @Test
+    public void canSendPrimitiveValues() {
+        helper.send("my-marker", "int", 3000);
+        helper.send("my-marker", "long", 3000L);
+        helper.send("my-marker", "double", Math.PI);
+        helper.send("my-marker", "boolean", true);
+        ArgumentCaptor<BytemanMetric> metricCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
+        verify(mockTransport, times(4)).send(metricCaptor.capture());
+        assertEquals(Integer.valueOf(3000), metricCaptor.getAllValues().get(0).getData().get("int"));
+        assertEquals(Long.valueOf(3000), metricCaptor.getAllValues().get(1).getData().get("long"));
+        assertEquals(Math.PI, (Double) metricCaptor.getAllValues().get(2).getData().get("double"), DELTA);
+        assertEquals(Boolean.TRUE, metricCaptor.getAllValues().get(3).getData().get("boolean"));
+    }
+
+    @Test
+    public void sendWithoutTransportIsIgnored() {
+        ThermostatHelper.setTransport(null);
+        helper.send("my-marker", "key1", 1);
+        helper.send("my-marker", "key1", "value1");
+    }
+    
     @Test
     public void canSendSimpleValueMultiple2() {
         helper.send("my-marker", "key1", "value1", "key2", 3000);
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TransportTest {
+
+    @Test
+    public void transfersOnceSendThresholdIsReached() throws InterruptedException {
+        CountingTransport transport = new CountingTransport(3, Integer.MAX_VALUE, 60000);
+        try {
+            transport.send(new BytemanMetric("marker1", null));
+            transport.send(new BytemanMetric("marker2", null));
+            transport.send(new BytemanMetric("marker3", null));
+            transport.latch.await();
+            assertEquals(1, transport.callCount.get());
+            assertEquals(3, transport.recordCount.get());
+        } finally {
+            transport.close();
+        }
+        assertEquals(1, transport.callCount.get());
+    }
+
+    @Test
+    public void transfersAfterFlushInterval() throws InterruptedException {
+        CountingTransport transport = new CountingTransport(1000, Integer.MAX_VALUE, 10);
+        try {
+            transport.send(new BytemanMetric("marker", null));
+            assertTrue(transport.latch.await(5, TimeUnit.SECONDS));
+            assertEquals(1, transport.recordCount.get());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void closeTransfersRemainingRecords() {
+        CountingTransport transport = new CountingTransport(1000, Integer.MAX_VALUE, 60000);
+        transport.send(new BytemanMetric("marker1", null));
+        transport.send(new BytemanMetric("marker2", null));
+        transport.close();
+        assertEquals(1, transport.callCount.get());
+        assertEquals(2, transport.recordCount.get());
+    }
+
+    @Test
+    public void recordsAboveLoseThresholdAreLost() {
+        CountingTransport transport = new CountingTransport(1000, 2, 60000);
+        for (int i = 0; i < 5; i++) {
+            transport.send(new BytemanMetric("marker", "key", i));
+        }
+        transport.close();
+        assertEquals(2, transport.recordCount.get());
+        assertEquals(3, transport.getLostCount());
+    }
+
+    @Test
+    public void concurrentSendersLoseNothing() throws InterruptedException {
+        final int threadCount = 4;
+        final int perThread = 10000;
+        final CountingTransport transport = new CountingTransport(1000, Integer.MAX_VALUE, 60000);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        transport.send(new BytemanMetric("marker", "key", j));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        transport.close();
+        assertEquals(0, transport.getLostCount());
+        assertEquals(threadCount * perThread, transport.recordCount.get());
+    }
+
+    @Test
+    public void concurrentSendersStayWithinLoseThreshold() throws InterruptedException {
+        final int threadCount = 4;
+        final int perThread = 10000;
+        final int loseThreshold = 100;
+        final CountingTransport transport = new CountingTransport(Integer.MAX_VALUE, loseThreshold, 60000);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < perThread; j++) {
+                        transport.send(new BytemanMetric("marker", "key", j));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        transport.close();
+        assertEquals(loseThreshold, transport.recordCount.get());
+        assertEquals(threadCount * perThread - loseThreshold, transport.getLostCount());
+    }
+
+    private static class CountingTransport extends Transport {
+
+        private final AtomicInteger callCount = new AtomicInteger();
+        private final AtomicLong recordCount = new AtomicLong();
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        CountingTransport(int sendThreshold, int loseThreshold, long flushInterval) {
+            super(sendThreshold, loseThreshold, flushInterval);
+        }
+
+        @Override
+        protected void transferToPeer(ArrayList<BytemanMetric> records) {
+            callCount.incrementAndGet();
+            recordCount.addAndGet(records.size());
+            latch.countDown();
+        }
+    }
+}
@@ -37,6 +37,8 @@
 package org.jboss.byteman.thermostat.helper.transport.ipc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.jboss.byteman.thermostat.helper.Transport;
 import org.jboss.byteman.thermostat.helper.transport.ipc.LocalSocketTransportFactory;
@@ -53,6 +55,7 @@ public class LocalSocketTransportFactoryTest {
     private static final String IPC_SOCKET_NAME_VALUE = "someSocketName";
     private static final String IPC_CONFIG = "org.jboss.byteman.thermostat.ipcConfig";
     private static final String IPC_CONFIG_VALUE = new File("/path/to/ipcConfigFile").getAbsolutePath();
+    private static final String ENCODING = "org.jboss.byteman.thermostat.encoding";
 
     @Before
     public void setup() {
@@ -63,6 +66,7 @@ public class LocalSocketTransportFactoryTest {
     @After
     public void teardown() {
         System.clearProperty(IPC_CONFIG);
+        System.clearProperty(ENCODING);
     }
 
     @Test
@@ -73,6 +77,16 @@ public class LocalSocketTransportFactoryTest {
         CreatorHolder holder = factory.holder;
         assertEquals(IPC_SOCKET_NAME_VALUE, holder.getSocketName());
         assertEquals(IPC_CONFIG_VALUE, holder.getIpcConfigFile().getAbsolutePath());
+        assertFalse(holder.isBinary());
+    }
+    
+    @Test
+    public void createUsesBinaryEncodingIfAgentAcceptsIt() {
+        System.setProperty(ENCODING, "binary");
+        TestLocalTransportFactory factory = new TestLocalTransportFactory();
+        LocalSocketTransportFactory.setInstance(factory);
+        LocalSocketTransportFactory.create(); // sets holder
+        assertTrue(factory.holder.isBinary());
     }
     
     static class TestLocalTransportFactory extends LocalSocketTransportFactory {
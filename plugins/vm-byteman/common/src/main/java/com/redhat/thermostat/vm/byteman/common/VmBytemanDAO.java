@@ -46,6 +46,14 @@ public interface VmBytemanDAO {
 
     void addMetric(BytemanMetric metric);
     
+    /**
+     * Adds all the specified metrics. They are queued for the web gateway
+     * together, so they are usually sent in a single request.
+     * 
+     * @param metrics the metrics to add, in the order they were recorded
+     */
+    void addMetrics(List<BytemanMetric> metrics);
+    
     void addOrReplaceBytemanStatus(VmBytemanStatus status);
     
     VmBytemanStatus findBytemanStatus(VmId vmId);
@@ -44,7 +44,10 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
+import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.model.Range;
+import com.redhat.thermostat.common.plugins.PluginConfiguration;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.AgentId;
 import com.redhat.thermostat.storage.core.Category;
@@ -64,6 +67,8 @@ import com.redhat.thermostat.vm.byteman.common.VmBytemanStatus;
 @Service(value = VmBytemanDAO.class)
 public class VmBytemanDAOImpl extends AbstractDao implements VmBytemanDAO {
     
+    private static final String PLUGIN_ID = "vm-byteman";
+    
     static final Key<String> MARKER = new Key<>("marker");
     static final Key<String> DATA = new Key<>("data");
     static final Key<String> RULE = new Key<>("rule");
@@ -89,50 +94,59 @@ public class VmBytemanDAOImpl extends AbstractDao implements VmBytemanDAO {
                  "'" + PORT.getName() + "' = ?i WHERE "
                          + "'" + Key.VM_ID.getName() + "' = ?s";
     
-    static final String ADD_METRIC_DESC = "ADD " + VM_BYTEMAN_METRICS_CATEGORY.getName() +
-            " SET '" + Key.AGENT_ID.getName() + "' = ?s , " +
-                 "'" + Key.VM_ID.getName() + "' = ?s , " +
-                 "'" + Key.TIMESTAMP.getName() + "' = ?l , " +
-                 "'" + MARKER.getName() + "' = ?s , " +
-                 "'" + DATA.getName() + "' = ?s";
-    
     static final String QUERY_VM_BYTEMAN_STATUS = "QUERY " + VM_BYTEMAN_STATUS_CATEGORY.getName() +
             " WHERE '" + Key.VM_ID.getName() + "' = ?s LIMIT 1";
     
+    private final BytemanMetricListWebTypeAdapter metricsAdapter;
+    private final ConfigurationCreator configCreator;
+    
     @Reference
     private Storage storage;
+    @Reference
+    private ConfigurationInfoSource configInfoSource;
+    @Reference
+    private GatewayBatchWriter writer;
+    private String gatewayURL;
     private VmTimeIntervalPojoListGetter<BytemanMetric> intervalGetter;
     
     public VmBytemanDAOImpl() {
         // Default constructor for DS
+        this(new BytemanMetricListWebTypeAdapter(), new ConfigurationCreator(), null, null, null);
     }
     
-    VmBytemanDAOImpl(Storage storage) {
+    VmBytemanDAOImpl(BytemanMetricListWebTypeAdapter metricsAdapter, ConfigurationCreator creator,
+            Storage storage, ConfigurationInfoSource source, GatewayBatchWriter writer) {
+        this.metricsAdapter = metricsAdapter;
+        this.configCreator = creator;
         this.storage = storage;
+        this.configInfoSource = source;
+        this.writer = writer;
     }
     
     @Activate
-    private void activate() {
+    void activate() throws Exception {
+        PluginConfiguration config = configCreator.create(configInfoSource);
+        this.gatewayURL = config.getGatewayURL();
         storage.registerCategory(VM_BYTEMAN_METRICS_CATEGORY);
         storage.registerCategory(VM_BYTEMAN_STATUS_CATEGORY);
         intervalGetter = new VmTimeIntervalPojoListGetter<>(storage, VM_BYTEMAN_METRICS_CATEGORY);
     }
 
     @Override
-    public void addMetric(final BytemanMetric metric) {
-        executeStatement(new AbstractDaoStatement<BytemanMetric>(storage, VM_BYTEMAN_METRICS_CATEGORY, ADD_METRIC_DESC) {
+    public void addMetric(BytemanMetric metric) {
+        writeMetric(metric);
+    }
 
-            @Override
-            public PreparedStatement<BytemanMetric> customize(PreparedStatement<BytemanMetric> preparedStatement) {
-                preparedStatement.setString(0, metric.getAgentId());
-                preparedStatement.setString(1, metric.getVmId());
-                preparedStatement.setLong(2, metric.getTimeStamp());
-                preparedStatement.setString(3, metric.getMarker());
-                preparedStatement.setString(4, metric.getDataAsJson());
-                return preparedStatement;
-            }
-        });
+    @Override
+    public void addMetrics(List<BytemanMetric> metrics) {
+        for (BytemanMetric metric : metrics) {
+            writeMetric(metric);
+        }
+    }
 
+    // the writer sends metrics queued together in one request
+    private void writeMetric(BytemanMetric metric) {
+        writer.write(gatewayURL, metric, metricsAdapter);
     }
 
     @Override
@@ -180,4 +194,13 @@ public class VmBytemanDAOImpl extends AbstractDao implements VmBytemanDAO {
         return result.get(0);
     }
 
+    // For Testing purposes
+    static class ConfigurationCreator {
+        
+        PluginConfiguration create(ConfigurationInfoSource source) {
+            return new PluginConfiguration(source, PLUGIN_ID);
+        }
+        
+    }
+
 }
@@ -52,7 +52,6 @@ public class VmBytemanMetricDAOImplStatementDescriptorRegistration
     @Override
     public Set<String> getStatementDescriptors() {
         Set<String> descs = new HashSet<>(7);
-        descs.add(VmBytemanDAOImpl.ADD_METRIC_DESC);
         descs.add(intervalDescriptor);
         descs.add(VmBytemanDAOImpl.REPLACE_OR_ADD_STATUS_DESC);
         descs.add(VmBytemanDAOImpl.QUERY_VM_BYTEMAN_STATUS);
@@ -41,6 +41,9 @@ import com.google.gson.GsonBuilder;
 import com.redhat.thermostat.vm.byteman.common.BytemanMetric;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 
 public class BytemanMetricWebTypeAdapterTest {
@@ -58,4 +61,23 @@ public class BytemanMetricWebTypeAdapterTest {
         metric.setData("{\"data\":\"This is data\"}");
         assertEquals("{\"agentId\":\"Agent-1\",\"vmId\":\"Vm-1\",\"marker\":\"Marker\",\"jsonPayload\":\"{\\\"data\\\":\\\"This is data\\\"}\",\"timeStamp\":{\"$numberLong\":\"100\"}}", gson.toJson(metric));
     }
+
+    @Test
+    public void testWriteList() throws IOException {
+        BytemanMetric first = new BytemanMetric();
+        first.setTimeStamp(100l);
+        first.setVmId("Vm-1");
+        first.setAgentId("Agent-1");
+        first.setMarker("Marker");
+        first.setData("{}");
+        BytemanMetric second = new BytemanMetric();
+        second.setTimeStamp(200l);
+        second.setVmId("Vm-1");
+        second.setAgentId("Agent-1");
+        second.setMarker("Other");
+        second.setData("{}");
+        String json = new BytemanMetricListWebTypeAdapter().toJson(Arrays.asList(first, second));
+        assertEquals("[{\"agentId\":\"Agent-1\",\"vmId\":\"Vm-1\",\"marker\":\"Marker\",\"jsonPayload\":\"{}\",\"timeStamp\":{\"$numberLong\":\"100\"}},"
+                + "{\"agentId\":\"Agent-1\",\"vmId\":\"Vm-1\",\"marker\":\"Other\",\"jsonPayload\":\"{}\",\"timeStamp\":{\"$numberLong\":\"200\"}}]", json);
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.byteman.common.internal;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
+import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
+import com.redhat.thermostat.common.plugins.PluginConfiguration;
+import com.redhat.thermostat.storage.core.Storage;
+import com.redhat.thermostat.vm.byteman.common.BytemanMetric;
+import com.redhat.thermostat.vm.byteman.common.internal.VmBytemanDAOImpl.ConfigurationCreator;
+
+public class VmBytemanDAOImplTest {
+
+    private static final String GATEWAY_URL = "http://example.com/jvm-byteman";
+
+    private GatewayBatchWriter writer;
+    private BytemanMetricListWebTypeAdapter adapter;
+    private VmBytemanDAOImpl dao;
+
+    @Before
+    public void setup() throws Exception {
+        writer = mock(GatewayBatchWriter.class);
+        adapter = mock(BytemanMetricListWebTypeAdapter.class);
+
+        ConfigurationInfoSource source = mock(ConfigurationInfoSource.class);
+        PluginConfiguration config = mock(PluginConfiguration.class);
+        when(config.getGatewayURL()).thenReturn(GATEWAY_URL);
+        ConfigurationCreator creator = mock(ConfigurationCreator.class);
+        when(creator.create(source)).thenReturn(config);
+        dao = new VmBytemanDAOImpl(adapter, creator, mock(Storage.class), source, writer);
+        dao.activate();
+    }
+
+    @Test
+    public void testAddMetric() {
+        BytemanMetric metric = createMetric("marker");
+        dao.addMetric(metric);
+
+        verify(writer).write(GATEWAY_URL, metric, adapter);
+    }
+
+    @Test
+    public void testAddMetricsQueuesEachMetricInOrder() {
+        BytemanMetric first = createMetric("first");
+        BytemanMetric second = createMetric("second");
+        dao.addMetrics(Arrays.asList(first, second));
+
+        InOrder inOrder = inOrder(writer);
+        inOrder.verify(writer).write(GATEWAY_URL, first, adapter);
+        inOrder.verify(writer).write(GATEWAY_URL, second, adapter);
+        verifyNoMoreInteractions(writer);
+    }
+
+    private static BytemanMetric createMetric(String marker) {
+        BytemanMetric metric = new BytemanMetric();
+        metric.setAgentId("some-agent");
+        metric.setVmId("some-vm");
+        metric.setTimeStamp(1234l);
+        metric.setMarker(marker);
+        metric.setData("{}");
+        return metric;
+    }
+}
@@ -36,8 +36,9 @@
 
 package com.redhat.thermostat.vm.classstat.agent.internal;
 
-import com.redhat.thermostat.backend.VmUpdate;
-import com.redhat.thermostat.backend.VmUpdateException;
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounterRef;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 
 /**
  * A helper class to provide type-safe access to commonly used jvmstat monitors
@@ -48,48 +49,71 @@ import com.redhat.thermostat.backend.VmUpdateException;
  * provides is merely an abstraction over this (possibly always up-to-date)
  * ByteBuffer. So the data this class extracts is as current as possible, and
  * does not correspond to when the jvmstat update events fired.
+ * <p>
+ * An extractor belongs to a single VM and is reused for all of its updates,
+ * so counters are resolved only once.
  */
 public class VmClassStatDataExtractor {
 
-    /*
-     * Note, there may be a performance issue to consider here. We have a lot of
-     * string constants. When we start adding some of the more heavyweight
-     * features, and running into CPU issues this may need to be reconsidered in
-     * order to avoid the String pool overhead. See also:
-     * http://docs.oracle.com/javase/6/docs/api/java/lang/String.html#intern()
-     */
-
     // For the definitions of the values, see VmClassStat.
 
-    private final VmUpdate update;
+    private final PerformanceCounterRef loadedClasses = new PerformanceCounterRef("java.cls.loadedClasses");
+    private final PerformanceCounterRef sharedLoadedClasses = new PerformanceCounterRef("java.cls.sharedLoadedClasses");
+    private final PerformanceCounterRef loadedBytes = new PerformanceCounterRef("sun.cls.loadedBytes");
+    private final PerformanceCounterRef sharedLoadedBytes = new PerformanceCounterRef("sun.cls.sharedLoadedBytes");
+    private final PerformanceCounterRef unloadedClasses = new PerformanceCounterRef("java.cls.unloadedClasses");
+    private final PerformanceCounterRef sharedUnloadedClasses = new PerformanceCounterRef("java.cls.sharedUnloadedClasses");
+    private final PerformanceCounterRef unloadedBytes = new PerformanceCounterRef("sun.cls.unloadedBytes");
+    private final PerformanceCounterRef sharedUnloadedBytes = new PerformanceCounterRef("sun.cls.sharedUnloadedBytes");
+    private final PerformanceCounterRef classLoadTime = new PerformanceCounterRef("sun.cls.time");
+    private final PerformanceCounterRef frequency = new PerformanceCounterRef("sun.os.hrt.frequency");
+
+    private VmUpdate update;
+
+    public VmClassStatDataExtractor() {
+        this(null);
+    }
 
     public VmClassStatDataExtractor(VmUpdate update) {
         this.update = update;
     }
 
-    public Long getLoadedClasses() throws VmUpdateException {
-        return update.getPerformanceCounterLong("java.cls.loadedClasses")
-                + update.getPerformanceCounterLong("java.cls.sharedLoadedClasses");
+    /**
+     * Sets the update subsequent values are read from.
+     */
+    public void setUpdate(VmUpdate update) {
+        this.update = update;
+    }
+
+    public long getLoadedClasses(long defaultValue) throws VmUpdateException {
+        return sum(loadedClasses, sharedLoadedClasses, defaultValue);
+    }
+
+    public long getLoadedBytes(long defaultValue) throws VmUpdateException {
+        return sum(loadedBytes, sharedLoadedBytes, defaultValue);
     }
 
-    public Long getLoadedBytes() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.cls.loadedBytes")
-                + update.getPerformanceCounterLong("sun.cls.sharedLoadedBytes");
+    public long getUnloadedClasses(long defaultValue) throws VmUpdateException {
+        return sum(unloadedClasses, sharedUnloadedClasses, defaultValue);
     }
 
-    public Long getUnloadedClasses() throws VmUpdateException {
-        return update.getPerformanceCounterLong("java.cls.unloadedClasses")
-                + update.getPerformanceCounterLong("java.cls.sharedUnloadedClasses");
+    public long getUnloadedBytes(long defaultValue) throws VmUpdateException {
+        return sum(unloadedBytes, sharedUnloadedBytes, defaultValue);
     }
 
-    public Long getUnloadedBytes() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.cls.unloadedBytes")
-                + update.getPerformanceCounterLong("sun.cls.sharedUnloadedBytes");
+    public long getClassLoadTime(long defaultValue) throws VmUpdateException {
+        if (classLoadTime.resolve(update) == null || frequency.resolve(update) == null) {
+            return defaultValue;
+        }
+        return classLoadTime.getLong(update, defaultValue) / frequency.getLong(update, defaultValue);
     }
 
-    public Long getClassLoadTime() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.cls.time")
-                / update.getPerformanceCounterLong("sun.os.hrt.frequency");
+    private long sum(PerformanceCounterRef nonShared, PerformanceCounterRef shared, long defaultValue)
+            throws VmUpdateException {
+        if (nonShared.resolve(update) == null || shared.resolve(update) == null) {
+            return defaultValue;
+        }
+        return nonShared.getLong(update, defaultValue) + shared.getLong(update, defaultValue);
     }
 
 }
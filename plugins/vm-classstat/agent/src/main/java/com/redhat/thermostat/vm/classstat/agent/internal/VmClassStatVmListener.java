@@ -39,10 +39,10 @@ package com.redhat.thermostat.vm.classstat.agent.internal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.redhat.thermostat.backend.VmUpdate;
-import com.redhat.thermostat.backend.VmUpdateException;
-import com.redhat.thermostat.backend.VmUpdateListener;
 import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
 import com.redhat.thermostat.vm.classstat.common.VmClassStatDAO;
 import com.redhat.thermostat.vm.classstat.common.model.VmClassStat;
 
@@ -53,6 +53,7 @@ class VmClassStatVmListener implements VmUpdateListener {
     private final VmClassStatDAO dao;
     private final String vmId;
     private final String writerId;
+    private final VmClassStatDataExtractor extractor = new VmClassStatDataExtractor();
     
     private boolean error;
 
@@ -64,13 +65,13 @@ class VmClassStatVmListener implements VmUpdateListener {
 
     @Override
     public void countersUpdated(VmUpdate update) {
-        VmClassStatDataExtractor extractor = new VmClassStatDataExtractor(update);
+        extractor.setUpdate(update);
         try {
-            long loadedClasses = valueOrUnknown(extractor.getLoadedClasses(), "number of loaded classes", vmId);
-            long loadedBytes = valueOrUnknown(extractor.getLoadedBytes(), "number of loaded bytes", vmId);
-            long unloadedClasses = valueOrUnknown(extractor.getUnloadedClasses(), "number of unloaded", vmId);
-            long unloadedBytes = valueOrUnknown(extractor.getUnloadedBytes(), "number of unloaded bytes", vmId);
-            long classLoadTime = valueOrUnknown(extractor.getClassLoadTime(), "class load time", vmId);
+            long loadedClasses = valueOrUnknown(extractor.getLoadedClasses(VmClassStat.UNKNOWN), "number of loaded classes", vmId);
+            long loadedBytes = valueOrUnknown(extractor.getLoadedBytes(VmClassStat.UNKNOWN), "number of loaded bytes", vmId);
+            long unloadedClasses = valueOrUnknown(extractor.getUnloadedClasses(VmClassStat.UNKNOWN), "number of unloaded", vmId);
+            long unloadedBytes = valueOrUnknown(extractor.getUnloadedBytes(VmClassStat.UNKNOWN), "number of unloaded bytes", vmId);
+            long classLoadTime = valueOrUnknown(extractor.getClassLoadTime(VmClassStat.UNKNOWN), "class load time", vmId);
 
             long timestamp = System.currentTimeMillis();
             VmClassStat stat = new VmClassStat(writerId, vmId, timestamp,
@@ -85,11 +86,11 @@ class VmClassStatVmListener implements VmUpdateListener {
         }
     }
 
-    private long valueOrUnknown(Long value, String valudDescription, String vmId) {
-        if (value == null) {
+    private long valueOrUnknown(long value, String valudDescription, String vmId) {
+        if (value == VmClassStat.UNKNOWN) {
             logWarningOnce("Unable to determine " + valudDescription + " for VM " + vmId);
         }
-        return value == null ? VmClassStat.UNKNOWN : value;
+        return value;
     }
 
     private void logWarningOnce(String message) {
@@ -43,23 +43,45 @@ import static org.mockito.Mockito.when;
 
 import org.junit.Test;
 
-import com.redhat.thermostat.backend.VmUpdate;
-import com.redhat.thermostat.backend.VmUpdateException;
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
+import com.redhat.thermostat.vm.classstat.common.model.VmClassStat;
 
 public class VmClassStatDataExtractorTest {
 
     @Test
     public void testLoadedClasses() throws VmUpdateException {
         final String MONITOR_NAME = "java.cls.loadedClasses";
-        final Long LOADED_CLASSES = 99l;
+        final String SHARED_MONITOR_NAME = "java.cls.sharedLoadedClasses";
+        final long LOADED_CLASSES = 99l;
+        final long SHARED_LOADED_CLASSES = 1l;
         
         VmUpdate update = mock(VmUpdate.class);
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(LOADED_CLASSES);
+        mockCounter(update, MONITOR_NAME, LOADED_CLASSES);
+        mockCounter(update, SHARED_MONITOR_NAME, SHARED_LOADED_CLASSES);
 
         VmClassStatDataExtractor extractor = new VmClassStatDataExtractor(update);
-        Long returned = extractor.getLoadedClasses();
+        long returned = extractor.getLoadedClasses(VmClassStat.UNKNOWN);
         
-        assertEquals(LOADED_CLASSES, returned);
+        assertEquals(LOADED_CLASSES + SHARED_LOADED_CLASSES, returned);
+    }
+
+    @Test
+    public void testLoadedClassesMissingCounter() throws VmUpdateException {
+        VmUpdate update = mock(VmUpdate.class);
+        mockCounter(update, "java.cls.loadedClasses", 99l);
+
+        VmClassStatDataExtractor extractor = new VmClassStatDataExtractor(update);
+        long returned = extractor.getLoadedClasses(VmClassStat.UNKNOWN);
+
+        assertEquals(VmClassStat.UNKNOWN, returned);
+    }
+
+    private void mockCounter(VmUpdate update, String name, long value) throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
+        when(counter.longValue()).thenReturn(value);
+        when(update.getPerformanceCounter(eq(name))).thenReturn(counter);
     }
 
 }
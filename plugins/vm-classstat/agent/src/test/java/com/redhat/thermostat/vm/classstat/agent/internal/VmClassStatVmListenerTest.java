@@ -50,8 +50,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
-import com.redhat.thermostat.backend.VmUpdate;
-import com.redhat.thermostat.backend.VmUpdateException;
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import com.redhat.thermostat.vm.classstat.common.VmClassStatDAO;
 import com.redhat.thermostat.vm.classstat.common.model.VmClassStat;
 
@@ -85,20 +86,20 @@ public class VmClassStatVmListenerTest {
         listener = new VmClassStatVmListener("foo-agent", dao, VM_ID);
 
         update = mock(VmUpdate.class);
-        when(update.getPerformanceCounterLong("java.cls.loadedClasses")).thenReturn(LOADED_CLASSES_NON_SHARED);
-        when(update.getPerformanceCounterLong("java.cls.sharedLoadedClasses")).thenReturn(LOADED_CLASSES_SHARED);
+        mockCounter("java.cls.loadedClasses", LOADED_CLASSES_NON_SHARED);
+        mockCounter("java.cls.sharedLoadedClasses", LOADED_CLASSES_SHARED);
 
-        when(update.getPerformanceCounterLong("sun.cls.loadedBytes")).thenReturn(LOADED_BYTES_NON_SHARED);
-        when(update.getPerformanceCounterLong("sun.cls.sharedLoadedBytes")).thenReturn(LOADED_BYTES_SHARED);
+        mockCounter("sun.cls.loadedBytes", LOADED_BYTES_NON_SHARED);
+        mockCounter("sun.cls.sharedLoadedBytes", LOADED_BYTES_SHARED);
 
-        when(update.getPerformanceCounterLong("java.cls.unloadedClasses")).thenReturn(UNLOADED_CLASSES_NON_SHARED);
-        when(update.getPerformanceCounterLong("java.cls.sharedUnloadedClasses")).thenReturn(UNLOADED_CLASSES_SHARED);
+        mockCounter("java.cls.unloadedClasses", UNLOADED_CLASSES_NON_SHARED);
+        mockCounter("java.cls.sharedUnloadedClasses", UNLOADED_CLASSES_SHARED);
 
-        when(update.getPerformanceCounterLong("sun.cls.unloadedBytes")).thenReturn(UNLOADED_BYTES_NON_SHARED);
-        when(update.getPerformanceCounterLong("sun.cls.sharedUnloadedBytes")).thenReturn(UNLOADED_BYTES_SHARED);
+        mockCounter("sun.cls.unloadedBytes", UNLOADED_BYTES_NON_SHARED);
+        mockCounter("sun.cls.sharedUnloadedBytes", UNLOADED_BYTES_SHARED);
 
-        when(update.getPerformanceCounterLong("sun.cls.time")).thenReturn(CLASS_TIME_TICKS);
-        when(update.getPerformanceCounterLong("sun.os.hrt.frequency")).thenReturn(FREQUENCY);
+        mockCounter("sun.cls.time", CLASS_TIME_TICKS);
+        mockCounter("sun.os.hrt.frequency", FREQUENCY);
     }
 
     @Test
@@ -123,11 +124,16 @@ public class VmClassStatVmListenerTest {
 
     @Test
     public void testMonitorUpdateFails() throws VmUpdateException {
-        when(update.getPerformanceCounterLong(anyString())).thenThrow(new VmUpdateException());
+        when(update.getPerformanceCounter(anyString())).thenThrow(new VmUpdateException());
         listener.countersUpdated(update);
 
         verifyNoMoreInteractions(dao);
     }
 
-}
+    private void mockCounter(String name, long value) throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
+        when(counter.longValue()).thenReturn(value);
+        when(update.getPerformanceCounter(name)).thenReturn(counter);
+    }
 
+}
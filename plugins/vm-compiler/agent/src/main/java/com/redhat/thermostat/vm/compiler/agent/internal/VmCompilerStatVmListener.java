@@ -39,10 +39,11 @@ package com.redhat.thermostat.vm.compiler.agent.internal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.redhat.thermostat.backend.VmUpdate;
-import com.redhat.thermostat.backend.VmUpdateException;
-import com.redhat.thermostat.backend.VmUpdateListener;
 import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounterRef;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
 import com.redhat.thermostat.vm.compiler.common.VmCompilerStat;
 import com.redhat.thermostat.vm.compiler.common.VmCompilerStatDao;
 
@@ -54,6 +55,18 @@ class VmCompilerStatVmListener implements VmUpdateListener {
     private final String vmId;
     private final String writerId;
 
+    // Resolved once per VM and reused for every update
+    private final PerformanceCounterRef totalCompiles = new PerformanceCounterRef("sun.ci.totalCompiles");
+    private final PerformanceCounterRef totalBailouts = new PerformanceCounterRef("sun.ci.totalBailouts");
+    private final PerformanceCounterRef totalInvalidates = new PerformanceCounterRef("sun.ci.totalInvalidates");
+    private final PerformanceCounterRef totalTime = new PerformanceCounterRef("java.ci.totalTime");
+    private final PerformanceCounterRef frequency = new PerformanceCounterRef("sun.os.hrt.frequency");
+    private final PerformanceCounterRef lastSize = new PerformanceCounterRef("sun.ci.lastSize");
+    private final PerformanceCounterRef lastType = new PerformanceCounterRef("sun.ci.lastType");
+    private final PerformanceCounterRef lastMethod = new PerformanceCounterRef("sun.ci.lastMethod");
+    private final PerformanceCounterRef lastFailedType = new PerformanceCounterRef("sun.ci.lastFailedType");
+    private final PerformanceCounterRef lastFailedMethod = new PerformanceCounterRef("sun.ci.lastFailedMethod");
+
     private boolean error;
 
     VmCompilerStatVmListener(String writerId, VmCompilerStatDao dao, String vmId) {
@@ -65,15 +78,20 @@ class VmCompilerStatVmListener implements VmUpdateListener {
     @Override
     public void countersUpdated(VmUpdate update) {
         try {
-            long totalCompiles = longValueOrUnknown(update, "totalCompiles", vmId);
-            long totalBailouts = longValueOrUnknown(update, "totalBailouts", vmId);
-            long totalInvalidates = longValueOrUnknown(update, "totalInvalidates", vmId);
-            long compilationTime = update.getPerformanceCounterLong("java.ci.totalTime") / update.getPerformanceCounterLong("sun.os.hrt.frequency");
-            long lastSize = longValueOrUnknown(update, "lastSize", vmId);
-            long lastType = longValueOrUnknown(update, "lastType", vmId);
-            String lastMethod = update.getPerformanceCounterString("sun.ci.lastMethod");
-            long lastFailedType = longValueOrUnknown(update, "lastFailedType", vmId);
-            String lastFailedMethod = update.getPerformanceCounterString("sun.ci.lastFailedMethod");
+            long totalCompiles = longValueOrUnknown(update, this.totalCompiles, vmId);
+            long totalBailouts = longValueOrUnknown(update, this.totalBailouts, vmId);
+            long totalInvalidates = longValueOrUnknown(update, this.totalInvalidates, vmId);
+            long compilationTicks = longValueOrUnknown(update, totalTime, vmId);
+            long ticksPerSecond = longValueOrUnknown(update, frequency, vmId);
+            long compilationTime = VmCompilerStat.UNKNOWN;
+            if (compilationTicks != VmCompilerStat.UNKNOWN && ticksPerSecond != VmCompilerStat.UNKNOWN) {
+                compilationTime = compilationTicks / ticksPerSecond;
+            }
+            long lastSize = longValueOrUnknown(update, this.lastSize, vmId);
+            long lastType = longValueOrUnknown(update, this.lastType, vmId);
+            String lastMethod = this.lastMethod.getString(update);
+            long lastFailedType = longValueOrUnknown(update, this.lastFailedType, vmId);
+            String lastFailedMethod = this.lastFailedMethod.getString(update);
 
             long timestamp = System.currentTimeMillis();
             VmCompilerStat stat = new VmCompilerStat(writerId, vmId, timestamp,
@@ -89,13 +107,12 @@ class VmCompilerStatVmListener implements VmUpdateListener {
         }
     }
 
-    private long longValueOrUnknown(VmUpdate update, String name, String vmId) throws VmUpdateException {
-        String fullName = "sun.ci." + name;
-        Long value = update.getPerformanceCounterLong(fullName);
-        if (value == null) {
-            logWarningOnce("Unable to determine " + fullName + " for VM " + vmId);
+    private long longValueOrUnknown(VmUpdate update, PerformanceCounterRef counter, String vmId) throws VmUpdateException {
+        long value = counter.getLong(update, VmCompilerStat.UNKNOWN);
+        if (value == VmCompilerStat.UNKNOWN) {
+            logWarningOnce("Unable to determine " + counter.getName() + " for VM " + vmId);
         }
-        return value == null ? VmCompilerStat.UNKNOWN : value;
+        return value;
     }
 
     private void logWarningOnce(String message) {
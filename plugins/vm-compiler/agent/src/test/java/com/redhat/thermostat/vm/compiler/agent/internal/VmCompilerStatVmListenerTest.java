@@ -39,6 +39,7 @@ package com.redhat.thermostat.vm.compiler.agent.internal;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -47,8 +48,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
-import com.redhat.thermostat.backend.VmUpdate;
-import com.redhat.thermostat.backend.VmUpdateException;
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import com.redhat.thermostat.vm.compiler.agent.internal.VmCompilerStatVmListener;
 import com.redhat.thermostat.vm.compiler.common.VmCompilerStat;
 import com.redhat.thermostat.vm.compiler.common.VmCompilerStatDao;
@@ -72,8 +74,8 @@ public class VmCompilerStatVmListenerTest {
 
         update = mock(VmUpdate.class);
 
-        when(update.getPerformanceCounterLong("java.ci.totalTime")).thenReturn(COMPILER_TIME_TICKS);
-        when(update.getPerformanceCounterLong("sun.os.hrt.frequency")).thenReturn(FREQUENCY);
+        mockCounter("java.ci.totalTime", COMPILER_TIME_TICKS);
+        mockCounter("sun.os.hrt.frequency", FREQUENCY);
     }
 
     @Test
@@ -98,11 +100,24 @@ public class VmCompilerStatVmListenerTest {
 
     @Test
     public void testMonitorUpdateFails() throws VmUpdateException {
-        when(update.getPerformanceCounterLong(anyString())).thenThrow(new VmUpdateException());
+        when(update.getPerformanceCounter(anyString())).thenThrow(new VmUpdateException());
         listener.countersUpdated(update);
 
         verifyNoMoreInteractions(dao);
     }
 
-}
+    @Test
+    public void testMonitorUpdatedCountersResolvedOnce() throws Exception {
+        listener.countersUpdated(update);
+        listener.countersUpdated(update);
 
+        verify(update, times(1)).getPerformanceCounter("java.ci.totalTime");
+    }
+
+    private void mockCounter(String name, long value) throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
+        when(counter.longValue()).thenReturn(value);
+        when(update.getPerformanceCounter(name)).thenReturn(counter);
+    }
+
+}
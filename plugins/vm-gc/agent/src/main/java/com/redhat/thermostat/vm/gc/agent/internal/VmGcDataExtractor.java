@@ -36,6 +36,9 @@
 
 package com.redhat.thermostat.vm.gc.agent.internal;
 
+import java.util.Arrays;
+
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounterRef;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 
@@ -48,42 +51,76 @@ import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
  * provides is merely an abstraction over this (possibly always up-to-date)
  * ByteBuffer. So the data this class extracts is as current as possible, and
  * does not correspond to when the jvmstat update events fired.
+ * <p>
+ * An extractor belongs to a single VM and is reused for all of its updates,
+ * so counter names are built and resolved only once.
  */
 public class VmGcDataExtractor {
 
-    /*
-     * Note, there may be a performance issue to consider here. We have a lot of
-     * string constants. When we start adding some of the more heavyweight
-     * features, and running into CPU issues this may need to be reconsidered in
-     * order to avoid the String pool overhead. See also:
-     * http://docs.oracle.com/javase/6/docs/api/java/lang/String.html#intern()
-     */
+    private final PerformanceCounterRef totalCollectors = new PerformanceCounterRef("sun.gc.policy.collectors");
+    private final PerformanceCounterRef frequency = new PerformanceCounterRef("sun.os.hrt.frequency");
+    private CollectorCounters[] collectors = new CollectorCounters[0];
+
+    private VmUpdate update;
 
-    private final VmUpdate update;
+    public VmGcDataExtractor() {
+        this(null);
+    }
 
     public VmGcDataExtractor(VmUpdate update) {
         this.update = update;
     }
 
-    public Long getTotalCollectors() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.policy.collectors");
+    /**
+     * Sets the update subsequent values are read from.
+     */
+    public void setUpdate(VmUpdate update) {
+        this.update = update;
     }
 
-    public String getCollectorName(long collector) throws VmUpdateException {
-        return update.getPerformanceCounterString("sun.gc.collector." + collector + ".name");
+    public long getTotalCollectors(long defaultValue) throws VmUpdateException {
+        return totalCollectors.getLong(update, defaultValue);
     }
 
-    public Long getCollectorTime(long collector) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.collector." + collector + ".time");
+    public String getCollectorName(int collector) throws VmUpdateException {
+        return collector(collector).name.getString(update);
     }
 
-    public Long getCollectorInvocations(long collector) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.collector." + collector + ".invocations");
+    public long getCollectorTime(int collector, long defaultValue) throws VmUpdateException {
+        return collector(collector).time.getLong(update, defaultValue);
     }
 
-    public Long getFrequency() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.os.hrt.frequency");
+    public long getCollectorInvocations(int collector, long defaultValue) throws VmUpdateException {
+        return collector(collector).invocations.getLong(update, defaultValue);
     }
 
-}
+    public long getFrequency(long defaultValue) throws VmUpdateException {
+        return frequency.getLong(update, defaultValue);
+    }
+
+    private CollectorCounters collector(int collector) {
+        if (collector >= collectors.length) {
+            int oldLength = collectors.length;
+            collectors = Arrays.copyOf(collectors, collector + 1);
+            for (int i = oldLength; i < collectors.length; i++) {
+                collectors[i] = new CollectorCounters(i);
+            }
+        }
+        return collectors[collector];
+    }
+
+    private static class CollectorCounters {
 
+        private final PerformanceCounterRef name;
+        private final PerformanceCounterRef time;
+        private final PerformanceCounterRef invocations;
+
+        private CollectorCounters(int collector) {
+            String prefix = "sun.gc.collector." + collector;
+            name = new PerformanceCounterRef(prefix + ".name");
+            time = new PerformanceCounterRef(prefix + ".time");
+            invocations = new PerformanceCounterRef(prefix + ".invocations");
+        }
+    }
+
+}
@@ -49,10 +49,12 @@ import com.redhat.thermostat.vm.gc.common.model.VmGcStat;
 public class VmGcVmListener implements VmUpdateListener {
     
     private static final Logger logger = LoggingUtils.getLogger(VmGcVmListener.class);
+    static final long UNKNOWN = -1;
 
     private final String vmId;
     private final VmGcStatDAO gcDAO;
     private final String writerId;
+    private final VmGcDataExtractor extractor = new VmGcDataExtractor();
     
     private boolean error;
 
@@ -64,23 +66,23 @@ public class VmGcVmListener implements VmUpdateListener {
 
     @Override
     public void countersUpdated(VmUpdate update) {
-        VmGcDataExtractor extractor = new VmGcDataExtractor(update);
+        extractor.setUpdate(update);
         recordGcStat(extractor);
     }
 
     void recordGcStat(VmGcDataExtractor extractor) {
         try {
-            Long collectors = extractor.getTotalCollectors();
-            if (collectors != null) {
+            long collectors = extractor.getTotalCollectors(UNKNOWN);
+            if (collectors != UNKNOWN) {
                 for (int i = 0; i < collectors; i++) {
                     long timestamp = System.currentTimeMillis();
                     String name = extractor.getCollectorName(i);
                     if (name != null) {
-                        Long invocations = extractor.getCollectorInvocations(i);
-                        if (invocations != null) {
-                            Long time = extractor.getCollectorTime(i);
-                            Long frequency = extractor.getFrequency();
-                            if (time != null && frequency!= null) {
+                        long invocations = extractor.getCollectorInvocations(i, UNKNOWN);
+                        if (invocations != UNKNOWN) {
+                            long time = extractor.getCollectorTime(i, UNKNOWN);
+                            long frequency = extractor.getFrequency(UNKNOWN);
+                            if (time != UNKNOWN && frequency != UNKNOWN) {
                                 // TODO check for overflow
                                 long wallTimeInMicros = ((long) (1.0E6 * time / frequency));
                                 VmGcStat stat = new VmGcStat(writerId, vmId, timestamp,
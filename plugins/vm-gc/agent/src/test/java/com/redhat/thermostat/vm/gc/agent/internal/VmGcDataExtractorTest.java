@@ -41,6 +41,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import org.junit.Before;
@@ -60,11 +61,11 @@ public class VmGcDataExtractorTest {
     @Test
     public void testTotalCollectors() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.policy.collectors";
-        final Long MONITOR_VALUE = 9l;
+        final long MONITOR_VALUE = 9l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(MONITOR_VALUE);
+        mockLongCounter(MONITOR_NAME, MONITOR_VALUE);
         
-        Long returned = extractor.getTotalCollectors();
+        long returned = extractor.getTotalCollectors(VmGcVmListener.UNKNOWN);
         assertEquals(MONITOR_VALUE, returned);
     }
 
@@ -73,7 +74,7 @@ public class VmGcDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.collector.0.name";
         final String COLLECTOR_NAME = "SomeMemoryCollector";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(COLLECTOR_NAME);
+        mockStringCounter(MONITOR_NAME, COLLECTOR_NAME);
 
         String returned = extractor.getCollectorName(0);
         assertEquals(COLLECTOR_NAME, returned);
@@ -82,24 +83,40 @@ public class VmGcDataExtractorTest {
     @Test
     public void testCollectorTime() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.collector.0.time";
-        final Long COLLECTOR_TIME = 99l;
+        final long COLLECTOR_TIME = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(COLLECTOR_TIME);
+        mockLongCounter(MONITOR_NAME, COLLECTOR_TIME);
 
-        Long returned = extractor.getCollectorTime(0);
+        long returned = extractor.getCollectorTime(0, VmGcVmListener.UNKNOWN);
         assertEquals(COLLECTOR_TIME, returned);
     }
 
     @Test
     public void testCollectorInvocations() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.collector.0.invocations";
-        final Long COLLECTOR_INVOCATIONS = 99l;
+        final long COLLECTOR_INVOCATIONS = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(COLLECTOR_INVOCATIONS);
+        mockLongCounter(MONITOR_NAME, COLLECTOR_INVOCATIONS);
 
-        Long returned = extractor.getCollectorInvocations(0);
+        long returned = extractor.getCollectorInvocations(0, VmGcVmListener.UNKNOWN);
         assertEquals(COLLECTOR_INVOCATIONS, returned);
     }
 
-}
+    @Test
+    public void testMissingCounterReturnsDefault() throws VmUpdateException {
+        assertEquals(VmGcVmListener.UNKNOWN, extractor.getCollectorTime(1, VmGcVmListener.UNKNOWN));
+    }
+
+    private void mockLongCounter(String name, long value) throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
+        when(counter.longValue()).thenReturn(value);
+        when(update.getPerformanceCounter(eq(name))).thenReturn(counter);
+    }
+
+    private void mockStringCounter(String name, String value) throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
+        when(counter.stringValue()).thenReturn(value);
+        when(update.getPerformanceCounter(eq(name))).thenReturn(counter);
+    }
 
+}
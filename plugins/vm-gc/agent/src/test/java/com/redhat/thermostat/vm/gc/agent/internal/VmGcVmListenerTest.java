@@ -81,8 +81,8 @@ public class VmGcVmListenerTest {
             mockCollectorTime(i);
         }
         
-        when(extractor.getFrequency()).thenReturn(OS_TICKS_PER_SECOND);
-        when(extractor.getTotalCollectors()).thenReturn((long) GC_NAMES.length);
+        when(extractor.getFrequency(VmGcVmListener.UNKNOWN)).thenReturn(OS_TICKS_PER_SECOND);
+        when(extractor.getTotalCollectors(VmGcVmListener.UNKNOWN)).thenReturn((long) GC_NAMES.length);
     }
 
     private void mockCollectorName(int gc) throws VmUpdateException {
@@ -90,11 +90,11 @@ public class VmGcVmListenerTest {
     }
     
     private void mockCollectorInvocations(int gc) throws VmUpdateException {
-        when(extractor.getCollectorInvocations(gc)).thenReturn(GC_INVOCS[gc]);
+        when(extractor.getCollectorInvocations(gc, VmGcVmListener.UNKNOWN)).thenReturn(GC_INVOCS[gc]);
     }
 
     private void mockCollectorTime(int gc) throws VmUpdateException {
-        when(extractor.getCollectorTime(gc)).thenReturn(GC_TIMES[gc]);
+        when(extractor.getCollectorTime(gc, VmGcVmListener.UNKNOWN)).thenReturn(GC_TIMES[gc]);
     }
     
     @Test
@@ -132,7 +132,7 @@ public class VmGcVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoInvocations() throws VmUpdateException {
-        when(extractor.getCollectorInvocations(1)).thenReturn(null);
+        when(extractor.getCollectorInvocations(1, VmGcVmListener.UNKNOWN)).thenReturn(VmGcVmListener.UNKNOWN);
         vmListener.recordGcStat(extractor);
         ArgumentCaptor<VmGcStat> captor = ArgumentCaptor.forClass(VmGcStat.class);
         verify(vmGcStatDAO).putVmGcStat(captor.capture());
@@ -149,7 +149,7 @@ public class VmGcVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoTime() throws VmUpdateException {
-        when(extractor.getCollectorTime(1)).thenReturn(null);
+        when(extractor.getCollectorTime(1, VmGcVmListener.UNKNOWN)).thenReturn(VmGcVmListener.UNKNOWN);
         vmListener.recordGcStat(extractor);
         ArgumentCaptor<VmGcStat> captor = ArgumentCaptor.forClass(VmGcStat.class);
         verify(vmGcStatDAO).putVmGcStat(captor.capture());
@@ -166,7 +166,7 @@ public class VmGcVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoTotal() throws VmUpdateException {
-        when(extractor.getTotalCollectors()).thenReturn(null);
+        when(extractor.getTotalCollectors(VmGcVmListener.UNKNOWN)).thenReturn(VmGcVmListener.UNKNOWN);
         vmListener.recordGcStat(extractor);
         verify(vmGcStatDAO, never()).putVmGcStat(any(VmGcStat.class));
     }
@@ -174,7 +174,7 @@ public class VmGcVmListenerTest {
     @Test
     public void testRecordMemoryFrequencyMismatch() throws VmUpdateException {
         final long SOME_FREQUENCY = 100l;
-        when(extractor.getFrequency()).thenReturn(SOME_FREQUENCY);
+        when(extractor.getFrequency(VmGcVmListener.UNKNOWN)).thenReturn(SOME_FREQUENCY);
         vmListener.recordGcStat(extractor);
         ArgumentCaptor<VmGcStat> captor = ArgumentCaptor.forClass(VmGcStat.class);
         verify(vmGcStatDAO, times(2)).putVmGcStat(captor.capture());
@@ -36,17 +36,9 @@
 
 package com.redhat.thermostat.vm.gc.common.internal;
 
-import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeoutException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugins.PluginConfiguration;
-import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.vm.gc.common.VmGcStatDAO;
 import com.redhat.thermostat.vm.gc.common.model.VmGcStat;
 
@@ -54,103 +46,45 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
-import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.StringContentProvider;
-import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.http.HttpStatus;
 
 @Component
 @Service(value = VmGcStatDAO.class)
 public class VmGcStatDAOImpl implements VmGcStatDAO {
     
-    private static final Logger logger = LoggingUtils.getLogger(VmGcStatDAOImpl.class);
     private static final String PLUGIN_ID = "vm-gc";
-    static final String CONTENT_TYPE = "application/json";
     
-    private final JsonHelper jsonHelper;
-    private final HttpHelper httpHelper;
-    private final HttpClient httpClient;
+    private final VmGcStatTypeAdapter adapter;
     private final ConfigurationCreator configCreator;
     
     @Reference
     private ConfigurationInfoSource configInfoSource;
+    @Reference
+    private GatewayBatchWriter writer;
     private String gatewayURL;
 
     public VmGcStatDAOImpl() {
-        this(new HttpClient(), new JsonHelper(new VmGcStatTypeAdapter()), new HttpHelper(), 
-                new ConfigurationCreator(), null);
+        this(new VmGcStatTypeAdapter(), new ConfigurationCreator(), null, null);
     }
 
-    VmGcStatDAOImpl(HttpClient client, JsonHelper jh, HttpHelper hh, ConfigurationCreator creator, 
-            ConfigurationInfoSource source) {
-        this.httpClient = client;
-        this.jsonHelper = jh;
-        this.httpHelper = hh;
+    VmGcStatDAOImpl(VmGcStatTypeAdapter adapter, ConfigurationCreator creator, 
+            ConfigurationInfoSource source, GatewayBatchWriter writer) {
+        this.adapter = adapter;
         this.configCreator = creator;
         this.configInfoSource = source;
+        this.writer = writer;
     }
 
     @Activate
     void activate() throws Exception {
         PluginConfiguration config = configCreator.create(configInfoSource);
         this.gatewayURL = config.getGatewayURL();
-        
-        httpHelper.startClient(httpClient);
     }
 
     @Override
     public void putVmGcStat(final VmGcStat stat) {
-        try {
-            String json = jsonHelper.toJson(Arrays.asList(stat));
-            StringContentProvider provider = httpHelper.createContentProvider(json);
-
-            Request httpRequest = httpClient.newRequest(gatewayURL);
-            httpRequest.method(HttpMethod.POST);
-            httpRequest.content(provider, CONTENT_TYPE);
-            sendRequest(httpRequest);
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Failed to send VmGcStat information to web gateway", e);
-        }
-    }
-
-    private void sendRequest(Request httpRequest)
-            throws InterruptedException, TimeoutException, ExecutionException, IOException {
-        ContentResponse resp = httpRequest.send();
-        int status = resp.getStatus();
-        if (status != HttpStatus.OK_200) {
-            throw new IOException("Gateway returned HTTP status " + String.valueOf(status) + " - " + resp.getReason());
-        }
-    }
-    
-    // For Testing purposes
-    static class JsonHelper {
-
-        private final VmGcStatTypeAdapter adapter;
-
-        public JsonHelper(VmGcStatTypeAdapter adapter) {
-            this.adapter = adapter;
-        }
-
-        public String toJson(List<VmGcStat> list) throws IOException {
-            return adapter.toJson(list);
-        }
-
+        writer.write(gatewayURL, stat, adapter);
     }
 
-    // For Testing purposes
-    static class HttpHelper {
-
-        void startClient(HttpClient httpClient) throws Exception {
-            httpClient.start();
-        }
-
-        StringContentProvider createContentProvider(String content) {
-            return new StringContentProvider(content);
-        }
-    }
-    
     // For Testing purposes
     static class ConfigurationCreator {
         
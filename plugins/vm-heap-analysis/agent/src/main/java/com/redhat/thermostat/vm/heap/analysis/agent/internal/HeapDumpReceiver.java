@@ -50,8 +50,6 @@ import com.redhat.thermostat.common.command.Response.ResponseType;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
-import com.redhat.thermostat.vm.heap.analysis.common.HistogramLoader;
-import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 
 public class HeapDumpReceiver implements RequestReceiver {
@@ -63,20 +61,17 @@ public class HeapDumpReceiver implements RequestReceiver {
     private final JMXHeapDumper jmxHeapDumper;
     private final JMapHeapDumper jmapHeapDumper;
 
-    private final HistogramLoader histogramLoader;
     private final WriterID writerId;
 
     public HeapDumpReceiver(HeapDAO heapDao, MXBeanConnectionPool pool, WriterID writerId) {
-        this(heapDao, new JMXHeapDumper(pool), new JMapHeapDumper(), new HistogramLoader(), writerId);
+        this(heapDao, new JMXHeapDumper(pool), new JMapHeapDumper(), writerId);
     }
 
     HeapDumpReceiver(HeapDAO heapDao, JMXHeapDumper jmxHeapDumper,
-                     JMapHeapDumper jmapHeapDumper, HistogramLoader histogramLoader,
-                     WriterID writerId) {
+                     JMapHeapDumper jmapHeapDumper, WriterID writerId) {
         this.heapDao = heapDao;
         this.jmxHeapDumper = jmxHeapDumper;
         this.jmapHeapDumper = jmapHeapDumper;
-        this.histogramLoader = histogramLoader;
         this.writerId = writerId;
     }
 
@@ -87,8 +82,7 @@ public class HeapDumpReceiver implements RequestReceiver {
         try {
             int vmPid = Integer.parseInt(strPid);
             final File heapDumpFile = dumpHeap(vmPid);
-            ObjectHistogram histogram = loadHistogram(heapDumpFile.getAbsolutePath());
-            saveHeapDumpInfo(vmId, heapDumpFile, histogram, new Runnable() {
+            saveHeapDumpInfo(vmId, heapDumpFile, new Runnable() {
                 @Override
                 public void run() {
                     heapDumpFile.delete();
@@ -129,14 +123,11 @@ public class HeapDumpReceiver implements RequestReceiver {
         jmapHeapDumper.dumpHeap(pid, filename);
     }
 
-    private ObjectHistogram loadHistogram(String heapDumpFilename) throws IOException {
-        return histogramLoader.load(heapDumpFilename);
-    }
-
-    private void saveHeapDumpInfo(String vmId, File heapDumpFile, ObjectHistogram histogram, Runnable whenDone) throws IOException {
+    // the histogram is computed while the heap dump is saved
+    private void saveHeapDumpInfo(String vmId, File heapDumpFile, Runnable whenDone) throws IOException {
         String wId = writerId.getWriterID();
         HeapInfo heapInfo = new HeapInfo(wId, vmId, System.currentTimeMillis());
-        heapDao.putHeapInfo(heapInfo, heapDumpFile, histogram, whenDone);
+        heapDao.putHeapInfo(heapInfo, heapDumpFile, whenDone);
     }
 
 }
@@ -40,8 +40,8 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
-import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -60,8 +60,6 @@ import com.redhat.thermostat.common.command.Response;
 import com.redhat.thermostat.common.command.Response.ResponseType;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
-import com.redhat.thermostat.vm.heap.analysis.common.HistogramLoader;
-import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 
 public class HeapDumpReceiverTest {
@@ -69,7 +67,6 @@ public class HeapDumpReceiverTest {
     private HeapDAO heapDAO;
     private Request request;
     private JMXHeapDumper jmxDumper;
-    private HistogramLoader histogramLoader;
 
     private HeapDumpReceiver receiver;
     private JMapHeapDumper jmapDumper;
@@ -83,14 +80,12 @@ public class HeapDumpReceiverTest {
         when(request.getParameter("vmPid")).thenReturn("42");
         jmxDumper = mock(JMXHeapDumper.class);
         jmapDumper = mock(JMapHeapDumper.class);
-        histogramLoader = mock(HistogramLoader.class);
         WriterID id = mock(WriterID.class);
-        receiver = new HeapDumpReceiver(heapDAO, jmxDumper, jmapDumper, histogramLoader, id);
+        receiver = new HeapDumpReceiver(heapDAO, jmxDumper, jmapDumper, id);
     }
 
     @After
     public void tearDown() {
-        histogramLoader = null;
         jmapDumper = null;
         jmxDumper = null;
         request = null;
@@ -99,18 +94,13 @@ public class HeapDumpReceiverTest {
 
     @Test
     public void testJMXHeapDump() throws Exception {
-
-        ObjectHistogram expectedHistogramData = mock(ObjectHistogram.class);
-        when(histogramLoader.load(anyString())).thenReturn(expectedHistogramData);
-        
         Response response = receiver.receive(request);
 
         assertEquals(ResponseType.OK, response.getType());
         ArgumentCaptor<String> filename = ArgumentCaptor.forClass(String.class);
         verify(jmxDumper).dumpHeap(eq(42), filename.capture());
-        verify(histogramLoader).load(filename.getValue());
         ArgumentCaptor<HeapInfo> heapInfo = ArgumentCaptor.forClass(HeapInfo.class);
-        verify(heapDAO).putHeapInfo(heapInfo.capture(), eq(new File(filename.getValue())), same(expectedHistogramData), isA(Runnable.class));
+        verify(heapDAO).putHeapInfo(heapInfo.capture(), eq(new File(filename.getValue())), isA(Runnable.class));
         assertEquals("vmId", heapInfo.getValue().getVmId());
     }
 
@@ -138,7 +128,7 @@ public class HeapDumpReceiverTest {
 
     @Test
     public void verifyResponseTypeWhenIOFails() throws HeapDumpException, IOException {
-        doThrow(new IOException()).when(histogramLoader).load(anyString());
+        doThrow(new IOException()).when(heapDAO).putHeapInfo(any(HeapInfo.class), any(File.class), any(Runnable.class));
 
         Response response = receiver.receive(request);
 
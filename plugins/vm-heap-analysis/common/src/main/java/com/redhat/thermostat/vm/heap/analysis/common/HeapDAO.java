@@ -60,6 +60,15 @@ public interface HeapDAO {
 
     void putHeapInfo(HeapInfo heapInfo, File heapDumpFile, ObjectHistogram histogramData, Runnable whenDone) throws IOException;
 
+    /**
+     * Saves the heap dump together with its histogram, which is computed
+     * while the heap dump file is read for saving it. Returns once the
+     * heap dump is in storage.
+     *
+     * @param whenDone run once the heap dump file is no longer needed
+     */
+    void putHeapInfo(HeapInfo heapInfo, File heapDumpFile, Runnable whenDone) throws IOException;
+
     @Deprecated
     Collection<HeapInfo> getAllHeapInfo(VmRef vm);
 
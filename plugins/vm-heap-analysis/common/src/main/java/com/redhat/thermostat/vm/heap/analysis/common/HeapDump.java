@@ -41,36 +41,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.PosixFilePermissions;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.redhat.thermostat.shared.config.OS;
-import org.apache.lucene.analysis.core.SimpleAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.CorruptIndexException;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.WildcardQuery;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.LockObtainFailedException;
-import org.apache.lucene.store.RAMDirectory;
-
 import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.shared.config.OS;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.DominatorTree;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.ResolveProgressListener;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
 
@@ -79,10 +64,6 @@ import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
  */
 public class HeapDump {
 
-    private static final String INDEX_FIELD_OBJECT_ID = "objectId";
-
-    private static final String INDEX_FIELD_CLASSNAME = "classname";
-
     private static final Logger log = LoggingUtils.getLogger(HeapDump.class);
 
     private static final int MAX_SEARCH_RESULTS = 1000;
@@ -93,7 +74,9 @@ public class HeapDump {
 
     private Snapshot snapshot;
 
-    private Directory luceneIndex;
+    private HeapDumpIndex index;
+
+    private DominatorTree dominatorTree;
 
     // package-private for testing
     HeapDump(HeapInfo heapInfo, HeapDAO heapDAO, Snapshot snapshot) {
@@ -123,37 +106,43 @@ public class HeapDump {
         return heapInfo;
     }
 
-    private synchronized Directory getLuceneIndex() {
-        if (luceneIndex == null) {
+    private synchronized HeapDumpIndex getIndex() {
+        if (index == null) {
             try {
-                luceneIndex = createLuceneIndex();
+                index = loadIndex();
             } catch (IOException ex) {
                 log.log(Level.SEVERE, "Unexpected IO Exception while creating heap dump index", ex);
                 return null;
             }
         }
-        return luceneIndex;
+        return index;
     }
 
-    // package-private for testing
-    Directory createLuceneIndex() throws IOException,
-            CorruptIndexException, LockObtainFailedException {
-
-        loadHeapDumpIfNecessary();
-
-        Enumeration<JavaHeapObject> thingos = snapshot.getThings();
-        Directory dir = new RAMDirectory();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new SimpleAnalyzer());
-        IndexWriter writer = new IndexWriter(dir, indexWriterConfig);
-        while (thingos.hasMoreElements()) {
-            JavaHeapObject thingo = thingos.nextElement();
-            Document doc = new Document();
-            doc.add(new StringField(INDEX_FIELD_CLASSNAME, thingo.getClazz().getName(), Field.Store.YES));
-            doc.add(new StringField(INDEX_FIELD_OBJECT_ID, thingo.getIdString(), Field.Store.YES));
-            writer.addDocument(doc);
+    /*
+     * The index is kept next to the heap dump file, and only written if it
+     * is not there yet. It is written from the heap dump file directly, so
+     * the heap dump does not need to be loaded.
+     */
+    private HeapDumpIndex loadIndex() throws IOException {
+        File heapDumpFile = getHeapDumpFile();
+        File indexFile = new File(heapDumpFile.getParentFile(), heapDumpFile.getName() + ".index");
+        if (indexFile.exists()) {
+            try {
+                return HeapDumpIndex.open(indexFile);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to read heap dump index " + indexFile + ", recreating it", e);
+            }
+        }
+        // another process may be looking for the index, so it must not see half of it
+        File tmpFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+        try {
+            HeapDumpIndex.write(heapDumpFile.getAbsolutePath(), tmpFile);
+            Files.move(tmpFile.toPath(), indexFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
         }
-        writer.close();
-        return dir;
+        return HeapDumpIndex.open(indexFile);
     }
 
     public Snapshot getSnapshot() {
@@ -171,7 +160,55 @@ public class HeapDump {
         }
     }
 
+    /**
+     * @return the dominator tree of the heap dump, with the retained sizes
+     *          of its objects, or null if it could not be computed
+     */
+    public synchronized DominatorTree getDominatorTree() {
+        loadHeapDumpIfNecessary();
+        if (dominatorTree == null && snapshot != null) {
+            try {
+                dominatorTree = loadDominatorTree();
+            } catch (IOException ex) {
+                log.log(Level.SEVERE, "Unexpected IO Exception while computing heap dump dominator tree", ex);
+            }
+        }
+        return dominatorTree;
+    }
+
+    /*
+     * Like the index, the dominator tree is kept next to the heap dump file
+     * and only computed if it is not there yet.
+     */
+    private DominatorTree loadDominatorTree() throws IOException {
+        File heapDumpFile = getHeapDumpFile();
+        File treeFile = new File(heapDumpFile.getParentFile(), heapDumpFile.getName() + ".dominators");
+        if (treeFile.exists()) {
+            try {
+                return DominatorTree.read(snapshot, treeFile, heapDumpFile);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to read heap dump dominator tree " + treeFile + ", recomputing it", e);
+            }
+        }
+        DominatorTree tree = DominatorTree.compute(snapshot);
+        File tmpFile = File.createTempFile(treeFile.getName(), ".tmp", treeFile.getParentFile());
+        try {
+            tree.write(tmpFile, heapDumpFile);
+            Files.move(tmpFile.toPath(), treeFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+        return tree;
+    }
+
     private void loadHeapDump() throws IOException {
+        File tmpFile = getHeapDumpFile();
+        snapshot = Reader.readFile(tmpFile.getAbsolutePath(), true, 0);
+        snapshot.resolve(true, new ResolveProgressLogger(heapInfo.getHeapId()));
+    }
+
+    private File getHeapDumpFile() throws IOException {
         String filename = "heapdump-" + heapInfo.getHeapId();
         File tmpDir = getOrCreateHeapDumpDir();
         File tmpFile = new File(tmpDir, filename);
@@ -181,8 +218,7 @@ public class HeapDump {
             }
             
         }
-        snapshot = Reader.readFile(tmpFile.getAbsolutePath(), true, 0);
-        snapshot.resolve(true);
+        return tmpFile;
     }
 
     private File getOrCreateHeapDumpDir() throws IOException {
@@ -213,24 +249,17 @@ public class HeapDump {
      * @return a collection of object ids that can be used with {@link #findObject(String)}
      */
     public Collection<String> searchObjects(String wildCardClassNamePattern, int limit) {
-        Directory searchIndex = getLuceneIndex();
+        HeapDumpIndex searchIndex = getIndex();
+        if (searchIndex == null) {
+            return Collections.emptyList();
+        }
 
-        WildcardQuery query = new WildcardQuery(new Term(INDEX_FIELD_CLASSNAME, wildCardClassNamePattern));
-        Collection<String> results = new ArrayList<String>();
         try {
-            IndexReader indexReader = DirectoryReader.open(searchIndex);
-            IndexSearcher searcher = new IndexSearcher(indexReader);
-            TopDocs found = searcher.search(query, limit);
-            for (ScoreDoc scoreDoc : found.scoreDocs) {
-                Document doc = searcher.doc(scoreDoc.doc);
-                String objectId = doc.get(INDEX_FIELD_OBJECT_ID);
-                results.add(objectId);
-            }
-            indexReader.close();
+            return searchIndex.search(wildCardClassNamePattern, limit);
         } catch (IOException e) {
             log.log(Level.SEVERE, "Unexpected IO Exception while searching heap dump index", e);
+            return Collections.emptyList();
         }
-        return results;
     }
 
     public Collection<String> wildcardSearch(String searchText) {
@@ -259,5 +288,28 @@ public class HeapDump {
     public String getType() {
         return "hprof";
     }
+
+    /*
+     * Logs every tenth of the way through resolving a heap dump, which can
+     * take a while for large heaps.
+     */
+    private static class ResolveProgressLogger implements ResolveProgressListener {
+
+        private final String heapId;
+        private final AtomicInteger tenthsLogged = new AtomicInteger();
+
+        private ResolveProgressLogger(String heapId) {
+            this.heapId = heapId;
+        }
+
+        @Override
+        public void resolveProgress(long done, long total) {
+            int tenths = (int) (done * 10 / total);
+            int logged = tenthsLogged.get();
+            if (tenths > logged && tenthsLogged.compareAndSet(logged, tenths)) {
+                log.log(Level.INFO, "Resolving heap dump " + heapId + ": " + (tenths * 10) + "% done");
+            }
+        }
+    }
 }
 
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.HprofHistogramReader;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.LongIntHashMap;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
+
+/**
+ * Maps class names to the ids of the objects of that class in a heap dump.
+ * <p>
+ * The index is a file that is written in a single streaming pass over the
+ * heap dump, so neither writing nor searching it needs the heap dump in
+ * memory. Only the class names and where their ids are in the file are read
+ * when the index is opened. The file consists of:
+ * <ul>
+ * <li>a header: {@code MAGIC}, {@code VERSION}</li>
+ * <li>chunks of object ids, written as the heap dump is read</li>
+ * <li>the class names, sorted, each with the offsets and lengths of its
+ * chunks</li>
+ * <li>the offset of the class names, {@code MAGIC}</li>
+ * </ul>
+ */
+class HeapDumpIndex {
+
+    private static final int MAGIC = 0x48444958; // "HDIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FOOTER_SIZE = 12;
+
+    // ids of one type are written out once this many have been read
+    private static final int MAX_CHUNK_SIZE = 4096;
+    // all ids are written out once this many are waiting
+    private static final int MAX_BUFFERED_IDS = 1 << 20;
+
+    private final File file;
+    private final String[] classNames;
+    private final long[][] chunkOffsets;
+    private final int[][] chunkSizes;
+
+    private HeapDumpIndex(File file, String[] classNames, long[][] chunkOffsets, int[][] chunkSizes) {
+        this.file = file;
+        this.classNames = classNames;
+        this.chunkOffsets = chunkOffsets;
+        this.chunkSizes = chunkSizes;
+    }
+
+    /**
+     * Reads the heap dump in {@code heapDumpFile} and writes its index to
+     * {@code indexFile}.
+     */
+    static void write(String heapDumpFile, File indexFile) throws IOException {
+        try (InputStream in = new FileInputStream(heapDumpFile);
+             ChunkWriter writer = new ChunkWriter(indexFile)) {
+            HprofHistogramReader reader = new HprofHistogramReader(in);
+            reader.read(null, writer);
+            writer.finish(reader);
+        }
+    }
+
+    /**
+     * Opens an index written by {@link #write(String, File)}.
+     *
+     * @throws IOException if the file is not a complete index
+     */
+    static HeapDumpIndex open(File indexFile) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+            long length = raf.length();
+            if (length < HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException("Heap dump index " + indexFile + " is truncated");
+            }
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException("Heap dump index " + indexFile + " has an unknown format");
+            }
+            raf.seek(length - FOOTER_SIZE);
+            long namesOffset = raf.readLong();
+            if (raf.readInt() != MAGIC || namesOffset < HEADER_SIZE || namesOffset > length - FOOTER_SIZE) {
+                throw new IOException("Heap dump index " + indexFile + " is incomplete");
+            }
+            raf.seek(namesOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(raf.getChannel())));
+            int count = in.readInt();
+            String[] classNames = new String[count];
+            long[][] chunkOffsets = new long[count][];
+            int[][] chunkSizes = new int[count][];
+            for (int i = 0; i < count; i++) {
+                classNames[i] = in.readUTF();
+                int chunks = in.readInt();
+                chunkOffsets[i] = new long[chunks];
+                chunkSizes[i] = new int[chunks];
+                for (int j = 0; j < chunks; j++) {
+                    chunkOffsets[i][j] = in.readLong();
+                    chunkSizes[i][j] = in.readInt();
+                }
+            }
+            return new HeapDumpIndex(indexFile, classNames, chunkOffsets, chunkSizes);
+        } catch (EOFException e) {
+            throw new IOException("Heap dump index " + indexFile + " is truncated", e);
+        }
+    }
+
+    /**
+     * @param wildcardPattern a case-sensitive pattern for the whole class
+     * name, where {@code *} matches any characters, {@code ?} matches a
+     * single character and {@code \} quotes the next character
+     * @param limit the maximum number of ids to return
+     * @return the ids, as hex strings, of objects of the matching classes
+     */
+    Collection<String> search(String wildcardPattern, int limit) throws IOException {
+        Pattern pattern = toRegex(wildcardPattern);
+        List<String> results = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (int i = 0; i < classNames.length && results.size() < limit; i++) {
+                if (!pattern.matcher(classNames[i]).matches()) {
+                    continue;
+                }
+                for (int j = 0; j < chunkOffsets[i].length && results.size() < limit; j++) {
+                    int count = Math.min(chunkSizes[i][j], limit - results.size());
+                    byte[] data = new byte[count * 8];
+                    raf.seek(chunkOffsets[i][j]);
+                    raf.readFully(data);
+                    ByteBuffer ids = ByteBuffer.wrap(data);
+                    for (int k = 0; k < count; k++) {
+                        results.add(Misc.toHex(ids.getLong()));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // same syntax as a lucene WildcardQuery
+    static Pattern toRegex(String wildcardPattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < wildcardPattern.length(); i++) {
+            char c = wildcardPattern.charAt(i);
+            if (c == '*' || c == '?') {
+                appendLiteral(regex, literal);
+                regex.append(c == '*' ? ".*" : ".");
+            } else if (c == '\\' && i + 1 < wildcardPattern.length()) {
+                literal.append(wildcardPattern.charAt(++i));
+            } else {
+                literal.append(c);
+            }
+        }
+        appendLiteral(regex, literal);
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static void appendLiteral(StringBuilder regex, StringBuilder literal) {
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+
+    /*
+     * Collects the ids of each type into chunks and writes the chunks as
+     * they fill up, so that few ids are held in memory at a time.
+     */
+    private static class ChunkWriter implements HprofHistogramReader.ObjectVisitor, AutoCloseable {
+
+        private final DataOutputStream out;
+        private long position;
+        private final LongIntHashMap typeIndex = new LongIntHashMap();
+        private final List<TypeIds> types = new ArrayList<>();
+        private int buffered;
+
+        ChunkWriter(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position = HEADER_SIZE;
+        }
+
+        @Override
+        public void visit(long id, int type) throws IOException {
+            int index = typeIndex.get(type);
+            if (index == LongIntHashMap.NO_VALUE) {
+                index = types.size();
+                types.add(new TypeIds(type));
+                typeIndex.put(type, index);
+            }
+            TypeIds ids = types.get(index);
+            ids.add(id);
+            buffered++;
+            if (ids.size == MAX_CHUNK_SIZE) {
+                writeChunk(ids);
+            } else if (buffered >= MAX_BUFFERED_IDS) {
+                for (TypeIds t : types) {
+                    writeChunk(t);
+                }
+            }
+        }
+
+        void finish(HprofHistogramReader reader) throws IOException {
+            // several types can have the same name
+            Map<String, List<TypeIds>> byName = new TreeMap<>();
+            for (TypeIds ids : types) {
+                writeChunk(ids);
+                String name = reader.getTypeName(ids.type);
+                List<TypeIds> sameName = byName.get(name);
+                if (sameName == null) {
+                    sameName = new ArrayList<>();
+                    byName.put(name, sameName);
+                }
+                sameName.add(ids);
+            }
+
+            long namesOffset = position;
+            out.writeInt(byName.size());
+            for (Map.Entry<String, List<TypeIds>> entry : byName.entrySet()) {
+                out.writeUTF(entry.getKey());
+                int chunks = 0;
+                for (TypeIds ids : entry.getValue()) {
+                    chunks += ids.chunks;
+                }
+                out.writeInt(chunks);
+                for (TypeIds ids : entry.getValue()) {
+                    for (int i = 0; i < ids.chunks; i++) {
+                        out.writeLong(ids.chunkOffsets[i]);
+                        out.writeInt(ids.chunkSizes[i]);
+                    }
+                }
+            }
+            out.writeLong(namesOffset);
+            out.writeInt(MAGIC);
+        }
+
+        private void writeChunk(TypeIds ids) throws IOException {
+            if (ids.size == 0) {
+                return;
+            }
+            ids.addChunk(position);
+            for (int i = 0; i < ids.size; i++) {
+                out.writeLong(ids.buffer[i]);
+            }
+            position += 8L * ids.size;
+            buffered -= ids.size;
+            ids.size = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class TypeIds {
+
+        private final int type;
+        private long[] buffer = new long[16];
+        private int size;
+        private long[] chunkOffsets = new long[1];
+        private int[] chunkSizes = new int[1];
+        private int chunks;
+
+        private TypeIds(int type) {
+            this.type = type;
+        }
+
+        private void add(long id) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = id;
+        }
+
+        private void addChunk(long offset) {
+            if (chunks == chunkOffsets.length) {
+                chunkOffsets = Arrays.copyOf(chunkOffsets, chunks * 2);
+                chunkSizes = Arrays.copyOf(chunkSizes, chunks * 2);
+            }
+            chunkOffsets[chunks] = offset;
+            chunkSizes[chunks] = size;
+            chunks++;
+        }
+    }
+
+}
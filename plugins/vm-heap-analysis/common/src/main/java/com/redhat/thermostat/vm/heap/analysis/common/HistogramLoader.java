@@ -36,35 +36,24 @@
 
 package com.redhat.thermostat.vm.heap.analysis.common;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.Enumeration;
 
-import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
-import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
-import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.HprofHistogramReader;
 
+/**
+ * Computes the {@link ObjectHistogram} of a heap dump file in a single
+ * streaming pass, without loading the heap dump into memory.
+ */
 public class HistogramLoader {
 
     public ObjectHistogram load(String filename) throws IOException {
-        Snapshot snapshot = loadHeapdump(filename);
-        return computeHistogram(snapshot);
-    }
-
-    private Snapshot loadHeapdump(String filename) throws IOException {
-        File heapdump = new File(filename);
-        Snapshot snapshot = Reader.readFile(heapdump.getAbsolutePath(), true, 0);
-        snapshot.resolve(true);
-        return snapshot;
-    }
-
-    private ObjectHistogram computeHistogram(Snapshot snapshot) {
-        Enumeration<JavaHeapObject> thingos = snapshot.getThings();
-        ObjectHistogram histogram = new ObjectHistogram();
-        while (thingos.hasMoreElements()) {
-            JavaHeapObject thingo = thingos.nextElement();
-            histogram.addThing(thingo);
-        }
+        final ObjectHistogram histogram = new ObjectHistogram();
+        HprofHistogramReader.readFile(filename, new HprofHistogramReader.Visitor() {
+            @Override
+            public void visit(String className, long instanceCount, long totalSize) {
+                histogram.addRecord(className, instanceCount, totalSize);
+            }
+        });
         return histogram;
     }
 
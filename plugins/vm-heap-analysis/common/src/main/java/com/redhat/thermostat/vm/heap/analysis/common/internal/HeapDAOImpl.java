@@ -36,18 +36,22 @@
 
 package com.redhat.thermostat.vm.heap.analysis.common.internal;
 
+import static java.io.ObjectStreamConstants.STREAM_MAGIC;
+
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.AgentId;
@@ -56,7 +60,6 @@ import com.redhat.thermostat.storage.core.Key;
 import com.redhat.thermostat.storage.core.PreparedStatement;
 import com.redhat.thermostat.storage.core.SaveFileListener;
 import com.redhat.thermostat.storage.core.Storage;
-import com.redhat.thermostat.storage.core.StorageException;
 import com.redhat.thermostat.storage.core.VmId;
 import com.redhat.thermostat.storage.core.VmRef;
 import com.redhat.thermostat.storage.dao.AbstractDao;
@@ -65,6 +68,7 @@ import com.redhat.thermostat.storage.dao.AbstractDaoStatement;
 import com.redhat.thermostat.storage.model.Pojo;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDump;
+import com.redhat.thermostat.vm.heap.analysis.common.HistogramRecord;
 import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 
@@ -99,43 +103,77 @@ public class HeapDAOImpl extends AbstractDao implements HeapDAO {
                  "'" + heapDumpIdKey.getName() + "' = ?s , " +
                  "'" + histogramIdKey.getName() + "' = ?s";
     
+    private static final int HISTOGRAM_MAGIC = 0x48485354; // "HHST"
+    private static final int HISTOGRAM_VERSION = 1;
+
     private final Storage storage;
+    private final HeapFileStore files;
+    private final int chunkSize;
 
     HeapDAOImpl(Storage storage) {
+        this(storage, HeapDumpUploader.DEFAULT_CHUNK_SIZE);
+    }
+
+    HeapDAOImpl(final Storage storage, int chunkSize) {
         this.storage = storage;
+        this.files = new HeapFileStore() {
+            @Override
+            public void saveFile(String fileId, InputStream data, SaveFileListener listener) {
+                storage.saveFile(fileId, data, listener);
+            }
+
+            @Override
+            public InputStream loadFile(String fileId) {
+                return storage.loadFile(fileId);
+            }
+        };
+        this.chunkSize = chunkSize;
         storage.registerCategory(heapInfoCategory);
     }
 
     @Override
-    public void putHeapInfo(HeapInfo heapInfo, final File heapDumpData, ObjectHistogram histogramData, Runnable heapDumpCleanup) throws IOException {
+    public void putHeapInfo(HeapInfo heapInfo, File heapDumpData, ObjectHistogram histogramData, Runnable heapDumpCleanup) throws IOException {
+        putHeapInfo(heapInfo, heapDumpData, histogramData, null, heapDumpCleanup);
+    }
+
+    @Override
+    public void putHeapInfo(HeapInfo heapInfo, File heapDumpData, Runnable heapDumpCleanup) throws IOException {
+        ObjectHistogram histogram = heapDumpData == null ? null : new ObjectHistogram();
+        putHeapInfo(heapInfo, heapDumpData, histogram, histogram, heapDumpCleanup);
+    }
+
+    /*
+     * histogramFromDump, if not null, is filled in while the heap dump is
+     * uploaded. The heap info is added last, so that nobody sees a heap dump
+     * before all of it is in storage.
+     */
+    private void putHeapInfo(HeapInfo heapInfo, File heapDumpData, ObjectHistogram histogramData,
+            ObjectHistogram histogramFromDump, Runnable heapDumpCleanup) throws IOException {
         String heapId = heapInfo.getAgentId() + "-" + heapInfo.getVmId() + "-" + heapInfo.getTimeStamp();
-        System.err.println("assigning heapId: " + heapId);
+        logger.fine("assigning heapId: " + heapId);
         heapInfo.setHeapId(heapId);
         String heapDumpId = "heapdump-" + heapId;
         String histogramId = "histogram-" + heapId;
-        if (heapDumpData != null) {
-            heapInfo.setHeapDumpId(heapDumpId);
-        }
-        if (histogramData != null) {
-            heapInfo.setHistogramId(histogramId);
-        }
-        addHeapInfo(heapInfo);
 
         if (heapDumpData != null) {
-            uploadHeapDump(heapDumpData, heapDumpId, heapDumpCleanup);
+            try {
+                new HeapDumpUploader(files, heapDumpId, chunkSize).upload(heapDumpData, histogramFromDump);
+            } finally {
+                heapDumpCleanup.run();
+            }
+            heapInfo.setHeapDumpId(heapDumpId);
         }
         if (histogramData != null) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
             try {
-                ObjectOutputStream oos = new ObjectOutputStream(baos);
-                oos.writeObject(histogramData);
-                ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+                byte[] histogramBytes = writeHistogram(histogramData);
+                ByteArrayInputStream bais = new ByteArrayInputStream(histogramBytes);
                 storage.saveFile(histogramId, bais, new CloseOnSave(bais));
+                heapInfo.setHistogramId(histogramId);
             } catch (IOException e) {
-                e.printStackTrace();
                 logger.log(Level.SEVERE, "Unexpected error while writing histogram", e);
             }
         }
+        addHeapInfo(heapInfo);
     }
 
     private void addHeapInfo(final HeapInfo heapInfo) {
@@ -153,32 +191,46 @@ public class HeapDAOImpl extends AbstractDao implements HeapDAO {
         });
     }
 
-    private void uploadHeapDump(final File heapDumpData, String heapDumpId, final Runnable heapDumpCleanup)
-            throws FileNotFoundException {
-        final InputStream heapDumpStream = new FileInputStream(heapDumpData);
-        storage.saveFile(heapDumpId, heapDumpStream, new SaveFileListener() {
-
-            @Override
-            public void notify(EventType type, Object additionalArguments) {
-                try {
-                    switch (type) {
-                    case EXCEPTION_OCCURRED:
-                        StorageException cause = (StorageException) additionalArguments;
-                        logger.log(Level.SEVERE, "Error saving heap dump", cause);
-                        break;
-                    case SAVE_COMPLETE:
-                        break;
-                    default:
-                        logger.log(Level.WARNING, "Unknown saveFile event: " + type);
-                    }
-                    heapDumpStream.close();
-                    heapDumpCleanup.run();
-                } catch (IOException e) {
-                    logger.log(Level.WARNING, "Exception when saving file", e);
-                }
-
+    /*
+     * Histograms are stored as a record count followed by the class name,
+     * instance count and total size of every record. Histograms stored by
+     * older versions are serialized ObjectHistograms.
+     */
+    static byte[] writeHistogram(ObjectHistogram histogram) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            Collection<HistogramRecord> records = histogram.getHistogram();
+            out.writeInt(HISTOGRAM_MAGIC);
+            out.writeInt(HISTOGRAM_VERSION);
+            out.writeInt(records.size());
+            for (HistogramRecord record : records) {
+                out.writeUTF(record.getClassname());
+                out.writeLong(record.getNumberOf());
+                out.writeLong(record.getTotalSize());
             }
-        });
+        }
+        return bytes.toByteArray();
+    }
+
+    static ObjectHistogram readHistogram(InputStream in) throws IOException, ClassNotFoundException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int magic = (buffered.read() << 8) | buffered.read();
+        buffered.reset();
+        if (magic == (STREAM_MAGIC & 0xffff)) {
+            ObjectInputStream ois = new ObjectInputStream(buffered);
+            return (ObjectHistogram) ois.readObject();
+        }
+        DataInputStream data = new DataInputStream(new GZIPInputStream(buffered));
+        if (data.readInt() != HISTOGRAM_MAGIC || data.readInt() != HISTOGRAM_VERSION) {
+            throw new IOException("Histogram has an unknown format");
+        }
+        ObjectHistogram histogram = new ObjectHistogram();
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            histogram.addRecord(data.readUTF(), data.readLong(), data.readLong());
+        }
+        return histogram;
     }
 
     @Override
@@ -210,14 +262,13 @@ public class HeapDAOImpl extends AbstractDao implements HeapDAO {
 
     @Override
     public InputStream getHeapDumpData(HeapInfo heapInfo) {
-        return storage.loadFile(heapInfo.getHeapDumpId());
+        return new HeapDumpInputStream(files, heapInfo.getHeapDumpId());
     }
 
     @Override
     public ObjectHistogram getHistogram(HeapInfo heapInfo) {
         try (InputStream in = storage.loadFile(heapInfo.getHistogramId())) {
-            ObjectInputStream ois = new ObjectInputStream(in);
-            return (ObjectHistogram) ois.readObject();
+            return readHistogram(in);
         } catch (IOException | ClassNotFoundException e) {
             logger.log(Level.SEVERE, "Unexpected error while reading histogram", e);
             return null;
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common.internal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a heap dump back from storage. Dumps saved by
+ * {@link HeapDumpUploader} are put together from their chunks, checking
+ * the length and checksum of each; dumps saved as a single uncompressed
+ * file are read as they are.
+ * <p>
+ * Nothing is loaded from storage until the first read, and only one
+ * chunk is open at a time.
+ */
+class HeapDumpInputStream extends InputStream {
+
+    private final HeapFileStore files;
+    private final String heapDumpId;
+
+    private boolean opened;
+    private InputStream current;
+
+    // null when reading a dump saved as a single file
+    private int[] chunkLengths;
+    private int[] chunkChecksums;
+    private int chunk = -1;
+    private CRC32 checksum;
+    private long chunkRead;
+
+    HeapDumpInputStream(HeapFileStore files, String heapDumpId) {
+        this.files = files;
+        this.heapDumpId = heapDumpId;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (!opened) {
+            open();
+        }
+        if (length == 0) {
+            return 0;
+        }
+        while (current != null) {
+            int read = current.read(buffer, offset, length);
+            if (read >= 0) {
+                chunkRead += read;
+                return read;
+            }
+            nextChunk();
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    private void open() throws IOException {
+        opened = true;
+        InputStream in = files.loadFile(heapDumpId);
+        if (in == null) {
+            throw new IOException("Heap dump " + heapDumpId + " not found");
+        }
+        in = new BufferedInputStream(in);
+        in.mark(4);
+        DataInputStream data = new DataInputStream(in);
+        int magic;
+        try {
+            magic = data.readInt();
+        } catch (EOFException e) {
+            magic = 0;
+        }
+        if (magic != HeapDumpUploader.MANIFEST_MAGIC) {
+            in.reset();
+            current = in;
+            return;
+        }
+        try {
+            if (data.readInt() != HeapDumpUploader.MANIFEST_VERSION) {
+                throw new IOException("Heap dump " + heapDumpId + " has an unknown format");
+            }
+            int count = data.readInt();
+            chunkLengths = new int[count];
+            chunkChecksums = new int[count];
+            for (int i = 0; i < count; i++) {
+                chunkLengths[i] = data.readInt();
+                chunkChecksums[i] = data.readInt();
+            }
+        } catch (EOFException e) {
+            throw new IOException("Heap dump " + heapDumpId + " has an incomplete manifest", e);
+        } finally {
+            in.close();
+        }
+        current = null;
+        nextChunk();
+    }
+
+    private void nextChunk() throws IOException {
+        close();
+        if (chunkLengths == null) {
+            return;
+        }
+        if (chunk >= 0) {
+            String chunkId = HeapDumpUploader.getChunkId(heapDumpId, chunk);
+            if (chunkRead != chunkLengths[chunk] || (int) checksum.getValue() != chunkChecksums[chunk]) {
+                throw new IOException("Heap dump chunk " + chunkId + " is corrupt");
+            }
+        }
+        chunk++;
+        if (chunk == chunkLengths.length) {
+            return;
+        }
+        String chunkId = HeapDumpUploader.getChunkId(heapDumpId, chunk);
+        InputStream in = files.loadFile(chunkId);
+        if (in == null) {
+            throw new IOException("Heap dump chunk " + chunkId + " not found");
+        }
+        checksum = new CRC32();
+        chunkRead = 0;
+        current = new CheckedInputStream(new GZIPInputStream(in, 64 * 1024), checksum);
+    }
+}
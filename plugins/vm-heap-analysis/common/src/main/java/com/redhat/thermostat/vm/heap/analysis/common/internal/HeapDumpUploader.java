@@ -0,0 +1,295 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.storage.core.SaveFileListener;
+import com.redhat.thermostat.storage.core.StorageException;
+import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.HprofHistogramReader;
+
+/**
+ * Uploads a heap dump to storage as gzip compressed chunks, reading the
+ * file once. The histogram of the dump can be computed from the same read.
+ * <p>
+ * Each chunk is saved as a file of its own, named after the heap dump id
+ * and the number of the chunk. A chunk that fails to save is sent again
+ * from memory, so a failure costs one chunk rather than the whole dump.
+ * Only a few chunks are in flight at a time; reading waits for storage
+ * to catch up. Once all chunks are saved, a manifest with the length and
+ * the CRC32 of every chunk is saved under the heap dump id itself, see
+ * {@link HeapDumpInputStream}. Uploading returns once storage has the
+ * manifest too.
+ */
+class HeapDumpUploader {
+
+    private static final Logger logger = LoggingUtils.getLogger(HeapDumpUploader.class);
+
+    static final int MANIFEST_MAGIC = 0x4844434b; // "HDCK"
+    static final int MANIFEST_VERSION = 1;
+
+    // uncompressed bytes per chunk
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int MAX_CHUNKS_IN_FLIGHT = 4;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final HeapFileStore files;
+    private final String heapDumpId;
+    private final int chunkSize;
+
+    private final Semaphore inFlight = new Semaphore(MAX_CHUNKS_IN_FLIGHT);
+    private volatile boolean failed;
+
+    // length and CRC32 of the uncompressed data of every chunk
+    private final List<Integer> chunkLengths = new ArrayList<>();
+    private final List<Integer> chunkChecksums = new ArrayList<>();
+
+    private ByteArrayOutputStream chunkBytes;
+    private GZIPOutputStream chunkOut;
+    private final CRC32 chunkChecksum = new CRC32();
+    private int chunkLength;
+
+    HeapDumpUploader(HeapFileStore files, String heapDumpId, int chunkSize) {
+        this.files = files;
+        this.heapDumpId = heapDumpId;
+        this.chunkSize = chunkSize;
+    }
+
+    static String getChunkId(String heapDumpId, int chunk) {
+        return heapDumpId + "." + chunk;
+    }
+
+    /**
+     * Uploads the heap dump and returns once storage has all of it.
+     *
+     * @param histogram if not null, the histogram of the dump is added to
+     *          it while reading
+     */
+    void upload(File heapDump, final ObjectHistogram histogram) throws IOException {
+        try (InputStream in = new ChunkingInputStream(new FileInputStream(heapDump))) {
+            if (histogram != null) {
+                new HprofHistogramReader(in).read(new HprofHistogramReader.Visitor() {
+                    @Override
+                    public void visit(String className, long instanceCount, long totalSize) {
+                        histogram.addRecord(className, instanceCount, totalSize);
+                    }
+                });
+            }
+            // the histogram only covers the first heap dump in the file
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // uploaded while read
+            }
+            finishChunk();
+        } finally {
+            waitForChunks();
+        }
+        checkSaved();
+        saveManifest();
+        waitForChunks();
+        checkSaved();
+    }
+
+    private void write(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (chunkOut == null) {
+                chunkBytes = new ByteArrayOutputStream(chunkSize / 4);
+                chunkOut = new FastGZIPOutputStream(chunkBytes);
+                chunkChecksum.reset();
+                chunkLength = 0;
+            }
+            int count = Math.min(length, chunkSize - chunkLength);
+            chunkOut.write(buffer, offset, count);
+            chunkChecksum.update(buffer, offset, count);
+            chunkLength += count;
+            offset += count;
+            length -= count;
+            if (chunkLength == chunkSize) {
+                finishChunk();
+            }
+        }
+    }
+
+    private void finishChunk() throws IOException {
+        if (chunkOut == null) {
+            return;
+        }
+        chunkOut.close();
+        byte[] data = chunkBytes.toByteArray();
+        chunkOut = null;
+        chunkBytes = null;
+
+        int chunk = chunkLengths.size();
+        chunkLengths.add(chunkLength);
+        chunkChecksums.add((int) chunkChecksum.getValue());
+        checkSaved();
+        save(getChunkId(heapDumpId, chunk), data);
+    }
+
+    private void save(String fileId, byte[] data) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving heap dump " + heapDumpId, e);
+        }
+        save(fileId, data, 1);
+    }
+
+    private void save(final String fileId, final byte[] data, final int attempt) {
+        files.saveFile(fileId, new ByteArrayInputStream(data), new SaveFileListener() {
+            @Override
+            public void notify(EventType type, Object additionalArguments) {
+                switch (type) {
+                case EXCEPTION_OCCURRED:
+                    StorageException cause = (StorageException) additionalArguments;
+                    if (attempt < MAX_ATTEMPTS) {
+                        logger.log(Level.WARNING, "Error saving " + fileId + ", retrying", cause);
+                        save(fileId, data, attempt + 1);
+                        return;
+                    }
+                    logger.log(Level.SEVERE, "Error saving " + fileId, cause);
+                    failed = true;
+                    break;
+                case SAVE_COMPLETE:
+                    break;
+                default:
+                    logger.log(Level.WARNING, "Unknown saveFile event: " + type);
+                }
+                inFlight.release();
+            }
+        });
+    }
+
+    private void waitForChunks() throws IOException {
+        try {
+            inFlight.acquire(MAX_CHUNKS_IN_FLIGHT);
+            inFlight.release(MAX_CHUNKS_IN_FLIGHT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving heap dump " + heapDumpId, e);
+        }
+    }
+
+    private void checkSaved() throws IOException {
+        if (failed) {
+            throw new IOException("Saving heap dump " + heapDumpId + " failed");
+        }
+    }
+
+    private void saveManifest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeInt(chunkLengths.size());
+            for (int i = 0; i < chunkLengths.size(); i++) {
+                out.writeInt(chunkLengths.get(i));
+                out.writeInt(chunkChecksums.get(i));
+            }
+        }
+        save(heapDumpId, bytes.toByteArray());
+    }
+
+    /*
+     * Hands everything read from the file, skipped data included, to the
+     * current chunk.
+     */
+    private class ChunkingInputStream extends FilterInputStream {
+
+        private final byte[] skipBuffer = new byte[64 * 1024];
+
+        private ChunkingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            return Math.max(0, read(skipBuffer, 0, (int) Math.min(count, skipBuffer.length)));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    // hprof compresses well even at the fastest level
+    private static class FastGZIPOutputStream extends GZIPOutputStream {
+
+        private FastGZIPOutputStream(ByteArrayOutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
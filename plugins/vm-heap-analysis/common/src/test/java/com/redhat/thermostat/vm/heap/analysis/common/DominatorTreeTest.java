@@ -0,0 +1,299 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.AbstractJavaHeapObjectVisitor;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.DominatorTree;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaClass;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaField;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaThing;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Root;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
+
+public class DominatorTreeTest {
+
+    private File heapDumpFile;
+    private File treeFile;
+    private Snapshot snapshot;
+    private DominatorTree tree;
+
+    @Before
+    public void setUp() throws IOException {
+        // same heap dump as HeapDumpTest uses
+        heapDumpFile = File.createTempFile("thermostat-dominator-test", ".hprof");
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        treeFile = File.createTempFile("thermostat-dominator-test", ".dominators");
+        snapshot = Reader.readFile(heapDumpFile.getAbsolutePath(), true, 0);
+        snapshot.resolve(true);
+        tree = DominatorTree.compute(snapshot);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        snapshot.close();
+        heapDumpFile.delete();
+        treeFile.delete();
+    }
+
+    @Test
+    public void retainedSizesAddUpToReachableHeap() {
+        long reachableSize = 0;
+        long retainedByTopLevel = 0;
+        for (Enumeration<JavaHeapObject> e = snapshot.getThings(); e.hasMoreElements(); ) {
+            JavaHeapObject obj = e.nextElement();
+            if (!tree.isReachable(obj)) {
+                assertEquals(0, tree.getRetainedSize(obj));
+                continue;
+            }
+            assertTrue(tree.getRetainedSize(obj) >= obj.getSize());
+            reachableSize += obj.getSize();
+            JavaHeapObject dominator = tree.getImmediateDominator(obj);
+            if (dominator == null) {
+                retainedByTopLevel += tree.getRetainedSize(obj);
+            } else {
+                assertTrue(tree.getRetainedSize(dominator) > tree.getRetainedSize(obj));
+            }
+        }
+        assertTrue(reachableSize > 0);
+        assertEquals(reachableSize, retainedByTopLevel);
+    }
+
+    @Test
+    public void onlyRefererIsImmediateDominator() {
+        int checked = 0;
+        for (Enumeration<JavaHeapObject> e = snapshot.getThings(); e.hasMoreElements(); ) {
+            JavaHeapObject obj = e.nextElement();
+            Enumeration<JavaThing> referers = obj.getReferers();
+            if (obj.getRoot() != null || !referers.hasMoreElements()) {
+                continue;
+            }
+            JavaThing referer = referers.nextElement();
+            if (!referers.hasMoreElements() && referer != obj && tree.isReachable(obj)) {
+                assertEquals(((JavaHeapObject) referer).getId(), tree.getImmediateDominator(obj).getId());
+                checked++;
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    @Test
+    public void objectsUnreachableWithoutDominatorAreDominated() {
+        Set<Long> reachable = reachableWithout(-1);
+        int checked = 0;
+        for (Enumeration<JavaHeapObject> e = snapshot.getThings(); e.hasMoreElements() && checked < 20; ) {
+            JavaHeapObject candidate = e.nextElement();
+            if (!tree.isReachable(candidate) || tree.getRetainedSize(candidate) == candidate.getSize()) {
+                continue;
+            }
+            Set<Long> stillReachable = reachableWithout(candidate.getId());
+            for (Long id : reachable) {
+                JavaHeapObject obj = snapshot.findThing(id);
+                boolean dominated = id != candidate.getId() && !stillReachable.contains(id);
+                assertEquals(obj.toString(), dominated, isDominatedBy(obj, candidate));
+            }
+            checked++;
+        }
+        assertTrue(checked > 0);
+    }
+
+    @Test
+    public void classRetainedSizeCountsDominatedInstancesOnce() {
+        Map<Long, Long> expected = new HashMap<>();
+        for (Enumeration<JavaHeapObject> e = snapshot.getThings(); e.hasMoreElements(); ) {
+            JavaHeapObject obj = e.nextElement();
+            if (!tree.isReachable(obj) || hasDominatorOfSameClass(obj)) {
+                continue;
+            }
+            long classId = obj.getClazz().getId();
+            Long size = expected.get(classId);
+            expected.put(classId, (size == null ? 0 : size) + tree.getRetainedSize(obj));
+        }
+        for (JavaClass clazz : snapshot.getClassesArray()) {
+            Long size = expected.get(clazz.getId());
+            assertEquals(clazz.getName(), size == null ? 0 : size.longValue(),
+                    tree.getRetainedSizeOfInstances(clazz));
+        }
+    }
+
+    @Test
+    public void writtenTreeReadsBack() throws IOException {
+        tree.write(treeFile, heapDumpFile);
+        DominatorTree read = DominatorTree.read(snapshot, treeFile, heapDumpFile);
+
+        for (Enumeration<JavaHeapObject> e = snapshot.getThings(); e.hasMoreElements(); ) {
+            JavaHeapObject obj = e.nextElement();
+            assertEquals(tree.isReachable(obj), read.isReachable(obj));
+            assertEquals(tree.getRetainedSize(obj), read.getRetainedSize(obj));
+            JavaHeapObject dominator = tree.getImmediateDominator(obj);
+            if (dominator == null) {
+                assertNull(read.getImmediateDominator(obj));
+            } else {
+                assertEquals(dominator.getId(), read.getImmediateDominator(obj).getId());
+            }
+        }
+        for (JavaClass clazz : snapshot.getClassesArray()) {
+            assertEquals(tree.getRetainedSizeOfInstances(clazz), read.getRetainedSizeOfInstances(clazz));
+        }
+    }
+
+    @Test
+    public void readRejectsTruncatedTree() throws IOException {
+        tree.write(treeFile, heapDumpFile);
+        try (RandomAccessFile raf = new RandomAccessFile(treeFile, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        try {
+            DominatorTree.read(snapshot, treeFile, heapDumpFile);
+            fail("truncated tree was read");
+        } catch (IOException expected) {
+            assertFalse(expected.getMessage().isEmpty());
+        }
+    }
+
+    @Test
+    public void readRejectsTreeOfChangedHeapDump() throws IOException {
+        tree.write(treeFile, heapDumpFile);
+        assertTrue(heapDumpFile.setLastModified(heapDumpFile.lastModified() - 60000));
+        try {
+            DominatorTree.read(snapshot, treeFile, heapDumpFile);
+            fail("tree of a changed heap dump was read");
+        } catch (IOException expected) {
+            assertFalse(expected.getMessage().isEmpty());
+        }
+    }
+
+    @Test
+    public void referencesDoNotDominateTheirReferents() {
+        JavaClass referenceClass = snapshot.getWeakReferenceClass();
+        int checked = 0;
+        for (Enumeration<JavaHeapObject> e = snapshot.getThings(); e.hasMoreElements(); ) {
+            JavaHeapObject obj = e.nextElement();
+            if (!(obj instanceof JavaObject) || !referenceClass.isAssignableFrom(obj.getClazz())) {
+                continue;
+            }
+            JavaThing referent = ((JavaObject) obj).getFields()[snapshot.getReferentFieldIndex()];
+            if (referent instanceof JavaHeapObject && obj.refersOnlyWeaklyTo(snapshot, referent)) {
+                JavaHeapObject dominator = tree.getImmediateDominator((JavaHeapObject) referent);
+                assertFalse(dominator != null && dominator.getId() == obj.getId());
+                checked++;
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    private boolean isDominatedBy(JavaHeapObject obj, JavaHeapObject dominator) {
+        for (JavaHeapObject d = tree.getImmediateDominator(obj); d != null; d = tree.getImmediateDominator(d)) {
+            if (d.getId() == dominator.getId()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasDominatorOfSameClass(JavaHeapObject obj) {
+        for (JavaHeapObject d = tree.getImmediateDominator(obj); d != null; d = tree.getImmediateDominator(d)) {
+            if (d.getClazz() == obj.getClazz()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ids of the objects the roots reach without going through the object with the given id
+    private Set<Long> reachableWithout(long excludedId) {
+        final Set<Long> reached = new HashSet<>();
+        final ArrayDeque<JavaHeapObject> pending = new ArrayDeque<>();
+        reached.add(excludedId);
+        for (Root root : snapshot.getRootsArray()) {
+            JavaHeapObject obj = snapshot.findThing(root.getId());
+            if (obj != null && reached.add(obj.getId())) {
+                pending.add(obj);
+            }
+        }
+        while (!pending.isEmpty()) {
+            pending.remove().visitReferencedObjects(new AbstractJavaHeapObjectVisitor() {
+                @Override
+                public boolean exclude(JavaClass clazz, JavaField f) {
+                    return clazz == snapshot.getWeakReferenceClass() && f.getName().equals("referent");
+                }
+
+                @Override
+                public boolean mightExclude() {
+                    return true;
+                }
+
+                @Override
+                public void visit(JavaHeapObject other) {
+                    if (reached.add(other.getId())) {
+                        pending.add(other);
+                    }
+                }
+            });
+        }
+        reached.remove(excludedId);
+        return reached;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
+
+public class HeapDumpIndexTest {
+
+    private File heapDumpFile;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        // same heap dump as HeapDumpTest uses
+        heapDumpFile = File.createTempFile("thermostat-index-test", ".hprof");
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        indexFile = File.createTempFile("thermostat-index-test", ".index");
+        HeapDumpIndex.write(heapDumpFile.getAbsolutePath(), indexFile);
+    }
+
+    @After
+    public void tearDown() {
+        heapDumpFile.delete();
+        indexFile.delete();
+    }
+
+    @Test
+    public void indexMatchesResolvedSnapshot() throws Exception {
+        Map<String, Set<String>> expected = new HashMap<>();
+        try (Snapshot snapshot = Reader.readFile(heapDumpFile.getAbsolutePath(), true, 0)) {
+            snapshot.resolve(false);
+            Enumeration<JavaHeapObject> things = snapshot.getThings();
+            while (things.hasMoreElements()) {
+                JavaHeapObject thing = things.nextElement();
+                String name = thing.getClazz().getName();
+                Set<String> ids = expected.get(name);
+                if (ids == null) {
+                    ids = new HashSet<>();
+                    expected.put(name, ids);
+                }
+                ids.add(thing.getIdString());
+            }
+        }
+
+        HeapDumpIndex index = HeapDumpIndex.open(indexFile);
+        assertFalse(expected.isEmpty());
+        for (Map.Entry<String, Set<String>> entry : expected.entrySet()) {
+            String pattern = entry.getKey().replace("\\", "\\\\").replace("*", "\\*").replace("?", "\\?");
+            Collection<String> found = index.search(pattern, Integer.MAX_VALUE);
+            assertEquals(entry.getKey(), entry.getValue(), new HashSet<>(found));
+            assertEquals(entry.getValue().size(), found.size());
+        }
+    }
+
+    @Test
+    public void searchWithWildcards() throws IOException {
+        HeapDumpIndex index = HeapDumpIndex.open(indexFile);
+
+        Collection<String> found = index.search("java.util.ArrayDequ?", 100);
+        assertEquals(8, found.size());
+        assertTrue(found.contains("0x7d704eb20"));
+
+        Set<String> deques = new HashSet<>(index.search("*ArrayDeque", 100));
+        assertEquals(new HashSet<>(found), deques);
+
+        assertTrue(index.search("java.util.ArrayDeque?", 100).isEmpty());
+        assertTrue(index.search("java.util.Array\\*", 100).isEmpty());
+    }
+
+    @Test
+    public void searchStopsAtLimit() throws IOException {
+        HeapDumpIndex index = HeapDumpIndex.open(indexFile);
+
+        assertEquals(2, index.search("java.util.ArrayDeque", 2).size());
+        assertEquals(10, index.search("*", 10).size());
+        assertTrue(index.search("*", 0).isEmpty());
+    }
+
+    @Test
+    public void openRejectsIncompleteIndex() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        try {
+            HeapDumpIndex.open(indexFile);
+            fail("incomplete index was opened");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.PerformanceTest;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaThing;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
+
+/**
+ * Compares resolving a heap dump and reading the fields of all its objects
+ * through the mapped file with reading them through seeks on the file.
+ * Run with -Pperf-tests.
+ */
+@Category(PerformanceTest.class)
+public class HeapDumpReadBufferBenchmarkTest {
+
+    private static final String FILE_MAP_PROPERTY = "jhat.enableFileMap";
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+
+    private File heapDumpFile;
+    private String oldFileMap;
+
+    @Before
+    public void setUp() throws IOException {
+        heapDumpFile = File.createTempFile("thermostat-read-buffer-benchmark", ".hprof");
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        oldFileMap = System.getProperty(FILE_MAP_PROPERTY);
+    }
+
+    @After
+    public void tearDown() {
+        if (oldFileMap == null) {
+            System.clearProperty(FILE_MAP_PROPERTY);
+        } else {
+            System.setProperty(FILE_MAP_PROPERTY, oldFileMap);
+        }
+        heapDumpFile.delete();
+    }
+
+    @Test
+    public void compareReadBuffers() throws Exception {
+        long[] fileResult = new long[1];
+        long[] mappedResult = new long[1];
+        run(false, 1, fileResult);
+        run(true, 1, mappedResult);
+        assertEquals(fileResult[0], mappedResult[0]);
+
+        run(false, WARMUP_ROUNDS, fileResult);
+        run(true, WARMUP_ROUNDS, mappedResult);
+        long[] fileNanos = run(false, ROUNDS, fileResult);
+        long[] mappedNanos = run(true, ROUNDS, mappedResult);
+
+        System.out.println("Resolving heap dump and reading all fields, " + ROUNDS + " rounds:");
+        System.out.println("  file resolve:     " + (fileNanos[0] / ROUNDS / 1000) + " us/round");
+        System.out.println("  mapped resolve:   " + (mappedNanos[0] / ROUNDS / 1000) + " us/round");
+        System.out.println("  file getFields:   " + (fileNanos[1] / ROUNDS / 1000) + " us/round");
+        System.out.println("  mapped getFields: " + (mappedNanos[1] / ROUNDS / 1000) + " us/round");
+    }
+
+    /**
+     * Returns the nanoseconds spent reading and resolving the dump and the
+     * nanoseconds spent reading fields. The checksum of the fields of the
+     * last round is stored in result.
+     */
+    private long[] run(boolean fileMap, int rounds, long[] result) throws Exception {
+        System.setProperty(FILE_MAP_PROPERTY, String.valueOf(fileMap));
+        long[] nanos = new long[2];
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            Snapshot snapshot = Reader.readFile(heapDumpFile.getAbsolutePath(), true, 0);
+            try {
+                snapshot.resolve(true);
+                nanos[0] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                result[0] = readAllFields(snapshot);
+                nanos[1] += System.nanoTime() - start;
+            } finally {
+                snapshot.close();
+            }
+        }
+        return nanos;
+    }
+
+    private static long readAllFields(Snapshot snapshot) {
+        long checksum = 0;
+        Enumeration<JavaHeapObject> things = snapshot.getThings();
+        while (things.hasMoreElements()) {
+            JavaHeapObject thing = things.nextElement();
+            if (!(thing instanceof JavaObject)) {
+                continue;
+            }
+            for (JavaThing field : ((JavaObject) thing).getFields()) {
+                checksum = 31 * checksum + (field instanceof JavaHeapObject
+                        ? ((JavaHeapObject) field).getId() : field.toString().hashCode());
+            }
+        }
+        return checksum;
+    }
+
+}
@@ -37,9 +37,8 @@
 package com.redhat.thermostat.vm.heap.analysis.common;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
-import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -47,17 +46,16 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
-import java.util.Vector;
+import java.util.Enumeration;
 import java.util.zip.GZIPInputStream;
 
-import org.apache.lucene.store.Directory;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaClass;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
-import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaThing;
 
 /*
  * This testcase uses a minimalistic heapdump that is stored as binary in
@@ -115,36 +113,6 @@ public class HeapDumpTest {
         assertTrue(foundObjectIds.contains("0x7d704bfe0"));
     }
     
-    /*
-     * Smoke test for basic lucene compat testing.
-     */
-    @Test
-    public void canCreateLuceneIndex() {
-        try {
-            Snapshot mockSnapShot = mock(Snapshot.class);
-            JavaHeapObject obj1 = mock(JavaHeapObject.class);
-            JavaClass clazz1 = mock(JavaClass.class);
-            when(obj1.getClazz()).thenReturn(clazz1);
-            when(clazz1.getName()).thenReturn("fake-class-one");
-            when(obj1.getIdString()).thenReturn("foo");
-            JavaClass clazz2 = mock(JavaClass.class);
-            when(clazz2.getName()).thenReturn("fake-class-two");
-            JavaHeapObject obj2 = mock(JavaHeapObject.class);
-            when(obj2.getIdString()).thenReturn("bar");
-            when(obj2.getClazz()).thenReturn(clazz2);
-            Vector<JavaHeapObject> things = new Vector<>();
-            things.add(obj1);
-            things.add(obj2);
-            when(mockSnapShot.getThings()).thenReturn(things.elements());
-            HeapDump bareDump = new HeapDump(null, null, mockSnapShot);
-            Directory dir = bareDump.createLuceneIndex();
-            assertNotNull(dir);
-        } catch (Exception e) {
-            e.printStackTrace();
-            fail("Failed to create lucene index");
-        }
-    }
-
     @Test
     public void testSearchObjectsWithLimit() {
         Collection<String> foundObjectIds = heapDump.searchObjects("java.util.ArrayDeque", 2);
@@ -176,6 +144,35 @@ public class HeapDumpTest {
         assertEquals("java.util.ArrayDeque", obj.getClazz().getName());
     }
 
+    @Test
+    public void testFoundObjectsAreEqual() {
+        JavaHeapObject obj = heapDump.findObject("0x7d704eb20");
+        JavaHeapObject again = heapDump.findObject("0x7d704eb20");
+        assertEquals(obj, again);
+        assertEquals(obj.hashCode(), again.hashCode());
+        assertFalse(obj.equals(heapDump.findObject("0x7d70485e8")));
+    }
+
+    @Test
+    public void testFindObjectReferersAndInstances() {
+        JavaHeapObject obj = heapDump.findObject("0x7d704eb20");
+        Enumeration<JavaThing> referers = obj.getReferers();
+        assertTrue(referers.hasMoreElements());
+        JavaHeapObject referer = (JavaHeapObject) referers.nextElement();
+        assertEquals("0x7d704e9f0", referer.getIdString());
+        assertEquals("java.util.jar.JarFile", referer.getClazz().getName());
+        assertFalse(referers.hasMoreElements());
+
+        JavaClass clazz = obj.getClazz();
+        assertEquals(8, clazz.getInstancesCount(false));
+        assertEquals(128, clazz.getTotalInstanceSize());
+        boolean found = false;
+        for (Enumeration<JavaHeapObject> e = clazz.getInstances(false); e.hasMoreElements();) {
+            found |= obj.equals(e.nextElement());
+        }
+        assertTrue(found);
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @Test
     public void verifyWildcardSearchInputConvertedIntoWildcardsIfNeeded() {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
+
+public class HistogramLoaderTest {
+
+    private File heapDumpFile;
+
+    @Before
+    public void setUp() throws IOException {
+        // same heap dump as HeapDumpTest uses
+        heapDumpFile = File.createTempFile("thermostat-histogram-test", ".hprof");
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        heapDumpFile.delete();
+    }
+
+    @Test
+    public void histogramMatchesResolvedSnapshot() throws IOException {
+        ObjectHistogram histogram = new HistogramLoader().load(heapDumpFile.getAbsolutePath());
+
+        Map<String, HistogramRecord> expected = toMap(computeFromSnapshot(heapDumpFile));
+        Map<String, HistogramRecord> actual = toMap(histogram);
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void histogramContainsClassesAndArrays() throws IOException {
+        Map<String, HistogramRecord> histogram = toMap(new HistogramLoader().load(heapDumpFile.getAbsolutePath()));
+
+        assertTrue(histogram.containsKey("java.lang.String"));
+        assertTrue(histogram.containsKey("java.lang.Class"));
+        assertTrue(histogram.containsKey("[C"));
+        assertTrue(histogram.containsKey("[Ljava.lang.Object;"));
+    }
+
+    @Test
+    public void addRecordMergesRecordsWithTheSameClassName() {
+        ObjectHistogram histogram = new ObjectHistogram();
+        histogram.addRecord("foo", 1, 16);
+        histogram.addRecord("bar", 2, 48);
+        histogram.addRecord("foo", 3, 64);
+
+        Map<String, HistogramRecord> records = toMap(histogram);
+        assertEquals(2, records.size());
+        assertEquals(new HistogramRecord("foo", 4, 80), records.get("foo"));
+        assertEquals(new HistogramRecord("bar", 2, 48), records.get("bar"));
+    }
+
+    private static ObjectHistogram computeFromSnapshot(File file) throws IOException {
+        Snapshot snapshot = Reader.readFile(file.getAbsolutePath(), true, 0);
+        snapshot.resolve(true);
+        ObjectHistogram histogram = new ObjectHistogram();
+        Enumeration<JavaHeapObject> things = snapshot.getThings();
+        while (things.hasMoreElements()) {
+            histogram.addThing(things.nextElement());
+        }
+        return histogram;
+    }
+
+    private static Map<String, HistogramRecord> toMap(ObjectHistogram histogram) {
+        Map<String, HistogramRecord> result = new HashMap<>();
+        for (HistogramRecord record : histogram.getHistogram()) {
+            result.put(record.getClassname(), record);
+        }
+        return result;
+    }
+}
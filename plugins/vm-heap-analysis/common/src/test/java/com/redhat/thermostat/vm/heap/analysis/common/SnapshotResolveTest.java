@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaClass;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.ResolveProgressListener;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
+
+public class SnapshotResolveTest {
+
+    private File heapDumpFile;
+    private Snapshot snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        // same heap dump as HeapDumpTest uses
+        heapDumpFile = File.createTempFile("thermostat-resolve-test", ".hprof");
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshot = Reader.readFile(heapDumpFile.getAbsolutePath(), true, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        snapshot.close();
+        heapDumpFile.delete();
+    }
+
+    @Test
+    public void resolveReportsProgressUntilDone() {
+        RecordingListener listener = new RecordingListener();
+        snapshot.resolve(true, listener);
+
+        assertTrue(listener.calls > 0);
+        assertTrue(listener.total > 0);
+        assertEquals(listener.total, listener.maxDone);
+    }
+
+    @Test
+    public void everyObjectIsAnInstanceOfItsClass() {
+        snapshot.resolve(true, null);
+
+        int things = 0;
+        for (Enumeration<JavaHeapObject> e = snapshot.getThings(); e.hasMoreElements(); e.nextElement()) {
+            things++;
+        }
+        int instances = 0;
+        for (JavaClass clazz : snapshot.getClassesArray()) {
+            for (Enumeration<JavaHeapObject> e = clazz.getInstances(false); e.hasMoreElements(); ) {
+                assertEquals(clazz, e.nextElement().getClazz());
+                instances++;
+            }
+        }
+        assertTrue(things > 0);
+        assertEquals(things, instances);
+    }
+
+    private static class RecordingListener implements ResolveProgressListener {
+
+        private int calls;
+        private long maxDone;
+        private long total;
+
+        @Override
+        public synchronized void resolveProgress(long done, long total) {
+            calls++;
+            maxDone = Math.max(maxDone, done);
+            this.total = total;
+        }
+    }
+}
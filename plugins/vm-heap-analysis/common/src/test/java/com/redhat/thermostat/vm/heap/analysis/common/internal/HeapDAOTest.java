@@ -36,15 +36,20 @@
 
 package com.redhat.thermostat.vm.heap.analysis.common.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -56,12 +61,20 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.storage.core.Category;
 import com.redhat.thermostat.storage.core.CloseOnSave;
@@ -75,8 +88,10 @@ import com.redhat.thermostat.storage.core.SaveFileListener.EventType;
 import com.redhat.thermostat.storage.core.StatementDescriptor;
 import com.redhat.thermostat.storage.core.StatementExecutionException;
 import com.redhat.thermostat.storage.core.Storage;
+import com.redhat.thermostat.storage.core.StorageException;
 import com.redhat.thermostat.storage.core.VmRef;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
+import com.redhat.thermostat.vm.heap.analysis.common.HistogramLoader;
 import com.redhat.thermostat.vm.heap.analysis.common.HistogramRecord;
 import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
@@ -233,32 +248,169 @@ public class HeapDAOTest {
         @SuppressWarnings("unchecked")
         PreparedStatement<HeapInfo> add = mock(PreparedStatement.class);
         when(storage.prepareStatement(anyDescriptor())).thenReturn(add);
+        Map<String, byte[]> savedFiles = storeSavedFiles(0);
         Runnable cleanup = mock(Runnable.class);
         dao.putHeapInfo(heapInfo, heapDumpData, histogram, cleanup);
 
         doAddHeapInfoVerifications(storage, add, heapInfo);
+        verify(cleanup).run();
+        assertEquals("test-vm1-12345", heapInfo.getHeapId());
+        assertEquals("heapdump-test-vm1-12345", heapInfo.getHeapDumpId());
+        assertEquals("histogram-test-vm1-12345", heapInfo.getHistogramId());
+        verify(storage).saveFile(eq("heapdump-test-vm1-12345.0"), any(InputStream.class), any(SaveFileListener.class));
+        verify(storage).saveFile(eq("heapdump-test-vm1-12345"), any(InputStream.class), any(SaveFileListener.class));
+        verify(storage).saveFile(eq("histogram-test-vm1-12345"), any(InputStream.class), isA(CloseOnSave.class));
+        assertEquals(3, savedFiles.size());
 
-        ArgumentCaptor<InputStream> data = ArgumentCaptor.forClass(InputStream.class);
-        ArgumentCaptor<SaveFileListener> saveListener = ArgumentCaptor.forClass(SaveFileListener.class);
-        verify(storage).saveFile(eq("heapdump-test-vm1-12345"), data.capture(), saveListener.capture());
-        InputStream in = data.getValue();
+        InputStream in = dao.getHeapDumpData(heapInfo);
         assertEquals(1, in.read());
         assertEquals(2, in.read());
         assertEquals(3, in.read());
         assertEquals(-1, in.read());
-        saveListener.getValue().notify(EventType.SAVE_COMPLETE, null);
+        in.close();
+
+        Collection<HistogramRecord> histoRecs = dao.getHistogram(heapInfo).getHistogram();
+        assertEquals(2, histoRecs.size());
+        assertTrue(histoRecs.contains(new HistogramRecord("class1", 2, 8)));
+        assertTrue(histoRecs.contains(new HistogramRecord("class2", 1, 10)));
+    }
+
+    @Test
+    public void testPutHeapInfoComputesHistogramWhileSavingHeapDump() throws Exception {
+        @SuppressWarnings("unchecked")
+        PreparedStatement<HeapInfo> add = mock(PreparedStatement.class);
+        when(storage.prepareStatement(anyDescriptor())).thenReturn(add);
+        Map<String, byte[]> savedFiles = storeSavedFiles(0);
+        File hprofFile = createHeapDumpFile();
+        try {
+            dao = new HeapDAOImpl(storage, 64 * 1024);
+            Runnable cleanup = mock(Runnable.class);
+            dao.putHeapInfo(heapInfo, hprofFile, cleanup);
+
+            doAddHeapInfoVerifications(storage, add, heapInfo);
+            verify(cleanup).run();
+            assertTrue(savedFiles.containsKey("heapdump-test-vm1-12345.1"));
+            long savedSize = 0;
+            for (Map.Entry<String, byte[]> entry : savedFiles.entrySet()) {
+                if (entry.getKey().startsWith("heapdump-")) {
+                    savedSize += entry.getValue().length;
+                }
+            }
+            assertTrue(savedSize < hprofFile.length() / 2);
+
+            try (InputStream in = dao.getHeapDumpData(heapInfo)) {
+                assertArrayEquals(Files.readAllBytes(hprofFile.toPath()), readAll(in));
+            }
+            ObjectHistogram expected = new HistogramLoader().load(hprofFile.getAbsolutePath());
+            Collection<HistogramRecord> actual = dao.getHistogram(heapInfo).getHistogram();
+            assertEquals(expected.getHistogram().size(), actual.size());
+            assertTrue(actual.containsAll(expected.getHistogram()));
+        } finally {
+            hprofFile.delete();
+        }
+    }
+
+    @Test
+    public void testFailedChunkIsSavedAgain() throws IOException {
+        @SuppressWarnings("unchecked")
+        PreparedStatement<HeapInfo> add = mock(PreparedStatement.class);
+        when(storage.prepareStatement(anyDescriptor())).thenReturn(add);
+        storeSavedFiles(1);
+        dao.putHeapInfo(heapInfo, heapDumpData, histogram, mock(Runnable.class));
+
+        verify(storage, times(2)).saveFile(eq("heapdump-test-vm1-12345.0"), any(InputStream.class), any(SaveFileListener.class));
+        verify(add).execute();
+        InputStream in = dao.getHeapDumpData(heapInfo);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, readAll(in));
+    }
+
+    @Test
+    public void testPutHeapInfoFailsIfChunkCannotBeSaved() throws IOException {
+        @SuppressWarnings("unchecked")
+        PreparedStatement<HeapInfo> add = mock(PreparedStatement.class);
+        when(storage.prepareStatement(anyDescriptor())).thenReturn(add);
+        Map<String, byte[]> savedFiles = storeSavedFiles(Integer.MAX_VALUE);
+        Runnable cleanup = mock(Runnable.class);
+        try {
+            dao.putHeapInfo(heapInfo, heapDumpData, histogram, cleanup);
+            fail("heap dump could not be saved");
+        } catch (IOException expected) {
+            // pass
+        }
+
         verify(cleanup).run();
-        assertEquals("test-vm1-12345", heapInfo.getHeapId());
-        ArgumentCaptor<InputStream> histoStream = ArgumentCaptor.forClass(InputStream.class);
-        verify(storage).saveFile(eq("histogram-test-vm1-12345"), histoStream.capture(), isA(CloseOnSave.class));
-        InputStream histoActual = histoStream.getValue();
-        int expected;
-        int actual;
-        do {
-            expected = histogramData.read();
-            actual = histoActual.read();
-            assertEquals(expected, actual);
-        } while (expected != -1 && actual != -1);
+        verify(add, never()).execute();
+        assertFalse(savedFiles.containsKey("heapdump-test-vm1-12345"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptChunkIsDetected() throws IOException {
+        @SuppressWarnings("unchecked")
+        PreparedStatement<HeapInfo> add = mock(PreparedStatement.class);
+        when(storage.prepareStatement(anyDescriptor())).thenReturn(add);
+        Map<String, byte[]> savedFiles = storeSavedFiles(0);
+        dao.putHeapInfo(heapInfo, heapDumpData, histogram, mock(Runnable.class));
+
+        ByteArrayOutputStream otherChunk = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(otherChunk)) {
+            out.write(new byte[] { 3, 2, 1 });
+        }
+        savedFiles.put("heapdump-test-vm1-12345.0", otherChunk.toByteArray());
+
+        readAll(dao.getHeapDumpData(heapInfo));
+    }
+
+    /*
+     * Makes storage keep saved files in the returned map and load them from
+     * there. The first {@code failures} attempts to save each file fail.
+     */
+    private Map<String, byte[]> storeSavedFiles(final int failures) {
+        final Map<String, byte[]> savedFiles = new HashMap<>();
+        final Map<String, Integer> attempts = new HashMap<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                String name = (String) invocation.getArguments()[0];
+                InputStream data = (InputStream) invocation.getArguments()[1];
+                SaveFileListener listener = (SaveFileListener) invocation.getArguments()[2];
+                Integer attempt = attempts.get(name);
+                attempts.put(name, attempt == null ? 1 : attempt + 1);
+                if (attempt == null ? failures > 0 : attempt < failures) {
+                    listener.notify(EventType.EXCEPTION_OCCURRED, new StorageException("test"));
+                } else {
+                    savedFiles.put(name, readAll(data));
+                    listener.notify(EventType.SAVE_COMPLETE, null);
+                }
+                return null;
+            }
+        }).when(storage).saveFile(anyString(), any(InputStream.class), any(SaveFileListener.class));
+        when(storage.loadFile(anyString())).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                byte[] data = savedFiles.get(invocation.getArguments()[0]);
+                return data == null ? null : new ByteArrayInputStream(data);
+            }
+        });
+        return savedFiles;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private File createHeapDumpFile() throws IOException {
+        // same heap dump as HeapDumpTest uses
+        File file = File.createTempFile("thermostat-heapdao-test", ".hprof");
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
     }
 
     @Test
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.storage.core.SaveFileListener;
+import com.redhat.thermostat.storage.core.SaveFileListener.EventType;
+import com.redhat.thermostat.storage.core.StorageException;
+import com.redhat.thermostat.vm.heap.analysis.common.HistogramLoader;
+import com.redhat.thermostat.vm.heap.analysis.common.HistogramRecord;
+import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
+
+public class HeapDumpUploaderTest {
+
+    private static final String HEAP_DUMP_ID = "heapdump-test";
+
+    private File heapDumpFile;
+    private MemoryFileStore files;
+
+    @Before
+    public void setUp() throws IOException {
+        // same heap dump as HeapDumpTest uses
+        heapDumpFile = File.createTempFile("thermostat-uploader-test", ".hprof");
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        files = new MemoryFileStore();
+    }
+
+    @After
+    public void tearDown() {
+        heapDumpFile.delete();
+    }
+
+    @Test
+    public void uploadedDumpReadsBack() throws IOException {
+        ObjectHistogram histogram = new ObjectHistogram();
+        new HeapDumpUploader(files, HEAP_DUMP_ID, 64 * 1024).upload(heapDumpFile, histogram);
+
+        assertTrue(files.saved.containsKey(HeapDumpUploader.getChunkId(HEAP_DUMP_ID, 1)));
+        try (InputStream in = new HeapDumpInputStream(files, HEAP_DUMP_ID)) {
+            assertArrayEquals(Files.readAllBytes(heapDumpFile.toPath()), readAll(in));
+        }
+        Collection<HistogramRecord> expected = new HistogramLoader().load(heapDumpFile.getAbsolutePath()).getHistogram();
+        assertEquals(expected.size(), histogram.getHistogram().size());
+        assertTrue(histogram.getHistogram().containsAll(expected));
+    }
+
+    @Test
+    public void failedChunkIsSavedAgain() throws IOException {
+        files.failures = 2;
+        new HeapDumpUploader(files, HEAP_DUMP_ID, 64 * 1024).upload(heapDumpFile, null);
+
+        assertEquals(3, files.attempts.get(HeapDumpUploader.getChunkId(HEAP_DUMP_ID, 0)).intValue());
+        try (InputStream in = new HeapDumpInputStream(files, HEAP_DUMP_ID)) {
+            assertArrayEquals(Files.readAllBytes(heapDumpFile.toPath()), readAll(in));
+        }
+    }
+
+    @Test
+    public void uploadFailsIfChunkCannotBeSaved() {
+        files.failures = Integer.MAX_VALUE;
+        try {
+            new HeapDumpUploader(files, HEAP_DUMP_ID, 64 * 1024).upload(heapDumpFile, null);
+            fail("heap dump could not be saved");
+        } catch (IOException expected) {
+            // pass
+        }
+        assertFalse(files.saved.containsKey(HEAP_DUMP_ID));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptChunkIsDetected() throws IOException {
+        new HeapDumpUploader(files, HEAP_DUMP_ID, 64 * 1024).upload(heapDumpFile, null);
+
+        ByteArrayOutputStream otherChunk = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(otherChunk)) {
+            out.write(new byte[] { 3, 2, 1 });
+        }
+        files.saved.put(HeapDumpUploader.getChunkId(HEAP_DUMP_ID, 0), otherChunk.toByteArray());
+
+        readAll(new HeapDumpInputStream(files, HEAP_DUMP_ID));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * Keeps files in memory. The first {@code failures} attempts to save
+     * each file fail.
+     */
+    private static class MemoryFileStore implements HeapFileStore {
+
+        private final Map<String, byte[]> saved = new HashMap<>();
+        private final Map<String, Integer> attempts = new HashMap<>();
+        private int failures;
+
+        @Override
+        public synchronized void saveFile(String fileId, InputStream data, SaveFileListener listener) {
+            Integer attempt = attempts.get(fileId);
+            attempt = attempt == null ? 1 : attempt + 1;
+            attempts.put(fileId, attempt);
+            if (attempt <= failures) {
+                listener.notify(EventType.EXCEPTION_OCCURRED, new StorageException("test"));
+                return;
+            }
+            try {
+                saved.put(fileId, readAll(data));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            listener.notify(EventType.SAVE_COMPLETE, null);
+        }
+
+        @Override
+        public synchronized InputStream loadFile(String fileId) {
+            byte[] data = saved.get(fileId);
+            return data == null ? null : new ByteArrayInputStream(data);
+        }
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The dominator tree of the objects in a {@link Snapshot}, and the sizes
+ * the objects retain.
+ * <p>
+ * An object dominates another if every path from a root to the other
+ * object goes through it.  The objects an object dominates are the ones
+ * the garbage collector could free once the object itself is gone, so
+ * their total size is the retained size of the object.
+ * <p>
+ * The tree is computed with the Lengauer-Tarjan algorithm, which runs in
+ * almost linear time.  All of its state lives in int arrays indexed by
+ * object, so it works on dumps with millions of objects.  Objects that no
+ * root can reach are not part of the tree; they retain nothing.
+ * <p>
+ * Like {@link Snapshot#rootsetReferencesTo} without weak references, the
+ * tree does not follow the referent of a {@link java.lang.ref.Reference}:
+ * the collector does not keep an object alive for it, so a reference
+ * retains nothing through it.
+ */
+public class DominatorTree {
+
+    private static final int MAGIC = 0x48444f4d; // "HDOM"
+    private static final int VERSION = 2;
+
+    // immediate dominator of an object that only the roots dominate
+    private static final int ROOTS = -1;
+    // immediate dominator of an object no root can reach
+    private static final int UNREACHABLE = -2;
+
+    private final Snapshot snapshot;
+
+    // immediate dominator and retained size by object index
+    private final int[] dominators;
+    private final long[] retainedSizes;
+
+    // sorted indices of the classes with reachable instances, and the size
+    // all instances of each of them retain together
+    private final int[] classIndices;
+    private final long[] classRetainedSizes;
+
+    private DominatorTree(Snapshot snapshot, int[] dominators, long[] retainedSizes,
+            int[] classIndices, long[] classRetainedSizes) {
+        this.snapshot = snapshot;
+        this.dominators = dominators;
+        this.retainedSizes = retainedSizes;
+        this.classIndices = classIndices;
+        this.classRetainedSizes = classRetainedSizes;
+    }
+
+    /**
+     * @param snapshot a snapshot resolved with references to objects
+     *          calculated
+     */
+    public static DominatorTree compute(Snapshot snapshot) {
+        int[] refererStart = snapshot.getRefererStart();
+        int[] refererIndices = snapshot.getRefererIndices();
+        if (refererStart == null) {
+            throw new IllegalStateException("references to objects were not calculated");
+        }
+        return new Builder(snapshot, refererStart, refererIndices).build();
+    }
+
+    /**
+     * Reads a tree written by {@link #write(File, File)} for the same heap
+     * dump.  The tree is rejected if heapDumpFile changed since.
+     *
+     * @param heapDumpFile the file snapshot was read from
+     */
+    public static DominatorTree read(Snapshot snapshot, File file, File heapDumpFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Dominator tree " + file + " has an unknown format");
+            }
+            long dumpLength = in.readLong();
+            long dumpLastModified = in.readLong();
+            int count = in.readInt();
+            if (dumpLength != heapDumpFile.length() || dumpLastModified != heapDumpFile.lastModified()
+                    || count != snapshot.getObjectCount()) {
+                throw new IOException("Dominator tree " + file + " is not for this heap dump");
+            }
+            int[] dominators = new int[count];
+            for (int i = 0; i < count; i++) {
+                dominators[i] = in.readInt();
+            }
+            long[] retainedSizes = new long[count];
+            for (int i = 0; i < count; i++) {
+                retainedSizes[i] = in.readLong();
+            }
+            int classCount = in.readInt();
+            int[] classIndices = new int[classCount];
+            long[] classRetainedSizes = new long[classCount];
+            for (int i = 0; i < classCount; i++) {
+                classIndices[i] = in.readInt();
+                classRetainedSizes[i] = in.readLong();
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Dominator tree " + file + " is incomplete");
+            }
+            return new DominatorTree(snapshot, dominators, retainedSizes, classIndices, classRetainedSizes);
+        } catch (EOFException e) {
+            throw new IOException("Dominator tree " + file + " is truncated", e);
+        }
+    }
+
+    /**
+     * @param heapDumpFile the file the snapshot was read from.  Its length
+     *          and modification time are recorded so that
+     *          {@link #read(Snapshot, File, File)} can tell if it changed.
+     */
+    public void write(File file, File heapDumpFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(heapDumpFile.length());
+            out.writeLong(heapDumpFile.lastModified());
+            out.writeInt(dominators.length);
+            for (int dominator : dominators) {
+                out.writeInt(dominator);
+            }
+            for (long size : retainedSizes) {
+                out.writeLong(size);
+            }
+            out.writeInt(classIndices.length);
+            for (int i = 0; i < classIndices.length; i++) {
+                out.writeInt(classIndices[i]);
+                out.writeLong(classRetainedSizes[i]);
+            }
+            out.writeInt(MAGIC);
+        }
+    }
+
+    /**
+     * @return the object that immediately dominates obj, or null if only
+     *          the roots do or no root can reach obj
+     */
+    public JavaHeapObject getImmediateDominator(JavaHeapObject obj) {
+        int index = obj.getIndex();
+        if (index < 0 || dominators[index] < 0) {
+            return null;
+        }
+        return snapshot.getObjectAt(dominators[index]);
+    }
+
+    /**
+     * @return true if a root can reach obj
+     */
+    public boolean isReachable(JavaHeapObject obj) {
+        int index = obj.getIndex();
+        return index >= 0 && dominators[index] != UNREACHABLE;
+    }
+
+    /**
+     * @return the size of obj and of all objects it dominates
+     */
+    public long getRetainedSize(JavaHeapObject obj) {
+        int index = obj.getIndex();
+        return index < 0 ? 0 : retainedSizes[index];
+    }
+
+    /**
+     * @return the size that would be freed if all instances of clazz were
+     *          gone.  Instances that other instances dominate are counted
+     *          only once.
+     */
+    public long getRetainedSizeOfInstances(JavaClass clazz) {
+        int pos = Arrays.binarySearch(classIndices, clazz.getIndex());
+        return pos < 0 ? 0 : classRetainedSizes[pos];
+    }
+
+    /*
+     * The graph has a virtual root, vertex 0, with an edge to every object a
+     * Root refers to.  Object i is vertex i + 1.  The algorithm itself works
+     * on depth-first numbers: vertex[k] is the vertex numbered k, and most
+     * arrays are indexed by number.
+     */
+    private static class Builder {
+
+        private static final int NONE = -1;
+
+        private final Snapshot snapshot;
+        private final int[] refererStart;
+        private final int[] refererIndices;
+        private final int count;
+        private final BitSet rooted;
+        // positions in refererIndices of referers that are References
+        // holding the object only through their referent
+        private final BitSet weakEdges;
+
+        private int[] number;
+        private int[] vertex;
+        private int[] parent;
+        private int reached;
+
+        private Builder(Snapshot snapshot, int[] refererStart, int[] refererIndices) {
+            this.snapshot = snapshot;
+            this.refererStart = refererStart;
+            this.refererIndices = refererIndices;
+            this.count = snapshot.getObjectCount();
+            this.rooted = new BitSet(count);
+            for (int index : snapshot.getRootIndices()) {
+                rooted.set(index);
+            }
+            this.weakEdges = findWeakEdges();
+        }
+
+        private BitSet findWeakEdges() {
+            BitSet weak = new BitSet(refererIndices.length);
+            JavaClass referenceClass = snapshot.getWeakReferenceClass();
+            if (referenceClass == null) {
+                return weak;
+            }
+            // whether a class is a Reference, by class index
+            BitSet checked = new BitSet();
+            BitSet references = new BitSet();
+            for (int i = 0; i < count; i++) {
+                JavaHeapObject obj = null;
+                for (int j = refererStart[i]; j < refererStart[i + 1]; j++) {
+                    JavaHeapObject referer = snapshot.getObjectAt(refererIndices[j]);
+                    if (!(referer instanceof JavaObject) || referer.getClazz() == null) {
+                        continue;
+                    }
+                    JavaClass clazz = referer.getClazz();
+                    int classIndex = clazz.getIndex();
+                    if (!checked.get(classIndex)) {
+                        checked.set(classIndex);
+                        references.set(classIndex, referenceClass.isAssignableFrom(clazz));
+                    }
+                    if (references.get(classIndex)) {
+                        if (obj == null) {
+                            obj = snapshot.getObjectAt(i);
+                        }
+                        if (((JavaObject) referer).refersOnlyWeaklyTo(snapshot, obj)) {
+                            weak.set(j);
+                        }
+                    }
+                }
+            }
+            return weak;
+        }
+
+        private DominatorTree build() {
+            numberVertices();
+            int[] idom = computeDominators();
+
+            int[] dominators = new int[count];
+            Arrays.fill(dominators, UNREACHABLE);
+            long[] retainedSizes = new long[count];
+            int[] classOf = new int[count];
+            for (int k = 1; k < reached; k++) {
+                int index = vertex[k] - 1;
+                int dominator = vertex[idom[k]] - 1;
+                dominators[index] = dominator < 0 ? ROOTS : dominator;
+                JavaHeapObject obj = snapshot.getObjectAt(index);
+                retainedSizes[index] = obj.getSize();
+                JavaClass clazz = obj.getClazz();
+                classOf[index] = clazz == null ? NONE : clazz.getIndex();
+            }
+            // a dominator is numbered before everything it dominates
+            for (int k = reached - 1; k > 0; k--) {
+                int dominator = dominators[vertex[k] - 1];
+                if (dominator != ROOTS) {
+                    retainedSizes[dominator] += retainedSizes[vertex[k] - 1];
+                }
+            }
+
+            long[] byClass = retainedSizesByClass(idom, retainedSizes, classOf);
+            int classCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (byClass[i] != 0) {
+                    classCount++;
+                }
+            }
+            int[] classIndices = new int[classCount];
+            long[] classRetainedSizes = new long[classCount];
+            classCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (byClass[i] != 0) {
+                    classIndices[classCount] = i;
+                    classRetainedSizes[classCount++] = byClass[i];
+                }
+            }
+            return new DominatorTree(snapshot, dominators, retainedSizes, classIndices, classRetainedSizes);
+        }
+
+        /*
+         * Numbers the vertices reachable from the virtual root in depth-first
+         * order.  Edges are the referers turned around, less the weak ones.
+         */
+        private void numberVertices() {
+            int n = count + 1;
+            int[] start = new int[n + 1];
+            start[1] = rooted.cardinality();
+            for (int i = 0; i < count; i++) {
+                for (int j = refererStart[i]; j < refererStart[i + 1]; j++) {
+                    if (!weakEdges.get(j)) {
+                        start[refererIndices[j] + 2]++;
+                    }
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                start[v + 1] += start[v];
+            }
+            int[] next = Arrays.copyOf(start, n);
+            int[] successors = new int[start[n]];
+            for (int i = rooted.nextSetBit(0); i >= 0; i = rooted.nextSetBit(i + 1)) {
+                successors[next[0]++] = i + 1;
+            }
+            for (int i = 0; i < count; i++) {
+                for (int j = refererStart[i]; j < refererStart[i + 1]; j++) {
+                    if (!weakEdges.get(j)) {
+                        successors[next[refererIndices[j] + 1]++] = i + 1;
+                    }
+                }
+            }
+
+            number = new int[n];
+            Arrays.fill(number, NONE);
+            vertex = new int[n];
+            parent = new int[n];
+            // next becomes the position of the next edge to follow
+            System.arraycopy(start, 0, next, 0, n);
+            int[] stack = new int[n];
+            int depth = 0;
+            number[0] = 0;
+            vertex[0] = 0;
+            reached = 1;
+            stack[depth++] = 0;
+            while (depth > 0) {
+                int v = stack[depth - 1];
+                if (next[v] == start[v + 1]) {
+                    depth--;
+                    continue;
+                }
+                int w = successors[next[v]++];
+                if (number[w] == NONE) {
+                    parent[reached] = number[v];
+                    number[w] = reached;
+                    vertex[reached++] = w;
+                    stack[depth++] = w;
+                }
+            }
+        }
+
+        /*
+         * Lengauer and Tarjan, "A Fast Algorithm for Finding Dominators in a
+         * Flowgraph", with path compression but without balanced linking.
+         * Returns the number of the immediate dominator by number.
+         */
+        private int[] computeDominators() {
+            int[] semi = new int[reached];
+            int[] label = new int[reached];
+            int[] ancestor = new int[reached];
+            int[] idom = new int[reached];
+            int[] bucket = new int[reached];
+            int[] nextInBucket = new int[reached];
+            int[] path = new int[reached];
+            for (int k = 0; k < reached; k++) {
+                semi[k] = k;
+                label[k] = k;
+            }
+            Arrays.fill(ancestor, NONE);
+            Arrays.fill(bucket, NONE);
+
+            for (int w = reached - 1; w > 0; w--) {
+                int index = vertex[w] - 1;
+                if (rooted.get(index)) {
+                    semi[w] = 0;
+                }
+                for (int j = refererStart[index]; j < refererStart[index + 1]; j++) {
+                    if (weakEdges.get(j)) {
+                        continue;
+                    }
+                    int v = number[refererIndices[j] + 1];
+                    if (v != NONE) {
+                        int u = eval(v, ancestor, label, semi, path);
+                        if (semi[u] < semi[w]) {
+                            semi[w] = semi[u];
+                        }
+                    }
+                }
+                nextInBucket[w] = bucket[semi[w]];
+                bucket[semi[w]] = w;
+                int p = parent[w];
+                ancestor[w] = p;
+                for (int v = bucket[p]; v != NONE; v = nextInBucket[v]) {
+                    int u = eval(v, ancestor, label, semi, path);
+                    idom[v] = semi[u] < semi[v] ? u : p;
+                }
+                bucket[p] = NONE;
+            }
+            for (int w = 1; w < reached; w++) {
+                if (idom[w] != semi[w]) {
+                    idom[w] = idom[idom[w]];
+                }
+            }
+            idom[0] = 0;
+            return idom;
+        }
+
+        /*
+         * The vertex with the smallest semidominator on the path from v up to
+         * the top of its tree in the forest built so far.  The path is
+         * compressed iteratively, chains of objects can be very long.
+         */
+        private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] path) {
+            if (ancestor[v] == NONE) {
+                return v;
+            }
+            int depth = 0;
+            int x = v;
+            while (ancestor[ancestor[x]] != NONE) {
+                path[depth++] = x;
+                x = ancestor[x];
+            }
+            while (depth > 0) {
+                x = path[--depth];
+                int a = ancestor[x];
+                if (semi[label[a]] < semi[label[x]]) {
+                    label[x] = label[a];
+                }
+                ancestor[x] = ancestor[a];
+            }
+            return label[v];
+        }
+
+        /*
+         * Walks the dominator tree, counting an object for its class unless
+         * an instance of the same class dominates it.
+         */
+        private long[] retainedSizesByClass(int[] idom, long[] retainedSizes, int[] classOf) {
+            int[] childStart = new int[reached + 1];
+            for (int k = 1; k < reached; k++) {
+                childStart[idom[k] + 1]++;
+            }
+            for (int k = 0; k < reached; k++) {
+                childStart[k + 1] += childStart[k];
+            }
+            int[] next = Arrays.copyOf(childStart, reached);
+            int[] children = new int[reached];
+            for (int k = 1; k < reached; k++) {
+                children[next[idom[k]]++] = k;
+            }
+
+            long[] byClass = new long[count];
+            int[] active = new int[count];
+            System.arraycopy(childStart, 0, next, 0, reached);
+            int[] stack = new int[reached];
+            int depth = 0;
+            stack[depth++] = 0;
+            while (depth > 0) {
+                int k = stack[depth - 1];
+                if (next[k] == childStart[k + 1]) {
+                    depth--;
+                    if (k > 0 && classOf[vertex[k] - 1] != NONE) {
+                        active[classOf[vertex[k] - 1]]--;
+                    }
+                    continue;
+                }
+                int child = children[next[k]++];
+                int index = vertex[child] - 1;
+                int clazz = classOf[index];
+                if (clazz != NONE && active[clazz]++ == 0) {
+                    byClass[clazz] += retainedSizes[index];
+                }
+                stack[depth++] = child;
+            }
+            return byClass;
+        }
+    }
+}
@@ -37,7 +37,9 @@ import java.util.Vector;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.ReadBuffer;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.CompositeEnumeration;
 
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.NoSuchElementException;
 
 /**
  *
@@ -66,8 +68,10 @@ public class JavaClass extends JavaHeapObject {
     // my subclasses
     private JavaClass[] subclasses = EMPTY_CLASS_ARRAY;
 
-    // my instances
-    private Vector<JavaHeapObject> instances = new Vector<JavaHeapObject>();
+    private static final int[] EMPTY_INSTANCE_ARRAY = new int[0];
+    // my instances, as indices into the object index of my snapshot
+    private int[] instances = EMPTY_INSTANCE_ARRAY;
+    private int instancesCount;
 
     // Who I belong to.  Set on resolve.
     private Snapshot mySnapshot;
@@ -130,7 +134,7 @@ public class JavaClass extends JavaHeapObject {
         for (int i = 0; i < statics.length; i++) {
             statics[i].resolve(this, snapshot);
         }
-        snapshot.getJavaLangClass().addInstance(this);
+        snapshot.getJavaLangClass().addInstance(getIndex());
         super.resolve(snapshot);
         return;
     }
@@ -233,14 +237,14 @@ public class JavaClass extends JavaHeapObject {
 
     public Enumeration<JavaHeapObject> getInstances(boolean includeSubclasses) {
         if (includeSubclasses) {
-            Enumeration<JavaHeapObject> res = instances.elements();
+            Enumeration<JavaHeapObject> res = instanceElements();
             for (int i = 0; i < subclasses.length; i++) {
                 res = new CompositeEnumeration(res,
                               subclasses[i].getInstances(true));
             }
             return res;
         } else {
-            return instances.elements();
+            return instanceElements();
         }
     }
 
@@ -248,7 +252,7 @@ public class JavaClass extends JavaHeapObject {
      * @return a count of the instances of this class
      */
     public int getInstancesCount(boolean includeSubclasses) {
-        int result = instances.size();
+        int result = instancesCount;
         if (includeSubclasses) {
             for (int i = 0; i < subclasses.length; i++) {
                 result += subclasses[i].getInstancesCount(includeSubclasses);
@@ -365,7 +369,7 @@ public class JavaClass extends JavaHeapObject {
             JavaField f = statics[i].getField();
             if (f.hasId()) {
                 JavaThing other = statics[i].getValue();
-                if (other == target) {
+                if (target.equals(other)) {
                     return "static field " + f.getName();
                 }
             }
@@ -387,7 +391,7 @@ public class JavaClass extends JavaHeapObject {
      *          arrays.
      */
     public long getTotalInstanceSize() {
-        int count = instances.size();
+        int count = instancesCount;
         if (count == 0 || !isArray()) {
             return count * instanceSize;
         }
@@ -396,7 +400,7 @@ public class JavaClass extends JavaHeapObject {
         // get the size of each instance and sum it
         long result = 0;
         for (int i = 0; i < count; i++) {
-            JavaThing t = (JavaThing) instances.elementAt(i);
+            JavaThing t = mySnapshot.getObjectAt(instances[i]);
             result += t.getSize();
         }
         return result;
@@ -473,8 +477,11 @@ public class JavaClass extends JavaHeapObject {
         return mySnapshot;
     }
 
-    void addInstance(JavaHeapObject inst) {
-        instances.addElement(inst);
+    void addInstance(int index) {
+        if (instancesCount == instances.length) {
+            instances = Arrays.copyOf(instances, Math.max(4, instancesCount * 2));
+        }
+        instances[instancesCount++] = index;
     }
 
     // Internals only below this point
@@ -491,11 +498,29 @@ public class JavaClass extends JavaHeapObject {
         for (int i = 0; i < subclasses.length; i++) {
             subclasses[i].addSubclassInstances(v);
         }
-        for (int i = 0; i < instances.size(); i++) {
-            v.addElement(instances.elementAt(i));
+        for (int i = 0; i < instancesCount; i++) {
+            v.addElement(mySnapshot.getObjectAt(instances[i]));
         }
     }
 
+    private Enumeration<JavaHeapObject> instanceElements() {
+        return new Enumeration<JavaHeapObject>() {
+
+            private int num = 0;
+
+            public boolean hasMoreElements() {
+                return num < instancesCount;
+            }
+
+            public JavaHeapObject nextElement() {
+                if (num >= instancesCount) {
+                    throw new NoSuchElementException();
+                }
+                return mySnapshot.getObjectAt(instances[num++]);
+            }
+        };
+    }
+
     private void addSubclass(JavaClass sub) {
         JavaClass newValue[] = new JavaClass[subclasses.length + 1];
         System.arraycopy(subclasses, 0, newValue, 0, subclasses.length);
@@ -33,9 +33,6 @@
 package com.redhat.thermostat.vm.heap.analysis.hat.hprof.model;
 
 import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
-
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
 
 
@@ -54,15 +51,12 @@ import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
 public abstract class JavaHeapObject extends JavaThing {
 
     //
-    // Who we refer to.  This is heavily optimized for space, because it's
-    // well worth trading a bit of speed for less swapping.
-    // referers and referersLen go through two phases:  Building and
-    // resolved.  When building, referers might have duplicates, but can
-    // be appended to.  When resolved, referers has no duplicates or
-    // empty slots.
+    // Our position in the object index of the snapshot, -1 if we are not
+    // part of one.  Who refers to us, our root and our allocation site
+    // are kept by the snapshot under this index, so that objects can be
+    // created on demand and thrown away again.
     //
-    private JavaThing[] referers = null;
-    private int referersLen = 0;        // -1 when resolved
+    private int index = -1;
 
     public abstract JavaClass getClazz();
     public abstract int getSize();
@@ -79,26 +73,12 @@ public abstract class JavaHeapObject extends JavaThing {
         }
     }
 
-    //
-    //  Eliminate duplicates from referers, and size the array exactly.
-    // This sets us up to answer queries.  See the comments around the
-    // referers data member for details.
-    //
-    void setupReferers() {
-        if (referersLen > 1) {
-            // Copy referers to map, screening out duplicates
-            Map<JavaThing, JavaThing> map = new HashMap<JavaThing, JavaThing>();
-            for (int i = 0; i < referersLen; i++) {
-                if (map.get(referers[i]) == null) {
-                    map.put(referers[i], referers[i]);
-                }
-            }
-
-            // Now copy into the array
-            referers = new JavaThing[map.size()];
-            map.keySet().toArray(referers);
-        }
-        referersLen = -1;
+    final int getIndex() {
+        return index;
+    }
+
+    final void setIndex(int index) {
+        this.index = index;
     }
 
 
@@ -136,20 +116,6 @@ public abstract class JavaHeapObject extends JavaThing {
         v.visit(getClazz());
     }
 
-    void addReferenceFrom(JavaHeapObject other) {
-        if (referersLen == 0) {
-            referers = new JavaThing[1];        // It was null
-        } else if (referersLen == referers.length) {
-            JavaThing[] copy = new JavaThing[(3 * (referersLen + 1)) / 2];
-            System.arraycopy(referers, 0, copy, 0, referersLen);
-            referers = copy;
-        }
-        referers[referersLen++] = other;
-        // We just append to referers here.  Measurements have shown that
-        // around 10% to 30% are duplicates, so it's better to just append
-        // blindly and screen out all the duplicates at once.
-    }
-
     void addReferenceFromRoot(Root r) {
         getClazz().addReferenceFromRoot(r, this);
     }
@@ -168,21 +134,7 @@ public abstract class JavaHeapObject extends JavaThing {
      * @return an Enumeration of JavaHeapObject instances
      */
     public Enumeration<JavaThing> getReferers() {
-        if (referersLen != -1) {
-            throw new RuntimeException("not resolved: " + getIdString());
-        }
-        return new Enumeration<JavaThing>() {
-
-            private int num = 0;
-
-            public boolean hasMoreElements() {
-                return referers != null && num < referers.length;
-            }
-
-            public JavaThing nextElement() {
-                return referers[num++];
-            }
-        };
+        return getClazz().getSnapshot().getReferers(this);
     }
 
     /**
@@ -56,6 +56,39 @@ public abstract class JavaLazyReadObject extends JavaHeapObject {
         return offset;
     }
 
+    /*
+     * Look up our class.  Unlike resolve(), this has no side effects on
+     * the snapshot, so it is what Snapshot uses to make an object again
+     * after its first resolve().
+     */
+    abstract void resolveClass(Snapshot snapshot);
+
+    /*
+     * The part of resolve() that the snapshot runs for many objects at
+     * once: look up our class, unless it would have to be made up.
+     * Returns false if it would, and resolve() has to be called instead.
+     */
+    abstract boolean resolveConcurrently(Snapshot snapshot);
+
+    /*
+     * The snapshot creates a new instance whenever an object is looked
+     * up, so two instances that read the same data are the same object.
+     */
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        JavaLazyReadObject other = (JavaLazyReadObject) obj;
+        return offset == other.offset && getClazz() == other.getClazz();
+    }
+
+    public int hashCode() {
+        return (int) (offset ^ (offset >>> 32));
+    }
+
     // return the length of the data for this object
     protected final int getValueLength() {
         try {
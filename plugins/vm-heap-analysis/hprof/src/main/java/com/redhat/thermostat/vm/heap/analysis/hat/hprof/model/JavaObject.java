@@ -60,6 +60,18 @@ public class JavaObject extends JavaLazyReadObject {
         if (clazz instanceof JavaClass) {
             return;
         }
+        resolveClass(snapshot);
+
+        // while resolving, parse fields in verbose mode.
+        // but, getFields calls parseFields in non-verbose mode
+        // to avoid printing warnings repeatedly.
+        parseFields(getValue(), true);
+
+        getClazz().addInstance(getIndex());
+        super.resolve(snapshot);
+    }
+
+    void resolveClass(Snapshot snapshot) {
         if (clazz instanceof Number) {
             long classID = getIdValue((Number)clazz);
             clazz = snapshot.findThing(classID);
@@ -81,16 +93,17 @@ public class JavaObject extends JavaLazyReadObject {
             throw new InternalError("should not reach here");
         }
 
-        JavaClass cl = (JavaClass) clazz;
-        cl.resolve(snapshot);
+        ((JavaClass) clazz).resolve(snapshot);
+    }
 
-        // while resolving, parse fields in verbose mode.
-        // but, getFields calls parseFields in non-verbose mode
-        // to avoid printing warnings repeatedly.
+    boolean resolveConcurrently(Snapshot snapshot) {
+        JavaClass cl = snapshot.findClassById(getIdValue((Number) clazz));
+        if (cl == null) {
+            return false;
+        }
+        clazz = cl;
         parseFields(getValue(), true);
-
-        cl.addInstance(this);
-        super.resolve(snapshot);
+        return true;
     }
 
     /**
@@ -164,7 +177,7 @@ public class JavaObject extends JavaLazyReadObject {
                 //      implementation that is undesirable.
                 JavaThing[] flds = getFields();
                 for (int i = 0; i < flds.length; i++) {
-                    if (i != referentFieldIndex && flds[i] == other) {
+                    if (i != referentFieldIndex && other.equals(flds[i])) {
                         return false;
                     }
                 }
@@ -181,7 +194,7 @@ public class JavaObject extends JavaLazyReadObject {
     public String describeReferenceTo(JavaThing target, Snapshot ss) {
         JavaThing[] flds = getFields();
         for (int i = 0; i < flds.length; i++) {
-            if (flds[i] == target) {
+            if (target.equals(flds[i])) {
                 JavaField f = getClazz().getFieldForInstance(i);
                 return "field " + f.getName();
             }
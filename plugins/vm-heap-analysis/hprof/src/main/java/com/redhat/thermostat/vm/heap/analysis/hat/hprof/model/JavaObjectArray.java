@@ -56,6 +56,12 @@ public class JavaObjectArray extends JavaLazyReadObject {
         if (clazz instanceof JavaClass) {
             return;
         }
+        resolveClass(snapshot);
+        getClazz().addInstance(getIndex());
+        super.resolve(snapshot);
+    }
+
+    void resolveClass(Snapshot snapshot) {
         long classID = getIdValue((Number)clazz);
         if (snapshot.isNewStyleArrayClass()) {
             // Modern heap dumps do this
@@ -79,8 +85,19 @@ public class JavaObjectArray extends JavaLazyReadObject {
         if (!(clazz instanceof JavaClass)) {
             clazz = snapshot.getOtherArrayType();
         }
-        ((JavaClass)clazz).addInstance(this);
-        super.resolve(snapshot);
+    }
+
+    boolean resolveConcurrently(Snapshot snapshot) {
+        if (!snapshot.isNewStyleArrayClass()) {
+            // the array class may have to be made up
+            return false;
+        }
+        JavaClass cl = snapshot.findClassById(getIdValue((Number) clazz));
+        if (cl == null) {
+            return false;
+        }
+        clazz = cl;
+        return true;
     }
 
     public JavaThing[] getValues() {
@@ -130,7 +147,7 @@ public class JavaObjectArray extends JavaLazyReadObject {
     public String describeReferenceTo(JavaThing target, Snapshot ss) {
         JavaThing[] elements = getElements();
         for (int i = 0; i < elements.length; i++) {
-            if (elements[i] == target) {
+            if (target.equals(elements[i])) {
                 return "Element " + i + " of " + this;
             }
         }
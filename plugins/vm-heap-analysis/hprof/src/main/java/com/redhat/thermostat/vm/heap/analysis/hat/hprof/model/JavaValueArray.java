@@ -162,13 +162,22 @@ public class JavaValueArray extends JavaLazyReadObject
         if (clazz instanceof JavaClass) {
             return;
         }
+        resolveClass(snapshot);
+        getClazz().addInstance(getIndex());
+        super.resolve(snapshot);
+    }
+
+    void resolveClass(Snapshot snapshot) {
         byte elementSig = getElementType();
         clazz = snapshot.findClass(arrayTypeName(elementSig));
         if (clazz == null) {
             clazz = snapshot.getArrayClass("" + ((char) elementSig));
         }
-        getClazz().addInstance(this);
-        super.resolve(snapshot);
+    }
+
+    boolean resolveConcurrently(Snapshot snapshot) {
+        clazz = snapshot.findClass(arrayTypeName(getElementType()));
+        return clazz != null;
     }
 
     public int getLength() {
@@ -32,10 +32,16 @@
 
 package com.redhat.thermostat.vm.heap.analysis.hat.hprof.model;
 
+import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.ReadBuffer;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.LongIntHashMap;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
 
 /**
@@ -57,12 +63,45 @@ public class Snapshot implements AutoCloseable {
     private static final JavaField[] EMPTY_FIELD_ARRAY = new JavaField[0];
     private static final JavaStatic[] EMPTY_STATIC_ARRAY = new JavaStatic[0];
 
-    // all heap objects
-    private Hashtable<Number, JavaHeapObject> heapObjects =
-                 new Hashtable<Number, JavaHeapObject>();
-
-    private Hashtable<Number, JavaClass> fakeClasses =
-                 new Hashtable<Number, JavaClass>();
+    //
+    // All heap objects.  Only classes are kept as Java objects.  Every
+    // other object is remembered by where its record starts in the dump
+    // and is read again whenever it is looked up, so that the size of the
+    // snapshot is a few primitives per object rather than a graph of
+    // objects at least as large as the heap that was dumped.
+    //
+    // An object's index is its position in objectEntries.  Each entry
+    // holds the kind of the object in its top byte and the file offset
+    // of its record (for classes: the position in heapClasses) in the
+    // remaining bits.  Primitive arrays use their element signature as
+    // their kind.
+    //
+    private static final int KIND_SHIFT = 56;
+    private static final long OFFSET_MASK = (1L << KIND_SHIFT) - 1;
+    private static final byte KIND_CLASS = 1;
+    // classes made up for analysis that have no ID, see addFakeClass()
+    private static final byte KIND_FAKE_CLASS = 2;
+    private static final byte KIND_OBJECT = 3;
+    private static final byte KIND_OBJECT_ARRAY = 4;
+
+    // number of consecutive objects resolve() hands to one thread at a time
+    private static final int RESOLVE_CHUNK = 4096;
+
+    // maps object id to index
+    private LongIntHashMap objectIndex = new LongIntHashMap();
+    private long[] objectEntries = new long[1024];
+    private int objectCount;
+    private List<JavaClass> heapClasses = new ArrayList<JavaClass>();
+
+    // Who refers to each object, by index.  The referers of the object
+    // with index i are refererIndices[refererStart[i]] up to (excluding)
+    // refererIndices[refererStart[i + 1]].  Both are null if references
+    // were not calculated.
+    private int[] refererStart;
+    private int[] refererIndices;
+
+    // true once resolve() is done
+    private boolean resolved;
 
     // all Roots in this Snapshot
     private Vector<Root> roots = new Vector<Root>();
@@ -71,15 +110,14 @@ public class Snapshot implements AutoCloseable {
     private Map<String, JavaClass> classes =
                  new TreeMap<String, JavaClass>();
 
-    // new objects relative to a baseline - lazily initialized
-    private volatile Map<JavaHeapObject, Boolean> newObjects;
+    // indices of new objects relative to a baseline - lazily initialized
+    private volatile BitSet newObjects;
 
-    // allocation site traces for all objects - lazily initialized
-    private volatile Map<JavaHeapObject, StackTrace> siteTraces;
+    // allocation site traces by object index - lazily initialized
+    private volatile Map<Integer, StackTrace> siteTraces;
 
-    // object-to-Root map for all objects
-    private Map<JavaHeapObject, Root> rootsMap =
-                 new HashMap<JavaHeapObject, Root>();
+    // object index to the index of its most interesting Root
+    private LongIntHashMap rootsMap = new LongIntHashMap();
 
     // soft cache of finalizeable objects - lazily initialized
     private SoftReference<Vector<?>> finalizablesCache;
@@ -127,16 +165,23 @@ public class Snapshot implements AutoCloseable {
         readBuf = buf;
     }
 
-    public void setSiteTrace(JavaHeapObject obj, StackTrace trace) {
+    /**
+     * Record where the object with the given id, which must have been
+     * added already, was allocated.
+     */
+    public void setSiteTrace(long id, StackTrace trace) {
         if (trace != null && trace.getFrames().length != 0) {
-            initSiteTraces();
-            siteTraces.put(obj, trace);
+            int index = objectIndex.get(toKey(id));
+            if (index != LongIntHashMap.NO_VALUE) {
+                initSiteTraces();
+                siteTraces.put(index, trace);
+            }
         }
     }
 
     public StackTrace getSiteTrace(JavaHeapObject obj) {
         if (siteTraces != null) {
-            return siteTraces.get(obj);
+            return siteTraces.get(obj.getIndex());
         } else {
             return null;
         }
@@ -163,8 +208,28 @@ public class Snapshot implements AutoCloseable {
         return minimumObjectSize;
     }
 
-    public void addHeapObject(long id, JavaHeapObject ho) {
-        heapObjects.put(makeId(id), ho);
+    /**
+     * Add the instance whose HPROF_GC_INSTANCE_DUMP record starts at
+     * offset.
+     */
+    public void addJavaObject(long id, long offset) {
+        addEntry(id, KIND_OBJECT, offset);
+    }
+
+    /**
+     * Add the object array whose HPROF_GC_OBJ_ARRAY_DUMP record starts
+     * at offset.
+     */
+    public void addJavaObjectArray(long id, long offset) {
+        addEntry(id, KIND_OBJECT_ARRAY, offset);
+    }
+
+    /**
+     * Add the primitive array whose HPROF_GC_PRIM_ARRAY_DUMP record
+     * starts at offset.
+     */
+    public void addJavaValueArray(long id, byte elementSignature, long offset) {
+        addEntry(id, elementSignature, offset);
     }
 
     public void addRoot(Root r) {
@@ -173,7 +238,7 @@ public class Snapshot implements AutoCloseable {
     }
 
     public void addClass(long id, JavaClass c) {
-        addHeapObject(id, c);
+        addClassEntry(id, KIND_CLASS, c);
         putInClassesMap(c);
     }
 
@@ -200,7 +265,7 @@ public class Snapshot implements AutoCloseable {
         JavaClass c = new JavaClass(name, 0, 0, 0, 0, fields,
                                  EMPTY_STATIC_ARRAY, instSize);
         // Add the class
-        addFakeClass(makeId(classID), c);
+        addFakeClass(classID, c);
         return c;
     }
 
@@ -216,12 +281,76 @@ public class Snapshot implements AutoCloseable {
     }
 
     //
-    // Used in the body of resolve()
+    // Used in the body of resolve().  Visits everything an object refers
+    // to twice:  first to count the references to each object, then to
+    // record them at the next free place for each object.  Many threads
+    // do this at once, each with its own visitor.
     //
     private static class MyVisitor extends AbstractJavaHeapObjectVisitor {
-        JavaHeapObject t;
+        int t;
+        final AtomicIntegerArray counts;
+        final int[] referers;
+        MyVisitor(AtomicIntegerArray counts, int[] referers) {
+            this.counts = counts;
+            this.referers = referers;
+        }
         public void visit(JavaHeapObject other) {
-            other.addReferenceFrom(t);
+            int target = other.getIndex();
+            if (target < 0) {
+                return;
+            }
+            if (referers == null) {
+                counts.incrementAndGet(target + 1);
+            } else {
+                referers[counts.getAndIncrement(target)] = t;
+            }
+        }
+    }
+
+    // Work on the objects with indices from up to (excluding) to
+    private interface IndexRangeVisitor {
+        void visit(int from, int to);
+    }
+
+    // Splits a range of object indices into chunks for the threads of a pool
+    private static class IndexRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final IndexRangeVisitor visitor;
+        private final ResolveProgress progress;
+        private final int from;
+        private final int to;
+        IndexRangeTask(IndexRangeVisitor visitor, ResolveProgress progress, int from, int to) {
+            this.visitor = visitor;
+            this.progress = progress;
+            this.from = from;
+            this.to = to;
+        }
+        protected void compute() {
+            if (to - from <= RESOLVE_CHUNK) {
+                visitor.visit(from, to);
+                progress.advance(to - from);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new IndexRangeTask(visitor, progress, from, mid),
+                          new IndexRangeTask(visitor, progress, mid, to));
+            }
+        }
+    }
+
+    // Counts the objects done by all passes of resolve()
+    private static class ResolveProgress {
+        private final ResolveProgressListener listener;
+        private final long total;
+        private final AtomicLong done = new AtomicLong();
+        ResolveProgress(ResolveProgressListener listener, long total) {
+            this.listener = listener;
+            this.total = total;
+        }
+        void advance(int count) {
+            long sofar = done.addAndGet(count);
+            if (listener != null && count > 0) {
+                listener.resolveProgress(sofar, total);
+            }
         }
     }
 
@@ -229,6 +358,17 @@ public class Snapshot implements AutoCloseable {
      * Called after reading complete, to initialize the structure
      */
     public void resolve(boolean calculateRefs) {
+        resolve(calculateRefs, null);
+    }
+
+    /**
+     * Called after reading complete, to initialize the structure.  The
+     * objects are resolved, and the references to them calculated, by
+     * as many threads as there are processors.
+     *
+     * @param listener told about the progress made, or null
+     */
+    public void resolve(boolean calculateRefs, ResolveProgressListener listener) {
         // First, resolve the classes.  All classes must be resolved before
         // we try any objects, because the objects use classes in their
         // resolution.
@@ -254,57 +394,130 @@ public class Snapshot implements AutoCloseable {
             addFakeClass(javaLangClassLoader);
         }
 
-        for (JavaHeapObject t : heapObjects.values()) {
-            if (t instanceof JavaClass) {
-                t.resolve(this);
-            }
+        // Resolving may add fake classes
+        for (int i = 0; i < heapClasses.size(); i++) {
+            heapClasses.get(i).resolve(this);
         }
 
         // Now, resolve everything else.
-        for (JavaHeapObject t : heapObjects.values()) {
-            if (!(t instanceof JavaClass)) {
-                t.resolve(this);
-            }
-        }
-
-        heapObjects.putAll(fakeClasses);
-        fakeClasses.clear();
-
-        weakReferenceClass = findClass("java.lang.ref.Reference");
-        referentFieldIndex = 0;
-        if (weakReferenceClass != null)  {
-            JavaField[] fields = weakReferenceClass.getFieldsForInstance();
-            for (int i = 0; i < fields.length; i++) {
-                if ("referent".equals(fields[i].getName())) {
-                    referentFieldIndex = i;
-                    break;
+        int count = objectCount;
+        ResolveProgress progress = new ResolveProgress(listener,
+                (calculateRefs ? 4L : 1L) * count);
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            resolveObjects(pool, progress, count);
+
+            weakReferenceClass = findClass("java.lang.ref.Reference");
+            referentFieldIndex = 0;
+            if (weakReferenceClass != null)  {
+                JavaField[] fields = weakReferenceClass.getFieldsForInstance();
+                for (int i = 0; i < fields.length; i++) {
+                    if ("referent".equals(fields[i].getName())) {
+                        referentFieldIndex = i;
+                        break;
+                    }
                 }
             }
-        }
 
-        if (calculateRefs) {
-            calculateReferencesToObjects();
-        }
-        int count = 0;
-        for (JavaHeapObject t : heapObjects.values()) {
-            t.setupReferers();
-            ++count;
+            if (calculateRefs) {
+                calculateReferencesToObjects(pool, progress, count);
+            }
+        } finally {
+            pool.shutdown();
         }
+        resolved = true;
 
         // to ensure that Iterator.remove() on getClasses()
         // result will throw exception..
         classes = Collections.unmodifiableMap(classes);
     }
 
-    private void calculateReferencesToObjects() {
-        int count = 0;
-        MyVisitor visitor = new MyVisitor();
-        for (JavaHeapObject t : heapObjects.values()) {
-            visitor.t = t;
-            // call addReferenceFrom(t) on all objects t references:
-            t.visitReferencedObjects(visitor);
-            ++count;
+    private void resolveObjects(ForkJoinPool pool, ResolveProgress progress, int count) {
+        // Look up the classes of all objects in parallel.  Nothing may be
+        // added to the snapshot meanwhile, so objects whose class has to
+        // be made up are left for below.
+        final int[] classIndices = new int[count];
+        pool.invoke(new IndexRangeTask(new IndexRangeVisitor() {
+            public void visit(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    if (!isClass(i)) {
+                        JavaLazyReadObject obj = newObjectAt(i);
+                        classIndices[i] = obj.resolveConcurrently(Snapshot.this)
+                                ? obj.getClazz().getIndex() : -1;
+                    }
+                }
+            }
+        }, progress, 0, count));
+
+        // Add the instances to their classes in index order, as resolving
+        // one object after the other does.
+        for (int i = 0; i < count; i++) {
+            if (isClass(i)) {
+                continue;
+            }
+            if (classIndices[i] < 0) {
+                newObjectAt(i).resolve(this);
+            } else {
+                ((JavaClass) getObjectAt(classIndices[i])).addInstance(i);
+                if (siteTraces != null) {
+                    StackTrace trace = siteTraces.get(i);
+                    if (trace != null) {
+                        trace.resolve(this);
+                    }
+                }
+            }
+        }
+    }
+
+    private void calculateReferencesToObjects(ForkJoinPool pool, ResolveProgress progress, int count) {
+        final AtomicIntegerArray counts = new AtomicIntegerArray(count + 1);
+        pool.invoke(new IndexRangeTask(new IndexRangeVisitor() {
+            public void visit(int from, int to) {
+                visitReferencesToObjects(new MyVisitor(counts, null), from, to);
+            }
+        }, progress, 0, count));
+        final int[] start = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            start[i + 1] = start[i] + counts.get(i + 1);
         }
+        final AtomicIntegerArray next = new AtomicIntegerArray(start);
+        final int[] referers = new int[start[count]];
+        pool.invoke(new IndexRangeTask(new IndexRangeVisitor() {
+            public void visit(int from, int to) {
+                visitReferencesToObjects(new MyVisitor(next, referers), from, to);
+            }
+        }, progress, 0, count));
+
+        // Sort the referers of each object and drop the duplicates.
+        // Measurements have shown that around 10% to 30% of them are.
+        final int[] sizes = new int[count];
+        pool.invoke(new IndexRangeTask(new IndexRangeVisitor() {
+            public void visit(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    int first = start[i];
+                    int end = start[i + 1];
+                    Arrays.sort(referers, first, end);
+                    int size = first;
+                    for (int j = first; j < end; j++) {
+                        if (j == first || referers[j] != referers[size - 1]) {
+                            referers[size++] = referers[j];
+                        }
+                    }
+                    sizes[i] = size - first;
+                }
+            }
+        }, progress, 0, count));
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int first = start[i];
+            start[i] = size;
+            System.arraycopy(referers, first, referers, size, sizes[i]);
+            size += sizes[i];
+        }
+        start[count] = size;
+        refererStart = start;
+        refererIndices = Arrays.copyOf(referers, size);
+
         for (Root r : roots) {
             r.resolve(this);
             JavaHeapObject t = findThing(r.getId());
@@ -314,9 +527,17 @@ public class Snapshot implements AutoCloseable {
         }
     }
 
+    private void visitReferencesToObjects(MyVisitor visitor, int from, int to) {
+        for (int i = from; i < to; i++) {
+            visitor.t = i;
+            getObjectAt(i).visitReferencedObjects(visitor);
+        }
+    }
+
     public void markNewRelativeTo(Snapshot baseline) {
         hasNewSet = true;
-        for (JavaHeapObject t : heapObjects.values()) {
+        for (Enumeration<JavaHeapObject> e = getThings(); e.hasMoreElements(); ) {
+            JavaHeapObject t = e.nextElement();
             boolean isNew;
             long thingID = t.getId();
             if (thingID == 0L || thingID == -1L) {
@@ -333,15 +554,38 @@ public class Snapshot implements AutoCloseable {
         }
     }
 
+    /**
+     * @return all heap objects.  Objects other than classes are created
+     *          as the enumeration reaches them, and are not kept by the
+     *          snapshot.
+     */
     public Enumeration<JavaHeapObject> getThings() {
-        return heapObjects.elements();
-    }
+        return new Enumeration<JavaHeapObject>() {
+
+            private int next = nextThing(0);
+
+            public boolean hasMoreElements() {
+                return next < objectCount;
+            }
 
+            public JavaHeapObject nextElement() {
+                if (next >= objectCount) {
+                    throw new NoSuchElementException();
+                }
+                JavaHeapObject t = getObjectAt(next);
+                next = nextThing(next + 1);
+                return t;
+            }
+        };
+    }
 
+    /**
+     * @return the object with the given id, or null.  Objects other than
+     *          classes are read from the dump again on every call.
+     */
     public JavaHeapObject findThing(long id) {
-        Number idObj = makeId(id);
-        JavaHeapObject jho = heapObjects.get(idObj);
-        return jho != null? jho : fakeClasses.get(idObj);
+        int index = objectIndex.get(toKey(id));
+        return index == LongIntHashMap.NO_VALUE ? null : getObjectAt(index);
     }
 
     public JavaHeapObject findThing(String id) {
@@ -414,17 +658,16 @@ public class Snapshot implements AutoCloseable {
 
     public ReferenceChain[]
     rootsetReferencesTo(JavaHeapObject target, boolean includeWeak) {
-        Vector<ReferenceChain> fifo = new Vector<ReferenceChain>();  // This is slow... A real fifo would help
+        ArrayDeque<ReferenceChain> fifo = new ArrayDeque<ReferenceChain>();
             // Must be a fifo to go breadth-first
-        Hashtable<JavaHeapObject, JavaHeapObject> visited = new Hashtable<JavaHeapObject, JavaHeapObject>();
-        // Objects are added here right after being added to fifo.
+        BitSet visited = new BitSet(objectCount);
+        // Object indices are set here right after being added to fifo.
         Vector<ReferenceChain> result = new Vector<ReferenceChain>();
-        visited.put(target, target);
-        fifo.addElement(new ReferenceChain(target, null));
+        visited.set(target.getIndex());
+        fifo.add(new ReferenceChain(target, null));
 
-        while (fifo.size() > 0) {
-            ReferenceChain chain = fifo.elementAt(0);
-            fifo.removeElementAt(0);
+        while (!fifo.isEmpty()) {
+            ReferenceChain chain = fifo.remove();
             JavaHeapObject curr = chain.getObj();
             if (curr.getRoot() != null) {
                 result.addElement(chain);
@@ -434,10 +677,10 @@ public class Snapshot implements AutoCloseable {
             Enumeration<JavaThing> referers = curr.getReferers();
             while (referers.hasMoreElements()) {
                 JavaHeapObject t = (JavaHeapObject) referers.nextElement();
-                if (t != null && !visited.containsKey(t)) {
+                if (t != null && !visited.get(t.getIndex())) {
                     if (includeWeak || !t.refersOnlyWeaklyTo(this, curr)) {
-                        visited.put(t, t);
-                        fifo.addElement(new ReferenceChain(t, chain));
+                        visited.set(t.getIndex());
+                        fifo.add(new ReferenceChain(t, chain));
                     }
                 }
             }
@@ -480,16 +723,70 @@ public class Snapshot implements AutoCloseable {
 
     // package privates
     void addReferenceFromRoot(Root r, JavaHeapObject obj) {
-        Root root = rootsMap.get(obj);
-        if (root == null) {
-            rootsMap.put(obj, r);
+        int index = obj.getIndex();
+        if (index < 0) {
+            return;
+        }
+        int rootIndex = rootsMap.get(index);
+        if (rootIndex == LongIntHashMap.NO_VALUE) {
+            rootsMap.put(index, r.getIndex());
         } else {
-            rootsMap.put(obj, root.mostInteresting(r));
+            rootsMap.put(index, getRootAt(rootIndex).mostInteresting(r).getIndex());
         }
     }
 
     Root getRoot(JavaHeapObject obj) {
-        return rootsMap.get(obj);
+        int rootIndex = rootsMap.get(obj.getIndex());
+        return rootIndex == LongIntHashMap.NO_VALUE ? null : getRootAt(rootIndex);
+    }
+
+    Enumeration<JavaThing> getReferers(JavaHeapObject obj) {
+        if (!resolved) {
+            throw new RuntimeException("not resolved: " + obj.getIdString());
+        }
+        final int index = obj.getIndex();
+        final boolean known = refererStart != null && index >= 0;
+        return new Enumeration<JavaThing>() {
+
+            private int num = known ? refererStart[index] : 0;
+            private final int end = known ? refererStart[index + 1] : 0;
+
+            public boolean hasMoreElements() {
+                return num < end;
+            }
+
+            public JavaThing nextElement() {
+                if (num >= end) {
+                    throw new NoSuchElementException();
+                }
+                return getObjectAt(refererIndices[num++]);
+            }
+        };
+    }
+
+    /**
+     * @return the object with the given index.  Objects other than classes
+     *          are created anew.
+     */
+    JavaHeapObject getObjectAt(int index) {
+        if (isClass(index)) {
+            return heapClasses.get((int) (objectEntries[index] & OFFSET_MASK));
+        }
+        JavaLazyReadObject obj = newObjectAt(index);
+        obj.resolveClass(this);
+        return obj;
+    }
+
+    /**
+     * @return the class with the given id, or null.  Unlike findThing(),
+     *          this never makes an object from the dump.
+     */
+    JavaClass findClassById(long id) {
+        int index = objectIndex.get(toKey(id));
+        if (index == LongIntHashMap.NO_VALUE || !isClass(index)) {
+            return null;
+        }
+        return heapClasses.get((int) (objectEntries[index] & OFFSET_MASK));
     }
 
     JavaClass getJavaLangClass() {
@@ -500,6 +797,35 @@ public class Snapshot implements AutoCloseable {
         return javaLangString;
     }
 
+    int getObjectCount() {
+        return objectCount;
+    }
+
+    // null if references were not calculated
+    int[] getRefererStart() {
+        return refererStart;
+    }
+
+    int[] getRefererIndices() {
+        return refererIndices;
+    }
+
+    /**
+     * @return the indices of the objects Roots refer to.  An object
+     *          several Roots refer to may appear more than once.
+     */
+    int[] getRootIndices() {
+        int[] indices = new int[roots.size()];
+        int count = 0;
+        for (Root r : roots) {
+            int index = objectIndex.get(toKey(r.getId()));
+            if (index != LongIntHashMap.NO_VALUE) {
+                indices[count++] = index;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
     JavaClass getJavaLangClassLoader() {
         return javaLangClassLoader;
     }
@@ -541,28 +867,109 @@ public class Snapshot implements AutoCloseable {
 
     void setNew(JavaHeapObject obj, boolean isNew) {
         initNewObjects();
-        if (isNew) {
-            newObjects.put(obj, Boolean.TRUE);
+        if (isNew && obj.getIndex() >= 0) {
+            newObjects.set(obj.getIndex());
         }
     }
 
     boolean isNew(JavaHeapObject obj) {
-        if (newObjects != null) {
-            return newObjects.get(obj) != null;
+        if (newObjects != null && obj.getIndex() >= 0) {
+            return newObjects.get(obj.getIndex());
         } else {
             return false;
         }
     }
 
     // Internals only below this point
-    private Number makeId(long id) {
+    private long toKey(long id) {
         if (identifierSize == 4) {
-            return (int)id;
+            return id & SMALL_ID_MASK;
         } else {
             return id;
         }
     }
 
+    private int addEntry(long id, byte kind, long offset) {
+        long entry = ((long) kind << KIND_SHIFT) | offset;
+        long key = toKey(id);
+        int index = objectIndex.get(key);
+        if (index != LongIntHashMap.NO_VALUE) {
+            // a later record for the same id replaces the earlier one
+            objectEntries[index] = entry;
+            return index;
+        }
+        index = appendEntry(entry);
+        objectIndex.put(key, index);
+        return index;
+    }
+
+    private int appendEntry(long entry) {
+        if (objectCount == objectEntries.length) {
+            objectEntries = Arrays.copyOf(objectEntries, objectCount * 2);
+        }
+        objectEntries[objectCount] = entry;
+        return objectCount++;
+    }
+
+    private void addClassEntry(long id, byte kind, JavaClass c) {
+        int pos = heapClasses.size();
+        heapClasses.add(c);
+        if (kind == KIND_FAKE_CLASS) {
+            c.setIndex(appendEntry(((long) kind << KIND_SHIFT) | pos));
+        } else {
+            c.setIndex(addEntry(id, kind, pos));
+        }
+    }
+
+    private boolean isClass(int index) {
+        int kind = (int) (objectEntries[index] >>> KIND_SHIFT);
+        return kind == KIND_CLASS || kind == KIND_FAKE_CLASS;
+    }
+
+    private int nextThing(int index) {
+        // fake classes without an id are not heap objects
+        while (index < objectCount
+                && (objectEntries[index] >>> KIND_SHIFT) == KIND_FAKE_CLASS) {
+            index++;
+        }
+        return index;
+    }
+
+    // the object with the given index, which must not be a class, before resolve
+    private JavaLazyReadObject newObjectAt(int index) {
+        long entry = objectEntries[index];
+        byte kind = (byte) (entry >>> KIND_SHIFT);
+        long offset = entry & OFFSET_MASK;
+        JavaLazyReadObject obj;
+        try {
+            switch (kind) {
+                case KIND_OBJECT:
+                    // object ID, stack trace serial number, class ID
+                    obj = new JavaObject(readId(offset + identifierSize + 4), offset);
+                    break;
+                case KIND_OBJECT_ARRAY:
+                    // object ID, stack trace serial number, length, class ID
+                    obj = new JavaObjectArray(readId(offset + identifierSize + 8), offset);
+                    break;
+                default:
+                    obj = new JavaValueArray(kind, offset);
+                    break;
+            }
+        } catch (IOException exp) {
+            throw new RuntimeException(exp);
+        }
+        obj.setIndex(index);
+        return obj;
+    }
+
+    private long readId(long offset) throws IOException {
+        if (identifierSize == 4) {
+            return ((long) readBuf.getInt(offset)) & SMALL_ID_MASK;
+        } else {
+            return readBuf.getLong(offset);
+        }
+    }
+
     private void putInClassesMap(JavaClass c) {
         String name = c.getName();
         if (classes.containsKey(name)) {
@@ -575,20 +982,22 @@ public class Snapshot implements AutoCloseable {
     }
 
     private void addFakeClass(JavaClass c) {
+        addClassEntry(-1L, KIND_FAKE_CLASS, c);
         putInClassesMap(c);
         c.resolve(this);
     }
 
-    private void addFakeClass(Number id, JavaClass c) {
-        fakeClasses.put(id, c);
-        addFakeClass(c);
+    private void addFakeClass(long id, JavaClass c) {
+        addClassEntry(id, KIND_CLASS, c);
+        putInClassesMap(c);
+        c.resolve(this);
     }
 
     private synchronized void initNewObjects() {
         if (newObjects == null) {
             synchronized (this) {
                 if (newObjects == null) {
-                    newObjects = new HashMap<JavaHeapObject, Boolean>();
+                    newObjects = new BitSet(objectCount);
                 }
             }
         }
@@ -598,7 +1007,7 @@ public class Snapshot implements AutoCloseable {
         if (siteTraces == null) {
             synchronized (this) {
                 if (siteTraces == null) {
-                    siteTraces = new HashMap<JavaHeapObject, StackTrace>();
+                    siteTraces = new HashMap<Integer, StackTrace>();
                 }
             }
         }
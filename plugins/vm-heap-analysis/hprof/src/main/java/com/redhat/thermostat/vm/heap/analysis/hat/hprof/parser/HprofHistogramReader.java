@@ -0,0 +1,703 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.ArrayTypeCodes;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.LongIntHashMap;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
+
+/**
+ * Computes the number of instances and the total shallow size of every class
+ * in an hprof heap dump in a single sequential pass, without building a
+ * {@link Snapshot}.
+ * <p>
+ * Only per-class counters and the symbol names are kept, so the memory
+ * needed depends on the number of classes in the dump rather than on the
+ * number of objects. The results match what adding up
+ * {@code JavaHeapObject.getSize()} over a resolved {@link Snapshot} of the
+ * first heap dump in the file gives.
+ * <p>
+ * The reader can also tell an {@link ObjectVisitor} about every object, so
+ * that per-object data can be gathered in the same pass.
+ */
+public class HprofHistogramReader implements ArrayTypeCodes {
+
+    /** Receives one call per class (or array type) with instances */
+    public interface Visitor {
+        void visit(String className, long instanceCount, long totalSize);
+    }
+
+    /**
+     * Receives the id and the type of every heap object.  The type can only
+     * be named with {@link HprofHistogramReader#getTypeName(int)} once the
+     * dump has been read, because a class may come after its instances.
+     */
+    public interface ObjectVisitor {
+        void visit(long id, int type) throws IOException;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_CLASS_COUNT = 4096;
+    private static final String JAVA_LANG_CLASS = "java.lang.Class";
+    private static final String OTHER_ARRAY_TYPE = "[<other>";
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    private int version;
+    private int identifierSize;
+    private int minimumObjectSize;
+
+    /* HPROF_UTF8 records: id -> offset of [length, bytes] in namePool */
+    private final LongIntHashMap nameOffsets = new LongIntHashMap();
+    private byte[] namePool = new byte[64 * 1024];
+    private int namePoolSize = 0;
+
+    /* class object id -> index into the per-class arrays below */
+    private final LongIntHashMap classIndex = new LongIntHashMap(INITIAL_CLASS_COUNT);
+    private int classCount = 0;
+    private long[] classIds = new long[INITIAL_CLASS_COUNT];
+    /* name id from HPROF_LOAD_CLASS, or NO_NAME */
+    private long[] classNameIds = new long[INITIAL_CLASS_COUNT];
+    /* order of the HPROF_GC_CLASS_DUMP, or NOT_DUMPED */
+    private int[] classDumpOrder = new int[INITIAL_CLASS_COUNT];
+    private int[] instanceSizes = new int[INITIAL_CLASS_COUNT];
+    private long[] instanceCounts = new long[INITIAL_CLASS_COUNT];
+    private long[] instanceBytes = new long[INITIAL_CLASS_COUNT];
+    /* object arrays, by the class id in the array record */
+    private long[] arrayCounts = new long[INITIAL_CLASS_COUNT];
+    private long[] arrayBytes = new long[INITIAL_CLASS_COUNT];
+    private int classDumps = 0;
+
+    /* primitive arrays, by type code */
+    private final long[] primitiveArrayCounts = new long[T_LONG + 1];
+    private final long[] primitiveArrayBytes = new long[T_LONG + 1];
+
+    private static final long NO_NAME = -1;
+    private static final int NOT_DUMPED = -1;
+
+    /*
+     * Object types as given to an ObjectVisitor: the class index, or the
+     * type code of primitive arrays, shifted left, and one of these.
+     */
+    private static final int TYPE_SHIFT = 2;
+    private static final int TYPE_INSTANCE = 0;
+    private static final int TYPE_OBJECT_ARRAY = 1;
+    private static final int TYPE_PRIMITIVE_ARRAY = 2;
+    private static final int TYPE_CLASS = 3;
+
+    private ObjectVisitor objectVisitor;
+
+    public HprofHistogramReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the heap dump in {@code heapFile} and reports its histogram to
+     * {@code visitor}.
+     */
+    public static void readFile(String heapFile, Visitor visitor) throws IOException {
+        try (InputStream in = new FileInputStream(heapFile)) {
+            new HprofHistogramReader(in).read(visitor);
+        }
+    }
+
+    /**
+     * Reads the heap dump from the stream, which must be positioned at its
+     * start, and reports its histogram to {@code visitor}. Reading stops
+     * after the first heap dump; the stream is not closed.
+     */
+    public void read(Visitor visitor) throws IOException {
+        read(visitor, null);
+    }
+
+    /**
+     * Like {@link #read(Visitor)}, and also reports every object to
+     * {@code objects} while reading.  Either visitor may be null.
+     */
+    public void read(Visitor visitor, ObjectVisitor objects) throws IOException {
+        objectVisitor = objects;
+        readHeader();
+        try {
+            readRecords();
+        } catch (EOFException e) {
+            // truncated dump: like HprofReader, report what was read so far
+        }
+        if (objectVisitor != null) {
+            // the Snapshot makes up a class object for each class that has
+            // instances but was not dumped
+            for (int i = 0; i < classCount; i++) {
+                if (classDumpOrder[i] == NOT_DUMPED && instanceCounts[i] != 0) {
+                    objectVisitor.visit(classIds[i], TYPE_CLASS);
+                }
+            }
+        }
+        if (visitor != null) {
+            report(visitor);
+        }
+    }
+
+    /**
+     * @return the class name of objects of the given type, as the
+     *          {@link Snapshot} of the dump names it.  Only valid after
+     *          the dump has been read.
+     */
+    public String getTypeName(int type) {
+        int index = type >>> TYPE_SHIFT;
+        switch (type & ((1 << TYPE_SHIFT) - 1)) {
+        case TYPE_INSTANCE:
+            return getInstanceClassName(index);
+        case TYPE_OBJECT_ARRAY:
+            return getArrayClassName(index);
+        case TYPE_PRIMITIVE_ARRAY:
+            return "[" + primitiveSignature(index);
+        default:
+            return JAVA_LANG_CLASS;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        int magic = readInt();
+        if (magic != HprofReader.MAGIC_NUMBER) {
+            throw new IOException("Unrecognized magic number: " + magic);
+        }
+        StringBuilder versionString = new StringBuilder();
+        int c;
+        while ((c = readUnsignedByte()) != 0) {
+            versionString.append((char) c);
+        }
+        versionString.append('\0');
+        version = Arrays.asList(HprofReader.VERSIONS).indexOf(versionString.toString());
+        if (version < 0) {
+            throw new IOException("Version string not recognized: " + versionString);
+        }
+        identifierSize = readInt();
+        if (identifierSize != 4 && identifierSize != 8) {
+            throw new IOException("I'm sorry, but I can't deal with an identifier size of " + identifierSize + ".  I can only deal with 4 or 8.");
+        }
+        minimumObjectSize = 2 * identifierSize;
+        /* long creationDateTimeStampInMillis = */ readLong();
+    }
+
+    private void readRecords() throws IOException {
+        while (hasMore()) {
+            int type = readUnsignedByte();
+            readInt();  // Timestamp of this record
+            long length = readInt() & 0xffffffffL;
+            switch (type) {
+            case HprofReader.HPROF_UTF8: {
+                long id = readID();
+                addName(id, (int) length - identifierSize);
+                break;
+            }
+            case HprofReader.HPROF_LOAD_CLASS: {
+                readInt();  // serial number
+                long classId = readID();
+                readInt();  // stack trace serial number
+                long nameId = readID();
+                classNameIds[getClassIndex(classId)] = nameId;
+                break;
+            }
+            case HprofReader.HPROF_HEAP_DUMP: {
+                readHeapDump(length);
+                // only the first heap dump is read, like Reader.readFile() does by default
+                return;
+            }
+            case HprofReader.HPROF_HEAP_DUMP_SEGMENT: {
+                if (version >= HprofReader.VERSION_JDK6) {
+                    readHeapDump(length);
+                } else {
+                    skip(length);
+                }
+                break;
+            }
+            case HprofReader.HPROF_HEAP_DUMP_END: {
+                if (version >= HprofReader.VERSION_JDK6) {
+                    return;
+                }
+                skip(length);
+                break;
+            }
+            default:
+                skip(length);
+            }
+        }
+    }
+
+    private void readHeapDump(long bytesLeft) throws IOException {
+        while (bytesLeft > 0) {
+            int type = readUnsignedByte();
+            bytesLeft--;
+            switch (type) {
+            case HprofReader.HPROF_GC_ROOT_UNKNOWN:
+            case HprofReader.HPROF_GC_ROOT_STICKY_CLASS:
+            case HprofReader.HPROF_GC_ROOT_MONITOR_USED:
+                bytesLeft -= skip(identifierSize);
+                break;
+            case HprofReader.HPROF_GC_ROOT_JNI_GLOBAL:
+                bytesLeft -= skip(2 * identifierSize);
+                break;
+            case HprofReader.HPROF_GC_ROOT_THREAD_OBJ:
+            case HprofReader.HPROF_GC_ROOT_JNI_LOCAL:
+            case HprofReader.HPROF_GC_ROOT_JAVA_FRAME:
+                bytesLeft -= skip(identifierSize + 8);
+                break;
+            case HprofReader.HPROF_GC_ROOT_NATIVE_STACK:
+            case HprofReader.HPROF_GC_ROOT_THREAD_BLOCK:
+                bytesLeft -= skip(identifierSize + 4);
+                break;
+            case HprofReader.HPROF_GC_CLASS_DUMP:
+                bytesLeft -= readClass();
+                break;
+            case HprofReader.HPROF_GC_INSTANCE_DUMP:
+                bytesLeft -= readInstance();
+                break;
+            case HprofReader.HPROF_GC_OBJ_ARRAY_DUMP:
+                bytesLeft -= readArray(false);
+                break;
+            case HprofReader.HPROF_GC_PRIM_ARRAY_DUMP:
+                bytesLeft -= readArray(true);
+                break;
+            default:
+                throw new IOException("Unrecognized heap dump sub-record type:  " + type);
+            }
+        }
+        if (bytesLeft != 0) {
+            skip(bytesLeft);
+        }
+    }
+
+    private int readClass() throws IOException {
+        long id = readID();
+        // stack trace serial, super class, class loader, signers,
+        // protection domain and two reserved ids
+        skip(4 + 6 * identifierSize);
+        int instanceSize = readInt();
+        int bytesRead = 7 * identifierSize + 8;
+
+        int numConstPoolEntries = readUnsignedShort();
+        bytesRead += 2;
+        for (int i = 0; i < numConstPoolEntries; i++) {
+            readUnsignedShort();    // index
+            int valueSize = valueSize((byte) readUnsignedByte());
+            skip(valueSize);
+            bytesRead += 3 + valueSize;
+        }
+
+        int numStatics = readUnsignedShort();
+        bytesRead += 2;
+        for (int i = 0; i < numStatics; i++) {
+            skip(identifierSize);   // name
+            int valueSize = valueSize((byte) readUnsignedByte());
+            skip(valueSize);
+            bytesRead += identifierSize + 1 + valueSize;
+        }
+
+        int numFields = readUnsignedShort();
+        bytesRead += 2;
+        int fieldsSize = numFields * (identifierSize + 1);
+        skip(fieldsSize);
+        bytesRead += fieldsSize;
+
+        int index = getClassIndex(id);
+        if (classDumpOrder[index] == NOT_DUMPED) {
+            classDumps++;
+        }
+        classDumpOrder[index] = classDumps;
+        instanceSizes[index] = instanceSize;
+        if (objectVisitor != null) {
+            objectVisitor.visit(id, TYPE_CLASS);
+        }
+        return bytesRead;
+    }
+
+    private int readInstance() throws IOException {
+        long id = readID();
+        skip(4);    // stack trace serial
+        long classId = readID();
+        int bytesFollowing = readInt();
+        skip(bytesFollowing);
+
+        int index = getClassIndex(classId);
+        instanceCounts[index]++;
+        instanceBytes[index] += bytesFollowing + minimumObjectSize;
+        if (objectVisitor != null) {
+            objectVisitor.visit(id, (index << TYPE_SHIFT) | TYPE_INSTANCE);
+        }
+        return 2 * identifierSize + 8 + bytesFollowing;
+    }
+
+    private long readArray(boolean isPrimitive) throws IOException {
+        long id = readID();
+        skip(4);    // stack trace serial
+        int num = readInt();
+        int bytesRead = identifierSize + 8;
+        long elementClassId;
+        if (isPrimitive) {
+            elementClassId = readUnsignedByte();
+            bytesRead++;
+        } else {
+            elementClassId = readID();
+            bytesRead += identifierSize;
+        }
+
+        int elementSize = 0;
+        if (isPrimitive || version < HprofReader.VERSION_JDK12BETA4) {
+            elementSize = primitiveElementSize(elementClassId);
+            if (version >= HprofReader.VERSION_JDK12BETA4 && elementSize == 0) {
+                throw new IOException("Unrecognized typecode:  " + elementClassId);
+            }
+        }
+        if (elementSize != 0) {
+            // Arrays can be larger than 2GB
+            long size = (long) elementSize * num;
+            skip(size);
+            primitiveArrayCounts[(int) elementClassId]++;
+            primitiveArrayBytes[(int) elementClassId] += size + minimumObjectSize;
+            if (objectVisitor != null) {
+                objectVisitor.visit(id, ((int) elementClassId << TYPE_SHIFT) | TYPE_PRIMITIVE_ARRAY);
+            }
+            return bytesRead + size;
+        } else {
+            long size = (long) num * identifierSize;
+            skip(size);
+            int index = getClassIndex(elementClassId);
+            arrayCounts[index]++;
+            arrayBytes[index] += size + minimumObjectSize;
+            if (objectVisitor != null) {
+                objectVisitor.visit(id, (index << TYPE_SHIFT) | TYPE_OBJECT_ARRAY);
+            }
+            return bytesRead + size;
+        }
+    }
+
+    private static int primitiveElementSize(long typeCode) {
+        switch ((int) typeCode) {
+        case T_BOOLEAN:
+        case T_BYTE:
+            return 1;
+        case T_CHAR:
+        case T_SHORT:
+            return 2;
+        case T_FLOAT:
+        case T_INT:
+            return 4;
+        case T_DOUBLE:
+        case T_LONG:
+            return 8;
+        default:
+            return 0;
+        }
+    }
+
+    private static char primitiveSignature(int typeCode) {
+        switch (typeCode) {
+        case T_BOOLEAN: return 'Z';
+        case T_CHAR: return 'C';
+        case T_FLOAT: return 'F';
+        case T_DOUBLE: return 'D';
+        case T_BYTE: return 'B';
+        case T_SHORT: return 'S';
+        case T_INT: return 'I';
+        case T_LONG: return 'J';
+        default: throw new AssertionError("not a primitive type code: " + typeCode);
+        }
+    }
+
+    /** size of a constant pool or static field value of the given type */
+    private int valueSize(byte type) throws IOException {
+        if (version >= HprofReader.VERSION_JDK12BETA4) {
+            if (type == HprofReader.T_CLASS) {
+                return identifierSize;
+            }
+            int size = primitiveElementSize(type);
+            if (size == 0) {
+                throw new IOException("Invalid type id of " + type);
+            }
+            return size;
+        }
+        switch (type) {
+        case '[':
+        case 'L':
+            return identifierSize;
+        case 'Z':
+        case 'B':
+            return 1;
+        case 'S':
+        case 'C':
+            return 2;
+        case 'I':
+        case 'F':
+            return 4;
+        case 'J':
+        case 'D':
+            return 8;
+        default:
+            throw new IOException("Bad value signature:  " + type);
+        }
+    }
+
+    private void report(Visitor visitor) {
+        // every class dump is a java.lang.Class instance, and so is every
+        // fake class the Snapshot makes up for instances of unknown classes
+        int javaLangClassIndex = -1;
+        for (int i = 0; i < classCount; i++) {
+            if (classDumpOrder[i] != NOT_DUMPED && JAVA_LANG_CLASS.equals(getClassName(i))
+                    && (javaLangClassIndex == -1 || classDumpOrder[i] > classDumpOrder[javaLangClassIndex])) {
+                javaLangClassIndex = i;
+            }
+        }
+        long classObjectSize = minimumObjectSize + (javaLangClassIndex == -1 ? 0 : instanceSizes[javaLangClassIndex]);
+        long classObjects = classDumps;
+
+        for (int i = 0; i < classCount; i++) {
+            if (instanceCounts[i] != 0) {
+                if (classDumpOrder[i] == NOT_DUMPED) {
+                    classObjects++;
+                }
+                visitor.visit(getInstanceClassName(i), instanceCounts[i], instanceBytes[i]);
+            }
+            if (arrayCounts[i] != 0) {
+                visitor.visit(getArrayClassName(i), arrayCounts[i], arrayBytes[i]);
+            }
+        }
+
+        for (int typeCode = 0; typeCode < primitiveArrayCounts.length; typeCode++) {
+            if (primitiveArrayCounts[typeCode] != 0) {
+                visitor.visit("[" + primitiveSignature(typeCode),
+                        primitiveArrayCounts[typeCode], primitiveArrayBytes[typeCode]);
+            }
+        }
+
+        if (classObjects != 0) {
+            visitor.visit(JAVA_LANG_CLASS, classObjects, classObjects * classObjectSize);
+        }
+    }
+
+    private int getClassIndex(long classId) {
+        int index = classIndex.get(classId);
+        if (index != LongIntHashMap.NO_VALUE) {
+            return index;
+        }
+        index = classCount++;
+        if (index == classIds.length) {
+            int newLength = index * 2;
+            classIds = Arrays.copyOf(classIds, newLength);
+            classNameIds = Arrays.copyOf(classNameIds, newLength);
+            classDumpOrder = Arrays.copyOf(classDumpOrder, newLength);
+            instanceSizes = Arrays.copyOf(instanceSizes, newLength);
+            instanceCounts = Arrays.copyOf(instanceCounts, newLength);
+            instanceBytes = Arrays.copyOf(instanceBytes, newLength);
+            arrayCounts = Arrays.copyOf(arrayCounts, newLength);
+            arrayBytes = Arrays.copyOf(arrayBytes, newLength);
+        }
+        classIds[index] = classId;
+        classNameIds[index] = NO_NAME;
+        classDumpOrder[index] = NOT_DUMPED;
+        classIndex.put(classId, index);
+        return index;
+    }
+
+    /** name of the class of instances that refer to the class with the given index */
+    private String getInstanceClassName(int index) {
+        if (classDumpOrder[index] == NOT_DUMPED) {
+            return "unknown-class<@" + Misc.toHex(classIds[index]) + ">";
+        }
+        return getClassName(index);
+    }
+
+    /** name of the class of object arrays that refer to the class with the given index */
+    private String getArrayClassName(int index) {
+        if (classDumpOrder[index] == NOT_DUMPED) {
+            return OTHER_ARRAY_TYPE;
+        }
+        String name = getClassName(index);
+        if (version < HprofReader.VERSION_JDK12BETA4 && !name.startsWith("[")) {
+            // the record refers to the element class, not the array class
+            name = "[L" + name + ";";
+        }
+        return name;
+    }
+
+    /** same naming as HprofReader uses for classes in a Snapshot */
+    private String getClassName(int index) {
+        long nameId = classNameIds[index];
+        if (nameId == NO_NAME) {
+            return "unknown-name@" + Misc.toHex(classIds[index]);
+        }
+        return getName(nameId).replace('/', '.');
+    }
+
+    private String getName(long id) {
+        if (id == 0L) {
+            return "";
+        }
+        int offset = nameOffsets.get(id);
+        if (offset == LongIntHashMap.NO_VALUE) {
+            return "unresolved name " + Misc.toHex(id);
+        }
+        int length = getPoolInt(offset);
+        return new String(namePool, offset + 4, length);
+    }
+
+    private void addName(long id, int length) throws IOException {
+        int needed = namePoolSize + 4 + length;
+        if (needed < 0) {
+            throw new IOException("Too many symbols in heap dump");
+        }
+        if (needed > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(needed, namePool.length * 2));
+        }
+        int offset = namePoolSize;
+        namePool[offset] = (byte) (length >>> 24);
+        namePool[offset + 1] = (byte) (length >>> 16);
+        namePool[offset + 2] = (byte) (length >>> 8);
+        namePool[offset + 3] = (byte) length;
+        readFully(namePool, offset + 4, length);
+        namePoolSize = needed;
+        nameOffsets.put(id, offset);
+    }
+
+    private int getPoolInt(int offset) {
+        return ((namePool[offset] & 0xff) << 24) | ((namePool[offset + 1] & 0xff) << 16)
+                | ((namePool[offset + 2] & 0xff) << 8) | (namePool[offset + 3] & 0xff);
+    }
+
+    //
+    // Buffered reading. The buffer is refilled from the stream as needed;
+    // skipped data is not copied if it is not buffered already.
+    //
+
+    private boolean hasMore() throws IOException {
+        return limit - position > 0 || fill(1, false);
+    }
+
+    private void require(int count) throws IOException {
+        if (limit - position < count) {
+            fill(count, true);
+        }
+    }
+
+    private boolean fill(int count, boolean required) throws IOException {
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+        while (limit < count) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                if (required) {
+                    throw new EOFException();
+                }
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    private int readUnsignedByte() throws IOException {
+        require(1);
+        return buffer[position++] & 0xff;
+    }
+
+    private int readUnsignedShort() throws IOException {
+        require(2);
+        int value = ((buffer[position] & 0xff) << 8) | (buffer[position + 1] & 0xff);
+        position += 2;
+        return value;
+    }
+
+    private int readInt() throws IOException {
+        require(4);
+        int value = ((buffer[position] & 0xff) << 24) | ((buffer[position + 1] & 0xff) << 16)
+                | ((buffer[position + 2] & 0xff) << 8) | (buffer[position + 3] & 0xff);
+        position += 4;
+        return value;
+    }
+
+    private long readLong() throws IOException {
+        long high = readInt() & 0xffffffffL;
+        long low = readInt() & 0xffffffffL;
+        return (high << 32) | low;
+    }
+
+    private long readID() throws IOException {
+        return (identifierSize == 4) ? (Snapshot.SMALL_ID_MASK & readInt()) : readLong();
+    }
+
+    private void readFully(byte[] target, int offset, int length) throws IOException {
+        int buffered = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, target, offset, buffered);
+        position += buffered;
+        int done = buffered;
+        while (done < length) {
+            int read = in.read(target, offset + done, length - done);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            done += read;
+        }
+    }
+
+    /** @return {@code count} */
+    private long skip(long count) throws IOException {
+        int buffered = (int) Math.min(count, limit - position);
+        position += buffered;
+        long remaining = count - buffered;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                // skip() may give up before the end of the stream
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return count;
+    }
+}
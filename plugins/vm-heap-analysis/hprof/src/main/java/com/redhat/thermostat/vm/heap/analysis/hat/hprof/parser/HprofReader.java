@@ -37,6 +37,7 @@ import java.util.Date;
 import java.util.Hashtable;
 
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.*;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.LongObjectHashMap;
 
 /**
  * Object that's used to read a hprof file.
@@ -48,15 +49,15 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
 
     final static int MAGIC_NUMBER = 0x4a415641;
     // That's "JAVA", the first part of "JAVA PROFILE ..."
-    private final static String[] VERSIONS = {
+    final static String[] VERSIONS = {
             " PROFILE 1.0\0",
             " PROFILE 1.0.1\0",
             " PROFILE 1.0.2\0",
     };
 
-    private final static int VERSION_JDK12BETA3 = 0;
-    private final static int VERSION_JDK12BETA4 = 1;
-    private final static int VERSION_JDK6       = 2;
+    final static int VERSION_JDK12BETA3 = 0;
+    final static int VERSION_JDK12BETA4 = 1;
+    final static int VERSION_JDK6       = 2;
     // These version numbers are indices into VERSIONS.  The instance data
     // member version is set to one of these, and it drives decisions when
     // reading the file.
@@ -115,7 +116,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
     static final int HPROF_HEAP_DUMP_SEGMENT     = 0x1c;
     static final int HPROF_HEAP_DUMP_END         = 0x2c;
 
-    private final static int T_CLASS = 2;
+    final static int T_CLASS = 2;
 
     private int version;        // The version of .hprof being read
 
@@ -126,7 +127,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
     private boolean callStack;  // If true, read the call stack of objects
 
     private int identifierSize;         // Size, in bytes, of identifiers.
-    private Hashtable<Long, String> names;
+    private LongObjectHashMap<String> names;
 
     // Hashtable<Integer, ThreadObject>, used to map the thread sequence number
     // (aka "serial number") to the thread object ID for
@@ -134,16 +135,15 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
     // at the end of this file.
     private Hashtable<Integer, ThreadObject> threadObjects;
 
-    // Hashtable<Long, String>, maps class object ID to class name
-    // (with / converted to .)
-    private Hashtable<Long, String> classNameFromObjectID;
+    // maps class object ID to class name (with / converted to .)
+    private LongObjectHashMap<String> classNameFromObjectID;
 
     // Hashtable<Integer, Integer>, maps class serial # to class object ID
     private Hashtable<Integer, String> classNameFromSerialNo;
 
-    // Hashtable<Long, StackFrame> maps stack frame ID to StackFrame.
+    // maps stack frame ID to StackFrame.
     // Null if we're not tracking them.
-    private Hashtable<Long, StackFrame> stackFrames;
+    private LongObjectHashMap<StackFrame> stackFrames;
 
     // Hashtable<Integer, StackTrace> maps stack frame ID to StackTrace
     // Null if we're not tracking them.
@@ -160,11 +160,11 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         this.dumpsToSkip = dumpNumber - 1;
         this.callStack = callStack;
         this.debugLevel = debugLevel;
-        names = new Hashtable<Long, String>();
+        names = new LongObjectHashMap<String>();
         threadObjects = new Hashtable<Integer, ThreadObject>(43);
-        classNameFromObjectID = new Hashtable<Long, String>();
+        classNameFromObjectID = new LongObjectHashMap<String>();
         if (callStack) {
-            stackFrames = new Hashtable<Long, StackFrame>(43);
+            stackFrames = new LongObjectHashMap<StackFrame>();
             stackTraces = new Hashtable<Integer, StackTrace>(43);
             classNameFromSerialNo = new Hashtable<Integer, String>();
         }
@@ -223,9 +223,8 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
                     long classID = readID();
                     int stackTraceSerialNo = in.readInt();
                     long classNameID = readID();
-                    Long classIdI = classID;
                     String nm = getNameFromID(classNameID).replace('/', '.');
-                    classNameFromObjectID.put(classIdI, nm);
+                    classNameFromObjectID.put(classID, nm);
                     if (classNameFromSerialNo != null) {
                         classNameFromSerialNo.put(serialNo, nm);
                     }
@@ -619,17 +618,13 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
     }
 
     private String getNameFromID(long id) throws IOException {
-        return getNameFromID(Long.valueOf(id));
-    }
-
-    private String getNameFromID(Long id) throws IOException {
-        if (id.longValue() == 0L) {
+        if (id == 0L) {
             return "";
         }
         String result = names.get(id);
         if (result == null) {
-            warn("Name not found at " + toHex(id.longValue()));
-            return "unresolved name " + toHex(id.longValue());
+            warn("Name not found at " + toHex(id));
+            return "unresolved name " + toHex(id);
         }
         return result;
     }
@@ -712,7 +707,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
                                     protDomainId, fields, statics,
                                     instanceSize);
         snapshot.addClass(id, c);
-        snapshot.setSiteTrace(c, stackTrace);
+        snapshot.setSiteTrace(id, stackTrace);
 
         return bytesRead;
     }
@@ -732,10 +727,9 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         long classID = readID();
         int bytesFollowing = in.readInt();
         int bytesRead = (2 * identifierSize) + 8 + bytesFollowing;
-        JavaObject jobj = new JavaObject(classID, start);
         skipBytes(bytesFollowing);
-        snapshot.addHeapObject(id, jobj);
-        snapshot.setSiteTrace(jobj, stackTrace);
+        snapshot.addJavaObject(id, start);
+        snapshot.setSiteTrace(id, stackTrace);
         return bytesRead;
     }
 
@@ -812,17 +806,15 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         if (primitiveSignature != 0x00) {
             int size = elSize * num;
             bytesRead += size;
-            JavaValueArray va = new JavaValueArray(primitiveSignature, start);
             skipBytes(size);
-            snapshot.addHeapObject(id, va);
-            snapshot.setSiteTrace(va, stackTrace);
+            snapshot.addJavaValueArray(id, primitiveSignature, start);
+            snapshot.setSiteTrace(id, stackTrace);
         } else {
             int sz = num * identifierSize;
             bytesRead += sz;
-            JavaObjectArray arr = new JavaObjectArray(elementClassID, start);
             skipBytes(sz);
-            snapshot.addHeapObject(id, arr);
-            snapshot.setSiteTrace(arr, stackTrace);
+            snapshot.addJavaObjectArray(id, start);
+            snapshot.setSiteTrace(id, stackTrace);
         }
         return bytesRead;
     }
@@ -32,23 +32,38 @@
 
 package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
- * Implementation of ReadBuffer using mapped file buffer
+ * Implementation of ReadBuffer using mapped file buffers.
+ *
+ * A single mapping can not be larger than 2 GB, so the file is mapped as
+ * a list of segments of 1 GB each.  Values that span two segments are
+ * put together from their bytes.  Reads use absolute positions only and
+ * need no locking.
  *
  * @author A. Sundararajan
  */
 class MappedReadBuffer implements ReadBuffer {
-    private MappedByteBuffer buf;
-    private RandomAccessFile file;
 
-    MappedReadBuffer(RandomAccessFile file, MappedByteBuffer buf) {
+    static final int DEFAULT_SEGMENT_BITS = 30;
+
+    private final RandomAccessFile file;
+    private final int segmentBits;
+    private final long segmentMask;
+    // null once closed
+    private volatile MappedByteBuffer[] segments;
+
+    MappedReadBuffer(RandomAccessFile file, MappedByteBuffer[] segments, int segmentBits) {
         this.file = file;
-        this.buf = buf;
+        this.segments = segments;
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
     }
 
     /**
@@ -64,18 +79,17 @@ class MappedReadBuffer implements ReadBuffer {
      * is locked on Windows until test process dies since there is no good way to
      * release this resource.
      *
-     * java.nio.MappedByteBuffer will be used only if 'jhat.enableFileMap' is set to true.
-     * Per default 'jhat.enableFileMap' is not set.
+     * java.nio.MappedByteBuffer is therefore used by default only on Linux, where
+     * reading through the mapping is much cheaper than a seek and a read for
+     * every value.  Setting 'jhat.enableFileMap' to 'true' or 'false' overrides
+     * this default.
      */
     static ReadBuffer create(RandomAccessFile file) throws IOException {
         if (canUseFileMap()) {
-            MappedByteBuffer buf;
             try {
-                FileChannel ch = file.getChannel();
-                long size = ch.size();
-                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
-                ch.close();
-                return new MappedReadBuffer(file, buf);
+                MappedReadBuffer buf = map(file, DEFAULT_SEGMENT_BITS);
+                file.getChannel().close();
+                return buf;
             } catch (IOException exp) {
                 exp.printStackTrace();
                 System.err.println("File mapping failed, will use direct read");
@@ -85,51 +99,125 @@ class MappedReadBuffer implements ReadBuffer {
         return new FileReadBuffer(file);
     }
 
+    static MappedReadBuffer map(RandomAccessFile file, int segmentBits) throws IOException {
+        FileChannel ch = file.getChannel();
+        long size = ch.size();
+        long segmentSize = 1L << segmentBits;
+        int count = (int) ((size + segmentSize - 1) >>> segmentBits);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << segmentBits;
+            segments[i] = ch.map(FileChannel.MapMode.READ_ONLY, start,
+                                 Math.min(segmentSize, size - start));
+        }
+        return new MappedReadBuffer(file, segments, segmentBits);
+    }
+
     /**
-     * Set system property 'jhat.enableFileMap' to 'true' to enable file mapping.
+     * Set system property 'jhat.enableFileMap' to 'true' or 'false' to
+     * enable or disable file mapping.  It is enabled on Linux by default.
      */
     private static boolean canUseFileMap() {
         String prop = System.getProperty("jhat.enableFileMap");
-        return prop != null && prop.equals("true");
+        if (prop != null) {
+            return prop.equals("true");
+        }
+        String os = System.getProperty("os.name");
+        return os != null && os.startsWith("Linux");
+    }
+
+    private MappedByteBuffer segment(long pos) throws IOException {
+        MappedByteBuffer[] segs = segments;
+        if (segs == null) {
+            throw new IOException("buffer closed");
+        }
+        long index = pos >>> segmentBits;
+        if (pos < 0 || index >= segs.length) {
+            throw new EOFException("position " + pos + " out of range");
+        }
+        return segs[(int) index];
+    }
+
+    private int offset(long pos) {
+        return (int) (pos & segmentMask);
     }
 
-    private void seek(long pos) throws IOException {
-        assert pos <= Integer.MAX_VALUE :  "position overflow";
-        buf.position((int)pos);
+    public void get(long pos, byte[] res) throws IOException {
+        int done = 0;
+        while (done < res.length) {
+            ByteBuffer seg = segment(pos + done).duplicate();
+            int off = offset(pos + done);
+            int len = Math.min(res.length - done, seg.limit() - off);
+            if (len <= 0) {
+                throw new EOFException("position " + (pos + done) + " out of range");
+            }
+            seg.position(off);
+            seg.get(res, done, len);
+            done += len;
+        }
     }
 
-    public synchronized void get(long pos, byte[] res) throws IOException {
-        seek(pos);
-        buf.get(res);
+    public char getChar(long pos) throws IOException {
+        MappedByteBuffer seg = segment(pos);
+        int off = offset(pos);
+        if (off <= seg.limit() - 2) {
+            return seg.getChar(off);
+        }
+        return (char) readAcrossSegments(pos, 2);
     }
 
-    public synchronized char getChar(long pos) throws IOException {
-        seek(pos);
-        return buf.getChar();
+    public byte getByte(long pos) throws IOException {
+        return segment(pos).get(offset(pos));
     }
 
-    public synchronized byte getByte(long pos) throws IOException {
-        seek(pos);
-        return buf.get();
+    public short getShort(long pos) throws IOException {
+        MappedByteBuffer seg = segment(pos);
+        int off = offset(pos);
+        if (off <= seg.limit() - 2) {
+            return seg.getShort(off);
+        }
+        return (short) readAcrossSegments(pos, 2);
     }
 
-    public synchronized short getShort(long pos) throws IOException {
-        seek(pos);
-        return buf.getShort();
+    public int getInt(long pos) throws IOException {
+        MappedByteBuffer seg = segment(pos);
+        int off = offset(pos);
+        if (off <= seg.limit() - 4) {
+            return seg.getInt(off);
+        }
+        return (int) readAcrossSegments(pos, 4);
     }
 
-    public synchronized int getInt(long pos) throws IOException {
-        seek(pos);
-        return buf.getInt();
+    public long getLong(long pos) throws IOException {
+        MappedByteBuffer seg = segment(pos);
+        int off = offset(pos);
+        if (off <= seg.limit() - 8) {
+            return seg.getLong(off);
+        }
+        return readAcrossSegments(pos, 8);
     }
 
-    public synchronized long getLong(long pos) throws IOException {
-        seek(pos);
-        return buf.getLong();
+    // big endian, like the buffers themselves
+    private long readAcrossSegments(long pos, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        get(pos, bytes);
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
     }
 
+    /**
+     * Closes the file.  The segments are not unmapped explicitly: reads
+     * take no lock, so one still in progress could then touch unmapped
+     * memory.  They are unmapped when they are garbage collected, once no
+     * reader refers to them any more.  Reads after close fail with an
+     * IOException.
+     */
     @Override
     public void close() throws Exception {
+        segments = null;
         file.close();
     }
 
@@ -36,6 +36,9 @@
 
 package com.redhat.thermostat.vm.jmx.agent.internal;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
@@ -51,12 +54,14 @@ import com.redhat.thermostat.vm.jmx.common.JmxNotificationDAO;
 
 public class Activator implements BundleActivator {
 
+    private ScheduledExecutorService executor;
     private ServiceRegistration<Backend> registration;
     private JmxBackend jmxBackend;
     private MultipleServiceTracker tracker;
 
     @Override
     public void start(final BundleContext context) throws Exception {
+        executor = Executors.newScheduledThreadPool(JmxBackend.getSubscriptionThreads());
 
         Class<?>[] deps = new Class<?>[] {
                 JmxNotificationDAO.class,
@@ -73,7 +78,7 @@ public class Activator implements BundleActivator {
                 ReceiverRegistry registry = new ReceiverRegistry(context);
                 JmxRequestListener receiver = new JmxRequestListener();
                 WriterID writerId = services.get(WriterID.class);
-                jmxBackend = new JmxBackend(version, registry, dao, pool, receiver, writerId);
+                jmxBackend = new JmxBackend(executor, version, registry, dao, pool, receiver, writerId);
                 receiver.setBackend(jmxBackend);
                 registration = context.registerService(Backend.class, jmxBackend, null);
             }
@@ -100,6 +105,7 @@ public class Activator implements BundleActivator {
     @Override
     public void stop(BundleContext context) throws Exception {
         tracker.close();
+        executor.shutdown();
     }
 
 }
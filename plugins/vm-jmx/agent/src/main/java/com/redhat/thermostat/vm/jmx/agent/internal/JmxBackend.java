@@ -37,15 +37,26 @@
 package com.redhat.thermostat.vm.jmx.agent.internal;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
 import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
 import javax.management.MBeanServerDelegate;
 import javax.management.MBeanServerNotification;
 import javax.management.Notification;
@@ -72,19 +83,44 @@ public class JmxBackend extends BaseBackend {
 
     private static final Logger logger = LoggingUtils.getLogger(JmxBackend.class);
 
+    /**
+     * ObjectName patterns, separated by ';', of the MBeans to subscribe to.
+     * All MBeans if unset.
+     */
+    static final String SUBSCRIPTION_FILTER = "com.redhat.thermostat.vm.jmx.subscriptionFilter";
+    /**
+     * Number of threads subscribing to MBeans in parallel.
+     */
+    static final String SUBSCRIPTION_THREADS = "com.redhat.thermostat.vm.jmx.subscriptionThreads";
+    static final int DEFAULT_SUBSCRIPTION_THREADS = 4;
+    /**
+     * Notifications written per MBean per second, any more are dropped.
+     */
+    static final String MAX_NOTIFICATIONS_PER_SOURCE = "com.redhat.thermostat.vm.jmx.maxNotificationsPerSource";
+    static final int DEFAULT_MAX_NOTIFICATIONS_PER_SOURCE = 100;
+    static final long FLUSH_INTERVAL_MILLIS = 1000L;
+
     private final ReceiverRegistry registry;
     private final RequestReceiver receiver;
     private final JmxNotificationDAO dao;
     private final MXBeanConnectionPool pool;
     private final Clock clock;
+    private final ScheduledExecutorService executor;
+    // Empty to subscribe to all MBeans
+    private final List<ObjectName> subscriptionFilter;
+    private final NotificationBatcher batcher;
 
     private final NotificationListener registrationNotificationListener;
     private final NotificationListener notificationWriter;
 
-    private final Map<Integer, MXBeanConnection> connections = new HashMap<>();
+    // Also read from JMX notification threads
+    private final Map<Integer, MXBeanConnection> connections = new ConcurrentHashMap<>();
+    // MBeans subscribed to, per pid, by the scan or on registration
+    private final Map<Integer, Set<ObjectName>> subscribedNames = new ConcurrentHashMap<>();
     private final WriterID writerId;
 
     private boolean isActive = false;
+    private ScheduledFuture<?> flushTask;
 
     // Used as a callback handler
     private static class VmIdAndPid {
@@ -97,15 +133,23 @@ public class JmxBackend extends BaseBackend {
         }
     }
 
-    public JmxBackend(Version version, ReceiverRegistry registry,
+    public JmxBackend(ScheduledExecutorService executor, Version version, ReceiverRegistry registry,
             JmxNotificationDAO dao, MXBeanConnectionPool pool,
             RequestReceiver receiver, WriterID writerId) {
-        this(version, registry, dao, pool, receiver, new SystemClock(), writerId);
+        this(executor, version, registry, dao, pool, receiver, new SystemClock(), writerId);
     }
 
-    public JmxBackend(Version version, ReceiverRegistry registry,
+    public JmxBackend(ScheduledExecutorService executor, Version version, ReceiverRegistry registry,
             JmxNotificationDAO dao, MXBeanConnectionPool pool,
             RequestReceiver receiver, Clock clock, WriterID writerId) {
+        this(executor, version, registry, dao, pool, receiver, clock, writerId,
+                getSubscriptionFilter(), getMaxNotificationsPerSource());
+    }
+
+    JmxBackend(ScheduledExecutorService executor, Version version, ReceiverRegistry registry,
+            JmxNotificationDAO dao, MXBeanConnectionPool pool,
+            RequestReceiver receiver, Clock clock, WriterID writerId,
+            List<ObjectName> subscriptionFilter, int maxNotificationsPerSource) {
         super("VM JMX Backend", "gathers JMX information using JMX", "Red Hat, Inc.", version.getVersionNumber());
 
         this.registry = registry;
@@ -113,6 +157,10 @@ public class JmxBackend extends BaseBackend {
         this.dao = dao;
         this.clock = clock;
         this.writerId = writerId;
+        this.executor = executor;
+        this.subscriptionFilter = subscriptionFilter;
+        // Batches are written every second, so the limit per batch is the limit per second
+        this.batcher = new NotificationBatcher(dao, maxNotificationsPerSource);
 
         this.registrationNotificationListener = new RegistrationNotificationListener();
         this.notificationWriter = new NotificationWriter();
@@ -120,6 +168,43 @@ public class JmxBackend extends BaseBackend {
         this.receiver = receiver;
     }
 
+    static List<ObjectName> getSubscriptionFilter() {
+        String filter = System.getProperty(SUBSCRIPTION_FILTER);
+        if (filter == null) {
+            return Collections.emptyList();
+        }
+        List<ObjectName> patterns = new ArrayList<>();
+        for (String pattern : filter.split(";")) {
+            pattern = pattern.trim();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            try {
+                patterns.add(new ObjectName(pattern));
+            } catch (MalformedObjectNameException e) {
+                logger.warning("Invalid ObjectName pattern in " + SUBSCRIPTION_FILTER + ": " + pattern + ", ignoring it");
+            }
+        }
+        return patterns;
+    }
+
+    static int getSubscriptionThreads() {
+        return getPositiveInteger(SUBSCRIPTION_THREADS, DEFAULT_SUBSCRIPTION_THREADS);
+    }
+
+    private static int getMaxNotificationsPerSource() {
+        return getPositiveInteger(MAX_NOTIFICATIONS_PER_SOURCE, DEFAULT_MAX_NOTIFICATIONS_PER_SOURCE);
+    }
+
+    private static int getPositiveInteger(String property, int defaultValue) {
+        int value = Integer.getInteger(property, defaultValue);
+        if (value <= 0) {
+            logger.warning("Invalid value for " + property + ": " + value + ", using default: " + defaultValue);
+            value = defaultValue;
+        }
+        return value;
+    }
+
     @Override
     public int getOrderValue() {
         return ORDER_USER_GROUP + 99;
@@ -132,6 +217,12 @@ public class JmxBackend extends BaseBackend {
         }
 
         registry.registerReceiver(receiver);
+        flushTask = executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                flushNotifications();
+            }
+        }, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
 
         isActive = true;
         return isActive;
@@ -144,6 +235,10 @@ public class JmxBackend extends BaseBackend {
         }
 
         registry.unregisterReceivers();
+        flushTask.cancel(false);
+        flushTask = null;
+        // Don't lose what was received since the last flush
+        flushNotifications();
 
         isActive = false;
         return true;
@@ -155,32 +250,93 @@ public class JmxBackend extends BaseBackend {
     }
 
     public void enableNotificationsFor(String vmId, int pid) {
-        VmIdAndPid idAndPid = new VmIdAndPid(vmId, pid);
+        final VmIdAndPid idAndPid = new VmIdAndPid(vmId, pid);
         try {
             MXBeanConnection connection = pool.acquire(pid);
             connections.put(pid, connection);
-            MBeanServerConnection server = connection.get();
-            Set<ObjectName> names = server.queryNames(null, null);
-            for (ObjectName name : names) {
+            final MBeanServerConnection server = connection.get();
+            subscribedNames.put(pid, Collections.newSetFromMap(new ConcurrentHashMap<ObjectName, Boolean>()));
+            // Listen for new MBeans first, so none registered while we subscribe are missed
+            server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this.registrationNotificationListener, null, idAndPid);
+
+            // Each subscription is a few remote calls, make them in parallel
+            List<Future<Void>> subscriptions = new ArrayList<>();
+            for (final ObjectName name : queryNames(server)) {
                 if (name.equals(MBeanServerDelegate.DELEGATE_NAME)) {
-                    server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this.registrationNotificationListener, null, idAndPid);
-                } else {
-                    addNotificationListenerToMBean(idAndPid, server, name);
+                    continue;
                 }
+                subscriptions.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        addNotificationListenerToMBean(idAndPid, server, name);
+                        return null;
+                    }
+                }));
             }
+            waitForSubscriptions(subscriptions);
             String wId = writerId.getWriterID();
             JmxNotificationStatus update = new JmxNotificationStatus(wId);
             update.setVmId(vmId);
             update.setEnabled(true);
             update.setTimeStamp(clock.getRealTimeMillis());
             dao.addNotificationStatus(update);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.WARNING, "Interrupted while enabling notifications", e);
         } catch (Exception e) {
             logger.log(Level.WARNING, "Unable to connect to the mx bean connector", e);
         }
     }
 
+    private Set<ObjectName> queryNames(MBeanServerConnection server) throws IOException {
+        if (subscriptionFilter.isEmpty()) {
+            return server.queryNames(null, null);
+        }
+        Set<ObjectName> names = new LinkedHashSet<>();
+        for (ObjectName pattern : subscriptionFilter) {
+            names.addAll(server.queryNames(pattern, null));
+        }
+        return names;
+    }
+
+    private boolean matchesSubscriptionFilter(ObjectName name) {
+        if (subscriptionFilter.isEmpty()) {
+            return true;
+        }
+        for (ObjectName pattern : subscriptionFilter) {
+            if (pattern.apply(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void waitForSubscriptions(List<Future<Void>> subscriptions) throws InterruptedException {
+        for (Future<Void> subscription : subscriptions) {
+            try {
+                subscription.get();
+            } catch (ExecutionException e) {
+                // Typically an MBean unregistered since it was queried, keep the others
+                logger.log(Level.FINE, "Unable to subscribe to an MBean", e.getCause());
+            }
+        }
+    }
+
+    /*
+     * Writes the notifications received since the last call to storage.
+     */
+    void flushNotifications() {
+        try {
+            batcher.flush();
+        } catch (RuntimeException e) {
+            // Keep the scheduled flushes running
+            logger.log(Level.WARNING, "Unable to write JMX notifications", e);
+        }
+    }
+
     public void disableNotificationsFor(String vmId, int pid) {
         MXBeanConnection connection = connections.get(pid);
+        subscribedNames.remove(pid);
 
         String wId = writerId.getWriterID();
         JmxNotificationStatus update = new JmxNotificationStatus(wId);
@@ -208,11 +364,18 @@ public class JmxBackend extends BaseBackend {
             try {
                 if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(serverNotification.getType())) {
                     logger.fine("MBean Registered: " + name);
-                    addNotificationListenerToMBean(idAndPid, server, name);
+                    if (matchesSubscriptionFilter(name)) {
+                        addNotificationListenerToMBean(idAndPid, server, name);
+                    }
                 } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(serverNotification.getType())) {
                     logger.fine("MBean Unregistered: " + name);
                     // we should remove the listener, but the object is not
                     // around to emit notifications
+                    Set<ObjectName> subscribed = subscribedNames.get(idAndPid.pid);
+                    if (subscribed != null) {
+                        // An MBean registered again under this name is subscribed to again
+                        subscribed.remove(name);
+                    }
                 }
             } catch (IOException | InstanceNotFoundException | IntrospectionException | ReflectionException e) {
                 logger.log(Level.WARNING, "exception while handling MBeanServerNotification", e);
@@ -221,7 +384,7 @@ public class JmxBackend extends BaseBackend {
 
     }
 
-    // Writes the notification to storage
+    // Queues the notification to be written to storage
     private class NotificationWriter implements NotificationListener {
 
         @Override
@@ -235,13 +398,18 @@ public class JmxBackend extends BaseBackend {
             data.setSourceBackend(JmxBackend.class.getName());
             data.setSourceDetails(((ObjectName) notification.getSource()).getCanonicalName());
             data.setContents(notification.getMessage());
-            dao.addNotification(data);
+            batcher.add(data);
 
         }
     }
 
     private void addNotificationListenerToMBean(VmIdAndPid idAndPid, MBeanServerConnection server, ObjectName name)
             throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        Set<ObjectName> subscribed = subscribedNames.get(idAndPid.pid);
+        // An MBean registered during the scan is both queried and announced
+        if (subscribed == null || !subscribed.add(name)) {
+            return;
+        }
         if (server.getMBeanInfo(name).getNotifications().length > 0) {
             server.addNotificationListener(name, JmxBackend.this.notificationWriter, null, idAndPid);
         }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.jmx.agent.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.vm.jmx.common.JmxNotification;
+import com.redhat.thermostat.vm.jmx.common.JmxNotificationDAO;
+
+/**
+ * Collects notifications and writes them to storage in batches. Each
+ * source (an MBean in a VM) may contribute a limited number of
+ * notifications to every batch; any more are dropped, so a single chatty
+ * MBean cannot flood storage.
+ */
+class NotificationBatcher {
+
+    private static final Logger logger = LoggingUtils.getLogger(NotificationBatcher.class);
+
+    private final JmxNotificationDAO dao;
+    private final int maxPerSource;
+
+    // All guarded by this
+    private List<JmxNotification> pending;
+    // vmId + source -> notifications accepted into the pending batch
+    private final Map<String, Integer> sourceCounts;
+    private long dropped;
+
+    NotificationBatcher(JmxNotificationDAO dao, int maxPerSource) {
+        this.dao = dao;
+        this.maxPerSource = maxPerSource;
+        this.pending = new ArrayList<>();
+        this.sourceCounts = new HashMap<>();
+    }
+
+    /**
+     * @return whether the notification will be written, or was dropped
+     * because its source already reached its limit for this batch
+     */
+    synchronized boolean add(JmxNotification notification) {
+        String source = notification.getVmId() + "/" + notification.getSourceDetails();
+        Integer count = sourceCounts.get(source);
+        int newCount = (count == null) ? 1 : count + 1;
+        if (newCount > maxPerSource) {
+            dropped++;
+            return false;
+        }
+        sourceCounts.put(source, newCount);
+        pending.add(notification);
+        return true;
+    }
+
+    /**
+     * Writes the pending notifications and starts a new batch.
+     */
+    void flush() {
+        List<JmxNotification> batch;
+        long droppedFromBatch;
+        synchronized (this) {
+            batch = pending;
+            droppedFromBatch = dropped;
+            pending = new ArrayList<>();
+            sourceCounts.clear();
+            dropped = 0;
+        }
+        if (droppedFromBatch > 0) {
+            logger.info("Dropped " + droppedFromBatch + " JMX notifications from sources exceeding "
+                    + maxPerSource + " notifications per batch");
+        }
+        dao.addNotifications(batch);
+    }
+
+}
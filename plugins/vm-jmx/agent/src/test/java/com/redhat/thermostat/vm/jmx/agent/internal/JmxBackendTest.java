@@ -36,18 +36,27 @@
 
 package com.redhat.thermostat.vm.jmx.agent.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.management.InstanceNotFoundException;
 
 import javax.management.MBeanInfo;
 import javax.management.MBeanNotificationInfo;
@@ -59,6 +68,7 @@ import javax.management.NotificationFilter;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -67,11 +77,13 @@ import com.redhat.thermostat.agent.command.ReceiverRegistry;
 import com.redhat.thermostat.agent.command.RequestReceiver;
 import com.redhat.thermostat.agent.utils.management.MXBeanConnection;
 import com.redhat.thermostat.agent.utils.management.MXBeanConnectionPool;
+import com.redhat.thermostat.common.Clock;
 import com.redhat.thermostat.common.Ordered;
 import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.jmx.common.JmxNotification;
 import com.redhat.thermostat.vm.jmx.common.JmxNotificationDAO;
+import com.redhat.thermostat.vm.jmx.common.JmxNotificationStatus;
 
 public class JmxBackendTest {
 
@@ -81,6 +93,8 @@ public class JmxBackendTest {
     private JmxNotificationDAO dao;
     private JmxBackend backend;
     private RequestReceiver receiver;
+    private ScheduledExecutorService executor;
+    private WriterID id;
 
     @Before
     public void setUp() {
@@ -92,8 +106,14 @@ public class JmxBackendTest {
         dao = mock(JmxNotificationDAO.class);
         pool = mock(MXBeanConnectionPool.class);
 
-        WriterID id = mock(WriterID.class);
-        backend = new JmxBackend(version, registry, dao, pool, receiver, id);
+        id = mock(WriterID.class);
+        executor = Executors.newSingleThreadScheduledExecutor();
+        backend = new JmxBackend(executor, version, registry, dao, pool, receiver, id);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
     }
 
     @Test
@@ -185,8 +205,90 @@ public class JmxBackendTest {
         when(notification.getSource()).thenReturn(name1);
 
         listener.handleNotification(notification, handbackCaptor.getValue());
+        // Written in batches
+        verify(dao, never()).addNotifications(any(List.class));
+        backend.flushNotifications();
+
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<List> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dao).addNotifications(batchCaptor.capture());
+        assertEquals(1, batchCaptor.getValue().size());
+        assertEquals("42", ((JmxNotification) batchCaptor.getValue().get(0)).getVmId());
+        verify(dao, never()).addNotification(isA(JmxNotification.class));
+    }
+
+    @Test
+    public void testDeactivateFlushesNotifications() throws Exception {
+        backend.activate();
+        backend.deactivate();
 
-        verify(dao).addNotification(isA(JmxNotification.class));
+        verify(dao).addNotifications(any(List.class));
+    }
+
+    @Test
+    public void testSubscriptionFilter() throws Exception {
+        ObjectName pattern = new ObjectName("java.lang:*");
+        backend = new JmxBackend(executor, version, registry, dao, pool, receiver, mock(Clock.class), id,
+                Arrays.asList(pattern), 100);
+        ObjectName name1 = new ObjectName("java.lang:type=Memory");
+        Set<ObjectName> names = new HashSet<ObjectName>();
+        names.add(name1);
+
+        MBeanInfo info1 = mock(MBeanInfo.class);
+        when(info1.getNotifications()).thenReturn(new MBeanNotificationInfo[1]);
+
+        MBeanServerConnection actual = mock(MBeanServerConnection.class);
+        when(actual.queryNames(pattern, null)).thenReturn(names);
+        when(actual.getMBeanInfo(name1)).thenReturn(info1);
+
+        MXBeanConnection connection = mock(MXBeanConnection.class);
+        when(connection.get()).thenReturn(actual);
+        when(pool.acquire(42)).thenReturn(connection);
+
+        backend.enableNotificationsFor("42", 42);
+
+        verify(actual, never()).queryNames(null, null);
+        verify(actual).addNotificationListener(eq(name1), any(NotificationListener.class), eq((NotificationFilter) null), any());
+
+        // MBeans registered later are filtered too
+        ArgumentCaptor<NotificationListener> listenerCaptor = ArgumentCaptor.forClass(NotificationListener.class);
+        ArgumentCaptor<Object> handbackCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(actual).addNotificationListener(eq(MBeanServerDelegate.DELEGATE_NAME), listenerCaptor.capture(), eq((NotificationFilter) null), handbackCaptor.capture());
+
+        ObjectName otherName = new ObjectName("com.example:type=Other");
+        MBeanServerNotification newMBeanNotification = mock(MBeanServerNotification.class);
+        when(newMBeanNotification.getType()).thenReturn(MBeanServerNotification.REGISTRATION_NOTIFICATION);
+        when(newMBeanNotification.getMBeanName()).thenReturn(otherName);
+        listenerCaptor.getValue().handleNotification(newMBeanNotification, handbackCaptor.getValue());
+
+        verify(actual, never()).getMBeanInfo(otherName);
+    }
+
+    @Test
+    public void testFailedSubscriptionKeepsOthers() throws Exception {
+        ObjectName name1 = new ObjectName("java.lang:type=Memory");
+        ObjectName name2 = new ObjectName("java.lang:type=Threading");
+        Set<ObjectName> names = new HashSet<ObjectName>();
+        names.add(name1);
+        names.add(name2);
+
+        MBeanInfo info2 = mock(MBeanInfo.class);
+        when(info2.getNotifications()).thenReturn(new MBeanNotificationInfo[1]);
+
+        MBeanServerConnection actual = mock(MBeanServerConnection.class);
+        when(actual.queryNames(null, null)).thenReturn(names);
+        // Unregistered since it was queried
+        when(actual.getMBeanInfo(name1)).thenThrow(new InstanceNotFoundException());
+        when(actual.getMBeanInfo(name2)).thenReturn(info2);
+
+        MXBeanConnection connection = mock(MXBeanConnection.class);
+        when(connection.get()).thenReturn(actual);
+        when(pool.acquire(42)).thenReturn(connection);
+
+        backend.enableNotificationsFor("42", 42);
+
+        verify(actual).addNotificationListener(eq(name2), any(NotificationListener.class), eq((NotificationFilter) null), any());
+        verify(dao).addNotificationStatus(isA(JmxNotificationStatus.class));
     }
 
     @Test
@@ -229,6 +331,48 @@ public class JmxBackendTest {
         verify(actual).addNotificationListener(eq(newBeanName), isA(NotificationListener.class), eq((NotificationFilter) null), eq(handbackCaptor.getValue()));
     }
 
+    @Test
+    public void testMBeanRegisteredDuringScanIsSubscribedOnce() throws Exception {
+        ObjectName name1 = new ObjectName("java.lang:type=Memory");
+        Set<ObjectName> names = new HashSet<ObjectName>();
+        names.add(name1);
+
+        MBeanInfo info1 = mock(MBeanInfo.class);
+        when(info1.getNotifications()).thenReturn(new MBeanNotificationInfo[1]);
+
+        MBeanServerConnection actual = mock(MBeanServerConnection.class);
+        when(actual.queryNames(null, null)).thenReturn(names);
+        when(actual.getMBeanInfo(name1)).thenReturn(info1);
+
+        MXBeanConnection connection = mock(MXBeanConnection.class);
+        when(connection.get()).thenReturn(actual);
+        when(pool.acquire(42)).thenReturn(connection);
+
+        backend.enableNotificationsFor("42", 42);
+
+        ArgumentCaptor<NotificationListener> listenerCaptor = ArgumentCaptor.forClass(NotificationListener.class);
+        ArgumentCaptor<Object> handbackCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(actual).addNotificationListener(eq(MBeanServerDelegate.DELEGATE_NAME), listenerCaptor.capture(), eq((NotificationFilter) null), handbackCaptor.capture());
+        NotificationListener listener = listenerCaptor.getValue();
+
+        // Registered after the delegate listener was added, found by the scan as well
+        MBeanServerNotification registered = mock(MBeanServerNotification.class);
+        when(registered.getType()).thenReturn(MBeanServerNotification.REGISTRATION_NOTIFICATION);
+        when(registered.getMBeanName()).thenReturn(name1);
+        listener.handleNotification(registered, handbackCaptor.getValue());
+
+        verify(actual).addNotificationListener(eq(name1), any(NotificationListener.class), eq((NotificationFilter) null), any());
+
+        // Registered again after being unregistered
+        MBeanServerNotification unregistered = mock(MBeanServerNotification.class);
+        when(unregistered.getType()).thenReturn(MBeanServerNotification.UNREGISTRATION_NOTIFICATION);
+        when(unregistered.getMBeanName()).thenReturn(name1);
+        listener.handleNotification(unregistered, handbackCaptor.getValue());
+        listener.handleNotification(registered, handbackCaptor.getValue());
+
+        verify(actual, times(2)).addNotificationListener(eq(name1), any(NotificationListener.class), eq((NotificationFilter) null), any());
+    }
+
     @Test
     public void testMBeanUnregisteredNotification() throws Exception {
         ObjectName serverBean = MBeanServerDelegate.DELEGATE_NAME;
@@ -240,6 +384,7 @@ public class JmxBackendTest {
 
         MBeanServerNotification mBeanRemovedNotification = mock(MBeanServerNotification.class);
         when(mBeanRemovedNotification.getType()).thenReturn(MBeanServerNotification.UNREGISTRATION_NOTIFICATION);
+        when(mBeanRemovedNotification.getMBeanName()).thenReturn(new ObjectName("java.lang:type=Memory"));
 
         MBeanServerConnection actual = mock(MBeanServerConnection.class);
         when(actual.queryNames(null, null)).thenReturn(names);
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.jmx.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.redhat.thermostat.vm.jmx.common.JmxNotification;
+import com.redhat.thermostat.vm.jmx.common.JmxNotificationDAO;
+
+public class NotificationBatcherTest {
+
+    private JmxNotificationDAO dao;
+    private NotificationBatcher batcher;
+
+    @Before
+    public void setUp() {
+        dao = mock(JmxNotificationDAO.class);
+        batcher = new NotificationBatcher(dao, 2);
+    }
+
+    @Test
+    public void testFlushWritesBatch() {
+        JmxNotification first = createNotification("vm1", "source1");
+        JmxNotification second = createNotification("vm1", "source2");
+        assertTrue(batcher.add(first));
+        assertTrue(batcher.add(second));
+
+        batcher.flush();
+
+        verify(dao).addNotifications(Arrays.asList(first, second));
+    }
+
+    @Test
+    public void testFlushStartsNewBatch() {
+        JmxNotification first = createNotification("vm1", "source1");
+        batcher.add(first);
+        batcher.flush();
+
+        batcher.flush();
+
+        verify(dao).addNotifications(Arrays.asList(first));
+        verify(dao).addNotifications(Collections.<JmxNotification>emptyList());
+    }
+
+    @Test
+    public void testSourceLimited() {
+        assertTrue(batcher.add(createNotification("vm1", "source1")));
+        assertTrue(batcher.add(createNotification("vm1", "source1")));
+        assertFalse(batcher.add(createNotification("vm1", "source1")));
+        // Other sources have their own limit
+        assertTrue(batcher.add(createNotification("vm1", "source2")));
+        assertTrue(batcher.add(createNotification("vm2", "source1")));
+
+        batcher.flush();
+
+        assertEquals(4, captureBatch().size());
+    }
+
+    @Test
+    public void testSourceLimitResetByFlush() {
+        batcher.add(createNotification("vm1", "source1"));
+        batcher.add(createNotification("vm1", "source1"));
+        batcher.flush();
+
+        assertTrue(batcher.add(createNotification("vm1", "source1")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<JmxNotification> captureBatch() {
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<List> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dao).addNotifications(batchCaptor.capture());
+        return batchCaptor.getValue();
+    }
+
+    private JmxNotification createNotification(String vmId, String source) {
+        JmxNotification notification = new JmxNotification("agent");
+        notification.setVmId(vmId);
+        notification.setSourceDetails(source);
+        return notification;
+    }
+
+}
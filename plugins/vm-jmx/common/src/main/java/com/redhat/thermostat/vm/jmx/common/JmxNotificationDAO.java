@@ -54,6 +54,16 @@ public interface JmxNotificationDAO {
 
     void addNotification(JmxNotification notification);
 
+    /**
+     * Same as calling {@link #addNotification(JmxNotification)} for each
+     * notification, but cheaper for the batches the agent writes once a
+     * second.
+     *
+     * @param notifications received from any number of vms, in the order
+     * they are to be added
+     */
+    void addNotifications(List<JmxNotification> notifications);
+
     /**
      * @return a {@link List} (may be empty) of all {@link JmxNotification}s
      * matching the vm and with a timestamp greater than {@code timeStampSince}
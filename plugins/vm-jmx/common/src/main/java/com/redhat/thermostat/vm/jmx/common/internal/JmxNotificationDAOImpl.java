@@ -39,12 +39,16 @@ package com.redhat.thermostat.vm.jmx.common.internal;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.Category;
+import com.redhat.thermostat.storage.core.DescriptorParsingException;
 import com.redhat.thermostat.storage.core.Key;
 import com.redhat.thermostat.storage.core.PreparedStatement;
+import com.redhat.thermostat.storage.core.StatementDescriptor;
+import com.redhat.thermostat.storage.core.StatementExecutionException;
 import com.redhat.thermostat.storage.core.Storage;
 import com.redhat.thermostat.storage.core.VmRef;
 import com.redhat.thermostat.storage.dao.AbstractDao;
@@ -155,17 +159,46 @@ public class JmxNotificationDAOImpl extends AbstractDao implements JmxNotificati
         executeStatement(new AbstractDaoStatement<JmxNotification>(storage, NOTIFICATIONS, DESC_ADD_NOTIFICATION) {
             @Override
             public PreparedStatement<JmxNotification> customize(PreparedStatement<JmxNotification> preparedStatement) {
-                preparedStatement.setString(0, notification.getAgentId());
-                preparedStatement.setString(1, notification.getVmId());
-                preparedStatement.setLong(2, notification.getTimeStamp());
-                preparedStatement.setString(3, notification.getContents());
-                preparedStatement.setString(4, notification.getSourceDetails());
-                preparedStatement.setString(5, notification.getSourceBackend());
-                return preparedStatement;
+                return bindNotification(preparedStatement, notification);
             }
         });
     }
 
+    @Override
+    public void addNotifications(List<JmxNotification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        StatementDescriptor<JmxNotification> desc = new StatementDescriptor<>(NOTIFICATIONS, DESC_ADD_NOTIFICATION);
+        PreparedStatement<JmxNotification> prepared;
+        try {
+            prepared = storage.prepareStatement(desc);
+        } catch (DescriptorParsingException e) {
+            getLogger().log(Level.SEVERE, "Preparing stmt '" + desc + "' failed!", e);
+            return;
+        }
+        for (JmxNotification notification : notifications) {
+            bindNotification(prepared, notification);
+            try {
+                prepared.execute();
+            } catch (StatementExecutionException e) {
+                getLogger().log(Level.SEVERE, "Executing stmt '" + desc + "' failed!", e);
+            }
+        }
+    }
+
+    // Sets the parameters of DESC_ADD_NOTIFICATION
+    private static PreparedStatement<JmxNotification> bindNotification(PreparedStatement<JmxNotification> preparedStatement,
+            JmxNotification notification) {
+        preparedStatement.setString(0, notification.getAgentId());
+        preparedStatement.setString(1, notification.getVmId());
+        preparedStatement.setLong(2, notification.getTimeStamp());
+        preparedStatement.setString(3, notification.getContents());
+        preparedStatement.setString(4, notification.getSourceDetails());
+        preparedStatement.setString(5, notification.getSourceBackend());
+        return preparedStatement;
+    }
+
     @Override
     public List<JmxNotification> getNotifications(final VmRef notificationsFor, final long timeStampSince) {
         return executeQuery(new AbstractDaoQuery<JmxNotification>(storage, NOTIFICATIONS, QUERY_NOTIFICATIONS) {
@@ -41,10 +41,14 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Before;
@@ -201,6 +205,50 @@ public class JmxNotificationDAOImplTest {
         verifyNoMoreInteractions(add);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void verifyAddNotifications() throws DescriptorParsingException,
+            StatementExecutionException {
+        PreparedStatement<JmxNotification> add = mock(PreparedStatement.class);
+        when(storage.prepareStatement(any(StatementDescriptor.class))).thenReturn(add);
+
+        JmxNotification first = new JmxNotification("foo-agent");
+        first.setVmId("foo-vmId");
+        first.setContents("first-content");
+        first.setTimeStamp(1L);
+        first.setSourceBackend("foo-source-backend");
+        first.setSourceDetails("foo-source-details");
+        JmxNotification second = new JmxNotification("foo-agent");
+        second.setVmId("foo-vmId");
+        second.setContents("second-content");
+        second.setTimeStamp(2L);
+        second.setSourceBackend("foo-source-backend");
+        second.setSourceDetails("bar-source-details");
+
+        dao.addNotifications(Arrays.asList(first, second));
+
+        // Prepared once for the whole batch
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<StatementDescriptor> captor = ArgumentCaptor.forClass(StatementDescriptor.class);
+        verify(storage).prepareStatement(captor.capture());
+        assertEquals(JmxNotificationDAOImpl.DESC_ADD_NOTIFICATION, captor.getValue().getDescriptor());
+
+        verify(add).setString(3, "first-content");
+        verify(add).setString(4, "foo-source-details");
+        verify(add).setLong(2, 1L);
+        verify(add).setString(3, "second-content");
+        verify(add).setString(4, "bar-source-details");
+        verify(add).setLong(2, 2L);
+        verify(add, times(2)).execute();
+    }
+
+    @Test
+    public void verifyAddNoNotifications() throws DescriptorParsingException {
+        dao.addNotifications(Collections.<JmxNotification>emptyList());
+
+        verify(storage, never()).prepareStatement(any(StatementDescriptor.class));
+    }
+
     @Test
     public void verifyGetNotificationsForVmSince() throws DescriptorParsingException, StatementExecutionException {
         long timeStamp = 10;
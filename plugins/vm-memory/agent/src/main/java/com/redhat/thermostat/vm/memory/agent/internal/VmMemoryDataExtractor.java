@@ -36,6 +36,9 @@
 
 package com.redhat.thermostat.vm.memory.agent.internal;
 
+import java.util.Arrays;
+
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounterRef;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import com.redhat.thermostat.vm.memory.common.model.VmMemoryStat.Generation;
@@ -49,147 +52,229 @@ import com.redhat.thermostat.vm.memory.common.model.VmMemoryStat.Generation;
  * provides is merely an abstraction over this (possibly always up-to-date)
  * ByteBuffer. So the data this class extracts is as current as possible, and
  * does not correspond to when the jvmstat update events fired.
+ * <p>
+ * An extractor belongs to a single VM and is reused for all of its updates.
+ * Counter names are built and resolved once, so reading numeric counters
+ * does not allocate once the extractor has seen every generation and space.
  */
 public class VmMemoryDataExtractor {
 
-    /*
-     * Note, there may be a performance issue to consider here. We have a lot of
-     * string constants. When we start adding some of the more heavyweight
-     * features, and running into CPU issues this may need to be reconsidered in
-     * order to avoid the String pool overhead. See also:
-     * http://docs.oracle.com/javase/6/docs/api/java/lang/String.html#intern()
-     */
+    private final PerformanceCounterRef totalGcGenerations = new PerformanceCounterRef("sun.gc.policy.generations");
+
+    private final PerformanceCounterRef metaspaceMaxCapacity = new PerformanceCounterRef("sun.gc.metaspace.maxCapacity");
+    private final PerformanceCounterRef metaspaceMinCapacity = new PerformanceCounterRef("sun.gc.metaspace.minCapacity");
+    private final PerformanceCounterRef metaspaceCapacity = new PerformanceCounterRef("sun.gc.metaspace.capacity");
+    private final PerformanceCounterRef metaspaceUsed = new PerformanceCounterRef("sun.gc.metaspace.used");
 
-    private final VmUpdate update;
+    private final PerformanceCounterRef tlabAllocThreads = new PerformanceCounterRef("sun.gc.tlab.allocThreads");
+    private final PerformanceCounterRef tlabAlloc = new PerformanceCounterRef("sun.gc.tlab.alloc");
+    private final PerformanceCounterRef tlabFills = new PerformanceCounterRef("sun.gc.tlab.fills");
+    private final PerformanceCounterRef tlabMaxFills = new PerformanceCounterRef("sun.gc.tlab.maxFills");
+    private final PerformanceCounterRef tlabSlowAlloc = new PerformanceCounterRef("sun.gc.tlab.slowAlloc");
+    private final PerformanceCounterRef tlabMaxSlowAlloc = new PerformanceCounterRef("sun.gc.tlab.maxSlowAlloc");
+    private final PerformanceCounterRef tlabGcWaste = new PerformanceCounterRef("sun.gc.tlab.gcWaste");
+    private final PerformanceCounterRef tlabMaxGcWaste = new PerformanceCounterRef("sun.gc.tlab.maxGcWaste");
+    private final PerformanceCounterRef tlabSlowWaste = new PerformanceCounterRef("sun.gc.tlab.slowWaste");
+    private final PerformanceCounterRef tlabMaxSlowWaste = new PerformanceCounterRef("sun.gc.tlab.maxSlowWaste");
+    private final PerformanceCounterRef tlabFastWaste = new PerformanceCounterRef("sun.gc.tlab.fastWaste");
+    private final PerformanceCounterRef tlabMaxFastWaste = new PerformanceCounterRef("sun.gc.tlab.maxFastWaste");
+
+    private GenerationCounters[] generations = new GenerationCounters[0];
+
+    private VmUpdate update;
+
+    public VmMemoryDataExtractor() {
+        this(null);
+    }
 
     public VmMemoryDataExtractor(VmUpdate update) {
         this.update = update;
     }
-    
-    public Long getTotalGcGenerations() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.policy.generations");
+
+    /**
+     * Sets the update subsequent values are read from.
+     */
+    public void setUpdate(VmUpdate update) {
+        this.update = update;
+    }
+
+    public long getTotalGcGenerations(long defaultValue) throws VmUpdateException {
+        return totalGcGenerations.getLong(update, defaultValue);
     }
 
-    public String getGenerationName(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterString("sun.gc.generation." + generation + ".name");
+    public String getGenerationName(int generation) throws VmUpdateException {
+        return generation(generation).name.getString(update);
     }
 
-    public Long getGenerationCapacity(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".capacity");
+    public long getGenerationCapacity(int generation, long defaultValue) throws VmUpdateException {
+        return generation(generation).capacity.getLong(update, defaultValue);
     }
 
-    public Long getGenerationMaxCapacity(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".maxCapacity");
+    public long getGenerationMaxCapacity(int generation, long defaultValue) throws VmUpdateException {
+        return generation(generation).maxCapacity.getLong(update, defaultValue);
     }
 
-    public String getGenerationCollector(long generation) throws VmUpdateException {
+    public String getGenerationCollector(int generation) throws VmUpdateException {
         // this is just re-implementing getCollectorName()
         // TODO check generation number and collector number are always associated
-        String collector = update.getPerformanceCounterString("sun.gc.collector." + generation + ".name");
+        String collector = generation(generation).collector.getString(update);
         if (collector == null) {
             collector = Generation.COLLECTOR_NONE;
         }
         return collector;
     }
 
-    public Long getTotalSpaces(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".spaces");
+    public long getTotalSpaces(int generation, long defaultValue) throws VmUpdateException {
+        return generation(generation).spaces.getLong(update, defaultValue);
     }
 
-    public String getSpaceName(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterString("sun.gc.generation." + generation + ".space." + space + ".name");
+    public String getSpaceName(int generation, int space) throws VmUpdateException {
+        return space(generation, space).name.getString(update);
     }
 
-    public Long getSpaceCapacity(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".space." + space + ".capacity");
+    public long getSpaceCapacity(int generation, int space, long defaultValue) throws VmUpdateException {
+        return space(generation, space).capacity.getLong(update, defaultValue);
     }
 
-    public Long getSpaceMaxCapacity(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".space." + space + ".maxCapacity");
+    public long getSpaceMaxCapacity(int generation, int space, long defaultValue) throws VmUpdateException {
+        return space(generation, space).maxCapacity.getLong(update, defaultValue);
     }
 
-    public Long getSpaceUsed(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".space." + space + ".used");
+    public long getSpaceUsed(int generation, int space, long defaultValue) throws VmUpdateException {
+        return space(generation, space).used.getLong(update, defaultValue);
     }
 
     public long getMetaspaceMaxCapacity(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.maxCapacity", defaultValue);
+        return getLongValueOrDefault(metaspaceMaxCapacity, defaultValue);
     }
 
     public long getMetaspaceMinCapacity(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.minCapacity", defaultValue);
+        return getLongValueOrDefault(metaspaceMinCapacity, defaultValue);
     }
 
     public long getMetaspaceCapacity(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.capacity", defaultValue);
+        return getLongValueOrDefault(metaspaceCapacity, defaultValue);
     }
 
     public long getMetaspaceUsed(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.used", defaultValue);
+        return getLongValueOrDefault(metaspaceUsed, defaultValue);
     }
 
     // See https://blogs.oracle.com/jonthecollector/entry/the_real_thing
 
     public long getTlabTotalAllocatingThreads(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.allocThreads", defaultValue);
+        return getLongValueOrDefault(tlabAllocThreads, defaultValue);
     }
 
     public long getTlabTotalAllocations(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.alloc", defaultValue);
+        return getLongValueOrDefault(tlabAlloc, defaultValue);
     }
 
     public long getTlabTotalRefills(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.fills", defaultValue);
+        return getLongValueOrDefault(tlabFills, defaultValue);
     }
 
     public long getTlabMaxRefills(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxFills", defaultValue);
+        return getLongValueOrDefault(tlabMaxFills, defaultValue);
     }
 
     public long getTlabTotalSlowAllocs(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.slowAlloc", defaultValue);
+        return getLongValueOrDefault(tlabSlowAlloc, defaultValue);
     }
 
     public long getTlabMaxSlowAllocs(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxSlowAlloc", defaultValue);
+        return getLongValueOrDefault(tlabMaxSlowAlloc, defaultValue);
     }
 
     public long getTlabTotalGcWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.gcWaste", defaultValue);
+        return getLongValueOrDefault(tlabGcWaste, defaultValue);
     }
 
     public long getTlabMaxGcWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxGcWaste", defaultValue);
+        return getLongValueOrDefault(tlabMaxGcWaste, defaultValue);
     }
 
     public long getTlabTotalSlowWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.slowWaste", defaultValue);
+        return getLongValueOrDefault(tlabSlowWaste, defaultValue);
     }
 
     public long getTlabMaxSlowWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxSlowWaste", defaultValue);
+        return getLongValueOrDefault(tlabMaxSlowWaste, defaultValue);
     }
 
     public long getTlabTotalFastWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.fastWaste", defaultValue);
+        return getLongValueOrDefault(tlabFastWaste, defaultValue);
     }
 
     public long getTlabMaxFastWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxFastWaste", defaultValue);
+        return getLongValueOrDefault(tlabMaxFastWaste, defaultValue);
     }
 
     /** package private for testing */
-    long getLongValueOrDefault(String name, long defaultValue) {
+    long getLongValueOrDefault(PerformanceCounterRef counter, long defaultValue) {
         try {
-            Long value = update.getPerformanceCounterLong(name);
-            if (value == null) {
-                return defaultValue;
-            }
-            return value.longValue();
+            return counter.getLong(update, defaultValue);
         } catch (VmUpdateException e) {
             return defaultValue;
         }
     }
 
-}
+    private GenerationCounters generation(int generation) {
+        if (generation >= generations.length) {
+            int oldLength = generations.length;
+            generations = Arrays.copyOf(generations, generation + 1);
+            for (int i = oldLength; i < generations.length; i++) {
+                generations[i] = new GenerationCounters(i);
+            }
+        }
+        return generations[generation];
+    }
+
+    private SpaceCounters space(int generation, int space) {
+        GenerationCounters counters = generation(generation);
+        if (space >= counters.spaceCounters.length) {
+            int oldLength = counters.spaceCounters.length;
+            counters.spaceCounters = Arrays.copyOf(counters.spaceCounters, space + 1);
+            for (int i = oldLength; i < counters.spaceCounters.length; i++) {
+                counters.spaceCounters[i] = new SpaceCounters(generation, i);
+            }
+        }
+        return counters.spaceCounters[space];
+    }
 
+    private static class GenerationCounters {
+
+        private final PerformanceCounterRef name;
+        private final PerformanceCounterRef capacity;
+        private final PerformanceCounterRef maxCapacity;
+        private final PerformanceCounterRef collector;
+        private final PerformanceCounterRef spaces;
+        private SpaceCounters[] spaceCounters = new SpaceCounters[0];
+
+        private GenerationCounters(int generation) {
+            String prefix = "sun.gc.generation." + generation;
+            name = new PerformanceCounterRef(prefix + ".name");
+            capacity = new PerformanceCounterRef(prefix + ".capacity");
+            maxCapacity = new PerformanceCounterRef(prefix + ".maxCapacity");
+            spaces = new PerformanceCounterRef(prefix + ".spaces");
+            collector = new PerformanceCounterRef("sun.gc.collector." + generation + ".name");
+        }
+    }
+
+    private static class SpaceCounters {
+
+        private final PerformanceCounterRef name;
+        private final PerformanceCounterRef capacity;
+        private final PerformanceCounterRef maxCapacity;
+        private final PerformanceCounterRef used;
+
+        private SpaceCounters(int generation, int space) {
+            String prefix = "sun.gc.generation." + generation + ".space." + space;
+            name = new PerformanceCounterRef(prefix + ".name");
+            capacity = new PerformanceCounterRef(prefix + ".capacity");
+            maxCapacity = new PerformanceCounterRef(prefix + ".maxCapacity");
+            used = new PerformanceCounterRef(prefix + ".used");
+        }
+    }
+
+}
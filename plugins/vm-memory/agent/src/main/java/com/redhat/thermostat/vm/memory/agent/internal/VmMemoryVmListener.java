@@ -63,6 +63,7 @@ public class VmMemoryVmListener implements VmUpdateListener {
     private final VmTlabStatDAO tlabDAO;
     private final String writerId;
     private final Clock clock;
+    private final VmMemoryDataExtractor extractor = new VmMemoryDataExtractor();
     
     private boolean error;
 
@@ -80,7 +81,7 @@ public class VmMemoryVmListener implements VmUpdateListener {
 
     @Override
     public void countersUpdated(VmUpdate update) {
-        VmMemoryDataExtractor extractor = new VmMemoryDataExtractor(update);
+        extractor.setUpdate(update);
         recordMemoryStat(extractor);
         recordTlabStat(extractor);
     }
@@ -94,15 +95,15 @@ public class VmMemoryVmListener implements VmUpdateListener {
             long metaspaceCapacity = extractor.getMetaspaceCapacity(VmMemoryStat.UNKNOWN);
             long metaspaceUsed = extractor.getMetaspaceUsed(VmMemoryStat.UNKNOWN);
 
-            Long maxGenerations = extractor.getTotalGcGenerations();
-            if (maxGenerations != null) {
-                List<Generation> generations = new ArrayList<Generation>(maxGenerations.intValue());
+            long maxGenerations = extractor.getTotalGcGenerations(VmMemoryStat.UNKNOWN);
+            if (maxGenerations != VmMemoryStat.UNKNOWN) {
+                List<Generation> generations = new ArrayList<Generation>((int) maxGenerations);
                 for (int generation = 0; generation < maxGenerations; generation++) {
                     Generation g = createGeneration(extractor, generation);
                     if (g != null) {
-                        Long maxSpaces = extractor.getTotalSpaces(generation);
-                        if (maxSpaces != null) {
-                            List<Space> spaces = new ArrayList<Space>(maxSpaces.intValue());
+                        long maxSpaces = extractor.getTotalSpaces(generation, VmMemoryStat.UNKNOWN);
+                        if (maxSpaces != VmMemoryStat.UNKNOWN) {
+                            List<Space> spaces = new ArrayList<Space>((int) maxSpaces);
                             for (int space = 0; space < maxSpaces; space++) {
                                 Space s = createSpace(extractor, generation,
                                         space);
@@ -140,14 +141,14 @@ public class VmMemoryVmListener implements VmUpdateListener {
                     + generation + " for VM " + vmId);
             return null;
         }
-        Long capacity = extractor.getGenerationCapacity(generation);
-        if (capacity == null) {
+        long capacity = extractor.getGenerationCapacity(generation, VmMemoryStat.UNKNOWN);
+        if (capacity == VmMemoryStat.UNKNOWN) {
             logWarningOnce("Unable to determine capacity of generation " 
                     + generation + " for VM " + vmId);
             return null;
         }
-        Long maxCapacity = extractor.getGenerationMaxCapacity(generation);
-        if (maxCapacity == null) {
+        long maxCapacity = extractor.getGenerationMaxCapacity(generation, VmMemoryStat.UNKNOWN);
+        if (maxCapacity == VmMemoryStat.UNKNOWN) {
             logWarningOnce("Unable to determine max capacity of generation " 
                     + generation + " for VM " + vmId);
             return null;
@@ -175,20 +176,20 @@ public class VmMemoryVmListener implements VmUpdateListener {
                     + " in generation " + generation + " for VM " + vmId);
             return null;
         }
-        Long capacity = extractor.getSpaceCapacity(generation, space);
-        if (capacity == null) {
+        long capacity = extractor.getSpaceCapacity(generation, space, VmMemoryStat.UNKNOWN);
+        if (capacity == VmMemoryStat.UNKNOWN) {
             logWarningOnce("Unable to determine capacity of space " + space 
                     + " in generation " + generation + " for VM " + vmId);
             return null;
         }
-        Long maxCapacity = extractor.getSpaceMaxCapacity(generation, space);
-        if (maxCapacity == null) {
+        long maxCapacity = extractor.getSpaceMaxCapacity(generation, space, VmMemoryStat.UNKNOWN);
+        if (maxCapacity == VmMemoryStat.UNKNOWN) {
             logWarningOnce("Unable to determine max capacity of space " + space 
                     + " in generation " + generation + " for VM " + vmId);
             return null;
         }
-        Long used = extractor.getSpaceUsed(generation, space);
-        if (used == null) {
+        long used = extractor.getSpaceUsed(generation, space, VmMemoryStat.UNKNOWN);
+        if (used == VmMemoryStat.UNKNOWN) {
             logWarningOnce("Unable to determine used memory of space " + space 
                     + " in generation " + generation + " for VM " + vmId);
             return null;
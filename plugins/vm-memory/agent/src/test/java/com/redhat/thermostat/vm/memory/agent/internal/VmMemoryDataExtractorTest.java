@@ -39,13 +39,17 @@ package com.redhat.thermostat.vm.memory.agent.internal;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.redhat.thermostat.vm.memory.common.model.VmMemoryStat;
 import com.redhat.thermostat.vm.memory.common.model.VmMemoryStat.Generation;
 
 public class VmMemoryDataExtractorTest {
@@ -62,11 +66,11 @@ public class VmMemoryDataExtractorTest {
     @Test
     public void testTotalGcGenerations() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.policy.generations";
-        final Long GC_GENERATIONS = 99l;
+        final long GC_GENERATIONS = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(GC_GENERATIONS);
+        mockLongCounter(MONITOR_NAME, GC_GENERATIONS);
         
-        Long returned = extractor.getTotalGcGenerations();
+        long returned = extractor.getTotalGcGenerations(VmMemoryStat.UNKNOWN);
         assertEquals(GC_GENERATIONS, returned);
     }
 
@@ -75,7 +79,7 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.name";
         final String GENERATION_NAME = "Youth";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(GENERATION_NAME);
+        mockStringCounter(MONITOR_NAME, GENERATION_NAME);
 
         String returned = extractor.getGenerationName(0);
         assertEquals(GENERATION_NAME, returned);
@@ -84,22 +88,22 @@ public class VmMemoryDataExtractorTest {
     @Test
     public void testGenerationCapacity() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.generation.0.capacity";
-        final Long GENERATION_CAPACITY = 99l;
+        final long GENERATION_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(GENERATION_CAPACITY);
+        mockLongCounter(MONITOR_NAME, GENERATION_CAPACITY);
 
-        Long returned = extractor.getGenerationCapacity(0);
+        long returned = extractor.getGenerationCapacity(0, VmMemoryStat.UNKNOWN);
         assertEquals(GENERATION_CAPACITY, returned);
     }
 
     @Test
     public void testGenerationMaxCapacity() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.generation.0.maxCapacity";
-        final Long GENERATION_MAX_CAPACITY = 99l;
+        final long GENERATION_MAX_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(GENERATION_MAX_CAPACITY);
+        mockLongCounter(MONITOR_NAME, GENERATION_MAX_CAPACITY);
 
-        Long returned = extractor.getGenerationMaxCapacity(0);
+        long returned = extractor.getGenerationMaxCapacity(0, VmMemoryStat.UNKNOWN);
         assertEquals(GENERATION_MAX_CAPACITY, returned);
     }
 
@@ -108,7 +112,7 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.collector.0.name";
         final String GENERATION_COLLECTOR = "generation collector";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(GENERATION_COLLECTOR);
+        mockStringCounter(MONITOR_NAME, GENERATION_COLLECTOR);
 
         String returned = extractor.getGenerationCollector(0);
         assertEquals(GENERATION_COLLECTOR, returned);
@@ -118,7 +122,7 @@ public class VmMemoryDataExtractorTest {
     public void testGenerationCollectorNone() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.collector.0.name";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(null);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(null);
 
         String returned = extractor.getGenerationCollector(0);
         assertEquals(Generation.COLLECTOR_NONE, returned);
@@ -127,11 +131,11 @@ public class VmMemoryDataExtractorTest {
     @Test
     public void testTotalSpaces() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.generation.0.spaces";
-        final Long TOTAL_SPACES = 99l;
+        final long TOTAL_SPACES = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(TOTAL_SPACES);
+        mockLongCounter(MONITOR_NAME, TOTAL_SPACES);
 
-        Long returned = extractor.getTotalSpaces(0);
+        long returned = extractor.getTotalSpaces(0, VmMemoryStat.UNKNOWN);
         assertEquals(TOTAL_SPACES, returned);
     }
 
@@ -141,7 +145,7 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.name";
         final String SPACE_NAME = "Hilbert";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(SPACE_NAME);
+        mockStringCounter(MONITOR_NAME, SPACE_NAME);
 
         String returned = extractor.getSpaceName(0,0);
         assertEquals(SPACE_NAME, returned);
@@ -150,35 +154,68 @@ public class VmMemoryDataExtractorTest {
     @Test
     public void testSpaceCapacity() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.capacity";
-        final Long SPACE_CAPACITY = 99l;
+        final long SPACE_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(SPACE_CAPACITY);
+        mockLongCounter(MONITOR_NAME, SPACE_CAPACITY);
 
-        Long returned = extractor.getSpaceCapacity(0,0);
+        long returned = extractor.getSpaceCapacity(0, 0, VmMemoryStat.UNKNOWN);
         assertEquals(SPACE_CAPACITY, returned);
     }
 
     @Test
     public void testSpaceMaxCapacity() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.maxCapacity";
-        final Long SPACE_MAX_CAPACITY = 99l;
+        final long SPACE_MAX_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(SPACE_MAX_CAPACITY);
+        mockLongCounter(MONITOR_NAME, SPACE_MAX_CAPACITY);
 
-        Long returned = extractor.getSpaceMaxCapacity(0,0);
+        long returned = extractor.getSpaceMaxCapacity(0, 0, VmMemoryStat.UNKNOWN);
         assertEquals(SPACE_MAX_CAPACITY, returned);
     }
 
     @Test
     public void testSpaceUsed() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.used";
-        final Long SPACE_USED = 99l;
+        final long SPACE_USED = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(SPACE_USED);
+        mockLongCounter(MONITOR_NAME, SPACE_USED);
 
-        Long returned = extractor.getSpaceUsed(0,0);
+        long returned = extractor.getSpaceUsed(0, 0, VmMemoryStat.UNKNOWN);
         assertEquals(SPACE_USED, returned);
     }
 
-}
+    @Test
+    public void testCounterResolvedOnce() throws VmUpdateException {
+        final String MONITOR_NAME = "sun.gc.generation.0.space.0.used";
+        PerformanceCounter counter = mockLongCounter(MONITOR_NAME, 10l);
+
+        extractor.getSpaceUsed(0, 0, VmMemoryStat.UNKNOWN);
+        when(counter.longValue()).thenReturn(20l);
+        VmUpdate nextUpdate = mock(VmUpdate.class);
+        extractor.setUpdate(nextUpdate);
+
+        assertEquals(20l, extractor.getSpaceUsed(0, 0, VmMemoryStat.UNKNOWN));
+        verify(update, times(1)).getPerformanceCounter(MONITOR_NAME);
+        verify(nextUpdate, times(0)).getPerformanceCounter(MONITOR_NAME);
+    }
+
+    @Test
+    public void testMissingCounterReturnsDefault() throws VmUpdateException {
+        assertEquals(VmMemoryStat.UNKNOWN, extractor.getSpaceUsed(0, 0, VmMemoryStat.UNKNOWN));
+        assertEquals(VmMemoryStat.UNKNOWN, extractor.getMetaspaceUsed(VmMemoryStat.UNKNOWN));
+    }
+
+    private PerformanceCounter mockLongCounter(String name, long value) throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
+        when(counter.longValue()).thenReturn(value);
+        when(update.getPerformanceCounter(eq(name))).thenReturn(counter);
+        return counter;
+    }
 
+    private void mockStringCounter(String name, String value) throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
+        when(counter.stringValue()).thenReturn(value);
+        when(update.getPerformanceCounter(eq(name))).thenReturn(counter);
+    }
+
+}
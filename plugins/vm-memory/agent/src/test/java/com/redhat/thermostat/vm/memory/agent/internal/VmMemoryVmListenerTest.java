@@ -39,6 +39,7 @@ package com.redhat.thermostat.vm.memory.agent.internal;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -46,6 +47,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.redhat.thermostat.jvm.overview.agent.PerformanceCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import org.junit.Before;
@@ -122,7 +124,7 @@ public class VmMemoryVmListenerTest {
     }
 
     private void mockTotalGenerations(long gens) throws VmUpdateException {
-        when(extractor.getTotalGcGenerations()).thenReturn(gens);
+        when(extractor.getTotalGcGenerations(VmMemoryStat.UNKNOWN)).thenReturn(gens);
     }
 
     private void mockGenerationName(int gen) throws VmUpdateException {
@@ -130,11 +132,11 @@ public class VmMemoryVmListenerTest {
     }
     
     private void mockGenerationCapacity(int gen) throws VmUpdateException {
-        when(extractor.getGenerationCapacity(gen)).thenReturn(GEN_CAPS[gen]);
+        when(extractor.getGenerationCapacity(gen, VmMemoryStat.UNKNOWN)).thenReturn(GEN_CAPS[gen]);
     }
 
     private void mockGenerationMaxCapacity(int gen) throws VmUpdateException {
-        when(extractor.getGenerationMaxCapacity(gen)).thenReturn(GEN_MAX_CAPS[gen]);
+        when(extractor.getGenerationMaxCapacity(gen, VmMemoryStat.UNKNOWN)).thenReturn(GEN_MAX_CAPS[gen]);
     }
     
     private void mockGenerationGC(int gen) throws VmUpdateException {
@@ -142,7 +144,7 @@ public class VmMemoryVmListenerTest {
     }
     
     private void mockTotalSpaces(int gen) throws VmUpdateException {
-        when(extractor.getTotalSpaces(gen)).thenReturn(GEN_SPACES[gen]);
+        when(extractor.getTotalSpaces(gen, VmMemoryStat.UNKNOWN)).thenReturn(GEN_SPACES[gen]);
     }
     
     private void mockSpaceName(int gen, int space) throws VmUpdateException {
@@ -150,15 +152,15 @@ public class VmMemoryVmListenerTest {
     }
     
     private void mockSpaceCapacity(int gen, int space) throws VmUpdateException {
-        when(extractor.getSpaceCapacity(gen, space)).thenReturn(SPACE_CAPS[gen][space]);
+        when(extractor.getSpaceCapacity(gen, space, VmMemoryStat.UNKNOWN)).thenReturn(SPACE_CAPS[gen][space]);
     }
     
     private void mockSpaceMaxCapacity(int gen, int space) throws VmUpdateException {
-        when(extractor.getSpaceMaxCapacity(gen, space)).thenReturn(SPACE_MAX_CAPS[gen][space]);
+        when(extractor.getSpaceMaxCapacity(gen, space, VmMemoryStat.UNKNOWN)).thenReturn(SPACE_MAX_CAPS[gen][space]);
     }
     
     private void mockSpaceUsed(int gen, int space) throws VmUpdateException {
-        when(extractor.getSpaceUsed(gen, space)).thenReturn(SPACE_USED[gen][space]);
+        when(extractor.getSpaceUsed(gen, space, VmMemoryStat.UNKNOWN)).thenReturn(SPACE_USED[gen][space]);
     }
 
     private void mockMetaspace() {
@@ -174,7 +176,9 @@ public class VmMemoryVmListenerTest {
 
     @Test
     public void testMonitorsUpdated() throws VmUpdateException {
+        PerformanceCounter counter = mock(PerformanceCounter.class);
         VmUpdate update = mock(VmUpdate.class);
+        when(update.getPerformanceCounter(anyString())).thenReturn(counter);
         vmListener.countersUpdated(update);
 
         verify(vmMemoryStatDAO).putVmMemoryStat(isA(VmMemoryStat.class));
@@ -215,7 +219,7 @@ public class VmMemoryVmListenerTest {
 
     @Test
     public void testRecordingMemoryInPresenseOfExtrationErrors() throws VmUpdateException {
-        when(extractor.getTotalGcGenerations()).thenThrow(new VmUpdateException());
+        when(extractor.getTotalGcGenerations(VmMemoryStat.UNKNOWN)).thenThrow(new VmUpdateException());
         vmListener.recordMemoryStat(extractor);
 
         verifyNoMoreInteractions(vmMemoryStatDAO);
@@ -223,7 +227,7 @@ public class VmMemoryVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoTotal() throws VmUpdateException {
-        when(extractor.getTotalGcGenerations()).thenReturn(null);
+        when(extractor.getTotalGcGenerations(VmMemoryStat.UNKNOWN)).thenReturn(VmMemoryStat.UNKNOWN);
         vmListener.recordMemoryStat(extractor);
         verify(vmMemoryStatDAO, never()).putVmMemoryStat(any(VmMemoryStat.class));
     }
@@ -256,7 +260,7 @@ public class VmMemoryVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoCapacity() throws VmUpdateException {
-        when(extractor.getGenerationCapacity(0)).thenReturn(null);
+        when(extractor.getGenerationCapacity(0, VmMemoryStat.UNKNOWN)).thenReturn(VmMemoryStat.UNKNOWN);
         vmListener.recordMemoryStat(extractor);
         ArgumentCaptor<VmMemoryStat> captor = ArgumentCaptor.forClass(VmMemoryStat.class);
         verify(vmMemoryStatDAO).putVmMemoryStat(captor.capture());
@@ -282,7 +286,7 @@ public class VmMemoryVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoMaxCapacity() throws VmUpdateException {
-        when(extractor.getGenerationMaxCapacity(0)).thenReturn(null);
+        when(extractor.getGenerationMaxCapacity(0, VmMemoryStat.UNKNOWN)).thenReturn(VmMemoryStat.UNKNOWN);
         vmListener.recordMemoryStat(extractor);
         ArgumentCaptor<VmMemoryStat> captor = ArgumentCaptor.forClass(VmMemoryStat.class);
         verify(vmMemoryStatDAO).putVmMemoryStat(captor.capture());
@@ -334,7 +338,7 @@ public class VmMemoryVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoTotalSpaces() throws VmUpdateException {
-        when(extractor.getTotalSpaces(0)).thenReturn(null);
+        when(extractor.getTotalSpaces(0, VmMemoryStat.UNKNOWN)).thenReturn(VmMemoryStat.UNKNOWN);
         vmListener.recordMemoryStat(extractor);
         ArgumentCaptor<VmMemoryStat> captor = ArgumentCaptor.forClass(VmMemoryStat.class);
         verify(vmMemoryStatDAO).putVmMemoryStat(captor.capture());
@@ -394,7 +398,7 @@ public class VmMemoryVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoSpaceCapacity() throws VmUpdateException {
-        when(extractor.getSpaceCapacity(0, 1)).thenReturn(null);
+        when(extractor.getSpaceCapacity(0, 1, VmMemoryStat.UNKNOWN)).thenReturn(VmMemoryStat.UNKNOWN);
         vmListener.recordMemoryStat(extractor);
         ArgumentCaptor<VmMemoryStat> captor = ArgumentCaptor.forClass(VmMemoryStat.class);
         verify(vmMemoryStatDAO).putVmMemoryStat(captor.capture());
@@ -428,7 +432,7 @@ public class VmMemoryVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoSpaceMaxCapacity() throws VmUpdateException {
-        when(extractor.getSpaceMaxCapacity(0, 1)).thenReturn(null);
+        when(extractor.getSpaceMaxCapacity(0, 1, VmMemoryStat.UNKNOWN)).thenReturn(VmMemoryStat.UNKNOWN);
         vmListener.recordMemoryStat(extractor);
         ArgumentCaptor<VmMemoryStat> captor = ArgumentCaptor.forClass(VmMemoryStat.class);
         verify(vmMemoryStatDAO).putVmMemoryStat(captor.capture());
@@ -462,7 +466,7 @@ public class VmMemoryVmListenerTest {
     
     @Test
     public void testRecordMemoryStatNoSpaceUsed() throws VmUpdateException {
-        when(extractor.getSpaceUsed(0, 1)).thenReturn(null);
+        when(extractor.getSpaceUsed(0, 1, VmMemoryStat.UNKNOWN)).thenReturn(VmMemoryStat.UNKNOWN);
         vmListener.recordMemoryStat(extractor);
         ArgumentCaptor<VmMemoryStat> captor = ArgumentCaptor.forClass(VmMemoryStat.class);
         verify(vmMemoryStatDAO).putVmMemoryStat(captor.capture());
@@ -41,10 +41,12 @@ import java.util.logging.Logger;
 
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
-import org.osgi.util.tracker.ServiceTracker;
 
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
+import com.redhat.thermostat.common.MultipleServiceTracker;
+import com.redhat.thermostat.common.MultipleServiceTracker.Action;
+import com.redhat.thermostat.common.MultipleServiceTracker.DependencyProvider;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugins.PluginConfiguration;
 import com.redhat.thermostat.common.utils.LoggingUtils;
@@ -57,7 +59,7 @@ public class Activator implements BundleActivator {
     private static final String PLUGIN_ID = "vm-memory";
     
     private final DAOCreator creator;
-    private ServiceTracker tracker;
+    private MultipleServiceTracker tracker;
     private ServiceRegistration memoryReg;
     private ServiceRegistration tlabReg;
     
@@ -70,33 +72,40 @@ public class Activator implements BundleActivator {
     }
 
     @Override
-    public void start(BundleContext context) throws Exception {
-        tracker = new ServiceTracker(context, ConfigurationInfoSource.class.getName(), null) {
+    public void start(final BundleContext context) throws Exception {
+        Class<?>[] deps = new Class<?>[] {
+                ConfigurationInfoSource.class,
+                GatewayBatchWriter.class,
+        };
+        tracker = new MultipleServiceTracker(context, deps, new Action() {
+
             @Override
-            public Object addingService(ServiceReference reference) {
-                ConfigurationInfoSource source = (ConfigurationInfoSource) super.addingService(reference);
+            public void dependenciesAvailable(DependencyProvider services) {
+                ConfigurationInfoSource source = services.get(ConfigurationInfoSource.class);
+                GatewayBatchWriter writer = services.get(GatewayBatchWriter.class);
                 PluginConfiguration config = new PluginConfiguration(source, PLUGIN_ID);
                 try {
-                    VmMemoryStatDAO vmMemoryStatDao = creator.createMemoryStatDAO(config);
+                    VmMemoryStatDAO vmMemoryStatDao = creator.createMemoryStatDAO(config, writer);
                     memoryReg = context.registerService(VmMemoryStatDAO.class.getName(), vmMemoryStatDao, null);
-                    VmTlabStatDAO vmTlabStatDao = creator.createTlabStatDAO(config);
+                    VmTlabStatDAO vmTlabStatDao = creator.createTlabStatDAO(config, writer);
                     tlabReg = context.registerService(VmTlabStatDAO.class.getName(), vmTlabStatDao, null);
                 } catch (Exception e) {
                     logger.log(Level.SEVERE, "Failed to create DAOs", e);
                 }
-                return source;
             }
+
             @Override
-            public void removedService(ServiceReference reference, Object service) {
+            public void dependenciesUnavailable() {
                 if (memoryReg != null) {
                     memoryReg.unregister();
+                    memoryReg = null;
                 }
                 if (tlabReg != null) {
                     tlabReg.unregister();
+                    tlabReg = null;
                 }
-                super.removedService(reference, service);
             }
-        };
+        });
         tracker.open();
     }
 
@@ -106,11 +115,11 @@ public class Activator implements BundleActivator {
     }
     
     static class DAOCreator {
-        VmMemoryStatDAO createMemoryStatDAO(PluginConfiguration config) throws Exception {
-            return new VmMemoryStatDAOImpl(config);
+        VmMemoryStatDAO createMemoryStatDAO(PluginConfiguration config, GatewayBatchWriter writer) throws Exception {
+            return new VmMemoryStatDAOImpl(config, writer);
         }
-        VmTlabStatDAO createTlabStatDAO(PluginConfiguration config) throws Exception {
-            return new VmTlabStatDAOImpl(config);
+        VmTlabStatDAO createTlabStatDAO(PluginConfiguration config, GatewayBatchWriter writer) throws Exception {
+            return new VmTlabStatDAOImpl(config, writer);
         }
     }
 
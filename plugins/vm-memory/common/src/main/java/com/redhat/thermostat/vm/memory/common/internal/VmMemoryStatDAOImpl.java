@@ -36,102 +36,32 @@
 
 package com.redhat.thermostat.vm.memory.common.internal;
 
-import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeoutException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
 import com.redhat.thermostat.common.plugins.PluginConfiguration;
-import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.vm.memory.common.VmMemoryStatDAO;
 import com.redhat.thermostat.vm.memory.common.model.VmMemoryStat;
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
-import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.StringContentProvider;
-import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.http.HttpStatus;
 
 class VmMemoryStatDAOImpl implements VmMemoryStatDAO {
 
-    private static final Logger logger = LoggingUtils.getLogger(VmMemoryStatDAOImpl.class);
-    private static final String CONTENT_TYPE = "application/json";
-
     private final String gatewayURL;
-    private final HttpClient client;
-    private final HttpHelper httpHelper;
-    private final JsonHelper jsonHelper;
+    private final GatewayBatchWriter writer;
+    private final VmMemoryStatTypeAdapter adapter;
 
-    VmMemoryStatDAOImpl(PluginConfiguration config) throws Exception {
-        this(config, new HttpClient(), new HttpHelper(), new JsonHelper(new VmMemoryStatTypeAdapter()));
+    VmMemoryStatDAOImpl(PluginConfiguration config, GatewayBatchWriter writer) throws Exception {
+        this(config, writer, new VmMemoryStatTypeAdapter());
     }
 
-    VmMemoryStatDAOImpl(PluginConfiguration config, HttpClient client, HttpHelper httpHelper, 
-            JsonHelper jsonHelper) throws Exception {
+    VmMemoryStatDAOImpl(PluginConfiguration config, GatewayBatchWriter writer,
+            VmMemoryStatTypeAdapter adapter) throws Exception {
         this.gatewayURL = config.getGatewayURL();
-        this.client = client;
-        this.httpHelper = httpHelper;
-        this.jsonHelper = jsonHelper;
-
-        this.httpHelper.startClient(this.client);
+        this.writer = writer;
+        this.adapter = adapter;
     }
 
     @Override
     public void putVmMemoryStat(final VmMemoryStat stat) {
-        try {
-            String json = jsonHelper.toJson(Arrays.asList(stat));
-            StringContentProvider provider = httpHelper.createContentProvider(json);
-
-            Request httpRequest = client.newRequest(gatewayURL);
-            httpRequest.method(HttpMethod.POST);
-            httpRequest.content(provider, CONTENT_TYPE);
-            sendRequest(httpRequest);
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Failed to send VmMemoryStat to Web Gateway", e);
-        }
+        writer.write(gatewayURL, stat, adapter);
     }
 
-    private void sendRequest(Request httpRequest)
-            throws InterruptedException, TimeoutException, ExecutionException, IOException {
-        ContentResponse resp = httpRequest.send();
-        int status = resp.getStatus();
-        if (status != HttpStatus.OK_200) {
-            throw new IOException("Gateway returned HTTP status " + String.valueOf(status) + " - " + resp.getReason());
-        }
-    }
-
-    protected Logger getLogger() {
-        return logger;
-    }
-
-    // For testing purposes
-    static class JsonHelper {
-
-        private final VmMemoryStatTypeAdapter adapter;
-
-        public JsonHelper(VmMemoryStatTypeAdapter adapter) {
-            this.adapter = adapter;
-        }
-
-        String toJson(List<VmMemoryStat> stats) throws IOException {
-            return adapter.toJson(stats);
-        }
-    }
-
-    // For testing purposes
-    static class HttpHelper {
-
-        void startClient(HttpClient httpClient) throws Exception {
-            httpClient.start();
-        }
-
-        StringContentProvider createContentProvider(String content) {
-            return new StringContentProvider(content);
-        }
-
-    }
 }
 
@@ -43,6 +43,7 @@ import static org.mockito.Mockito.when;
 
 import org.junit.Test;
 
+import com.redhat.thermostat.agent.http.GatewayBatchWriter;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugins.PluginConfiguration;
 import com.redhat.thermostat.testutils.StubBundleContext;
@@ -55,23 +56,25 @@ public class ActivatorTest {
         DAOCreator creator = mock(DAOCreator.class);
         VmMemoryStatDAOImpl memoryDao = mock(VmMemoryStatDAOImpl.class);
         VmTlabStatDAOImpl tlabDao = mock(VmTlabStatDAOImpl.class);
-        when(creator.createMemoryStatDAO(any(PluginConfiguration.class))).thenReturn(memoryDao);
-        when(creator.createTlabStatDAO(any(PluginConfiguration.class))).thenReturn(tlabDao);
+        when(creator.createMemoryStatDAO(any(PluginConfiguration.class), any(GatewayBatchWriter.class))).thenReturn(memoryDao);
+        when(creator.createTlabStatDAO(any(PluginConfiguration.class), any(GatewayBatchWriter.class))).thenReturn(tlabDao);
         
         ConfigurationInfoSource source = mock(ConfigurationInfoSource.class);
         StubBundleContext context = new StubBundleContext();
         context.registerService(ConfigurationInfoSource.class.getName(), source, null);
+        GatewayBatchWriter writer = mock(GatewayBatchWriter.class);
+        context.registerService(GatewayBatchWriter.class.getName(), writer, null);
 
         Activator activator = new Activator(creator);
 
         activator.start(context);
 
-        assertEquals(3, context.getAllServices().size());
+        assertEquals(4, context.getAllServices().size());
 
         activator.stop(context);
 
         assertEquals(0, context.getServiceListeners().size());
-        assertEquals(1, context.getAllServices().size());
+        assertEquals(2, context.getAllServices().size());
     }
 
 }
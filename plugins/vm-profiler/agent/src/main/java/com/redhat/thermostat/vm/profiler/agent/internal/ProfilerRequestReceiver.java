@@ -67,7 +67,7 @@ public class ProfilerRequestReceiver implements RequestReceiver {
         try {
             switch (value) {
             case ProfileRequest.START_PROFILING:
-                return startProfiling(vmId);
+                return startProfiling(vmId, request);
             case ProfileRequest.STOP_PROFILING:
                 return stopProfiling(vmId);
             default:
@@ -80,17 +80,42 @@ public class ProfilerRequestReceiver implements RequestReceiver {
         }
     }
 
-    private Response startProfiling(String vmId) {
-        logger.info("Starting profiling " + vmId);
+    private Response startProfiling(String vmId, Request request) {
+        String mode = request.getParameter(ProfileRequest.PROFILE_MODE);
+        if (mode == null) {
+            mode = ProfileRequest.MODE_INSTRUMENTATION;
+        }
+        logger.info("Starting profiling " + vmId + " using " + mode);
         try {
-            profiler.startProfiling(vmId);
-            return OK;
+            switch (mode) {
+            case ProfileRequest.MODE_INSTRUMENTATION:
+                profiler.startProfiling(vmId);
+                return OK;
+            case ProfileRequest.MODE_SAMPLING:
+                profiler.startSampling(vmId, getSamplingInterval(request));
+                return OK;
+            default:
+                logger.warning("Unknown profiling mode: '" + mode + "'");
+                return ERROR;
+            }
         } catch (Exception e) {
             logger.log(Level.INFO, "start profiling failed", e);
             return ERROR;
         }
     }
 
+    private long getSamplingInterval(Request request) {
+        String interval = request.getParameter(ProfileRequest.SAMPLING_INTERVAL);
+        if (interval == null) {
+            return ProfileRequest.DEFAULT_SAMPLING_INTERVAL;
+        }
+        long value = Long.parseLong(interval);
+        if (value <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be > 0: " + value);
+        }
+        return value;
+    }
+
     private Response stopProfiling(String vmId) {
         logger.info("Stopping profiling " + vmId);
         try {
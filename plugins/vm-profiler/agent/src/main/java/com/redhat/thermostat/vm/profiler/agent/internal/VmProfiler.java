@@ -74,6 +74,8 @@ public class VmProfiler {
 
     private static final Logger logger = LoggingUtils.getLogger(VmProfiler.class);
 
+    private static final long NOT_SAMPLING = 0;
+
     private final List<Integer> vmsWithAgentLoaded = new ArrayList<>();
     private final List<Integer> currentlyProfiledVmPids = new ArrayList<>();
     private final Map<Integer, Long> vmStartTimeStamps = new HashMap<>();
@@ -130,6 +132,21 @@ public class VmProfiler {
     }
 
     public synchronized void startProfiling(String vmId) throws ProfilerException {
+        startProfiling(vmId, NOT_SAMPLING);
+    }
+
+    /**
+     * Starts profiling by sampling the thread stacks of the VM every
+     * {@code samplingInterval} milliseconds instead of instrumenting it.
+     */
+    public synchronized void startSampling(String vmId, long samplingInterval) throws ProfilerException {
+        if (samplingInterval <= 0) {
+            throw new ProfilerException("Invalid sampling interval " + samplingInterval);
+        }
+        startProfiling(vmId, samplingInterval);
+    }
+
+    private void startProfiling(String vmId, long samplingInterval) throws ProfilerException {
         int pid = vmIdToPid.getPid(vmId);
         if (pid == VmIdToPidMapper.UNKNOWN_VMID) {
             throw new ProfilerException("Unknown VmId " + vmId);
@@ -149,7 +166,11 @@ public class VmProfiler {
             vmsWithAgentLoaded.add(pid);
         }
 
-        remote.startProfiling(pid);
+        if (samplingInterval == NOT_SAMPLING) {
+            remote.startProfiling(pid);
+        } else {
+            remote.startSampling(pid, samplingInterval);
+        }
 
         long startTime = clock.getRealTimeMillis();
         currentlyProfiledVmPids.add(pid);
@@ -75,6 +75,50 @@ public class ProfilerRequestReceiverTest {
         assertEquals(ResponseType.OK, result.getType());
     }
 
+    @Test
+    public void forwardsSamplingStartRequestToProfiler() throws Exception {
+        Request request = ProfileRequest.createSamplingStart(null, VM_ID, 20);
+        Response result = requestReceiver.receive(request);
+
+        verify(profiler).startSampling(VM_ID, 20);
+
+        assertEquals(ResponseType.OK, result.getType());
+    }
+
+    @Test
+    public void samplingStartRequestWithoutIntervalUsesDefault() throws Exception {
+        Request request = ProfileRequest.create(null, VM_ID, ProfileRequest.START_PROFILING);
+        request.setParameter(ProfileRequest.PROFILE_MODE, ProfileRequest.MODE_SAMPLING);
+        Response result = requestReceiver.receive(request);
+
+        verify(profiler).startSampling(VM_ID, ProfileRequest.DEFAULT_SAMPLING_INTERVAL);
+
+        assertEquals(ResponseType.OK, result.getType());
+    }
+
+    @Test
+    public void invalidSamplingIntervalCausesError() throws Exception {
+        Request request = ProfileRequest.create(null, VM_ID, ProfileRequest.START_PROFILING);
+        request.setParameter(ProfileRequest.PROFILE_MODE, ProfileRequest.MODE_SAMPLING);
+        request.setParameter(ProfileRequest.SAMPLING_INTERVAL, "soon");
+        Response result = requestReceiver.receive(request);
+
+        verifyNoMoreInteractions(profiler);
+
+        assertEquals(ResponseType.NOK, result.getType());
+    }
+
+    @Test
+    public void unknownProfilingModeCausesError() throws Exception {
+        Request request = ProfileRequest.create(null, VM_ID, ProfileRequest.START_PROFILING);
+        request.setParameter(ProfileRequest.PROFILE_MODE, "guessing");
+        Response result = requestReceiver.receive(request);
+
+        verifyNoMoreInteractions(profiler);
+
+        assertEquals(ResponseType.NOK, result.getType());
+    }
+
     @Test
     public void exceptionThrownFromProfilerResultsInStarError() throws Exception {
         doThrow(ProfilerException.class).when(profiler).startProfiling(VM_ID);
@@ -111,6 +111,19 @@ public class RemoteProfilerCommunicatorTest {
         verify(pool).release(PID, connection);
     }
 
+    @Test
+    public void startSamplingMakesAnRmiCallWithTheInterval() throws Exception {
+        communicator.startSampling(PID, 20);
+
+        verify(server).invoke(
+                new ObjectName(OBJECT_NAME),
+                "startSampling",
+                new Object[] { 20l },
+                new String[] { "long" });
+        verifyNoMoreInteractions(server);
+        verify(pool).release(PID, connection);
+    }
+
     @Test
     public void stopProfilingMakesAnRmiCall() throws Exception {
         communicator.stopProfiling(PID);
@@ -52,6 +52,19 @@ public class ProfileRequest {
         return request;
     }
 
+    /**
+     * Creates a request to start profiling a VM by periodically sampling its
+     * thread stacks instead of instrumenting its classes.
+     *
+     * @param samplingInterval time between two samples, in milliseconds
+     */
+    public static Request createSamplingStart(InetSocketAddress address, String vmId, long samplingInterval) {
+        Request request = create(address, vmId, START_PROFILING);
+        request.setParameter(ProfileRequest.PROFILE_MODE, MODE_SAMPLING);
+        request.setParameter(ProfileRequest.SAMPLING_INTERVAL, String.valueOf(samplingInterval));
+        return request;
+    }
+
     /** Value of Request.ACTION */
     public static final String NAME = "profile-vm";
 
@@ -65,6 +78,26 @@ public class ProfileRequest {
     /** value for {@link #PROFILE_ACTION} */
     public static final String STOP_PROFILING = "stop";
 
+    /**
+     * Key that specifies how to profile the VM when starting. Optional;
+     * defaults to {@link #MODE_INSTRUMENTATION}.
+     */
+    public static final String PROFILE_MODE = "profile-mode";
+
+    /** value for {@link #PROFILE_MODE}: instrument every method of every class */
+    public static final String MODE_INSTRUMENTATION = "instrumentation";
+    /** value for {@link #PROFILE_MODE}: periodically sample thread stacks */
+    public static final String MODE_SAMPLING = "sampling";
+
+    /**
+     * Key that specifies the time between two samples, in milliseconds, when
+     * using {@link #MODE_SAMPLING}. Optional; defaults to
+     * {@link #DEFAULT_SAMPLING_INTERVAL}.
+     */
+    public static final String SAMPLING_INTERVAL = "sampling-interval";
+
+    public static final long DEFAULT_SAMPLING_INTERVAL = 10;
+
     /** Key that specifies the VM's id */
     public static final String VM_ID = "vm-id";
 }
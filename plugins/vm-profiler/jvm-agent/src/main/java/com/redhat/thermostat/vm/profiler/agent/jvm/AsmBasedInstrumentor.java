@@ -51,6 +51,17 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
     private static final String RECORDER_CLASS_NAME =
             ProfileRecorder.class.getCanonicalName().replace('.', '/');
 
+    private final ProfileRecorder recorder;
+
+    public AsmBasedInstrumentor() {
+        this(ProfileRecorder.getInstance());
+    }
+
+    /** for testing only */
+    AsmBasedInstrumentor(ProfileRecorder recorder) {
+        this.recorder = recorder;
+    }
+
     @Override
     public byte[] transform(ClassLoader cl, String className, byte[] classBytes) {
         try {
@@ -58,7 +69,7 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
             // pipe data: reader -> instrumentor -> writer
             ClassReader reader = new ClassReader(classBytes);
             ClassWriter writer = new ClassLoaderFriendlyClassWriter(reader, ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, cl);
-            InstrumentingClassAdapter instrumentor = new InstrumentingClassAdapter(writer);
+            InstrumentingClassAdapter instrumentor = new InstrumentingClassAdapter(writer, recorder);
             reader.accept(instrumentor, ClassReader.SKIP_FRAMES);
             byte[] data = writer.toByteArray();
 
@@ -77,10 +88,12 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
 
     static class InstrumentingClassAdapter extends ClassVisitor {
 
+        private final ProfileRecorder recorder;
         private String className;
 
-        public InstrumentingClassAdapter(ClassVisitor visitor) {
+        public InstrumentingClassAdapter(ClassVisitor visitor, ProfileRecorder recorder) {
             super(Opcodes.ASM5, visitor);
+            this.recorder = recorder;
         }
 
         @Override
@@ -99,7 +112,7 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
 
             // FIXME instrument constructors
             if (mv != null && !(name.equals("<init>"))) {
-                MethodVisitor instrumentor = new InstrumentingMethodAdapter(mv, className, access, name, desc);
+                MethodVisitor instrumentor = new InstrumentingMethodAdapter(mv, recorder, className, access, name, desc);
                 mv = new JSRInlinerAdapter(instrumentor, access, name, desc, signature, exceptions);
             }
 
@@ -124,16 +137,19 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
      *
      * <pre>
      * public Object foo(int bar) {
-     *     ProfilerData.enterMethod(&quot;description&quot;);
+     *     ProfilerData.enterMethod(methodId);
      *     try {
      *         // do something
      *         return object
      *     } finally {
-     *         profilerData.exitMethod(&quot;description&quot;);
+     *         profilerData.exitMethod(methodId);
      *     }
      * }
      * </pre>
      *
+     * where {@code methodId} is the constant the {@link ProfileRecorder}
+     * assigned to the method's description when the class was instrumented.
+     * <p>
      * Java bytecode has no concept of {@code finally} in a {@code try}-
      * {@code catch}-{@code finally} block. The {@code finally} code needs to be
      * duplicated in a {@code catch} block as well as in the normal-return
@@ -145,17 +161,15 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
 
         private static final String EXIT_METHOD = "exitMethod";
 
-        private String className;
-        private String methodName;
+        private final int methodId;
 
         private Label startFinally = new Label();
         private Label endFinally = new Label();
 
-        protected InstrumentingMethodAdapter(MethodVisitor mv, String className, int access, String methodName, String desc) {
+        protected InstrumentingMethodAdapter(MethodVisitor mv, ProfileRecorder recorder, String className, int access, String methodName, String desc) {
             super(Opcodes.ASM5, mv, access, methodName, desc);
 
-            this.className = className;
-            this.methodName = methodName;
+            this.methodId = recorder.registerMethod(className + "." + methodName + desc);
         }
 
         @Override
@@ -197,8 +211,8 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
 
         private void callProfilerRecorder(String method) {
             mv.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER_CLASS_NAME, "getInstance", "()L" + RECORDER_CLASS_NAME + ";", false);
-            mv.visitLdcInsn(className + "." + methodName + methodDesc);
-            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER_CLASS_NAME, method, "(Ljava/lang/String;)V", false);
+            mv.visitLdcInsn(methodId);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER_CLASS_NAME, method, "(I)V", false);
         }
 
         // for debugging: insert opcodes to invoke System.exit()
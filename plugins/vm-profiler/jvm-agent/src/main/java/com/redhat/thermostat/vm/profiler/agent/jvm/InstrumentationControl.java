@@ -53,7 +53,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class InstrumentationControl implements InstrumentationControlMXBean {
 
@@ -61,8 +60,11 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
     private final ProfilerInstrumentor classInstrumentor;
     private final ProfileRecorder recorder;
     private final ResultsFileCreator resultsFileCreator;
+    private final StackSamplerCreator samplerCreator;
 
     private boolean profiling = false;
+    /** non-null while profiling by sampling */
+    private StackSampler sampler = null;
 
     private boolean resultsWrittenToDisk = true;
     private String lastResults = null;
@@ -75,10 +77,19 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
             ProfilerInstrumentor instrumentor,
             ProfileRecorder recorder,
             ResultsFileCreator resultsFileCreator) {
+        this(instrumentation, instrumentor, recorder, resultsFileCreator, new StackSamplerCreator());
+    }
+
+    InstrumentationControl(Instrumentation instrumentation,
+            ProfilerInstrumentor instrumentor,
+            ProfileRecorder recorder,
+            ResultsFileCreator resultsFileCreator,
+            StackSamplerCreator samplerCreator) {
         this.instrumentation = instrumentation;
         this.classInstrumentor = instrumentor;
         this.recorder = recorder;
         this.resultsFileCreator = resultsFileCreator;
+        this.samplerCreator = samplerCreator;
 
         addShutdownHookToSaveData();
     }
@@ -109,6 +120,21 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
         retransformAlreadyLoadedClasses(instrumentation, classInstrumentor);
     }
 
+    @Override
+    public void startSampling(long samplingInterval) {
+        if (profiling) {
+            throw new IllegalStateException("Already started");
+        }
+        if (samplingInterval <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be > 0");
+        }
+        profiling = true;
+        resultsWrittenToDisk = false;
+
+        sampler = samplerCreator.create(recorder, samplingInterval);
+        sampler.start();
+    }
+
     @Override
     public void stopProfiling() {
         if (!profiling) {
@@ -116,8 +142,13 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
         }
         profiling = false;
 
-        instrumentation.removeTransformer(classInstrumentor);
-        retransformAlreadyLoadedClasses(instrumentation, classInstrumentor);
+        if (sampler != null) {
+            sampler.stop();
+            sampler = null;
+        } else {
+            instrumentation.removeTransformer(classInstrumentor);
+            retransformAlreadyLoadedClasses(instrumentation, classInstrumentor);
+        }
 
         writeProfilingResultsToDisk();
         clearProfileData();
@@ -175,10 +206,10 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
             BufferedWriter out = null;
             try {
                 out = resultsFile.getWriter();
-                Map<String, AtomicLong> data = recorder.getData();
+                Map<String, Long> data = recorder.getData();
                 Debug.println("AGENT: Writing " + data.size() + " results to: " + path);
-                for (Map.Entry<String, AtomicLong> entry : data.entrySet()) {
-                    out.write(entry.getValue().get() + "\t" + entry.getKey() + "\n");
+                for (Map.Entry<String, Long> entry : data.entrySet()) {
+                    out.write(entry.getValue() + "\t" + entry.getKey() + "\n");
                 }
                 resultsWrittenToDisk = true;
                 lastResults = path;
@@ -211,6 +242,12 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
         return lastResults;
     }
 
+    static class StackSamplerCreator {
+        StackSampler create(ProfileRecorder recorder, long samplingInterval) {
+            return new StackSampler(recorder, samplingInterval);
+        }
+    }
+
     static class ResultsFileCreator {
 
         ResultsFile get() throws IOException {
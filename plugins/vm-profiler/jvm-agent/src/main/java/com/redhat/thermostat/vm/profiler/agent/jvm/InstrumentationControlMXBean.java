@@ -42,6 +42,12 @@ public interface InstrumentationControlMXBean {
     /** Enable profiling. */
     void startProfiling();
 
+    /**
+     * Enable profiling by sampling the stacks of all threads every
+     * {@code samplingInterval} milliseconds. No class is instrumented.
+     */
+    void startSampling(long samplingInterval);
+
     /** Disable profiling */
     void stopProfiling();
 
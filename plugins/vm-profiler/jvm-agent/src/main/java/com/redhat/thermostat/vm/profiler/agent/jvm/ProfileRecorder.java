@@ -36,34 +36,100 @@
 
 package com.redhat.thermostat.vm.profiler.agent.jvm;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Records the time spent in instrumented or sampled methods.
+ * <p>
+ * Methods are identified by an integer id handed out by
+ * {@link #registerMethod(String)} when a class is instrumented. Each thread
+ * keeps its own call stack and per-method totals, so recording a method
+ * enter or exit neither takes a lock nor allocates. The per-thread totals
+ * are only added up when {@link #getData()} is called.
+ */
 public class ProfileRecorder {
 
     private static final ProfileRecorder profileRecorder = new ProfileRecorder(new TimeSource());
 
-    /** shared between threads */
-    private ConcurrentHashMap<String, AtomicLong> profileData = new ConcurrentHashMap<String, AtomicLong>();
+    private static final int INITIAL_STACK_DEPTH = 64;
+    private static final int INITIAL_METHOD_COUNT = 1024;
+
+    /* method name -> method id and back. Guarded by 'this' */
+    private final Map<String, Integer> methodIds = new HashMap<String, Integer>();
+    private String[] methodNames = new String[INITIAL_METHOD_COUNT];
+    private int methodCount = 0;
+
+    /** every thread that recorded something since it was started or the data was last cleared */
+    private final Queue<ThreadData> threads = new ConcurrentLinkedQueue<ThreadData>();
+
+    /** incremented when the data is cleared; threads reset their totals lazily */
+    private volatile int generation = 0;
+
+    private final ThreadLocal<ThreadData> threadData = new ThreadLocal<ThreadData>() {
+        @Override
+        protected ThreadData initialValue() {
+            ThreadData data = new ThreadData(Thread.currentThread(), generation);
+            threads.add(data);
+            return data;
+        }
+    };
 
-    // TODO deal with thread id wrap-around
+    private final TimeSource timeSource;
 
     /**
-     * thread id -> info.
-     * <p>
-     * only the thread with the matching thread id is allowed to mutate 'info'
+     * The state of one thread. Only the owning thread mutates it; the totals
+     * are read by other threads when merging.
      */
-    private Map<Long, Info> threads = new ConcurrentHashMap<Long, Info>();
+    final static class ThreadData {
+        private final Thread owner;
+        private volatile int generation;
+        private int[] stack = new int[INITIAL_STACK_DEPTH];
+        private int depth = 0;
+        private long timeStamp = Long.MIN_VALUE;
+        /** method id -> nanoseconds */
+        private volatile AtomicLongArray times = new AtomicLongArray(INITIAL_METHOD_COUNT);
 
-    private final TimeSource timeSource;
+        ThreadData(Thread owner, int generation) {
+            this.owner = owner;
+            this.generation = generation;
+        }
+
+        void push(int methodId) {
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = methodId;
+        }
+
+        void add(int methodId, long time) {
+            AtomicLongArray current = times;
+            if (methodId >= current.length()) {
+                current = grow(methodId);
+            }
+            // single writer: a lazySet is enough to publish the new total
+            current.lazySet(methodId, current.get(methodId) + time);
+        }
+
+        private AtomicLongArray grow(int methodId) {
+            AtomicLongArray current = times;
+            AtomicLongArray larger = new AtomicLongArray(Math.max(methodId + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                larger.set(i, current.get(i));
+            }
+            times = larger;
+            return larger;
+        }
 
-    final static class Info {
-        public Deque<String> stackFrames = new ArrayDeque<String>();
-        public long timeStamp = Long.MIN_VALUE;
+        void reset(int newGeneration) {
+            times = new AtomicLongArray(times.length());
+            generation = newGeneration;
+        }
     }
 
     /** for testing */
@@ -82,68 +148,116 @@ public class ProfileRecorder {
         return profileRecorder;
     }
 
-    /** called by instrumented code on every method enter */
-    public void enterMethod(String fullyQualifiedName) {
-        long currentTime = timeSource.nanoTime();
-        long threadId = Thread.currentThread().getId();
+    /**
+     * Called at instrumentation time. Returns the id instrumented code passes
+     * to {@link #enterMethod(int)} and {@link #exitMethod(int)}. A method that
+     * is instrumented again keeps its id.
+     */
+    public synchronized int registerMethod(String fullyQualifiedName) {
+        Integer id = methodIds.get(fullyQualifiedName);
+        if (id == null) {
+            id = methodCount;
+            if (methodCount == methodNames.length) {
+                methodNames = Arrays.copyOf(methodNames, methodCount * 2);
+            }
+            methodNames[methodCount++] = fullyQualifiedName;
+            methodIds.put(fullyQualifiedName, id);
+        }
+        return id;
+    }
 
-        Info info = threads.get(threadId);
+    synchronized String getMethodName(int methodId) {
+        return methodId >= 0 && methodId < methodCount ? methodNames[methodId] : null;
+    }
 
-        if (info == null) {
-            info = new Info();
-            threads.put(threadId, info);
-        }
+    /** called by instrumented code on every method enter */
+    public void enterMethod(int methodId) {
+        long currentTime = timeSource.nanoTime();
+        ThreadData data = currentThreadData();
 
-        if (info.stackFrames.size() != 0) {
+        if (data.depth != 0) {
             // update time for previous method on the stack
-            Long oldTime = info.timeStamp;
-            long diff = currentTime - oldTime;
-            addData(info.stackFrames.peek(), diff);
+            data.add(data.stack[data.depth - 1], currentTime - data.timeStamp);
         }
 
-        info.timeStamp = currentTime;
-        info.stackFrames.push(fullyQualifiedName);
+        data.timeStamp = currentTime;
+        data.push(methodId);
     }
 
     /** called by instrumented code on every method exit */
-    public void exitMethod(String fullyQualifiedName) {
+    public void exitMethod(int methodId) {
         long currentTime = timeSource.nanoTime();
-        long threadId = Thread.currentThread().getId();
-
-        Info info = threads.get(threadId);
-        Queue<String> stack = info.stackFrames;
-
-        Long oldTime = info.timeStamp;
-        long diff = currentTime - oldTime;
+        ThreadData data = threadData.get();
 
-        if (!fullyQualifiedName.equals(stack.peek())) {
+        if (data.depth == 0 || data.stack[data.depth - 1] != methodId) {
             throw new AssertionError("should not happen:\n"
-                    + "name: '" + fullyQualifiedName + "'\n"
-                    + "stack top: '" + stack.peek() + "'\n"
-                    + "stack: " + stack);
+                    + "name: '" + getMethodName(methodId) + "'\n"
+                    + "stack top: '" + (data.depth == 0 ? null : getMethodName(data.stack[data.depth - 1])) + "'\n"
+                    + "stack depth: " + data.depth);
         }
 
-        addData(stack.poll(), diff);
+        data.depth--;
+        data.add(methodId, currentTime - data.timeStamp);
 
-        info.timeStamp = currentTime;
+        data.timeStamp = currentTime;
     }
 
-    private void addData(String dataName, long time) {
-        AtomicLong value = profileData.get(dataName);
-        if (value == null) {
-            value = profileData.putIfAbsent(dataName, new AtomicLong(time));
-        }
-        if (value != null) {
-            value.addAndGet(time);
+    /**
+     * Called by the {@link StackSampler}: attributes {@code time} nanoseconds
+     * to a method without keeping track of a call stack.
+     */
+    public void addSample(int methodId, long time) {
+        currentThreadData().add(methodId, time);
+    }
+
+    private ThreadData currentThreadData() {
+        ThreadData data = threadData.get();
+        int currentGeneration = generation;
+        if (data.generation != currentGeneration) {
+            data.reset(currentGeneration);
         }
+        return data;
     }
 
-    public Map<String, AtomicLong> getData() {
-        return profileData;
+    /**
+     * Adds up the time recorded by all threads since the data was last
+     * cleared.
+     *
+     * @return fully qualified method name -> nanoseconds
+     */
+    public synchronized Map<String, Long> getData() {
+        long[] totals = new long[methodCount];
+        int currentGeneration = generation;
+        for (ThreadData data : threads) {
+            if (data.generation != currentGeneration) {
+                // nothing recorded since the last clear
+                continue;
+            }
+            AtomicLongArray times = data.times;
+            int count = Math.min(times.length(), totals.length);
+            for (int i = 0; i < count; i++) {
+                totals[i] += times.get(i);
+            }
+        }
+
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (int i = 0; i < totals.length; i++) {
+            if (totals[i] != 0) {
+                result.put(methodNames[i], totals[i]);
+            }
+        }
+        return result;
     }
 
-    public void clearData() {
-        profileData.clear();
+    public synchronized void clearData() {
+        generation++;
+
+        Iterator<ThreadData> iter = threads.iterator();
+        while (iter.hasNext()) {
+            if (!iter.next().owner.isAlive()) {
+                iter.remove();
+            }
+        }
     }
 
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.profiler.agent.jvm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.redhat.thermostat.vm.profiler.agent.jvm.ProfileRecorder.TimeSource;
+
+/**
+ * Profiles without instrumenting any class: a background thread
+ * periodically looks at what every runnable thread is executing and
+ * attributes the time since the previous look to the method at the top of
+ * its stack. The results end up in the {@link ProfileRecorder} and so look
+ * like those of an instrumented profiling session, except that the method
+ * names carry no descriptor: overloaded methods are reported together.
+ * <p>
+ * Only the top frame of each thread is requested, which keeps the cost of
+ * a sample low. Threads that are blocked, waiting or executing a native
+ * method are not counted.
+ */
+public class StackSampler implements Runnable {
+
+    private static final String THREAD_NAME = "thermostat-profiler-sampler";
+
+    private final ProfileRecorder recorder;
+    private final ThreadMXBean threadBean;
+    private final TimeSource timeSource;
+    private final long samplingInterval;
+
+    /* class name -> method name -> method id. Only used by the sampling thread */
+    private final Map<String, Map<String, Integer>> methodIds = new HashMap<String, Map<String, Integer>>();
+
+    private volatile boolean running = false;
+    private Thread samplingThread = null;
+
+    /**
+     * @param samplingInterval time between two samples, in milliseconds
+     */
+    public StackSampler(ProfileRecorder recorder, long samplingInterval) {
+        this(recorder, ManagementFactory.getThreadMXBean(), new TimeSource(), samplingInterval);
+    }
+
+    /** for testing only */
+    StackSampler(ProfileRecorder recorder, ThreadMXBean threadBean, TimeSource timeSource, long samplingInterval) {
+        if (samplingInterval <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be > 0: " + samplingInterval);
+        }
+        this.recorder = recorder;
+        this.threadBean = threadBean;
+        this.timeSource = timeSource;
+        this.samplingInterval = samplingInterval;
+    }
+
+    public synchronized void start() {
+        if (samplingThread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        running = true;
+        samplingThread = new Thread(this, THREAD_NAME);
+        samplingThread.setDaemon(true);
+        samplingThread.start();
+    }
+
+    /** Stops sampling and waits for the last sample to be recorded */
+    public synchronized void stop() {
+        if (samplingThread == null) {
+            throw new IllegalStateException("Not started");
+        }
+        running = false;
+        samplingThread.interrupt();
+        try {
+            samplingThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        samplingThread = null;
+    }
+
+    @Override
+    public void run() {
+        long lastSample = timeSource.nanoTime();
+        while (running) {
+            try {
+                Thread.sleep(samplingInterval);
+            } catch (InterruptedException e) {
+                // stop() was called
+                break;
+            }
+            long now = timeSource.nanoTime();
+            sample(now - lastSample);
+            lastSample = now;
+        }
+    }
+
+    /** package private for testing */
+    void sample(long elapsedTime) {
+        long self = Thread.currentThread().getId();
+        ThreadInfo[] infos = threadBean.getThreadInfo(threadBean.getAllThreadIds(), 1);
+        for (ThreadInfo info : infos) {
+            // threads that died since their ids were listed are null
+            if (info == null || info.getThreadId() == self || info.getThreadState() != Thread.State.RUNNABLE) {
+                continue;
+            }
+            StackTraceElement[] stack = info.getStackTrace();
+            // runnable threads in native code are mostly blocked in I/O or
+            // waiting for the VM; native methods are not instrumented either
+            if (stack.length == 0 || stack[0].isNativeMethod()) {
+                continue;
+            }
+            recorder.addSample(getMethodId(stack[0]), elapsedTime);
+        }
+    }
+
+    private int getMethodId(StackTraceElement frame) {
+        Map<String, Integer> methods = methodIds.get(frame.getClassName());
+        if (methods == null) {
+            methods = new HashMap<String, Integer>();
+            methodIds.put(frame.getClassName(), methods);
+        }
+        Integer id = methods.get(frame.getMethodName());
+        if (id == null) {
+            // same naming as the instrumented code uses, minus the descriptor
+            String className = frame.getClassName().replace('.', '/');
+            id = recorder.registerMethod(className + "." + frame.getMethodName());
+            methods.put(frame.getMethodName(), id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.profiler.agent.jvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsmBasedInstrumentorTest {
+
+    private ClassLoader contextClassLoader;
+
+    @Before
+    public void setUp() {
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ProfileRecorder.getInstance().clearData();
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+        ProfileRecorder.getInstance().clearData();
+    }
+
+    @Test
+    public void instrumentedMethodsAreRecordedUnderTheirDescription() throws Exception {
+        // instrumented code always records to the JVM-wide instance
+        ProfileRecorder recorder = ProfileRecorder.getInstance();
+        String className = Workload.class.getName();
+        DefiningClassLoader loader = new DefiningClassLoader(getClass().getClassLoader());
+
+        byte[] instrumented = new AsmBasedInstrumentor(recorder).transform(loader, className, readClass(Workload.class));
+        Class<?> klass = loader.define(className, instrumented);
+        Method countDown = klass.getMethod("countDown", int.class);
+
+        assertEquals(3, countDown.invoke(null, 3));
+
+        String description = className.replace('.', '/') + ".countDown(I)I";
+        Map<String, Long> data = recorder.getData();
+        assertTrue(data.containsKey(description));
+        assertEquals(recorder.registerMethod(description), recorder.registerMethod(description));
+    }
+
+    private static byte[] readClass(Class<?> klass) throws IOException {
+        String resource = klass.getName().substring(klass.getName().lastIndexOf('.') + 1) + ".class";
+        InputStream in = klass.getResourceAsStream(resource);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    public static class Workload {
+        public static int countDown(int n) {
+            return n <= 0 ? 0 : 1 + countDown(n - 1);
+        }
+    }
+
+    private static class DefiningClassLoader extends ClassLoader {
+
+        DefiningClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classBytes) {
+            return defineClass(name, classBytes, 0, classBytes.length);
+        }
+    }
+}
@@ -40,6 +40,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -49,13 +50,13 @@ import java.io.StringWriter;
 import java.lang.instrument.Instrumentation;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.redhat.thermostat.vm.profiler.agent.jvm.InstrumentationControl.ResultsFile;
 import com.redhat.thermostat.vm.profiler.agent.jvm.InstrumentationControl.ResultsFileCreator;
+import com.redhat.thermostat.vm.profiler.agent.jvm.InstrumentationControl.StackSamplerCreator;
 
 public class InstrumentationControlTest {
 
@@ -64,6 +65,8 @@ public class InstrumentationControlTest {
     private ProfileRecorder recorder;
     private ResultsFileCreator resultsFileCreator;
     private ResultsFile resultsFile;
+    private StackSampler sampler;
+    private StackSamplerCreator samplerCreator;
 
     private InstrumentationControl control;
     private StringWriter dataWriter;
@@ -86,7 +89,11 @@ public class InstrumentationControlTest {
         resultsFileCreator = mock(ResultsFileCreator.class);
         when(resultsFileCreator.get()).thenReturn(resultsFile);
 
-        control = new InstrumentationControl(instrumentation, instrumentor, recorder, resultsFileCreator);
+        sampler = mock(StackSampler.class);
+        samplerCreator = mock(StackSamplerCreator.class);
+        when(samplerCreator.create(recorder, 20)).thenReturn(sampler);
+
+        control = new InstrumentationControl(instrumentation, instrumentor, recorder, resultsFileCreator, samplerCreator);
     }
 
     @Test
@@ -133,8 +140,8 @@ public class InstrumentationControlTest {
     public void stopProfilingSavesProfilingResultsToDisk() throws Exception {
         final String DATA_LOCATION = "foobar";
 
-        Map<String, AtomicLong> profileData = new HashMap<String, AtomicLong>();
-        profileData.put("foo", new AtomicLong(1));
+        Map<String, Long> profileData = new HashMap<String, Long>();
+        profileData.put("foo", 1L);
         when(recorder.getData()).thenReturn(profileData);
 
         when(resultsFile.getPath()).thenReturn(DATA_LOCATION);
@@ -147,6 +154,38 @@ public class InstrumentationControlTest {
         assertEquals(DATA_LOCATION, control.getProfilingDataFile());
     }
 
+    @Test
+    public void startSamplingDoesNotInstrumentCode() throws Exception {
+        control.startSampling(20);
+
+        assertTrue(control.isProfiling());
+        verify(sampler).start();
+        verify(instrumentation, never()).addTransformer(instrumentor, true);
+        verify(instrumentation, never()).retransformClasses(new Class[] { Object.class });
+    }
+
+    @Test (expected=IllegalStateException.class)
+    public void startingSamplingWhileProfilingThrowsException() throws Exception {
+        control.startProfiling();
+        control.startSampling(20);
+    }
+
+    @Test
+    public void stopProfilingStopsSamplerAndSavesResults() throws Exception {
+        Map<String, Long> profileData = new HashMap<String, Long>();
+        profileData.put("foo", 1L);
+        when(recorder.getData()).thenReturn(profileData);
+
+        control.startSampling(20);
+        control.stopProfiling();
+
+        assertFalse(control.isProfiling());
+        verify(sampler).stop();
+        verify(instrumentation, never()).removeTransformer(instrumentor);
+        assertEquals("1\tfoo\n", dataWriter.toString());
+        verify(recorder).clearData();
+    }
+
     @Test
     public void stopProfilingClearsProfilingData() throws Exception {
         control.startProfiling();
@@ -159,8 +198,8 @@ public class InstrumentationControlTest {
     public void vmShutdownSaveDataToDisk() throws Exception {
         final String DATA_LOCATION = "foobar";
 
-        Map<String, AtomicLong> profileData = new HashMap<String, AtomicLong>();
-        profileData.put("foo", new AtomicLong(1));
+        Map<String, Long> profileData = new HashMap<String, Long>();
+        profileData.put("foo", 1L);
         when(recorder.getData()).thenReturn(profileData);
 
         when(resultsFile.getPath()).thenReturn(DATA_LOCATION);
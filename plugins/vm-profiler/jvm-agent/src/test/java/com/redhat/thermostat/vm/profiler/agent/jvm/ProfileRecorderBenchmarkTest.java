@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.profiler.agent.jvm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.ConcurrentBenchmark;
+import com.redhat.thermostat.testutils.PerformanceTest;
+import com.redhat.thermostat.vm.profiler.agent.jvm.ProfileRecorder.TimeSource;
+
+/**
+ * Measures the per-call overhead of recording method enters and exits from
+ * several threads at once. Run with -Pperf-tests.
+ */
+@Category(PerformanceTest.class)
+public class ProfileRecorderBenchmarkTest {
+
+    private static final int DEPTH = 4;
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 2000000;
+
+    @Test
+    public void measureRecording() throws Exception {
+        final ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        final int[] methodIds = new int[DEPTH];
+        for (int i = 0; i < DEPTH; i++) {
+            methodIds[i] = recorder.registerMethod("com/example/Service.method" + i + "()V");
+        }
+
+        ConcurrentBenchmark.Workload record = new ConcurrentBenchmark.Workload() {
+            @Override
+            public void run(int iterations) {
+                for (int i = 0; i < iterations; i++) {
+                    for (int depth = 0; depth < DEPTH; depth++) {
+                        recorder.enterMethod(methodIds[depth]);
+                    }
+                    for (int depth = DEPTH - 1; depth >= 0; depth--) {
+                        recorder.exitMethod(methodIds[depth]);
+                    }
+                }
+            }
+        };
+
+        ConcurrentBenchmark benchmark = new ConcurrentBenchmark(WARMUP_ITERATIONS, ITERATIONS);
+        System.out.println("Recording " + DEPTH + " nested calls, " + ITERATIONS + " iterations per thread:");
+        for (int threads : ConcurrentBenchmark.THREAD_COUNTS) {
+            System.out.println("  " + threads + " thread(s):");
+            // an enter and an exit per nested call
+            ConcurrentBenchmark.print("enter/exit", benchmark.measure(record, threads, 2 * DEPTH), "call");
+        }
+
+        Map<String, Long> data = recorder.getData();
+        assertEquals(DEPTH, data.size());
+    }
+
+}
@@ -37,11 +37,14 @@
 package com.redhat.thermostat.vm.profiler.agent.jvm;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
 
@@ -63,17 +66,178 @@ public class ProfileRecorderTest {
                                .thenReturn(EXIT_2);
 
         ProfileRecorder recorder = new ProfileRecorder(source);
+        int methodId = recorder.registerMethod(METHOD_NAME);
 
-        recorder.enterMethod(METHOD_NAME);
-        recorder.exitMethod(METHOD_NAME);
-        recorder.enterMethod(METHOD_NAME);
-        recorder.exitMethod(METHOD_NAME);
+        recorder.enterMethod(methodId);
+        recorder.exitMethod(methodId);
+        recorder.enterMethod(methodId);
+        recorder.exitMethod(methodId);
 
         assertEquals(1, recorder.getData().size());
-        Entry<String, AtomicLong> result = recorder.getData().entrySet().iterator().next();
+        Entry<String, Long> result = recorder.getData().entrySet().iterator().next();
         String methodName = result.getKey();
         assertEquals(METHOD_NAME, methodName);
-        AtomicLong methodTimeInNanos = result.getValue();
-        assertEquals((EXIT_1 - ENTER_1) + (EXIT_2 - ENTER_2), methodTimeInNanos.get());
+        long methodTimeInNanos = result.getValue();
+        assertEquals((EXIT_1 - ENTER_1) + (EXIT_2 - ENTER_2), methodTimeInNanos);
+    }
+
+    @Test
+    public void registeringAMethodAgainKeepsItsId() {
+        ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        int foo = recorder.registerMethod("foo");
+        int bar = recorder.registerMethod("bar");
+
+        assertTrue(foo != bar);
+        assertEquals(foo, recorder.registerMethod("foo"));
+        assertEquals("bar", recorder.getMethodName(bar));
+    }
+
+    @Test
+    public void nestedCallsRecordSelfTime() {
+        TimeSource source = mock(TimeSource.class);
+        when(source.nanoTime()).thenReturn(0l)    // enter outer
+                               .thenReturn(10l)   // enter inner
+                               .thenReturn(30l)   // exit inner
+                               .thenReturn(35l);  // exit outer
+
+        ProfileRecorder recorder = new ProfileRecorder(source);
+        int outer = recorder.registerMethod("outer");
+        int inner = recorder.registerMethod("inner");
+
+        recorder.enterMethod(outer);
+        recorder.enterMethod(inner);
+        recorder.exitMethod(inner);
+        recorder.exitMethod(outer);
+
+        Map<String, Long> data = recorder.getData();
+        assertEquals(2, data.size());
+        assertEquals(Long.valueOf(15), data.get("outer"));
+        assertEquals(Long.valueOf(20), data.get("inner"));
+    }
+
+    @Test
+    public void deepAndManyMethodsGrowPerThreadState() {
+        ProfileRecorder recorder = new ProfileRecorder(new SteppingTimeSource(1));
+        final int COUNT = 5000;
+        int[] ids = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            ids[i] = recorder.registerMethod("method" + i);
+        }
+
+        for (int i = 0; i < COUNT; i++) {
+            recorder.enterMethod(ids[i]);
+        }
+        for (int i = COUNT - 1; i >= 0; i--) {
+            recorder.exitMethod(ids[i]);
+        }
+
+        // one tick until the next enter and one after the callee exits
+        Map<String, Long> data = recorder.getData();
+        assertEquals(COUNT, data.size());
+        assertEquals(Long.valueOf(2), data.get("method0"));
+        assertEquals(Long.valueOf(1), data.get("method" + (COUNT - 1)));
+    }
+
+    @Test
+    public void dataOfAllThreadsIsMerged() throws Exception {
+        final ProfileRecorder recorder = new ProfileRecorder(new SteppingTimeSource(5));
+        final int methodId = recorder.registerMethod("foo");
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    recorder.enterMethod(methodId);
+                    recorder.exitMethod(methodId);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Long.valueOf(5 * threads.length), recorder.getData().get("foo"));
+    }
+
+    @Test
+    public void clearDataDiscardsRecordedTimes() {
+        TimeSource source = mock(TimeSource.class);
+        when(source.nanoTime()).thenReturn(0l, 5l, 10l, 12l);
+
+        ProfileRecorder recorder = new ProfileRecorder(source);
+        int methodId = recorder.registerMethod("foo");
+
+        recorder.enterMethod(methodId);
+        recorder.exitMethod(methodId);
+        recorder.clearData();
+
+        assertTrue(recorder.getData().isEmpty());
+
+        recorder.enterMethod(methodId);
+        recorder.exitMethod(methodId);
+
+        assertEquals(Long.valueOf(2), recorder.getData().get("foo"));
+    }
+
+    @Test
+    public void samplesAreAddedToTheMethodTotals() {
+        ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        int foo = recorder.registerMethod("foo");
+        int bar = recorder.registerMethod("bar");
+
+        recorder.addSample(foo, 10);
+        recorder.addSample(bar, 10);
+        recorder.addSample(foo, 10);
+
+        Map<String, Long> data = recorder.getData();
+        assertEquals(2, data.size());
+        assertEquals((Long) 20l, data.get("foo"));
+        assertEquals((Long) 10l, data.get("bar"));
+
+        recorder.clearData();
+        recorder.addSample(bar, 5);
+
+        assertEquals(Collections.singletonMap("bar", 5l), recorder.getData());
+    }
+
+    @Test
+    public void exitingAMethodNotOnTheStackFails() {
+        ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        int foo = recorder.registerMethod("foo");
+        int bar = recorder.registerMethod("bar");
+
+        recorder.enterMethod(foo);
+        try {
+            recorder.exitMethod(bar);
+            fail("should have thrown an AssertionError");
+        } catch (AssertionError expected) {
+            assertTrue(expected.getMessage().contains("'bar'"));
+            assertTrue(expected.getMessage().contains("'foo'"));
+        }
+    }
+
+    /** Every call advances the time of the calling thread by a fixed step */
+    private static class SteppingTimeSource extends TimeSource {
+
+        private final long step;
+        private final ThreadLocal<Long> now = new ThreadLocal<Long>() {
+            @Override
+            protected Long initialValue() {
+                return 0l;
+            }
+        };
+
+        SteppingTimeSource(long step) {
+            this.step = step;
+        }
+
+        @Override
+        public long nanoTime() {
+            long time = now.get();
+            now.set(time + step);
+            return time;
+        }
     }
 }
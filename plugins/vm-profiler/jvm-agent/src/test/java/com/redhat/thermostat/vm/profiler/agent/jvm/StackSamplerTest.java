@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.profiler.agent.jvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.profiler.agent.jvm.ProfileRecorder.TimeSource;
+
+public class StackSamplerTest {
+
+    private ProfileRecorder recorder;
+    private ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() {
+        recorder = new ProfileRecorder(new TimeSource());
+        threadBean = mock(ThreadMXBean.class);
+        when(threadBean.getAllThreadIds()).thenReturn(new long[] { 1, 2, 3, 4 });
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void intervalMustBePositive() {
+        new StackSampler(recorder, 0);
+    }
+
+    @Test
+    public void sampleAttributesTimeToTopFrameOfRunningThreads() {
+        ThreadInfo running = threadInfo(1, Thread.State.RUNNABLE,
+                new StackTraceElement("com.example.Foo", "compute", null, 10),
+                new StackTraceElement("com.example.Foo", "main", null, 5));
+        ThreadInfo waiting = threadInfo(2, Thread.State.WAITING,
+                new StackTraceElement("java.lang.Object", "wait", null, -2));
+        ThreadInfo alsoRunning = threadInfo(3, Thread.State.RUNNABLE,
+                new StackTraceElement("com.example.Foo", "compute", null, 12));
+        // a negative line number of -2 marks a native method
+        ThreadInfo inNative = threadInfo(4, Thread.State.RUNNABLE,
+                new StackTraceElement("java.net.SocketInputStream", "socketRead0", null, -2));
+        when(threadBean.getThreadInfo(any(long[].class), eq(1)))
+                .thenReturn(new ThreadInfo[] { running, waiting, alsoRunning, inNative, null });
+
+        StackSampler sampler = new StackSampler(recorder, threadBean, new TimeSource(), 10);
+        sampler.sample(100);
+        sampler.sample(50);
+
+        Map<String, Long> data = recorder.getData();
+        assertEquals(1, data.size());
+        assertEquals((Long) 300l, data.get("com/example/Foo.compute"));
+    }
+
+    @Test
+    public void samplingThreadSamplesBusyThreads() throws Exception {
+        // keeps the result of the busy loop alive
+        final long[] result = new long[1];
+        Thread busy = new Thread("busy") {
+            @Override
+            public void run() {
+                result[0] = spin(200000000l);
+            }
+        };
+
+        ThreadMXBean realBean = ManagementFactory.getThreadMXBean();
+        StackSampler sampler = new StackSampler(recorder, realBean, new TimeSource(), 1);
+        busy.start();
+        sampler.start();
+        busy.join();
+        sampler.stop();
+
+        Long spinTime = recorder.getData().get(StackSamplerTest.class.getName().replace('.', '/') + ".spin");
+        assertTrue(spinTime != null && spinTime > 0);
+    }
+
+    private static long spin(long iterations) {
+        long value = 17;
+        for (long i = 0; i < iterations; i++) {
+            value = value * 31 + i;
+        }
+        return value;
+    }
+
+    private static ThreadInfo threadInfo(long id, Thread.State state, StackTraceElement... stack) {
+        ThreadInfo info = mock(ThreadInfo.class);
+        when(info.getThreadId()).thenReturn(id);
+        when(info.getThreadState()).thenReturn(state);
+        when(info.getStackTrace()).thenReturn(stack);
+        return info;
+    }
+}
@@ -36,12 +36,46 @@
 
 package com.redhat.thermostat.storage.dao;
 
+import java.util.List;
+
 import com.redhat.thermostat.annotations.Service;
 import com.redhat.thermostat.storage.model.NetworkInterfaceInfo;
 
 @Service
 public interface NetworkInterfaceInfoDAO {
 
+    /**
+     * Adds or updates the record of one interface, querying the gateway for
+     * the existing record first.
+     *
+     * @deprecated use {@link #addNetworkInterfaceInfos(List)} and
+     * {@link #updateNetworkInterfaceInfo(NetworkInterfaceInfo)}
+     */
+    @Deprecated
     public void putNetworkInterfaceInfo(NetworkInterfaceInfo info);
+
+    /*
+     * The methods below do not look up the existing records first; the
+     * caller keeps track of what it has published. Each returns false if
+     * the gateway did not accept the change, so the caller can send it
+     * again later.
+     */
+
+    /**
+     * Adds records for interfaces not published before, in a single request.
+     *
+     * @param infos new interfaces of one agent, not empty
+     */
+    public boolean addNetworkInterfaceInfos(List<NetworkInterfaceInfo> infos);
+
+    /**
+     * Updates the addresses of a published interface.
+     */
+    public boolean updateNetworkInterfaceInfo(NetworkInterfaceInfo info);
+
+    /**
+     * Removes the record of a published interface that no longer exists.
+     */
+    public boolean removeNetworkInterfaceInfo(NetworkInterfaceInfo info);
 }
 
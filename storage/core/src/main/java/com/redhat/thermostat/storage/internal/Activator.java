@@ -40,9 +40,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import org.eclipse.jetty.client.HttpClient;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.util.tracker.ServiceTracker;
 
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.storage.dao.NetworkInterfaceInfoDAO;
@@ -53,6 +56,8 @@ public class Activator implements BundleActivator {
     private static final String WRITER_UUID = UUID.randomUUID().toString();
     
     List<ServiceRegistration<?>> regs;
+    private ServiceTracker<HttpClient, HttpClient> httpClientTracker;
+    private ServiceRegistration<?> networkInfoReg;
     
     public Activator() {
         regs = new ArrayList<>();
@@ -67,9 +72,26 @@ public class Activator implements BundleActivator {
         ServiceRegistration<?> reg = context.registerService(WriterID.class, writerID, null);
         regs.add(reg);
 
-        NetworkInterfaceInfoDAO networkInfoDao = new NetworkInterfaceInfoDAOImpl();
-        reg = context.registerService(NetworkInterfaceInfoDAO.class.getName(), networkInfoDao, null);
-        regs.add(reg);
+        // The DAO uses the HTTP client shared by the whole agent
+        httpClientTracker = new ServiceTracker<HttpClient, HttpClient>(context, HttpClient.class, null) {
+            @Override
+            public HttpClient addingService(ServiceReference<HttpClient> reference) {
+                HttpClient client = super.addingService(reference);
+                NetworkInterfaceInfoDAO networkInfoDao = new NetworkInterfaceInfoDAOImpl(client);
+                networkInfoReg = context.registerService(NetworkInterfaceInfoDAO.class.getName(), networkInfoDao, null);
+                return client;
+            }
+
+            @Override
+            public void removedService(ServiceReference<HttpClient> reference, HttpClient service) {
+                if (networkInfoReg != null) {
+                    networkInfoReg.unregister();
+                    networkInfoReg = null;
+                }
+                super.removedService(reference, service);
+            }
+        };
+        httpClientTracker.open();
     }
 
     private void unregisterServices() {
@@ -81,6 +103,7 @@ public class Activator implements BundleActivator {
 
     @Override
     public void stop(BundleContext context) throws Exception {
+        httpClientTracker.close();
         unregisterServices();
     }
 }
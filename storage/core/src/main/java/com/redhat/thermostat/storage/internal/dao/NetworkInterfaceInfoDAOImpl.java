@@ -74,16 +74,14 @@ public class NetworkInterfaceInfoDAOImpl implements NetworkInterfaceInfoDAO {
     private final HttpHelper httpHelper;
     private final JsonHelper jsonHelper;
 
-    public NetworkInterfaceInfoDAOImpl() throws Exception {
-        this(new HttpHelper(new HttpClient()), new JsonHelper(new NetworkInterfaceInfoTypeAdapter(), 
+    public NetworkInterfaceInfoDAOImpl(HttpClient client) {
+        this(new HttpHelper(client), new JsonHelper(new NetworkInterfaceInfoTypeAdapter(), 
                 new NetworkInterfaceInfoUpdateTypeAdapter()));
     }
 
-    NetworkInterfaceInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) throws Exception {
+    NetworkInterfaceInfoDAOImpl(HttpHelper httpHelper, JsonHelper jsonHelper) {
         this.httpHelper = httpHelper;
         this.jsonHelper = jsonHelper;
-        
-        this.httpHelper.startClient();
     }
 
     @Override
@@ -93,13 +91,47 @@ public class NetworkInterfaceInfoDAOImpl implements NetworkInterfaceInfoDAO {
             NetworkInterfaceInfo existing = getExistingInfo(info.getAgentId(), info.getInterfaceName());
             if (existing == null) {
                 // Add a new network interface info record
-                addNetworkInterfaceInfo(info);
+                postNetworkInterfaceInfos(info.getAgentId(), Arrays.asList(info));
             } else if (!existing.equals(info)) { // Check if update necessary
                 // Update existing record
-                updateNetworkInterfaceInfo(info);
+                putNetworkInterfaceInfoUpdate(info);
             }
         } catch (IOException | InterruptedException | TimeoutException | ExecutionException e) {
-            logger.log(Level.WARNING, "Failed to query network interface information from web gateway", e);
+            logger.log(Level.WARNING, "Failed to send network interface information to web gateway", e);
+        }
+    }
+
+    @Override
+    public boolean addNetworkInterfaceInfos(List<NetworkInterfaceInfo> infos) {
+        try {
+            // Additions are always for a single agent
+            postNetworkInterfaceInfos(infos.get(0).getAgentId(), infos);
+            return true;
+        } catch (IOException | InterruptedException | TimeoutException | ExecutionException e) {
+            logger.log(Level.WARNING, "Failed to send new network interfaces to web gateway", e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean updateNetworkInterfaceInfo(NetworkInterfaceInfo info) {
+        try {
+            putNetworkInterfaceInfoUpdate(info);
+            return true;
+        } catch (IOException | InterruptedException | TimeoutException | ExecutionException e) {
+            logger.log(Level.WARNING, "Failed to send network interface update to web gateway", e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeNetworkInterfaceInfo(NetworkInterfaceInfo info) {
+        try {
+            deleteNetworkInterfaceInfo(info);
+            return true;
+        } catch (IOException | InterruptedException | TimeoutException | ExecutionException e) {
+            logger.log(Level.WARNING, "Failed to remove network interface from web gateway", e);
+            return false;
         }
     }
     
@@ -120,37 +152,39 @@ public class NetworkInterfaceInfoDAOImpl implements NetworkInterfaceInfoDAO {
         return result;
     }
     
-    private void addNetworkInterfaceInfo(NetworkInterfaceInfo info) {
-        try {
-            // Encode as JSON and send as POST request
-            String json = jsonHelper.toJson(Arrays.asList(info));
-            StringContentProvider provider = httpHelper.createContentProvider(json);
-            
-            String url = getURL(info.getAgentId());
-            Request httpRequest = httpHelper.newRequest(url);
-            httpRequest.method(HttpMethod.POST);
-            httpRequest.content(provider, CONTENT_TYPE);
-            sendRequest(httpRequest);
-        } catch (IOException | InterruptedException | TimeoutException | ExecutionException e) {
-           logger.log(Level.WARNING, "Failed to send network interface information to web gateway", e);
-        }
+    private void postNetworkInterfaceInfos(String agentId, List<NetworkInterfaceInfo> infos)
+            throws IOException, InterruptedException, TimeoutException, ExecutionException {
+        // Encode as JSON and send as POST request
+        String json = jsonHelper.toJson(infos);
+        StringContentProvider provider = httpHelper.createContentProvider(json);
+        
+        String url = getURL(agentId);
+        Request httpRequest = httpHelper.newRequest(url);
+        httpRequest.method(HttpMethod.POST);
+        httpRequest.content(provider, CONTENT_TYPE);
+        sendRequest(httpRequest);
     }
     
-    private void updateNetworkInterfaceInfo(NetworkInterfaceInfo info) {
-        try {
-            // Encode as JSON and send as PUT request
-            NetworkInterfaceInfoUpdate update = new NetworkInterfaceInfoUpdate(info.getIp4Addr(), info.getIp6Addr());
-            String json = jsonHelper.toJson(update);
-            StringContentProvider provider = httpHelper.createContentProvider(json);
-            
-            String url = getURLWithQueryString(info.getAgentId(), info.getInterfaceName());
-            Request httpRequest = httpHelper.newRequest(url);
-            httpRequest.method(HttpMethod.PUT);
-            httpRequest.content(provider, CONTENT_TYPE);
-            sendRequest(httpRequest);
-        } catch (IOException | InterruptedException | TimeoutException | ExecutionException e) {
-           logger.log(Level.WARNING, "Failed to send network interface information update to web gateway", e);
-        }
+    private void putNetworkInterfaceInfoUpdate(NetworkInterfaceInfo info)
+            throws IOException, InterruptedException, TimeoutException, ExecutionException {
+        // Encode as JSON and send as PUT request
+        NetworkInterfaceInfoUpdate update = new NetworkInterfaceInfoUpdate(info.getIp4Addr(), info.getIp6Addr());
+        String json = jsonHelper.toJson(update);
+        StringContentProvider provider = httpHelper.createContentProvider(json);
+        
+        String url = getURLWithQueryString(info.getAgentId(), info.getInterfaceName());
+        Request httpRequest = httpHelper.newRequest(url);
+        httpRequest.method(HttpMethod.PUT);
+        httpRequest.content(provider, CONTENT_TYPE);
+        sendRequest(httpRequest);
+    }
+
+    private void deleteNetworkInterfaceInfo(NetworkInterfaceInfo info)
+            throws IOException, InterruptedException, TimeoutException, ExecutionException {
+        String url = getURLWithQueryString(info.getAgentId(), info.getInterfaceName());
+        Request httpRequest = httpHelper.newRequest(url);
+        httpRequest.method(HttpMethod.DELETE);
+        sendRequest(httpRequest);
     }
 
     private ContentResponse sendRequest(Request httpRequest)
@@ -239,10 +273,6 @@ public class NetworkInterfaceInfoDAOImpl implements NetworkInterfaceInfoDAO {
             this.httpClient = httpClient;
         }
         
-        void startClient() throws Exception {
-            httpClient.start();
-        }
-        
         StringContentProvider createContentProvider(String content) {
             return new StringContentProvider(content);
         }
@@ -42,6 +42,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import org.eclipse.jetty.client.HttpClient;
 import org.junit.Test;
 
 import com.redhat.thermostat.common.ApplicationService;
@@ -57,6 +58,7 @@ public class ActivatorTest {
     @Test
     public void verifyActivatorRegistersServices() throws Exception {
         StubBundleContext context = new StubBundleContext();
+        context.registerService(HttpClient.class, mock(HttpClient.class), null);
         Activator activator = new Activator();
 
         activator.start(context);
@@ -68,12 +70,13 @@ public class ActivatorTest {
 
         assertEquals(0, context.getServiceListeners().size());
         
-        assertEquals(0, context.getAllServices().size());
+        assertEquals(1, context.getAllServices().size());
     }
 
     @Test
     public void verifyActivatorUnregistersServices() throws Exception {
         StubBundleContext context = new StubBundleContext();
+        context.registerService(HttpClient.class, mock(HttpClient.class), null);
         Activator activator = new Activator();
 
         activator.start(context);
@@ -84,7 +87,7 @@ public class ActivatorTest {
         assertFalse(context.isServiceRegistered(WriterID.class.getName(), WriterIDImpl.class));
         
         assertEquals(0, context.getServiceListeners().size());
-        assertEquals(0, context.getAllServices().size());
+        assertEquals(1, context.getAllServices().size());
     }
     
     @Test
@@ -96,6 +99,7 @@ public class ActivatorTest {
         Timer timer = mock(Timer.class);
         when(timerFactory.createTimer()).thenReturn(timer);
         context.registerService(ApplicationService.class, appService, null);
+        context.registerService(HttpClient.class, mock(HttpClient.class), null);
 
         Activator activator = new Activator();
 
@@ -107,7 +111,7 @@ public class ActivatorTest {
         activator.stop(context);
         
         assertEquals(0, context.getServiceListeners().size());
-        assertEquals(1, context.getAllServices().size());
+        assertEquals(2, context.getAllServices().size());
         
         activator.start(context);
 
@@ -117,7 +121,7 @@ public class ActivatorTest {
         activator.stop(context);
 
         assertEquals(0, context.getServiceListeners().size());
-        assertEquals(1, context.getAllServices().size());
+        assertEquals(2, context.getAllServices().size());
         
     }
 }
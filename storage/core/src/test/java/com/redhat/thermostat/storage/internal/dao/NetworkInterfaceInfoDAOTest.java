@@ -37,6 +37,8 @@
 package com.redhat.thermostat.storage.internal.dao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
@@ -182,5 +184,55 @@ public class NetworkInterfaceInfoDAOTest {
         verify(httpHelper, never()).createContentProvider(SOME_OTHER_JSON);
         verify(request, never()).content(contentProvider, CONTENT_TYPE);
     }
-}
 
+    @Test
+    public void testAddNetworkInterfaceInfosInOneRequest() throws Exception {
+        NetworkInterfaceInfoDAO dao = new NetworkInterfaceInfoDAOImpl(httpHelper, jsonHelper);
+        NetworkInterfaceInfo other = new NetworkInterfaceInfo("fooAgent", "eth1");
+
+        assertTrue(dao.addNetworkInterfaceInfos(Arrays.asList(info, other)));
+
+        // No lookup of existing records
+        verify(request, never()).method(HttpMethod.GET);
+        verify(httpHelper).newRequest(URL);
+        verify(request).method(HttpMethod.POST);
+        verify(jsonHelper).toJson(eq(Arrays.asList(info, other)));
+        verify(request).content(contentProvider, CONTENT_TYPE);
+        verify(request).send();
+    }
+
+    @Test
+    public void testUpdateNetworkInterfaceInfo() throws Exception {
+        NetworkInterfaceInfoDAO dao = new NetworkInterfaceInfoDAOImpl(httpHelper, jsonHelper);
+
+        assertTrue(dao.updateNetworkInterfaceInfo(info));
+
+        verify(request, never()).method(HttpMethod.GET);
+        verify(httpHelper).newRequest(QUERY_URL);
+        verify(request).method(HttpMethod.PUT);
+        verify(jsonHelper).toJson(any(NetworkInterfaceInfoUpdate.class));
+        verify(request).content(contentProvider, CONTENT_TYPE);
+        verify(request).send();
+    }
+
+    @Test
+    public void testRemoveNetworkInterfaceInfo() throws Exception {
+        NetworkInterfaceInfoDAO dao = new NetworkInterfaceInfoDAOImpl(httpHelper, jsonHelper);
+
+        assertTrue(dao.removeNetworkInterfaceInfo(info));
+
+        verify(httpHelper).newRequest(QUERY_URL);
+        verify(request).method(HttpMethod.DELETE);
+        verify(request).send();
+    }
+
+    @Test
+    public void testChangesReportFailure() throws Exception {
+        NetworkInterfaceInfoDAO dao = new NetworkInterfaceInfoDAOImpl(httpHelper, jsonHelper);
+        when(response.getStatus()).thenReturn(HttpStatus.INTERNAL_SERVER_ERROR_500);
+
+        assertFalse(dao.addNetworkInterfaceInfos(Arrays.asList(info)));
+        assertFalse(dao.updateNetworkInterfaceInfo(info));
+        assertFalse(dao.removeNetworkInterfaceInfo(info));
+    }
+}
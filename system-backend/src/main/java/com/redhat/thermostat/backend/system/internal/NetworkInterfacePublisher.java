@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.backend.system.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.thermostat.storage.dao.NetworkInterfaceInfoDAO;
+import com.redhat.thermostat.storage.model.NetworkInterfaceInfo;
+
+/**
+ * Publishes network interfaces to storage, sending only what changed since
+ * the last successful publication. On most hosts, interfaces rarely change,
+ * so most calls to {@link #publish(List)} send nothing at all.
+ * <p>
+ * The published state is advanced after each change storage accepts, so a
+ * failure part way through never causes an accepted change to be sent
+ * twice.
+ */
+public class NetworkInterfacePublisher {
+
+    private final NetworkInterfaceInfoDAO dao;
+    // Last published state, by interface name
+    private final Map<String, NetworkInterfaceInfo> published = new HashMap<>();
+
+    public NetworkInterfacePublisher(NetworkInterfaceInfoDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @param current all network interfaces currently present
+     */
+    public synchronized void publish(List<NetworkInterfaceInfo> current) {
+        List<NetworkInterfaceInfo> added = new ArrayList<>();
+        List<NetworkInterfaceInfo> changed = new ArrayList<>();
+        Set<String> currentNames = new HashSet<>();
+        for (NetworkInterfaceInfo info : current) {
+            currentNames.add(info.getInterfaceName());
+            NetworkInterfaceInfo previous = published.get(info.getInterfaceName());
+            if (previous == null) {
+                added.add(info);
+            } else if (!previous.equals(info)) {
+                changed.add(info);
+            }
+        }
+        List<NetworkInterfaceInfo> removed = new ArrayList<>();
+        for (NetworkInterfaceInfo info : published.values()) {
+            if (!currentNames.contains(info.getInterfaceName())) {
+                removed.add(info);
+            }
+        }
+
+        // Stop at the first failure, the rest is sent again on the next call
+        if (!added.isEmpty()) {
+            if (!dao.addNetworkInterfaceInfos(added)) {
+                return;
+            }
+            for (NetworkInterfaceInfo info : added) {
+                published.put(info.getInterfaceName(), info);
+            }
+        }
+        for (NetworkInterfaceInfo info : changed) {
+            if (!dao.updateNetworkInterfaceInfo(info)) {
+                return;
+            }
+            published.put(info.getInterfaceName(), info);
+        }
+        for (NetworkInterfaceInfo info : removed) {
+            if (!dao.removeNetworkInterfaceInfo(info)) {
+                return;
+            }
+            published.remove(info.getInterfaceName());
+        }
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    synchronized Map<String, NetworkInterfaceInfo> getPublished() {
+        return published;
+    }
+
+}
@@ -45,13 +45,12 @@ import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.storage.dao.NetworkInterfaceInfoDAO;
-import com.redhat.thermostat.storage.model.NetworkInterfaceInfo;
 
 public class SystemBackend extends BaseBackend {
 
     private static final Logger logger = LoggingUtils.getLogger(SystemBackend.class);
 
-    private NetworkInterfaceInfoDAO networkInterfaces;
+    private final NetworkInterfacePublisher networkInterfaces;
 
     private long procCheckInterval = 1000; // TODO make this configurable.
 
@@ -65,7 +64,7 @@ public class SystemBackend extends BaseBackend {
                 "Gathers basic information from the system",
                 "Red Hat, Inc.", "1.0",
                 true);
-        this.networkInterfaces = netInfoDAO;
+        this.networkInterfaces = new NetworkInterfacePublisher(netInfoDAO);
         setVersion(version.getVersionNumber());
         networkInfoBuilder = new NetworkInfoBuilder(writerId);
     }
@@ -84,9 +83,7 @@ public class SystemBackend extends BaseBackend {
         timer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                for (NetworkInterfaceInfo info: networkInfoBuilder.build()) {
-                    networkInterfaces.putNetworkInterfaceInfo(info);
-                }
+                networkInterfaces.publish(networkInfoBuilder.build());
             }
         }, 0, procCheckInterval);
 
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.backend.system.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.storage.dao.NetworkInterfaceInfoDAO;
+import com.redhat.thermostat.storage.model.NetworkInterfaceInfo;
+
+public class NetworkInterfacePublisherTest {
+
+    private static final List<NetworkInterfaceInfo> NONE = Collections.emptyList();
+
+    private NetworkInterfaceInfoDAO dao;
+    private NetworkInterfacePublisher publisher;
+
+    @Before
+    public void setUp() {
+        dao = mock(NetworkInterfaceInfoDAO.class);
+        when(dao.addNetworkInterfaceInfos(anyListOf(NetworkInterfaceInfo.class))).thenReturn(true);
+        when(dao.updateNetworkInterfaceInfo(any(NetworkInterfaceInfo.class))).thenReturn(true);
+        when(dao.removeNetworkInterfaceInfo(any(NetworkInterfaceInfo.class))).thenReturn(true);
+        publisher = new NetworkInterfacePublisher(dao);
+    }
+
+    @Test
+    public void testFirstPublishAddsAll() {
+        NetworkInterfaceInfo eth0 = createInfo("eth0", "10.0.0.1");
+        NetworkInterfaceInfo lo = createInfo("lo", "127.0.0.1");
+
+        publisher.publish(Arrays.asList(eth0, lo));
+
+        verify(dao).addNetworkInterfaceInfos(Arrays.asList(eth0, lo));
+        verify(dao, never()).updateNetworkInterfaceInfo(any(NetworkInterfaceInfo.class));
+        verify(dao, never()).removeNetworkInterfaceInfo(any(NetworkInterfaceInfo.class));
+        assertEquals(2, publisher.getPublished().size());
+    }
+
+    @Test
+    public void testUnchangedNotPublished() {
+        publisher.publish(Arrays.asList(createInfo("eth0", "10.0.0.1")));
+
+        publisher.publish(Arrays.asList(createInfo("eth0", "10.0.0.1")));
+
+        verify(dao, times(1)).addNetworkInterfaceInfos(anyListOf(NetworkInterfaceInfo.class));
+        verify(dao, never()).updateNetworkInterfaceInfo(any(NetworkInterfaceInfo.class));
+        verify(dao, never()).removeNetworkInterfaceInfo(any(NetworkInterfaceInfo.class));
+    }
+
+    @Test
+    public void testDeltas() {
+        NetworkInterfaceInfo eth0 = createInfo("eth0", "10.0.0.1");
+        NetworkInterfaceInfo veth0 = createInfo("veth0", null);
+        publisher.publish(Arrays.asList(eth0, veth0));
+
+        NetworkInterfaceInfo newEth0 = createInfo("eth0", "10.0.0.2");
+        NetworkInterfaceInfo veth1 = createInfo("veth1", null);
+        publisher.publish(Arrays.asList(newEth0, veth1));
+
+        verify(dao).addNetworkInterfaceInfos(Arrays.asList(veth1));
+        verify(dao).updateNetworkInterfaceInfo(newEth0);
+        verify(dao).removeNetworkInterfaceInfo(veth0);
+        assertEquals(newEth0, publisher.getPublished().get("eth0"));
+        assertTrue(publisher.getPublished().containsKey("veth1"));
+        assertEquals(2, publisher.getPublished().size());
+    }
+
+    @Test
+    public void testFailedPublishRetried() {
+        NetworkInterfaceInfo eth0 = createInfo("eth0", "10.0.0.1");
+        when(dao.addNetworkInterfaceInfos(anyListOf(NetworkInterfaceInfo.class)))
+                .thenReturn(false).thenReturn(true);
+
+        publisher.publish(Arrays.asList(eth0));
+        assertTrue(publisher.getPublished().isEmpty());
+        publisher.publish(Arrays.asList(eth0));
+
+        verify(dao, times(2)).addNetworkInterfaceInfos(Arrays.asList(eth0));
+        assertEquals(eth0, publisher.getPublished().get("eth0"));
+    }
+
+    @Test
+    public void testAcceptedChangesNotResentAfterLaterFailure() {
+        NetworkInterfaceInfo eth0 = createInfo("eth0", "10.0.0.1");
+        NetworkInterfaceInfo veth0 = createInfo("veth0", null);
+        publisher.publish(Arrays.asList(eth0, veth0));
+
+        NetworkInterfaceInfo newEth0 = createInfo("eth0", "10.0.0.2");
+        NetworkInterfaceInfo veth1 = createInfo("veth1", null);
+        when(dao.removeNetworkInterfaceInfo(veth0)).thenReturn(false).thenReturn(true);
+        publisher.publish(Arrays.asList(newEth0, veth1));
+
+        // The addition and update were accepted, only the removal is pending
+        assertEquals(newEth0, publisher.getPublished().get("eth0"));
+        assertTrue(publisher.getPublished().containsKey("veth1"));
+        assertTrue(publisher.getPublished().containsKey("veth0"));
+
+        publisher.publish(Arrays.asList(newEth0, veth1));
+
+        verify(dao).addNetworkInterfaceInfos(Arrays.asList(veth1));
+        verify(dao).updateNetworkInterfaceInfo(newEth0);
+        verify(dao, times(2)).removeNetworkInterfaceInfo(veth0);
+        assertEquals(2, publisher.getPublished().size());
+    }
+
+    @Test
+    public void testNothingToPublish() {
+        publisher.publish(NONE);
+
+        verify(dao, never()).addNetworkInterfaceInfos(anyListOf(NetworkInterfaceInfo.class));
+        verify(dao, never()).updateNetworkInterfaceInfo(any(NetworkInterfaceInfo.class));
+        verify(dao, never()).removeNetworkInterfaceInfo(any(NetworkInterfaceInfo.class));
+    }
+
+    private NetworkInterfaceInfo createInfo(String name, String ip4Addr) {
+        NetworkInterfaceInfo info = new NetworkInterfaceInfo("agent", name);
+        info.setIp4Addr(ip4Addr);
+        return info;
+    }
+
+}